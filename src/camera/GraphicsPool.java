@@ -0,0 +1,83 @@
+package camera;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+/**
+ * Holds offscreen 3D graphics buffers, which are no longer in use, so that
+ * they can be reused instead of allocating a new framebuffer for each
+ * camera snapshot or object preview. Buffers are pooled by their size.
+ * The pool should only be used on the animation thread.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class GraphicsPool {
+
+	/**
+	 * The maximum number of unused buffers held for a single size. Buffers
+	 * released beyond this limit are left to be disposed of.
+	 */
+	private static final int MAX_FREE = 4;
+
+	/**
+	 * The unused buffers mapped to by their size.
+	 */
+	private static final HashMap<Long, ArrayDeque<PGraphics>> freeBuffers;
+
+	static {
+		freeBuffers = new HashMap<>();
+	}
+
+	/**
+	 * Returns an unused 3D buffer of the given size, creating one, if no
+	 * buffer of the size is available.
+	 *
+	 * @param app		The application
+	 * @param width		The width of the buffer
+	 * @param height	The height of the buffer
+	 * @return			A buffer of the given size
+	 */
+	public static PGraphics acquire(PApplet app, int width, int height) {
+		ArrayDeque<PGraphics> free = freeBuffers.get(key(width, height));
+
+		if (free != null && !free.isEmpty()) {
+			return free.pop();
+		}
+
+		return app.createGraphics(width, height, PApplet.P3D);
+	}
+
+	/**
+	 * Returns the given buffer to the pool. The buffer must not be used by
+	 * its previous owner after it is released.
+	 *
+	 * @param buffer	A buffer acquired from this pool, or null
+	 */
+	public static void release(PGraphics buffer) {
+		if (buffer == null) {
+			return;
+		}
+
+		Long key = key(buffer.width, buffer.height);
+		ArrayDeque<PGraphics> free = freeBuffers.get(key);
+
+		if (free == null) {
+			free = new ArrayDeque<>();
+			freeBuffers.put(key, free);
+		}
+
+		if (free.size() < MAX_FREE && !free.contains(buffer)) {
+			free.push(buffer);
+		}
+	}
+
+	/**
+	 * Combines the given dimensions into a single key.
+	 */
+	private static Long key(int width, int height) {
+		return ((long)width << 32) | (height & 0xFFFFFFFFL);
+	}
+}
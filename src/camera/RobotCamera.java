@@ -1,22 +1,29 @@
 package camera;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
 
 import core.RobotRun;
 import enums.AxesDisplay;
+import enums.ProfSection;
 import geom.CameraObject;
 import geom.Fixture;
+import geom.Frustum;
 import geom.Part;
 import geom.RMatrix;
 import geom.RQuaternion;
 import geom.RRay;
+import geom.RShape;
 import geom.Scenario;
 import geom.WorldObject;
 import global.Fields;
+import global.Profiler;
 import global.RMath;
 import processing.core.PApplet;
 import processing.core.PGraphics;
 import processing.core.PVector;
+import robot.RoboticArm;
 import window.WGUI;
 
 public class RobotCamera {
@@ -46,6 +53,7 @@ public class RobotCamera {
 	private final int RES = 8;
 	private float sensitivity;
 	private PGraphics snapshot;
+	private int snapshotState; // The state of the scene in the current snapshot
 	private ArrayList<CameraObject> taughtObjects;
 
 	public RobotCamera(RobotRun appRef) {
@@ -596,6 +604,7 @@ public class RobotCamera {
 			for(int i = 0; i < taughtObjects.size(); i += 1) {
 				WorldObject o = taughtObjects.get(i);
 				if(o.getName().compareTo(teachObj.getName()) == 0) {
+					taughtObjects.get(i).releaseModelPreview();
 					taughtObjects.set(i, teachObj);
 					return taughtObjects;
 				}
@@ -615,7 +624,10 @@ public class RobotCamera {
 		camAspectRatio = ar;
 		brightness = br;
 		exposure = exp;
+		
+		long start = Profiler.start();
 		snapshot = updateSnapshot(tgt);
+		Profiler.end(ProfSection.CAMERA_SNAPSHOT, start);
 		return this;
 	}
 
@@ -659,11 +671,56 @@ public class RobotCamera {
 		return new RMatrix(vMat);
 	}
 
+	/**
+	 * Computes a hash of the camera's settings, the objects in the active
+	 * scenario and the active robot's pose, which changes, when any of these
+	 * change.
+	 */
+	private int sceneState(WorldObject tgt) {
+		int hash = Objects.hash(camPos, camOrient.w(), camOrient.x(),
+				camOrient.y(), camOrient.z(), camFOV, camAspectRatio,
+				camClipNear, camClipFar, brightness, exposure,
+				System.identityHashCode(tgt));
+		
+		Scenario active = appRef.getActiveScenario();
+		hash = 31 * hash + System.identityHashCode(active);
+		
+		if (active != null) {
+			for (WorldObject o : active) {
+				RShape mdl = o.getModel();
+				hash = 31 * hash + Objects.hash(System.identityHashCode(o),
+						o.getLocalCenter(), mdl.getDims(), mdl.getFillValue(),
+						Arrays.deepHashCode(o.getLocalOrientation().getDataF()));
+			}
+		}
+		
+		RoboticArm robot = appRef.getActiveRobot();
+		hash = 31 * hash + Objects.hash(robot.RID, robot.getActiveEEIdx(),
+				robot.getEEState());
+		
+		return 31 * hash + Arrays.hashCode(robot.getJointAngles());
+	}
+	
 	private PGraphics updateSnapshot(WorldObject tgt) {
 		int height = WGUI.imageHeight, width = WGUI.imageWidth;
+		int state = sceneState(tgt);
+		PGraphics img = snapshot;
+		
+		if (img != null && img.width == width && img.height == height) {
+			if (state == snapshotState) {
+				// Nothing has changed since the last snapshot
+				return img;
+			}
+			
+		} else {
+			// Render into a recycled buffer of the snapshot's size
+			GraphicsPool.release(img);
+			img = GraphicsPool.acquire(appRef, width, height);
+		}
+		
+		snapshotState = state;
 		PVector cPos = camPos;
 		PVector cOrien = RMath.quatToEuler(camOrient);
-		PGraphics img = appRef.createGraphics(width, height, RobotRun.P3D);
 
 		img.beginDraw();
 		img.resetMatrix();
@@ -682,7 +739,12 @@ public class RobotCamera {
 
 		Scenario active = appRef.getActiveScenario();
 		if(active != null) {
-			for (WorldObject o : active) {
+			// Skip the objects, which lie outside the camera's view
+			Frustum view = Frustum.fromGraphics(img);
+			Iterable<WorldObject> visible = (view == null) ? active :
+				active.queryFrustum(view);
+			
+			for (WorldObject o : visible) {
 				boolean isSelect = tgt != null && tgt.equals(o);
 				if(o instanceof Part) {
 					((Part)o).draw(img, isSelect);
@@ -0,0 +1,292 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import geom.BoundingBox;
+import geom.Part;
+import geom.Scenario;
+import geom.WorldObject;
+import global.Fields;
+import processing.core.PVector;
+import robot.RoboticArm;
+
+/**
+ * Performs the collision detection for a single frame, after the robot and
+ * the parts in the scenario have been moved. The robot's and parts' bounding
+ * boxes are copied, candidate pairs are found with the scenario's spatial
+ * index, and then the narrow-phase tests on the copies are split amongst the
+ * threads of a fork-join pool. Finally, the results are merged into the
+ * colors of the robot's and parts' bounding boxes on the calling thread.
+ *
+ * @author Joshua Hooker
+ */
+public class CollisionPhase {
+
+	/**
+	 * The maximum number of parts tested by a single task.
+	 */
+	private static final int PARTS_PER_TASK = 16;
+
+	/**
+	 * The threads, on which the narrow-phase tests are run.
+	 */
+	private final ForkJoinPool POOL;
+
+	/**
+	 * Creates a pool with one thread per available processor.
+	 */
+	public CollisionPhase() {
+		POOL = new ForkJoinPool(Math.max(1,
+				Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Checks for collisions between the given robot's bounding boxes, between
+	 * the robot and the parts in the given scenario, and between pairs of
+	 * parts in the scenario. The bounding boxes of the robot and the colliding
+	 * parts are colored accordingly, and parts, which the robot can pick up,
+	 * are colored as held. The colors of all the bounding boxes are assumed
+	 * to be reset beforehand.
+	 *
+	 * @param robot		The robot to check
+	 * @param scenario	The scenario, whose parts to check, or null to only
+	 * 					check for robot self-collisions
+	 * @return			If any collision was detected
+	 */
+	public boolean run(RoboticArm robot, Scenario scenario) {
+		/* Snapshot the robot's bounding boxes */
+		BoundingBox[][] robotOBBs = robot.copyOBBs();
+		boolean[][] robotHits = new boolean[robotOBBs.length][];
+
+		for (int sdx = 0; sdx < robotOBBs.length; ++sdx) {
+			robotHits[sdx] = new boolean[robotOBBs[sdx].length];
+		}
+
+		boolean collision = robot.checkSelfCollisions(robotOBBs, robotHits);
+
+		if (scenario != null) {
+			/* Snapshot the parts' bounding boxes and find candidate pairs */
+			ArrayList<Part> parts = new ArrayList<>();
+			IdentityHashMap<Part, Integer> partIdx = new IdentityHashMap<>();
+
+			for (WorldObject wo : scenario) {
+				if (wo instanceof Part) {
+					partIdx.put((Part)wo, parts.size());
+					parts.add((Part)wo);
+				}
+			}
+
+			int numOfParts = parts.size();
+			BoundingBox[] partOBBs = new BoundingBox[numOfParts];
+			boolean[] held = new boolean[numOfParts];
+			boolean[] nearRobot = new boolean[numOfParts];
+			int[][] neighbors = new int[numOfParts][];
+
+			for (int idx = 0; idx < numOfParts; ++idx) {
+				Part p = parts.get(idx);
+				partOBBs[idx] = p.getOBB().clone();
+				held[idx] = robot.isHeld(p);
+				neighbors[idx] = findNeighbors(scenario, p, idx, partIdx);
+			}
+
+			ArrayList<BoundingBox> allRobotOBBs = new ArrayList<>();
+
+			for (BoundingBox[] set : robotOBBs) {
+				for (BoundingBox obb : set) {
+					allRobotOBBs.add(obb);
+				}
+			}
+
+			float[] rBounds = WorldObject.boundsOf(allRobotOBBs.toArray(
+					new BoundingBox[allRobotOBBs.size()]));
+
+			for (WorldObject wo : scenario.queryBox(
+					new PVector(rBounds[0], rBounds[1], rBounds[2]),
+					new PVector(rBounds[3], rBounds[4], rBounds[5]))) {
+
+				Integer idx = partIdx.get(wo);
+
+				if (idx != null) {
+					nearRobot[idx] = true;
+				}
+			}
+
+			/* Run the narrow-phase tests in parallel */
+			Results results = new Results(robotOBBs, numOfParts);
+			NarrowPhase task = new NarrowPhase(robotOBBs, partOBBs, held,
+					nearRobot, neighbors, results, 0, numOfParts);
+
+			POOL.invoke(task);
+
+			/* Merge the results */
+			for (int idx = 0; idx < numOfParts; ++idx) {
+				Part p = parts.get(idx);
+
+				if (results.partHits[idx]) {
+					p.setBBColor(Fields.OBB_COLLISION);
+					collision = true;
+				}
+
+				if (results.pickup[idx]) {
+					p.setBBColor(Fields.OBB_HELD);
+				}
+			}
+
+			for (int sdx = 0; sdx < robotHits.length; ++sdx) {
+				for (int odx = 0; odx < robotHits[sdx].length; ++odx) {
+					robotHits[sdx][odx] |= results.robotHits[sdx][odx];
+				}
+			}
+		}
+
+		robot.markOBBCollisions(robotHits);
+
+		return collision;
+	}
+
+	/**
+	 * Returns the indices of the parts after the given part in the scenario,
+	 * whose bounds overlap the bounds of the given part, so that each pair of
+	 * parts is tested once.
+	 */
+	private static int[] findNeighbors(Scenario scenario, Part p, int idx,
+			IdentityHashMap<Part, Integer> partIdx) {
+
+		float[] bounds = p.getBounds();
+		ArrayList<WorldObject> nearby = scenario.queryBox(
+				new PVector(bounds[0], bounds[1], bounds[2]),
+				new PVector(bounds[3], bounds[4], bounds[5]));
+
+		int[] neighbors = new int[nearby.size()];
+		int count = 0;
+
+		for (WorldObject wo : nearby) {
+			Integer nIdx = partIdx.get(wo);
+
+			if (nIdx != null && nIdx > idx) {
+				neighbors[count++] = nIdx;
+			}
+		}
+
+		int[] trimmed = new int[count];
+		System.arraycopy(neighbors, 0, trimmed, 0, count);
+		return trimmed;
+	}
+
+	/**
+	 * Tests a range of parts against the robot and their neighboring parts,
+	 * splitting the range amongst subtasks, when it is large.
+	 */
+	private static class NarrowPhase extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BoundingBox[][] robotOBBs;
+		private final BoundingBox[] partOBBs;
+		private final boolean[] held, nearRobot;
+		private final int[][] neighbors;
+		private final Results results;
+		private final int from, to;
+
+		private NarrowPhase(BoundingBox[][] robotOBBs, BoundingBox[] partOBBs,
+				boolean[] held, boolean[] nearRobot, int[][] neighbors,
+				Results results, int from, int to) {
+
+			this.robotOBBs = robotOBBs;
+			this.partOBBs = partOBBs;
+			this.held = held;
+			this.nearRobot = nearRobot;
+			this.neighbors = neighbors;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PARTS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(
+					new NarrowPhase(robotOBBs, partOBBs, held, nearRobot,
+							neighbors, results, from, mid),
+					new NarrowPhase(robotOBBs, partOBBs, held, nearRobot,
+							neighbors, results, mid, to)
+				);
+				return;
+			}
+
+			for (int idx = from; idx < to; ++idx) {
+				BoundingBox partOBB = partOBBs[idx];
+
+				if (nearRobot[idx]) {
+					boolean eeContact = false;
+
+					// Robot segment and end effector OBBs
+					for (int sdx = 0; sdx < 7; ++sdx) {
+						for (int odx = 0; odx < robotOBBs[sdx].length; ++odx) {
+							if (partOBB.collision3D(robotOBBs[sdx][odx])) {
+								results.hitRobot(sdx, odx);
+								results.hitPart(idx);
+								eeContact |= sdx == 6;
+							}
+						}
+					}
+
+					// A part can be picked up, if only the pickup OBBs touch it
+					if (!held[idx] && !eeContact) {
+						for (BoundingBox obb : robotOBBs[7]) {
+							if (partOBB.collision3D(obb)) {
+								results.pickup[idx] = true;
+								break;
+							}
+						}
+					}
+				}
+
+				for (int nIdx : neighbors[idx]) {
+					if (partOBB.collision3D(partOBBs[nIdx])) {
+						results.hitPart(idx);
+						results.hitPart(nIdx);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The collision flags set by the narrow-phase tasks. A flag may be set by
+	 * more than one task, so flags are set within a lock on this object.
+	 */
+	private static class Results {
+
+		private final boolean[][] robotHits;
+		private final boolean[] partHits;
+
+		/**
+		 * Only set by the task responsible for the part.
+		 */
+		private final boolean[] pickup;
+
+		private Results(BoundingBox[][] robotOBBs, int numOfParts) {
+			robotHits = new boolean[robotOBBs.length][];
+
+			for (int sdx = 0; sdx < robotOBBs.length; ++sdx) {
+				robotHits[sdx] = new boolean[robotOBBs[sdx].length];
+			}
+
+			partHits = new boolean[numOfParts];
+			pickup = new boolean[numOfParts];
+		}
+
+		private synchronized void hitPart(int idx) {
+			partHits[idx] = true;
+		}
+
+		private synchronized void hitRobot(int sdx, int odx) {
+			robotHits[sdx][odx] = true;
+		}
+	}
+}
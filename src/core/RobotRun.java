@@ -1,11 +1,14 @@
 package core;
 
 import java.awt.event.KeyEvent;
-import java.nio.ByteBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Objects;
 import java.util.Set;
-import java.util.Stack;
 
 import camera.RegisteredModels;
 import camera.RobotCamera;
@@ -13,6 +16,7 @@ import enums.AxesDisplay;
 import enums.CoordFrame;
 import enums.ExecState;
 import enums.ExecType;
+import enums.ProfSection;
 import enums.WindowTab;
 import expression.Operand;
 import expression.OperandCamObj;
@@ -20,22 +24,24 @@ import expression.Operator;
 import frame.UserFrame;
 import geom.ComplexShape;
 import geom.Fixture;
+import geom.Frustum;
 import geom.Model;
+import geom.ModelRegistry;
 import geom.Part;
 import geom.Point;
 import geom.RMatrix;
 import geom.RRay;
 import geom.RShape;
 import geom.Scenario;
-import geom.Triangle;
 import geom.WorldObject;
 import global.Fields;
+import global.Profiler;
 import global.RMath;
 import io.DataManagement;
+import io.MeshLoader;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PImage;
-import processing.core.PShape;
 import processing.core.PVector;
 import processing.event.MouseEvent;
 import processing.opengl.PGraphicsOpenGL;
@@ -55,6 +61,7 @@ import programming.RegisterStatement;
 import programming.SelectStatement;
 import regs.PositionRegister;
 import regs.Register;
+import robot.CollisionPrecheck;
 import robot.RTrace;
 import robot.RoboticArm;
 import screen.Screen;
@@ -98,6 +105,26 @@ public class RobotRun extends PApplet {
 		}
 	}
 	
+	/**
+	 * The model files of the robot's end effectors, relative to the data
+	 * directory.
+	 */
+	private static final String[] EE_MODEL_FILES = new String[] {
+		"robot/EE/FACEPLATE.STL", "robot/EE/SUCTION.stl",
+		"robot/EE/GRIPPER.stl", "robot/EE/PINCER.stl", "robot/EE/POINTER.stl",
+		"robot/EE/GLUE_GUN.stl", "robot/EE/WIELDER.stl"
+	};
+	
+	/**
+	 * The model files of the robot's segments, relative to the data
+	 * directory.
+	 */
+	private static final String[] SEGMENT_MODEL_FILES = new String[] {
+		"robot/ROBOT_BASE.STL", "robot/ROBOT_SEGMENT_1.STL",
+		"robot/ROBOT_SEGMENT_2.STL", "robot/ROBOT_SEGMENT_3.STL",
+		"robot/ROBOT_SEGMENT_4.STL", "robot/ROBOT_SEGMENT_5.STL"
+	};
+	
 	public int editIdx = -1;
 
 	public Operand<?> opEdit = null;
@@ -106,8 +133,26 @@ public class RobotRun extends PApplet {
 	private Pointer<Scenario> activeScenario;
 	
 	private Camera camera;
+	
+	/**
+	 * Detects the collisions amongst the active robot and the parts in the
+	 * active scenario for each frame.
+	 */
+	private CollisionPhase collisionPhase;
+	
+	/**
+	 * Checks the motion paths of the active program for collisions in the
+	 * background, so that they are flagged before the program is executed.
+	 */
+	private CollisionPrecheck collisionPrecheck;
+	
 	private KeyCodeMap keyCodeMap;
 	
+	/**
+	 * Reads the application's .stl files on worker threads.
+	 */
+	private MeshLoader meshLoader;
+	
 	/**
 	 * A list of instruction indexes for the active program, which point to
 	 * motion instructions, whose position and orientation (or joint angles)
@@ -160,6 +205,12 @@ public class RobotRun extends PApplet {
 	 */
 	private Point position;
 	
+	/**
+	 * The state of the active program, robot and scenario, for which the last
+	 * collision pre-check was requested.
+	 */
+	private int precheckState;
+	
 	private ProgramExecution procExec;
 	
 	private RobotCamera rCamera;
@@ -168,13 +219,68 @@ public class RobotRun extends PApplet {
 	private final HashMap<Integer, RoboticArm> ROBOTS = new HashMap<>();
 	
 	private RTrace robotTrace;
+	
+	/**
+	 * Set by the simulation thread, when the active robot stops moving, so
+	 * that the pendant's instruction list is updated on the animation thread.
+	 */
+	private volatile boolean robotStopped;
+	
+	/**
+	 * Set by the simulation thread, when it advances program execution, so
+	 * that the pendant is updated on the animation thread.
+	 */
+	private volatile boolean progExecUpdated;
+	
+	/**
+	 * Set by the simulation thread, when program execution returns to the
+	 * program of another robot, so that the pendant's column is reset on the
+	 * animation thread.
+	 */
+	private volatile boolean progExecReturned;
 
-	private final Stack<WOUndoState> SCENARIO_UNDO = new Stack<>();
+	/**
+	 * The maximum number of undo groups kept for the active scenario.
+	 */
+	private static final int SCENARIO_UNDO_GROUPS = 40;
+	
+	/**
+	 * The undo states of the active scenario with the most recent state first.
+	 * Each undo state holds only the modified properties of a single object.
+	 */
+	private final ArrayDeque<WOUndoState> SCENARIO_UNDO = new ArrayDeque<>();
+	
+	/**
+	 * The number of undo groups in the undo stack.
+	 */
+	private int scenarioUndoGroups;
+	
+	/**
+	 * The number of edits made to the world objects of the active scenario.
+	 */
+	private int scenarioEditCount;
 	
 	private final ArrayList<Scenario> SCENARIOS = new ArrayList<>();
 	
 	private ScreenManager screens;
 	
+	/**
+	 * The world object selected in the UI, as of the last frame, which is
+	 * read by the simulation thread in place of the UI itself.
+	 */
+	private volatile WorldObject selectedWO;
+	
+	/**
+	 * Whether the bounding boxes are rendered, as of the last frame, which is
+	 * read by the simulation thread in place of the UI itself.
+	 */
+	private volatile boolean showOBBs;
+	
+	/**
+	 * Steps the robots and the scene on a separate thread from rendering.
+	 */
+	private Simulation simulation;
+	
 	private WGUI UI;
 	
 	/**
@@ -674,6 +780,28 @@ public class RobotRun extends PApplet {
 		}	
 	}
 	
+	/**
+	 * Miscellaneous menu button</br></br>
+	 * 
+	 * Reads the programs in the pendant text format from each robot's export
+	 * directory, replacing any of the robot's programs with the same names.
+	 */
+	public void button_importProgs() {
+		if (isProgExec()) {
+			Fields.setMessage("Programs cannot be imported during execution!");
+			return;
+		}
+		
+		int count = 0;
+		
+		for (Integer rid : ROBOTS.keySet()) {
+			count += DataManagement.importProgsFromTxt(this, getRobot(rid));
+		}
+		
+		Fields.setMessage(String.format("Imported %d programs", count));
+		updatePendantScreen();
+	}
+	
 	/**
 	 * Pendant F1 button</br></br>
 	 * 
@@ -1874,15 +2002,49 @@ public class RobotRun extends PApplet {
 		}
 	}
 
+	/**
+	 * Handles the queued input events with the simulation lock held, since
+	 * input events modify the state of the robots and the scene. The events
+	 * remain queued until the next frame, while a simulation step is in
+	 * progress.
+	 */
+	@Override
+	protected void dequeueEvents() {
+		if (simulation == null) {
+			super.dequeueEvents();
+			
+		} else {
+			simulation.tryRun(super::dequeueEvents);
+		}
+	}
+
 	@Override
 	public void dispose() {
-		// Save data before exiting
-		DataManagement.saveState(this);
+		if (simulation != null) {
+			simulation.stop();
+			// Wait for the last step to finish
+			simulation.getLock().lock();
+			
+			try {
+				// Save data before exiting
+				DataManagement.saveState(this);
+				
+			} finally {
+				simulation.getLock().unlock();
+			}
+			
+		} else {
+			// Save data before exiting
+			DataManagement.saveState(this);
+		}
+		
 		super.dispose();
 	}
 
 	@Override
 	public void draw() {
+		long frameStart = Profiler.start();
+		
 		try {
 			if (mDragWinResize) {
 				timeSinceResize = System.currentTimeMillis();
@@ -1908,7 +2070,15 @@ public class RobotRun extends PApplet {
 			
 			// Apply the camera for drawing objects
 			applyCamera(camera);
-			renderScene();
+			
+			// Pass the state of the UI on to the simulation thread
+			selectedWO = UI.getSelectedWO();
+			showOBBs = isOBBRendered();
+			simulation.tryRun(this::updatePendant);
+			
+			long start = Profiler.start();
+			renderScene(simulation.getSnapshot());
+			Profiler.end(ProfSection.SCENE_DRAW, start);
 			
 			// Update jog buttons
 			int[] jogMotion = getActiveRobot().getJogMotion();
@@ -1945,6 +2115,8 @@ public class RobotRun extends PApplet {
 			DataManagement.errLog(Ex);
 			throw Ex;
 		}
+		
+		Profiler.end(ProfSection.FRAME, frameStart);
 	}
 
 	/**
@@ -2237,6 +2409,20 @@ public class RobotRun extends PApplet {
 		return record.isRecording();
 	}
 
+	/**
+	 * Determines if the path of the motion instruction at the given index in
+	 * the given program was found to have a collision by the last collision
+	 * pre-check.
+	 * 
+	 * @param p	A program
+	 * @param i	The index of an instruction in the program
+	 * @return	If the instruction's path has a collision
+	 */
+	public boolean isCollisionFlagged(Program p, int i) {
+		return p == getActiveProg() && i >= 0 && i < p.getNumOfInst() &&
+				collisionPrecheck.isFlagged(p, p.get(i));
+	}
+	
 	public Boolean isRobotAtPostn(int i) {
 		return mInstRobotAt.get(new Integer(i));
 	}
@@ -2321,6 +2507,23 @@ public class RobotRun extends PApplet {
 						toggleEEState(getActiveRobot());
 					}
 					
+				} else if (keyCode == KeyEvent.VK_O) {
+					// Export the frame time profile
+					File dest = new File(sketchPath("tmp/profile.csv"));
+					
+					try {
+						Profiler.exportCSV(dest);
+						Fields.setMessage("Saved profile to " + dest.getPath());
+						
+					} catch (IOException IOEx) {
+						DataManagement.errLog(IOEx);
+						Fields.setMessage("Failed to save the profile");
+					}
+					
+				} else if (keyCode == KeyEvent.VK_P) {
+					// Toggle the frame time profiler overlay
+					Profiler.setEnabled( !Profiler.isEnabled() );
+					
 				} else if (keyCode == KeyEvent.VK_T) {
 					// Restore default Robot joint angles
 					button_hold();
@@ -2446,7 +2649,10 @@ public class RobotRun extends PApplet {
 	
 	/**
 	 * Build a PShape object from the contents of the given .stl source file
-	 * stored in /RobotRun/data/.
+	 * stored in /RobotRun/data/. The file is read on a worker thread, if it
+	 * has not been read already, and the model is built on the calling
+	 * thread, which must be the animation thread. The model is shared with
+	 * any other user of the same file and fill color.
 	 * 
 	 * @param filename	
 	 * @param fill		
@@ -2461,57 +2667,7 @@ public class RobotRun extends PApplet {
 	public Model loadSTLModel(String filename, int fill)
 			throws NullPointerException, ClassCastException {
 		
-		ArrayList<Triangle> triangles = new ArrayList<>();
-		byte[] data = loadBytes(filename);
-	
-		int n = 84; // skip header and number of triangles
-	
-		while (n < data.length) {
-			Triangle t = new Triangle();
-			for (int m = 0; m < 4; m++) {
-				byte[] bytesX = new byte[4];
-				bytesX[0] = data[n + 3];
-				bytesX[1] = data[n + 2];
-				bytesX[2] = data[n + 1];
-				bytesX[3] = data[n];
-				n += 4;
-				byte[] bytesY = new byte[4];
-				bytesY[0] = data[n + 3];
-				bytesY[1] = data[n + 2];
-				bytesY[2] = data[n + 1];
-				bytesY[3] = data[n];
-				n += 4;
-				byte[] bytesZ = new byte[4];
-				bytesZ[0] = data[n + 3];
-				bytesZ[1] = data[n + 2];
-				bytesZ[2] = data[n + 1];
-				bytesZ[3] = data[n];
-				n += 4;
-				t.components[m] = new PVector(
-						ByteBuffer.wrap(bytesX).getFloat(),
-						ByteBuffer.wrap(bytesY).getFloat(),
-						ByteBuffer.wrap(bytesZ).getFloat());
-			}
-			triangles.add(t);
-			n += 2; // skip meaningless "attribute byte count"
-		}
-		
-		Model mesh = new Model((PGraphicsOpenGL)getGraphics(),
-				PShape.GEOMETRY, filename);
-		mesh.beginShape(PConstants.TRIANGLES);
-		mesh.noStroke();
-		mesh.fill(fill);
-		
-		for (Triangle t : triangles) {
-			mesh.normal(t.components[0].x, t.components[0].y, t.components[0].z);
-			mesh.vertex(t.components[1].x, t.components[1].y, t.components[1].z);
-			mesh.vertex(t.components[2].x, t.components[2].y, t.components[2].z);
-			mesh.vertex(t.components[3].x, t.components[3].y, t.components[3].z);
-		}
-		
-		mesh.endShape();
-	
-		return mesh;
+		return ModelRegistry.getModel(filename, fill);
 	}
 	
 	@Override
@@ -3278,6 +3434,29 @@ public class RobotRun extends PApplet {
 		};
 		
 		DataManagement.initialize(this);
+		
+		/* Read all .STL files on worker threads, while the rest of the
+		 * application is set up */
+		meshLoader = new MeshLoader(this);
+		
+		for (String filename : SEGMENT_MODEL_FILES) {
+			meshLoader.request(filename);
+		}
+		
+		for (String filename : EE_MODEL_FILES) {
+			meshLoader.request(filename);
+		}
+		
+		ArrayList<String> modelFilenames = DataManagement.getModelFilenames();
+		
+		for (String filename : modelFilenames) {
+			meshLoader.request(filename);
+		}
+		
+		// Models are built on the animation thread, when first used
+		ModelRegistry.initialize((PGraphicsOpenGL)getGraphics(),
+				meshLoader::get);
+		
 		RegisteredModels.loadModelDefs(this);
 		
 		// create font and text display background
@@ -3287,6 +3466,10 @@ public class RobotRun extends PApplet {
 		
 		keyCodeMap = new KeyCodeMap();
 		procExec = new ProgramExecution();
+		collisionPhase = new CollisionPhase();
+		collisionPrecheck = new CollisionPrecheck();
+		precheckState = 0;
+		scenarioEditCount = 0;
 		mInstRobotAt = new HashMap<>();
 		robotTrace = new RTrace();
 		
@@ -3295,21 +3478,18 @@ public class RobotRun extends PApplet {
 		
 		background(255);
 		
-		// Load all .STL files into memory
-		ArrayList<String> modelFilenames = DataManagement.getModelFilenames();
-		
-		for (String filename : modelFilenames) {
-			Model model = this.loadSTLModel(filename, 0);
-			Fields.addModel(model);
-		}
-		
 		// load model and save data
 		try {
+			// Both robots share the same models
+			Model[] segments = loadSegmentModels();
+			Model[] endEffectors = loadEEModels();
+			
 			RoboticArm r = instantiateRobot(0, new PVector(200, Fields.FLOOR_Y,
-					200));
+					200), segments, endEffectors);
 			ROBOTS.put(r.RID, r);
 			
-			r = instantiateRobot(1, new PVector(200, Fields.FLOOR_Y, -750));
+			r = instantiateRobot(1, new PVector(200, Fields.FLOOR_Y, -750),
+					segments, endEffectors);
 			ROBOTS.put(r.RID, r);
 
 			activeRobot.set( ROBOTS.get(0) );
@@ -3327,6 +3507,12 @@ public class RobotRun extends PApplet {
 			
 			updatePendantScreen();
 			
+			robotStopped = false;
+			selectedWO = null;
+			showOBBs = isOBBRendered();
+			simulation = new Simulation(this::updateScene);
+			simulation.start();
+			
 		} catch (NullPointerException NPEx) {
 			DataManagement.errLog(NPEx);
 			throw NPEx;
@@ -3542,7 +3728,7 @@ public class RobotRun extends PApplet {
 	public void undoScenarioEdit() {
 		Scenario s = getActiveScenario();
 		
-		if (s != null && !SCENARIO_UNDO.empty()) {
+		if (s != null && !SCENARIO_UNDO.isEmpty()) {
 			// Trigger all adjacent undo states with the same group number
 			WOUndoState undoState = SCENARIO_UNDO.pop();
 			int groupNum = undoState.getGroupNum();
@@ -3559,6 +3745,10 @@ public class RobotRun extends PApplet {
 				SCENARIO_UNDO.pop();
 			}
 			
+			--scenarioUndoGroups;
+			
+			++scenarioEditCount;
+			
 			// Update the world object dropdown list
 			UI.updateListContents();
 			WorldObject wo = UI.getSelectedWO();
@@ -3586,6 +3776,13 @@ public class RobotRun extends PApplet {
 	 * pendant.
 	 */
 	public void updatePendantScreen() {
+		Program activeProg = getActiveProg();
+		
+		if (activeProg != null) {
+			// Journal any edits made to the active program
+			DataManagement.saveProgram(getActiveRobot().RID, activeProg);
+		}
+		
 		screens.getActiveScreen().updateScreen();
 		UI.renderPendantScreen(screens.getActiveScreen());
 	}
@@ -3661,12 +3858,29 @@ public class RobotRun extends PApplet {
 	 */
 	public void pushWOUndoState(WOUndoState undoState) {
 		if (undoState != null) {
-			// Only the latest 40 world object save states can be undone
-			if (SCENARIO_UNDO.size() >= 40) {
-				SCENARIO_UNDO.remove(0);
+			int groupNum = undoState.getGroupNum();
+			
+			if (SCENARIO_UNDO.isEmpty() ||
+					SCENARIO_UNDO.peek().getGroupNum() != groupNum) {
+				
+				// Only the latest groups of undo states can be undone
+				if (scenarioUndoGroups >= SCENARIO_UNDO_GROUPS) {
+					// Remove the whole oldest group
+					int oldest = SCENARIO_UNDO.removeLast().getGroupNum();
+					
+					while (!SCENARIO_UNDO.isEmpty() &&
+							SCENARIO_UNDO.peekLast().getGroupNum() == oldest) {
+						
+						SCENARIO_UNDO.removeLast();
+					}
+					
+				} else {
+					++scenarioUndoGroups;
+				}
 			}
-	
+			
 			SCENARIO_UNDO.push(undoState);
+			++scenarioEditCount;
 		}
 	}
 	
@@ -3769,9 +3983,9 @@ public class RobotRun extends PApplet {
 			}
 		}
 		
-		// Check collision with world objects
+		// Check collision with world objects, whose bounds the ray intersects
 		
-		for (WorldObject wo : scenario) {
+		for (WorldObject wo : scenario.queryRay(ray)) {
 			PVector collPt = wo.collision(ray);
 			
 			if (collPt != null && (closestCollPt == null ||
@@ -3809,16 +4023,42 @@ public class RobotRun extends PApplet {
 		return collidedWith;
 	}
 	
+	/**
+	 * Draws the given robot in the state of the given snapshot, or in its
+	 * current state, if the robot is not part of the snapshot.
+	 * 
+	 * @param r			The robot to draw
+	 * @param snapshot	The latest snapshot of the scene
+	 * @param drawOBBs	Whether to render the bounding boxes of the robot
+	 * @param axesType	Defines how to draw the axes of the active coordinate
+	 * 					frame of the robot
+	 */
+	private void drawRobot(RoboticArm r, SceneSnapshot snapshot,
+			boolean drawOBBs, AxesDisplay axesType) {
+		
+		float[] jointAngles = snapshot.getJointAngles(r.RID);
+		
+		if (jointAngles == null) {
+			r.draw(getGraphics(), drawOBBs, axesType);
+			
+		} else {
+			r.draw(getGraphics(), jointAngles,
+					drawOBBs ? snapshot.getOBBTMats(r.RID) : null,
+					snapshot.getOBBColors(r.RID), axesType);
+		}
+	}
+	
 	/**
 	 * TODO comment this
 	 * 
 	 * @param RID
 	 * @param basePos
+	 * @param segments
+	 * @param endEffectors
 	 * @return
 	 */
-	private RoboticArm instantiateRobot(int RID, PVector basePos) {
-		Model[] segments = loadSegmentModels();
-		Model[] endEffectors = loadEEModels();
+	private RoboticArm instantiateRobot(int RID, PVector basePos,
+			Model[] segments, Model[] endEffectors) {
 		
 		return new RoboticArm(RID, segments, endEffectors, basePos, robotTrace);
 	}
@@ -3832,13 +4072,13 @@ public class RobotRun extends PApplet {
 		Model[] eeModels = new Model[7];
 		
 		// Load end effector models
-		eeModels[0] = loadSTLModel("robot/EE/FACEPLATE.STL", Fields.ROBOT_GREY);
-		eeModels[1] = loadSTLModel("robot/EE/SUCTION.stl", Fields.EE_DEFAULT);
-		eeModels[2] = loadSTLModel("robot/EE/GRIPPER.stl", Fields.EE_DEFAULT);
-		eeModels[3] = loadSTLModel("robot/EE/PINCER.stl", Fields.ROBOT_YELLOW);
-		eeModels[4] = loadSTLModel("robot/EE/POINTER.stl", Fields.EE_DEFAULT);
-		eeModels[5] = loadSTLModel("robot/EE/GLUE_GUN.stl", Fields.EE_DEFAULT);
-		eeModels[6] = loadSTLModel("robot/EE/WIELDER.stl", Fields.EE_DEFAULT);
+		eeModels[0] = loadSTLModel(EE_MODEL_FILES[0], Fields.ROBOT_GREY);
+		eeModels[1] = loadSTLModel(EE_MODEL_FILES[1], Fields.EE_DEFAULT);
+		eeModels[2] = loadSTLModel(EE_MODEL_FILES[2], Fields.EE_DEFAULT);
+		eeModels[3] = loadSTLModel(EE_MODEL_FILES[3], Fields.ROBOT_YELLOW);
+		eeModels[4] = loadSTLModel(EE_MODEL_FILES[4], Fields.EE_DEFAULT);
+		eeModels[5] = loadSTLModel(EE_MODEL_FILES[5], Fields.EE_DEFAULT);
+		eeModels[6] = loadSTLModel(EE_MODEL_FILES[6], Fields.EE_DEFAULT);
 		
 		return eeModels;
 	}
@@ -3851,26 +4091,64 @@ public class RobotRun extends PApplet {
 	private Model[] loadSegmentModels() {
 		Model[] segModels = new Model[6];
 		
-		segModels[0] = loadSTLModel("robot/ROBOT_BASE.STL", Fields.ROBOT_YELLOW);
+		segModels[0] = loadSTLModel(SEGMENT_MODEL_FILES[0], Fields.ROBOT_YELLOW);
 		segModels[0].rotateY(PConstants.HALF_PI);
 		segModels[0].rotateZ(PConstants.PI);
-		segModels[1] = loadSTLModel("robot/ROBOT_SEGMENT_1.STL", Fields.ROBOT_GREY);
+		segModels[1] = loadSTLModel(SEGMENT_MODEL_FILES[1], Fields.ROBOT_GREY);
 		segModels[1].rotateY(PConstants.PI);
 		segModels[1].rotateX(PConstants.PI);
-		segModels[2] = loadSTLModel("robot/ROBOT_SEGMENT_2.STL", Fields.ROBOT_YELLOW);
+		segModels[2] = loadSTLModel(SEGMENT_MODEL_FILES[2], Fields.ROBOT_YELLOW);
 		segModels[2].rotateY(PConstants.HALF_PI);
 		segModels[2].rotateZ(PConstants.PI);
-		segModels[3] = loadSTLModel("robot/ROBOT_SEGMENT_3.STL", Fields.ROBOT_GREY);
+		segModels[3] = loadSTLModel(SEGMENT_MODEL_FILES[3], Fields.ROBOT_GREY);
 		segModels[3].rotateY(-PConstants.HALF_PI);
-		segModels[4] = loadSTLModel("robot/ROBOT_SEGMENT_4.STL", Fields.ROBOT_GREY);
+		segModels[4] = loadSTLModel(SEGMENT_MODEL_FILES[4], Fields.ROBOT_GREY);
 		segModels[4].rotateY(-PConstants.HALF_PI);
 		segModels[4].rotateZ(-PConstants.HALF_PI);
-		segModels[5] = loadSTLModel("robot/ROBOT_SEGMENT_5.STL", Fields.ROBOT_YELLOW);
+		segModels[5] = loadSTLModel(SEGMENT_MODEL_FILES[5], Fields.ROBOT_YELLOW);
 		segModels[5].rotateY(-PConstants.HALF_PI);
 		
 		return segModels;
 	}
 	
+	/**
+	 * Updates the transformation matrix of a part held by the given robot.
+	 * 
+	 * @param r	The robot, which holds the part
+	 * @param p	The part held by the robot
+	 */
+	private void moveHeldPart(RoboticArm r, Part p) {
+		
+		/***********************************************
+		     Moving a part with the Robot:
+		
+		     P' = R^-1 x E' x E^-1 x P
+		
+		     where:
+		     P' - new part local orientation
+		     R  - part fixture reference orientation
+		     E' - current Robot end effector orientation
+		     E  - previous Robot end effector orientation
+		     P  - current part local orientation
+		 ***********************************************/
+		
+		RMatrix curTip = r.getFaceplateTMat(r.getJointAngles());
+		RMatrix invMat = r.getLastTipTMatrix().getInverse();
+		Fixture refFixture = p.getParent();
+		
+		RMatrix tMat = curTip.multiply(invMat).multiply(
+				RMath.formTMat(p.getCenter(), p.getOrientation()));
+		
+		if (refFixture != null) {
+			tMat = refFixture.getInvCoordinateSystem().multiply(tMat);
+		}
+		
+		// Update the world object's position and orientation
+		p.setLocalCenter(new PVector(tMat.getEntryF(0, 3),
+				tMat.getEntryF(1, 3), tMat.getEntryF(2, 3)));
+		p.setLocalOrientation(RMath.formRMat(tMat));
+	}
+	
 	/**
 	 * Begins backward program execution for the active program beginning from
 	 * the active instruction index.
@@ -3886,132 +4164,34 @@ public class RobotRun extends PApplet {
 	}
 	
 	/**
-	 * Updates the position and orientation of the Robot as well as all the
-	 * World Objects associated with the current scenario. Updates the bounding
-	 * box color, position and orientation of the Robot and all World Objects as
-	 * well. Finally, all the World Objects and the Robot are drawn.
+	 * Draws the World Objects associated with the current scenario and the
+	 * Robots, in the state of the given snapshot, along with the trace, axes
+	 * and other overlays of the scene.
+	 * 
+	 * @param snapshot	The latest snapshot of the scene
 	 */
-	private void renderScene() {
+	private void renderScene(SceneSnapshot snapshot) {
 		
-		if (isProgExec()) {
-			updateProgExec();
-		}
-		
-		boolean robotInMotion = getActiveRobot().inMotion();
-		
-		getActiveRobot().updateRobot();
-		
-		if (robotInMotion && !getActiveRobot().inMotion()) {
-			// Robot has stopped moving
-			updateInstList();
-		}
-		
-		if (isProgExec()) {
-			updateCurIdx();
-		}
-
-		if (getActiveScenario() != null) {
-			getActiveScenario().resetObjectHitBoxColors();
-		}
-
-		getActiveRobot().resetOBBColors();
-		getActiveRobot().checkSelfCollisions();
-
 		if (getActiveScenario() != null) {
-			WorldObject selected = UI.getSelectedWO();
-			int numOfObjects = getActiveScenario().size();
-
-			for (int idx = 0; idx < numOfObjects; ++idx) {
-				WorldObject wldObj = getActiveScenario().getWorldObject(idx);
-				
+			// Only draw the objects, which may lie within the camera's view
+			Frustum view = Frustum.fromGraphics(getGraphics());
+			Iterable<WorldObject> visible = (view == null) ?
+					getActiveScenario() : getActiveScenario().queryFrustum(view);
+			
+			for (WorldObject wldObj : visible) {
+				// Draw the object
 				if (wldObj instanceof Part) {
 					Part p = (Part)wldObj;
-
-					/* Update the transformation matrix of an object held by the Robotic Arm */
-					if(getActiveRobot() != null && getActiveRobot().isHeld(p) && getActiveRobot().inMotion()) {
-						
-						/***********************************************
-						     Moving a part with the Robot:
-						
-						     P' = R^-1 x E' x E^-1 x P
-						
-						     where:
-						     P' - new part local orientation
-						     R  - part fixture reference orientation
-						     E' - current Robot end effector orientation
-						     E  - previous Robot end effector orientation
-						     P  - current part local orientation
-						 ***********************************************/
-						
-						RMatrix curTip = getActiveRobot().getFaceplateTMat(getActiveRobot().getJointAngles());
-						RMatrix invMat = getActiveRobot().getLastTipTMatrix().getInverse();
-						Fixture refFixture = p.getParent();
-						
-						pushMatrix();
-						resetMatrix();
-						
-						if (refFixture != null) {
-							applyMatrix(refFixture.getInvCoordinateSystem());
-						}
-						
-						applyMatrix(curTip);
-						applyMatrix(invMat);
-						applyCoord(p.getCenter(), p.getOrientation());
-						
-						// Update the world object's position and orientation
-						p.setLocalCenter( getPosFromMatrix(0f, 0f, 0f) );
-						p.setLocalOrientation( getOrientation() );
-						
-						popMatrix();
-					}
-					
+					RMatrix tMat = snapshot.getPartTMat(p);
 					
-					if (getActiveScenario().isGravity() && getActiveRobot().isHeld(p) &&
-							p != selected && p.getParent() == null &&
-							p.getLocalCenter().y < Fields.FLOOR_Y) {
+					if (tMat == null) {
+						// The part was added after the snapshot was taken
+						p.draw(getGraphics(), isOBBRendered());
 						
-						// Apply gravity
-						PVector c = wldObj.getLocalCenter();
-						wldObj.updateLocalCenter(null, c.y + 10, null);
-					}
-
-					/* Collision Detection */
-					if(isOBBRendered()) {
-						if( getActiveRobot() != null && getActiveRobot().checkCollision(p) ) {
-							p.setBBColor(Fields.OBB_COLLISION);
-						}
-
-						// Detect collision with other objects
-						for(int cdx = idx + 1; cdx < getActiveScenario().size(); ++cdx) {
-
-							if (getActiveScenario().getWorldObject(cdx) instanceof Part) {
-								Part p2 = (Part)getActiveScenario().getWorldObject(cdx);
-
-								if(p.collision(p2)) {
-									// Change hit box color to indicate Object collision
-									p.setBBColor(Fields.OBB_COLLISION);
-									p2.setBBColor(Fields.OBB_COLLISION);
-									break;
-								}
-							}
-						}
-
-						if (getActiveRobot() != null && !getActiveRobot().isHeld(p) &&
-								getActiveRobot().canPickup(p)) {
-							
-							// Change hit box color to indicate tool tip collision
-							p.setBBColor(Fields.OBB_HELD);
-						}
-					}
-
-					if (p == selected) {
-						p.setBBColor(Fields.OBB_SELECTED);
+					} else {
+						p.draw(getGraphics(), tMat, isOBBRendered(),
+								snapshot.getPartOBBColor(p));
 					}
-				}
-				
-				// Draw the object
-				if (wldObj instanceof Part) {
-					((Part)wldObj).draw(getGraphics(), isOBBRendered());
 					
 				} else {
 					wldObj.draw(getGraphics());
@@ -4019,8 +4199,6 @@ public class RobotRun extends PApplet {
 			}
 		}
 		
-		getActiveRobot().updateLastTipTMatrix();
-		
 		AxesDisplay axesType = getAxesState();
 		
 		if (axesType != AxesDisplay.NONE &&
@@ -4054,32 +4232,32 @@ public class RobotRun extends PApplet {
 				
 				if (r == getActiveRobot()) {
 					// active robot
-					r.draw(getGraphics(), isOBBRendered(), axesType);
+					drawRobot(r, snapshot, isOBBRendered(), axesType);
 					
 				} else {
-					r.draw(getGraphics(), false, AxesDisplay.NONE);
+					drawRobot(r, snapshot, false, AxesDisplay.NONE);
 				}
 				
 			}
 
 		} else {
 			// Draw only the active robot
-			getActiveRobot().draw(getGraphics(), isOBBRendered(), axesType);
+			drawRobot(getActiveRobot(), snapshot, isOBBRendered(), axesType);
 		}
 		
-		if (getActiveRobot().inMotion() && traceEnabled()) {
-			Point tipPosNative = getActiveRobot().getToolTipNative();
+		if (snapshot.isRobotInMotion() && traceEnabled()) {
+			PVector tipPos = snapshot.getTipPosition();
 			// Update the robots trace points
 			if(robotTrace.isEmpty()) {
-				robotTrace.addPt(tipPosNative.position);
+				robotTrace.addPt(tipPos);
 				
 			} else {
 				PVector lastTracePt = robotTrace.getLastPt();
 				
-				if (lastTracePt == null || PVector.sub(tipPosNative.position,
+				if (lastTracePt == null || PVector.sub(tipPos,
 						lastTracePt).mag() > 0.5f) {
 					
-					robotTrace.addPt(tipPosNative.position);
+					robotTrace.addPt(tipPos);
 				}
 			}
 		}
@@ -4362,7 +4540,16 @@ public class RobotRun extends PApplet {
 		lastTextPositionY = Fields.msgSystem.draw(getGraphics(),
 				lastTextPositionX, lastTextPositionY);
 		
+		if (Profiler.isEnabled()) {
+			// Display the frame time profile
+			lastTextPositionY += 20;
+			lastTextPositionY = Profiler.draw(getGraphics(), lastTextPositionX,
+					lastTextPositionY);
+		}
+		
+		long start = Profiler.start();
 		UI.updateAndDrawUI();
+		Profiler.end(ProfSection.UI_DRAW, start);
 		
 		popStyle();
 		popMatrix();
@@ -4389,6 +4576,7 @@ public class RobotRun extends PApplet {
 		
 		activeScenario.set(s);
 		SCENARIO_UNDO.clear();
+		scenarioUndoGroups = 0;
 	}
 
 	/**
@@ -4415,6 +4603,37 @@ public class RobotRun extends PApplet {
 		return false;
 	}
 	
+	/**
+	 * Requests a collision pre-check of the active program, when the active
+	 * program, robot, or scenario has changed since the last request, and
+	 * refreshes the program display, when a pre-check completes. No requests
+	 * are made while a program is executing.
+	 */
+	private void updateCollisionPrecheck() {
+		Program prog = getActiveProg();
+		RoboticArm r = getActiveRobot();
+		Scenario s = getActiveScenario();
+		
+		if (prog != null && !isProgExec()) {
+			int state = Objects.hash(System.identityHashCode(prog),
+					prog.getEditCount(), r.RID, r.getActiveEEIdx(),
+					r.getEEState(), r.getActiveToolIdx(), r.getActiveUserIdx(),
+					System.identityHashCode(s), (s == null) ? 0 : s.size(),
+					scenarioEditCount);
+			
+			if (state != precheckState) {
+				precheckState = state;
+				collisionPrecheck.check(r, prog, s);
+			}
+		}
+		
+		if (collisionPrecheck.pollUpdate() &&
+				screens.getActiveScreen().mode == ScreenMode.NAV_PROG_INSTR) {
+			
+			updatePendantScreen();
+		}
+	}
+	
 	/**
 	 * Updates the instruction index based on the current program execution
 	 * state and the base program execution state.
@@ -4457,7 +4676,7 @@ public class RobotRun extends PApplet {
 					if (curR != nextR) {
 						// Update the active robot
 						activeRobot.set(nextR);
-						screens.getActiveScreen().getContents().setColumnIdx(0);
+						progExecReturned = true;
 					}
 					
 					prog = procExec.getProg();
@@ -4486,13 +4705,8 @@ public class RobotRun extends PApplet {
 			}
 		}
 		
-		// Update the display
-		if(screens.getActiveScreen().mode == ScreenMode.NAV_PROG_INSTR) {
-			Screen s = screens.getActiveScreen();
-			s.setContentIdx(getInstrLine(s.getContents(), getActiveInstIdx()));
-		}
-		
-		updatePendantScreen();
+		// Update the display on the animation thread
+		progExecUpdated = true;
 	}
 	
 	/**
@@ -4705,4 +4919,152 @@ public class RobotRun extends PApplet {
 		
 		return 1;
 	}
+	
+	/**
+	 * Updates the pendant to reflect the state of the active robot and the
+	 * execution of the active program, which the simulation thread advances.
+	 * This is called on the animation thread with the simulation lock held,
+	 * at most once per frame.
+	 */
+	private void updatePendant() {
+		if (robotStopped) {
+			// Robot has stopped moving
+			robotStopped = false;
+			updateInstList();
+		}
+		
+		if (progExecReturned) {
+			progExecReturned = false;
+			screens.getActiveScreen().getContents().setColumnIdx(0);
+		}
+		
+		if (progExecUpdated) {
+			progExecUpdated = false;
+			
+			if(screens.getActiveScreen().mode == ScreenMode.NAV_PROG_INSTR) {
+				Screen s = screens.getActiveScreen();
+				s.setContentIdx(getInstrLine(s.getContents(), getActiveInstIdx()));
+			}
+			
+			updatePendantScreen();
+		}
+		
+		updateCollisionPrecheck();
+	}
+	
+	/**
+	 * Performs a single step of the simulation: advances the execution of the
+	 * active program and updates the position and orientation of the active
+	 * Robot as well as all the World Objects associated with the current
+	 * scenario and the bounding box colors of the Robot and all World Objects.
+	 * This is called on the simulation thread with the simulation lock held.
+	 * 
+	 * @return	A snapshot of the state of the scene after the step
+	 */
+	private SceneSnapshot updateScene() {
+		long stepStart = Profiler.start();
+		
+		if (isProgExec()) {
+			long start = Profiler.start();
+			updateProgExec();
+			Profiler.end(ProfSection.PROG_EXEC, start);
+		}
+		
+		if (isProgExec()) {
+			updateCurIdx();
+		}
+		
+		// Program execution may switch the active robot
+		RoboticArm robot = getActiveRobot();
+		Scenario scenario = getActiveScenario();
+		WorldObject selected = selectedWO;
+		boolean robotInMotion = robot.inMotion();
+		
+		robot.updateRobot();
+		
+		if (isProgExec() && scenario != null) {
+			// Track the minimum clearance of the executing program
+			robot.updateClearance(getActiveProg(), scenario);
+		}
+		
+		if (robotInMotion && !robot.inMotion()) {
+			robotStopped = true;
+		}
+
+		if (scenario != null) {
+			scenario.resetObjectHitBoxColors();
+		}
+
+		robot.resetOBBColors();
+		
+		IdentityHashMap<Part, RMatrix> partTMats = new IdentityHashMap<>();
+		IdentityHashMap<Part, Integer> partOBBColors = new IdentityHashMap<>();
+
+		if (scenario != null) {
+			for (WorldObject wldObj : scenario) {
+				if (wldObj instanceof Part) {
+					Part p = (Part)wldObj;
+
+					/* Update the transformation matrix of an object held by the Robotic Arm */
+					if (robot.isHeld(p) && robot.inMotion()) {
+						moveHeldPart(robot, p);
+					}
+					
+					if (scenario.isGravity() && robot.isHeld(p) &&
+							p != selected && p.getParent() == null &&
+							p.getLocalCenter().y < Fields.FLOOR_Y) {
+						
+						// Apply gravity
+						PVector c = wldObj.getLocalCenter();
+						wldObj.updateLocalCenter(null, c.y + 10, null);
+					}
+				}
+			}
+		}
+		
+		/* Collision Detection */
+		long start = Profiler.start();
+		collisionPhase.run(robot, showOBBs ? scenario : null);
+		Profiler.end(ProfSection.COLLISION, start);
+		
+		if (scenario != null) {
+			if (selected instanceof Part) {
+				((Part)selected).setBBColor(Fields.OBB_SELECTED);
+			}
+			
+			for (WorldObject wldObj : scenario) {
+				if (wldObj instanceof Part) {
+					Part p = (Part)wldObj;
+					partTMats.put(p, RMath.formTMat(p.getCenter(),
+							p.getOrientation()));
+					partOBBColors.put(p, p.getOBB().getFrame().getStrokeValue());
+				}
+			}
+		}
+		
+		robot.updateLastTipTMatrix();
+		
+		int numOfRobots = 0;
+		
+		for (RoboticArm r : ROBOTS.values()) {
+			numOfRobots = Math.max(numOfRobots, r.RID + 1);
+		}
+		
+		float[][] jointAngles = new float[numOfRobots][];
+		RMatrix[][] obbTMats = new RMatrix[numOfRobots][];
+		Integer[][] obbColors = new Integer[numOfRobots][];
+		
+		for (RoboticArm r : ROBOTS.values()) {
+			jointAngles[r.RID] = r.getJointAngles();
+			obbTMats[r.RID] = r.getOBBTMats();
+			obbColors[r.RID] = r.getOBBColors();
+		}
+		
+		SceneSnapshot snapshot = new SceneSnapshot(jointAngles, obbTMats,
+				obbColors, partTMats, partOBBColors, robot.inMotion(),
+				robot.getToolTipNative().position);
+		Profiler.end(ProfSection.SIM_STEP, stepStart);
+		
+		return snapshot;
+	}
 }
@@ -0,0 +1,165 @@
+package core;
+
+import java.util.IdentityHashMap;
+
+import geom.Part;
+import geom.RMatrix;
+import processing.core.PVector;
+
+/**
+ * The state of the robots and parts of the scene at the end of a single
+ * simulation step, which is used to render the scene. A snapshot is never
+ * modified after it is published, so it can be read by the animation thread
+ * while the simulation thread builds the next snapshot.
+ *
+ * @author Joshua Hooker
+ */
+public class SceneSnapshot {
+
+	/**
+	 * The joint angles of each robot indexed by the robot's ID.
+	 */
+	private final float[][] jointAngles;
+
+	/**
+	 * The transformations of each robot's bounding boxes indexed by the
+	 * robot's ID.
+	 */
+	private final RMatrix[][] obbTMats;
+
+	/**
+	 * The colors of each robot's bounding boxes indexed by the robot's ID.
+	 */
+	private final Integer[][] obbColors;
+
+	/**
+	 * The transformations of the parts of the active scenario.
+	 */
+	private final IdentityHashMap<Part, RMatrix> partTMats;
+
+	/**
+	 * The bounding box colors of the parts of the active scenario.
+	 */
+	private final IdentityHashMap<Part, Integer> partOBBColors;
+
+	/**
+	 * Was the active robot in motion at the end of the step?
+	 */
+	private final boolean robotInMotion;
+
+	/**
+	 * The position of the active robot's tool tip with respect to the native
+	 * coordinate system.
+	 */
+	private final PVector tipPosition;
+
+	/**
+	 * Defines a snapshot of the given scene state. The given values must not be
+	 * modified after the snapshot is created.
+	 *
+	 * @param jointAngles	The joint angles of each robot
+	 * @param obbTMats		The bounding box transformations of each robot
+	 * @param obbColors		The bounding box colors of each robot
+	 * @param partTMats		The transformations of the active scenario's parts
+	 * @param partOBBColors	The bounding box colors of the active scenario's
+	 * 						parts
+	 * @param robotInMotion	Whether the active robot is in motion
+	 * @param tipPosition	The position of the active robot's tool tip
+	 */
+	public SceneSnapshot(float[][] jointAngles, RMatrix[][] obbTMats,
+			Integer[][] obbColors, IdentityHashMap<Part, RMatrix> partTMats,
+			IdentityHashMap<Part, Integer> partOBBColors,
+			boolean robotInMotion, PVector tipPosition) {
+
+		this.jointAngles = jointAngles;
+		this.obbTMats = obbTMats;
+		this.obbColors = obbColors;
+		this.partTMats = partTMats;
+		this.partOBBColors = partOBBColors;
+		this.robotInMotion = robotInMotion;
+		this.tipPosition = tipPosition;
+	}
+
+	/**
+	 * Returns the joint angles of the robot with the given ID.
+	 *
+	 * @param rid	The ID of a robot
+	 * @return		The robot's joint angles, or null, if the robot is not part
+	 * 				of this snapshot
+	 */
+	public float[] getJointAngles(int rid) {
+		if (rid >= 0 && rid < jointAngles.length) {
+			return jointAngles[rid];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the transformations of the bounding boxes of the robot with the
+	 * given ID.
+	 *
+	 * @param rid	The ID of a robot
+	 * @return		The robot's bounding box transformations, or null, if the
+	 * 				robot is not part of this snapshot
+	 */
+	public RMatrix[] getOBBTMats(int rid) {
+		if (rid >= 0 && rid < obbTMats.length) {
+			return obbTMats[rid];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the colors of the bounding boxes of the robot with the given
+	 * ID.
+	 *
+	 * @param rid	The ID of a robot
+	 * @return		The robot's bounding box colors, or null, if the robot is
+	 * 				not part of this snapshot
+	 */
+	public Integer[] getOBBColors(int rid) {
+		if (rid >= 0 && rid < obbColors.length) {
+			return obbColors[rid];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the bounding box color of the given part.
+	 *
+	 * @param p	A part of the active scenario
+	 * @return	The color of the part's bounding box, or null, if the part is
+	 * 			not part of this snapshot
+	 */
+	public Integer getPartOBBColor(Part p) {
+		return partOBBColors.get(p);
+	}
+
+	/**
+	 * Returns the transformation of the given part.
+	 *
+	 * @param p	A part of the active scenario
+	 * @return	The part's transformation, or null, if the part is not part of
+	 * 			this snapshot
+	 */
+	public RMatrix getPartTMat(Part p) {
+		return partTMats.get(p);
+	}
+
+	/**
+	 * @return	The position of the active robot's tool tip
+	 */
+	public PVector getTipPosition() {
+		return tipPosition;
+	}
+
+	/**
+	 * @return	Was the active robot in motion at the end of the step?
+	 */
+	public boolean isRobotInMotion() {
+		return robotInMotion;
+	}
+}
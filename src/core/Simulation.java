@@ -0,0 +1,182 @@
+package core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import io.DataManagement;
+
+/**
+ * Steps the robots, the scene and the execution of programs on a dedicated
+ * thread, so that a slow motion update does not drop frames and a slow frame
+ * does not slow the robots. Each step produces an immutable snapshot of the
+ * scene, which replaces the previously published snapshot, and from which
+ * the animation thread renders the scene.
+ *
+ * A step holds the simulation lock for its duration. The animation thread
+ * only acquires the lock, when no step is in progress, to handle input
+ * events and refresh the pendant, which read and modify the state of the
+ * robots and the scene. Otherwise, it defers that work to the next frame
+ * rather than wait for the step. Likewise, a step is skipped, while the
+ * animation thread holds the lock. Steps are separated by a fixed delay, so
+ * that the simulation thread falls behind, rather than starve the animation
+ * thread of the lock with back to back steps, when steps are slow.
+ *
+ * @author Joshua Hooker
+ */
+public class Simulation {
+
+	/**
+	 * The number of simulation steps per second, when steps take no time.
+	 * Robot motions advance by a fixed amount each step, so this matches the
+	 * application's frame rate.
+	 */
+	public static final int STEP_RATE = 60;
+
+	/**
+	 * Guards the state of the robots and the scene.
+	 */
+	private final ReentrantLock LOCK;
+
+	/**
+	 * Performs a single step of the simulation and returns its snapshot.
+	 */
+	private final Supplier<SceneSnapshot> STEP;
+
+	/**
+	 * The thread, on which the simulation is stepped.
+	 */
+	private final ScheduledExecutorService WORKER;
+
+	/**
+	 * The most recently published snapshot of the scene.
+	 */
+	private final AtomicReference<SceneSnapshot> latest;
+
+	/**
+	 * The scheduled steps of the simulation, or null, if the simulation is
+	 * not running.
+	 */
+	private ScheduledFuture<?> steps;
+
+	/**
+	 * Creates a simulation, which is stepped by the given function.
+	 *
+	 * @param step	Updates the scene and returns a snapshot of its state
+	 */
+	public Simulation(Supplier<SceneSnapshot> step) {
+		LOCK = new ReentrantLock();
+		STEP = step;
+		WORKER = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+			Thread t = new Thread(r, "Simulation");
+			t.setDaemon(true);
+			return t;
+		});
+		latest = new AtomicReference<>(null);
+		steps = null;
+	}
+
+	/**
+	 * @return	The lock, which guards the state of the robots and the scene
+	 */
+	public ReentrantLock getLock() {
+		return LOCK;
+	}
+
+	/**
+	 * Runs the given action with the simulation lock held, if no step is in
+	 * progress. Otherwise, the action is not run, so that the calling thread
+	 * never waits on a step.
+	 *
+	 * @param action	The action, which reads or modifies the state of the
+	 * 					robots and the scene
+	 * @return			Whether the action was run
+	 */
+	public boolean tryRun(Runnable action) {
+		if (!LOCK.tryLock()) {
+			return false;
+		}
+
+		try {
+			action.run();
+			return true;
+
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	/**
+	 * Returns the most recent snapshot of the scene. A snapshot is taken
+	 * immediately, if no step has completed yet, which is the only case, in
+	 * which this waits on a step.
+	 *
+	 * @return	The latest snapshot of the scene
+	 */
+	public SceneSnapshot getSnapshot() {
+		SceneSnapshot snapshot = latest.get();
+
+		if (snapshot == null) {
+			LOCK.lock();
+
+			try {
+				snapshot = latest.get();
+
+				if (snapshot == null) {
+					snapshot = STEP.get();
+					latest.set(snapshot);
+				}
+
+			} finally {
+				LOCK.unlock();
+			}
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Starts stepping the simulation, if it is not already running.
+	 */
+	public synchronized void start() {
+		if (steps == null) {
+			long period = TimeUnit.SECONDS.toNanos(1L) / STEP_RATE;
+			steps = WORKER.scheduleWithFixedDelay(this::step, 0L, period,
+					TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Stops stepping the simulation after the current step.
+	 */
+	public synchronized void stop() {
+		if (steps != null) {
+			steps.cancel(false);
+			steps = null;
+		}
+	}
+
+	/**
+	 * Performs a single step of the simulation and publishes its snapshot,
+	 * unless the animation thread holds the simulation lock.
+	 */
+	private void step() {
+		try {
+			tryRun(() -> latest.set(STEP.get()));
+
+		} catch (Throwable Ex) {
+			/* Any error thrown from a scheduled task cancels the following
+			 * steps, so it is only logged */
+			try {
+				DataManagement.errLog(Ex);
+
+			} catch (Throwable LogEx) {
+				Ex.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package enums;
+
+/**
+ * Defines the sections of the application, whose execution times are
+ * recorded by the profiler, along with the label of each section.
+ *
+ * @author Joshua Hooker
+ */
+public enum ProfSection {
+	FRAME("Frame"), PROG_EXEC("Program exec"), SIM_STEP("Simulation step"),
+	MOTION("Robot motion"), IK("Inverse kinematics"), OBB_UPDATE("OBB update"),
+	COLLISION("Collision"), SCENE_DRAW("Scene draw"), UI_DRAW("UI draw"),
+	CAMERA_SNAPSHOT("Camera snapshot");
+
+	private final String label;
+
+	private ProfSection(String label) {
+		this.label = label;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+}
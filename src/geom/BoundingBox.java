@@ -1,5 +1,7 @@
 package geom;
 
+import java.util.Arrays;
+
 import enums.DimType;
 import global.Fields;
 import global.RMath;
@@ -8,7 +10,7 @@ import processing.core.PVector;
 /**
  * A box object with its own local Coordinate system.
  */
-public class BoundingBox {
+public class BoundingBox implements ConvexVolume {
 	private RBox boxFrame;
 	private CoordinateSystem localOrientation;
 	
@@ -268,6 +270,36 @@ public class BoundingBox {
 		return true;
 	}
 
+	/**
+	 * Computes the signed distance between this bounding box and the given
+	 * convex volume.
+	 * 
+	 * @param vol	A convex volume
+	 * @return		The distance between this box and the given volume, or the
+	 * 				negated penetration depth, if the two intersect
+	 * @see GJK#distance(ConvexVolume, ConvexVolume)
+	 */
+	public float distance(ConvexVolume vol) {
+		return GJK.distance(this, vol);
+	}
+	
+	@Override
+	public BoundingBox copy() {
+		return clone();
+	}
+	
+	@Override
+	public float getBoundingRadius() {
+		return getDims().mag() / 2f;
+	}
+	
+	@Override
+	public String getSignature() {
+		return String.format("box%s%s%s", getCenter(), getDims(),
+				Arrays.deepToString(getOrientationAxes().getDataF()));
+	}
+	
+	@Override
 	public PVector getCenter() { return localOrientation.getOrigin(); }
 
 	/**
@@ -302,6 +334,32 @@ public class BoundingBox {
 		return localOrientation.getAxes();
 	}
 
+	@Override
+	public PVector support(PVector dir) {
+		RMatrix axes = localOrientation.getAxes();
+		PVector pt = localOrientation.getOrigin().copy();
+		PVector dims = getDims();
+		float[] halfDims = new float[] { dims.x / 2f, dims.y / 2f, dims.z / 2f };
+		
+		// Move to the corner of the box in the direction of each axis
+		for (int axis = 0; axis < 3; ++axis) {
+			float ax = axes.getEntryF(0, axis);
+			float ay = axes.getEntryF(1, axis);
+			float az = axes.getEntryF(2, axis);
+			float offset = halfDims[axis];
+			
+			if (ax * dir.x + ay * dir.y + az * dir.z < 0f) {
+				offset = -offset;
+			}
+			
+			pt.x += offset * ax;
+			pt.y += offset * ay;
+			pt.z += offset * az;
+		}
+		
+		return pt;
+	}
+	
 	/**
 	 * Sets the center of this bounding box to the given position.
 	 * 
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import camera.CamSelectArea;
 import camera.CamSelectView;
+import camera.GraphicsPool;
 import camera.RegisteredModels;
 import core.RobotRun;
 import global.RMath;
@@ -21,6 +22,7 @@ public class CameraObject extends Part {
 	
 	private RobotRun appRef;
 	private PGraphics preview;
+	private boolean previewDirty; // The preview must be redrawn
 	private ArrayList<CamSelectArea> selectAreas;
 	
 	public CameraObject(RobotRun appRef, Part p) {
@@ -76,7 +78,24 @@ public class CameraObject extends Part {
 		return model_ID;
 	}
 	
+	/**
+	 * Returns the preview image of this object, which is redrawn into a
+	 * pooled buffer, if this object has changed since it was last drawn.
+	 * This must be called on the animation thread.
+	 * 
+	 * @return	The preview image of this object
+	 */
 	public PGraphics getModelPreview() {
+		if (preview == null || previewDirty) {
+			if (preview == null) {
+				preview = GraphicsPool.acquire(appRef, WGUI.imageWidth,
+						WGUI.imageHeight);
+			}
+			
+			drawModelPreview(preview);
+			previewDirty = false;
+		}
+		
 		return preview;
 	}
 	
@@ -125,8 +144,24 @@ public class CameraObject extends Part {
 		updateModelPreview();
 	}
 
+	/**
+	 * Returns this object's preview buffer to the buffer pool. The preview
+	 * is redrawn into another buffer, if it is requested again.
+	 */
+	public void releaseModelPreview() {
+		GraphicsPool.release(preview);
+		preview = null;
+	}
+	
+	/**
+	 * Marks the preview image of this object to be redrawn, when it is next
+	 * requested.
+	 */
 	public void updateModelPreview() {
-		PGraphics img = appRef.createGraphics(WGUI.imageWidth, WGUI.imageHeight, RobotRun.P3D);
+		previewDirty = true;
+	}
+	
+	private void drawModelPreview(PGraphics img) {
 		float[][] rMat = getLocalOrientation().getDataF();
 		
 		PVector dim = this.getModel().getDims();
@@ -201,7 +236,6 @@ public class CameraObject extends Part {
 		}
 		
 		img.endDraw();
-		preview = img;
 	}
 
 	private ArrayList<CamSelectArea> loadCamSelectAreas() {
@@ -14,12 +14,22 @@ public class ComplexShape extends RShape {
 	
 	private PVector centerOffset, baseDims;
 	private float mdlScale = 1f;
+	
+	/**
+	 * The geometry of this shape's model.
+	 */
+	private final MeshData data;
+	
+	/**
+	 * The shared model of this shape, or null, if the model is not yet built.
+	 */
 	private Model mesh;
 
 	/**
 	 * Create a complex model from the soruce .stl file of the
 	 * given name, filename, stored in the '/RobotRun/data/'
-	 * with the given fill color.
+	 * with the given fill color. The model should be the shared
+	 * model of its file with the given fill color.
 	 * 
 	 * @param model	
 	 * @param fill	
@@ -46,8 +56,34 @@ public class ComplexShape extends RShape {
 	public ComplexShape(Model model, int fill, float scale)
 			throws IllegalArgumentException {
 		
+		this(model.getMeshData(), model, fill, scale);
+	}
+	
+	/**
+	 * Create a complex shape of the given mesh with the given fill color and
+	 * scale value, whose model is not yet built. This shape can be created on
+	 * any thread, whereas its model is built on the animation thread, by
+	 * buildModel(), or when the shape is first drawn.
+	 * 
+	 * @param data	The geometry of the shape's source file
+	 * @param fill	The fill color of the shape
+	 * @param scale	The scale of the shape
+	 * @throws IllegalArgumentException	If the given mesh's scaled dimensions
+	 * 									are outside the range of a world
+	 * 									object's dimensions
+	 */
+	public ComplexShape(MeshData data, int fill, float scale)
+			throws IllegalArgumentException {
+		
+		this(data, null, fill, scale);
+	}
+	
+	private ComplexShape(MeshData data, Model model, int fill, float scale)
+			throws IllegalArgumentException {
+		
 		super(fill, null);
 		
+		this.data = data;
 		mesh = model;
 		
 		iniDimensions();
@@ -57,7 +93,7 @@ public class ComplexShape extends RShape {
 		if ((MAX_SCALE - MIN_SCALE) < 0f) {
 			/* The model cannot be scaled to fit within the bounds of a world
 			 * object's dimensions */
-			String msg = String.format("%s\n%f - %f = %f\n", model.getFilename(),
+			String msg = String.format("%s\n%f - %f = %f\n", data.getFilename(),
 					MAX_SCALE, MIN_SCALE, MAX_SCALE - MIN_SCALE);
 			throw new IllegalArgumentException(msg);
 			
@@ -72,16 +108,44 @@ public class ComplexShape extends RShape {
 		}
 	}
 	
+	/**
+	 * Creates a copy of the given shape, which shares the given shape's
+	 * model.
+	 * 
+	 * @param src	The shape to copy
+	 */
+	private ComplexShape(ComplexShape src) {
+		super(src.getFillValue(), null);
+		
+		MIN_SCALE = src.MIN_SCALE;
+		MAX_SCALE = src.MAX_SCALE;
+		data = src.data;
+		mesh = src.mesh;
+		baseDims = src.baseDims.copy();
+		centerOffset = src.centerOffset.copy();
+		mdlScale = src.mdlScale;
+	}
+	
+	/**
+	 * Builds this shape's model, if it is not yet built. This must be called
+	 * on the animation thread.
+	 */
+	public void buildModel() {
+		if (mesh == null) {
+			mesh = ModelRegistry.getModel(data.getFilename(), getFillValue());
+		}
+	}
+	
 	@Override
 	public ComplexShape clone() {
-		return new ComplexShape(mesh, getFillValue(), mdlScale);
+		return new ComplexShape(this);
 	}
 	
 	@Override
 	public void draw(PGraphics g) {
+		buildModel();
 		g.pushMatrix();
 		g.translate(centerOffset.x, centerOffset.y, centerOffset.z);
-		mesh.setFill(getFillValue());
 		g.scale(mdlScale);
 		g.shape(mesh);
 		g.popMatrix();
@@ -142,10 +206,21 @@ public class ComplexShape extends RShape {
 		return super.getDimLBound(dim);
 	}
 	
+	/**
+	 * Returns the distinct vertices of this shape's model.
+	 * 
+	 * @return	The distinct vertices of this shape's model
+	 * @see Model#getDistinctVertices()
+	 */
+	public float[] getDistinctVertices() {
+		return data.getDistinctVertices();
+	}
+	
 	/**
 	 * Returns a reference to this shpae's model.
 	 * 
-	 * @return	A reference to this shape's model
+	 * @return	A reference to this shape's model, or null, if the model is
+	 * 			not yet built
 	 */
 	public Model getModel() {
 		return mesh;
@@ -157,7 +232,7 @@ public class ComplexShape extends RShape {
 	 * @return	This shape's model's filename
 	 */
 	public String getSourcePath() {
-		return mesh.getFilename();
+		return data.getFilename();
 	}
 	
 	@Override
@@ -177,6 +252,8 @@ public class ComplexShape extends RShape {
 	public void setFillValue(Integer newVal) {
 		if (newVal != null) {
 			super.setFillValue(newVal);
+			// Switch to the shared model with the new fill color
+			mesh = ModelRegistry.getModel(data.getFilename(), newVal);
 		}
 	}
 	
@@ -187,36 +264,9 @@ public class ComplexShape extends RShape {
 	 * the estimated center of the shape relative to the minimum X, Y, Z values as a position.
 	 */
 	private void iniDimensions() {
-		PVector maximums = new PVector(Float.MIN_VALUE, Float.MIN_VALUE, Float.MIN_VALUE),
-				minimums = new PVector(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
-
-		int vertexCount = mesh.getVertexCount();
-
-		// Calculate the maximum and minimum values for each dimension
-		for (int idx = 0; idx < vertexCount; ++idx) {
-			PVector v = mesh.getVertex(idx);
-
-			if (v.x > maximums.x) {
-				maximums.x = v.x;
-
-			} else if (v.x < minimums.x) {
-				minimums.x = v.x;
-			}
-
-			if (v.y > maximums.y) {
-				maximums.y = v.y;
-
-			} else if (v.y < minimums.y) {
-				minimums.y = v.y;
-			}
-
-			if (v.z > maximums.z) {
-				maximums.z = v.z;
-
-			} else if (v.z < minimums.z) {
-				minimums.z = v.z;
-			}
-		}
+		float[] bounds = data.getBounds();
+		PVector minimums = new PVector(bounds[0], bounds[1], bounds[2]);
+		PVector maximums = new PVector(bounds[3], bounds[4], bounds[5]);
 
 		/* Calculate the base maximum span for each dimension as well as the base
 		 * offset of the center of the shape, based on the dimensions, from the
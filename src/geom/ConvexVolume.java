@@ -0,0 +1,56 @@
+package geom;
+
+import processing.core.PVector;
+
+/**
+ * Defines a convex volume in world space by its support mapping, which is all
+ * that the GJK and EPA algorithms require to compute the distance or
+ * penetration depth between two volumes.
+ *
+ * @author Joshua Hooker
+ */
+public interface ConvexVolume {
+	
+	/**
+	 * Returns a copy of this volume, which does not reference the position or
+	 * orientation of this volume. So, the copy is unaffected by subsequent
+	 * changes to the source of this volume.
+	 * 
+	 * @return	A detached copy of this volume
+	 */
+	public abstract ConvexVolume copy();
+
+	/**
+	 * Returns the position of the center of this volume in world space. The
+	 * center must lie within the volume.
+	 *
+	 * @return	The center of this volume
+	 */
+	public abstract PVector getCenter();
+
+	/**
+	 * Returns a description of this volume's shape, dimensions, position and
+	 * orientation. Two volumes with the same signature occupy the same space.
+	 *
+	 * @return	The signature of this volume
+	 */
+	public abstract String getSignature();
+
+	/**
+	 * Returns the radius of a sphere, centered at this volume's center, which
+	 * encloses the entire volume. This is used to skip volume pairs, which are
+	 * clearly farther apart than the closest pair found so far.
+	 *
+	 * @return	The radius of this volume's bounding sphere
+	 */
+	public abstract float getBoundingRadius();
+
+	/**
+	 * Returns the point of this volume, which is farthest in the given
+	 * direction. The direction does not need to be normalized.
+	 *
+	 * @param dir	The search direction in world space
+	 * @return		The support point of this volume in the given direction
+	 */
+	public abstract PVector support(PVector dir);
+}
@@ -0,0 +1,179 @@
+package geom;
+
+import processing.core.PGraphics;
+import processing.core.PMatrix3D;
+import processing.core.PVector;
+import processing.opengl.PGraphicsOpenGL;
+
+/**
+ * Defines a view frustum by its six bounding planes, for culling objects,
+ * which lie outside the view of a camera.
+ *
+ * @author Joshua Hooker
+ */
+public class Frustum {
+
+	/**
+	 * The corners of the frustum: the four corners of the near plane followed
+	 * by the four corners of the far plane.
+	 */
+	private final PVector[] corners;
+
+	/**
+	 * The planes of the frustum, each defined as {nx, ny, nz, d}, where the
+	 * normal points into the frustum. A point p lies on the inner side of a
+	 * plane if n . p + d >= 0.
+	 */
+	private final float[][] planes;
+
+	/**
+	 * Defines the frustum with the given corners of its near and far planes.
+	 * The corners of each plane are ordered: top left, top right, bottom
+	 * left, bottom right.
+	 *
+	 * @param near	The corners of the near plane
+	 * @param far	The corners of the far plane
+	 */
+	public Frustum(PVector[] near, PVector[] far) {
+		corners = new PVector[] {
+			near[0].copy(), near[1].copy(), near[2].copy(), near[3].copy(),
+			far[0].copy(), far[1].copy(), far[2].copy(), far[3].copy()
+		};
+
+		PVector centroid = new PVector();
+
+		for (PVector c : corners) {
+			centroid.add(c);
+		}
+
+		centroid.div(corners.length);
+
+		planes = new float[][] {
+			plane(near[0], near[1], near[2], centroid),	// near
+			plane(far[0], far[1], far[2], centroid),	// far
+			plane(near[0], far[0], near[2], centroid),	// left
+			plane(near[1], far[1], near[3], centroid),	// right
+			plane(near[0], far[0], near[1], centroid),	// top
+			plane(near[2], far[2], near[3], centroid)	// bottom
+		};
+	}
+
+	/**
+	 * Determines if the given point lies within this frustum.
+	 *
+	 * @param pt	A point in world space
+	 * @return		If the point is inside this frustum
+	 */
+	public boolean contains(PVector pt) {
+		for (float[] p : planes) {
+			if (p[0] * pt.x + p[1] * pt.y + p[2] * pt.z + p[3] < 0f) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Defines the frustum of the current view of the given graphics, based
+	 * on its projection and modelview matrices. The frustum is expressed in
+	 * the coordinate frame, in which the graphics is currently drawing.
+	 *
+	 * @param g	The graphics
+	 * @return	The view frustum of the graphics, or null, if the graphics
+	 * 			does not use a 3D projection, or its view is degenerate
+	 */
+	public static Frustum fromGraphics(PGraphics g) {
+		if (!(g instanceof PGraphicsOpenGL) || !g.is3D()) {
+			return null;
+		}
+
+		PMatrix3D clipToLocal = ((PGraphicsOpenGL)g).projection.get();
+		clipToLocal.apply(((PGraphicsOpenGL)g).modelview);
+
+		if (!clipToLocal.invert()) {
+			return null;
+		}
+
+		// Unproject the corners of the clip space cube
+		float[][] ndc = { { -1f, 1f }, { 1f, 1f }, { -1f, -1f }, { 1f, -1f } };
+		PVector[] near = new PVector[4];
+		PVector[] far = new PVector[4];
+		float[] pt = new float[4];
+
+		for (int cdx = 0; cdx < 4; ++cdx) {
+			clipToLocal.mult(new float[] { ndc[cdx][0], ndc[cdx][1], -1f, 1f },
+					pt);
+			near[cdx] = new PVector(pt[0] / pt[3], pt[1] / pt[3], pt[2] / pt[3]);
+			clipToLocal.mult(new float[] { ndc[cdx][0], ndc[cdx][1], 1f, 1f },
+					pt);
+			far[cdx] = new PVector(pt[0] / pt[3], pt[1] / pt[3], pt[2] / pt[3]);
+		}
+
+		return new Frustum(near, far);
+	}
+
+	/**
+	 * Returns the minimum and maximum corners of the axis-aligned box, which
+	 * encloses this frustum.
+	 *
+	 * @return	{min, max} of the frustum's axis-aligned bounds
+	 */
+	public PVector[] getBounds() {
+		PVector min = corners[0].copy();
+		PVector max = corners[0].copy();
+
+		for (PVector c : corners) {
+			min.set(Math.min(min.x, c.x), Math.min(min.y, c.y),
+					Math.min(min.z, c.z));
+			max.set(Math.max(max.x, c.x), Math.max(max.y, c.y),
+					Math.max(max.z, c.z));
+		}
+
+		return new PVector[] { min, max };
+	}
+
+	/**
+	 * Determines if the given axis-aligned box may intersect this frustum.
+	 * The test is conservative: a box, which lies outside of the frustum near
+	 * one of its edges, may be reported as intersecting, but a box, which
+	 * intersects the frustum, is never rejected.
+	 *
+	 * @param min	The minimum corner of the box
+	 * @param max	The maximum corner of the box
+	 * @return		If the box may intersect this frustum
+	 */
+	public boolean intersects(PVector min, PVector max) {
+		for (float[] p : planes) {
+			// The corner of the box farthest along the plane's normal
+			float x = (p[0] >= 0f) ? max.x : min.x;
+			float y = (p[1] >= 0f) ? max.y : min.y;
+			float z = (p[2] >= 0f) ? max.z : min.z;
+
+			if (p[0] * x + p[1] * y + p[2] * z + p[3] < 0f) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Defines the plane through the three given points with a normal, which
+	 * points towards the given inner point.
+	 */
+	private static float[] plane(PVector a, PVector b, PVector c,
+			PVector inner) {
+
+		PVector n = PVector.sub(b, a).cross(PVector.sub(c, a));
+		n.normalize();
+		float d = -n.dot(a);
+
+		if (n.dot(inner) + d < 0f) {
+			n.mult(-1f);
+			d = -d;
+		}
+
+		return new float[] { n.x, n.y, n.z, d };
+	}
+}
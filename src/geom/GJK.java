@@ -0,0 +1,539 @@
+package geom;
+
+import java.util.ArrayList;
+
+import processing.core.PVector;
+
+/**
+ * An implementation of the Gilbert-Johnson-Keerthi distance algorithm for
+ * convex volumes along with the Expanding Polytope Algorithm, which is used to
+ * find the penetration depth of two intersecting volumes. The closest point
+ * computations for the simplex resemble those outlined in Section 5.1 of "Real
+ * Time Collision Detection" by Christer Ericson.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class GJK {
+
+	/**
+	 * The maximum number of iterations for either algorithm.
+	 */
+	private static final int MAX_ITERATIONS = 64;
+
+	/**
+	 * The relative tolerance for the termination of the distance algorithm.
+	 */
+	private static final float REL_TOLERANCE = 1e-5f;
+
+	/**
+	 * The squared distance (in mm^2), under which two volumes are considered
+	 * to be touching.
+	 */
+	private static final float ZERO_TOLERANCE = 1e-8f;
+
+	/**
+	 * The absolute tolerance (in mm) for the termination of the expanding
+	 * polytope algorithm.
+	 */
+	private static final float EPA_TOLERANCE = 1e-3f;
+
+	/**
+	 * Computes the distance between the two given volumes. If the volumes are
+	 * separate, then this is the positive distance between the closest points
+	 * of the two volumes. Otherwise, the negated penetration depth of the two
+	 * volumes is returned.
+	 *
+	 * @param a	The first convex volume
+	 * @param b	The second convex volume
+	 * @return	The signed distance between the two volumes
+	 */
+	public static float distance(ConvexVolume a, ConvexVolume b) {
+		ArrayList<PVector> simplex = new ArrayList<>(4);
+		PVector v = PVector.sub(a.getCenter(), b.getCenter());
+
+		if (v.magSq() < ZERO_TOLERANCE) {
+			v.set(1f, 0f, 0f);
+		}
+
+		PVector w = support(a, b, PVector.mult(v, -1f));
+		simplex.add(w);
+		v = w.copy();
+
+		for (int iter = 0; iter < MAX_ITERATIONS; ++iter) {
+			float vv = v.magSq();
+
+			if (vv <= ZERO_TOLERANCE) {
+				// The origin is on the simplex
+				return -penetrationDepth(a, b, simplex);
+			}
+
+			w = support(a, b, PVector.mult(v, -1f));
+
+			if (vv - v.dot(w) <= REL_TOLERANCE * vv || contains(simplex, w)) {
+				// No significant progress can be made towards the origin
+				return (float)Math.sqrt(vv);
+			}
+
+			simplex.add(w);
+			PVector closest = closestOnSimplex(simplex);
+
+			if (closest == null) {
+				// The simplex encloses the origin
+				return -penetrationDepth(a, b, simplex);
+
+			} else if (closest.magSq() >= vv) {
+				return (float)Math.sqrt(vv);
+			}
+
+			v = closest;
+		}
+
+		return v.mag();
+	}
+
+	/**
+	 * Determines if the two given volumes intersect.
+	 *
+	 * @param a	The first convex volume
+	 * @param b	The second convex volume
+	 * @return	If the volumes intersect
+	 */
+	public static boolean intersects(ConvexVolume a, ConvexVolume b) {
+		return distance(a, b) <= 0f;
+	}
+
+	/**
+	 * Computes the point closest to the origin on the given simplex and
+	 * removes all the vertices of the simplex, which do not contribute to that
+	 * point.
+	 *
+	 * @param s	A simplex of one to four vertices
+	 * @return	The closest point to the origin on the simplex, or null if the
+	 * 			simplex is a tetrahedron, which contains the origin
+	 */
+	private static PVector closestOnSimplex(ArrayList<PVector> s) {
+		switch (s.size()) {
+		case 1:		return s.get(0).copy();
+		case 2:		return closestOnSegment(s);
+		case 3:		return closestOnTriangle(s);
+		default:	return closestOnTetrahedron(s);
+		}
+	}
+
+	/**
+	 * @see #closestOnSimplex(ArrayList)
+	 */
+	private static PVector closestOnSegment(ArrayList<PVector> s) {
+		PVector a = s.get(0);
+		PVector b = s.get(1);
+		PVector ab = PVector.sub(b, a);
+		float denom = ab.magSq();
+		float t = (denom == 0f) ? 0f : -a.dot(ab) / denom;
+
+		if (t <= 0f) {
+			s.remove(1);
+			return a.copy();
+
+		} else if (t >= 1f) {
+			s.remove(0);
+			return b.copy();
+		}
+
+		return PVector.add(a, ab.mult(t));
+	}
+
+	/**
+	 * @see #closestOnSimplex(ArrayList)
+	 */
+	private static PVector closestOnTriangle(ArrayList<PVector> s) {
+		PVector a = s.get(0);
+		PVector b = s.get(1);
+		PVector c = s.get(2);
+		PVector ab = PVector.sub(b, a);
+		PVector ac = PVector.sub(c, a);
+
+		float d1 = -ab.dot(a);
+		float d2 = -ac.dot(a);
+
+		if (d1 <= 0f && d2 <= 0f) {
+			// Vertex region of a
+			keep(s, a);
+			return a.copy();
+		}
+
+		float d3 = -ab.dot(b);
+		float d4 = -ac.dot(b);
+
+		if (d3 >= 0f && d4 <= d3) {
+			// Vertex region of b
+			keep(s, b);
+			return b.copy();
+		}
+
+		float vc = d1 * d4 - d3 * d2;
+
+		if (vc <= 0f && d1 >= 0f && d3 <= 0f) {
+			// Edge region of ab
+			s.remove(2);
+			return PVector.add(a, ab.mult(d1 / (d1 - d3)));
+		}
+
+		float d5 = -ab.dot(c);
+		float d6 = -ac.dot(c);
+
+		if (d6 >= 0f && d5 <= d6) {
+			// Vertex region of c
+			keep(s, c);
+			return c.copy();
+		}
+
+		float vb = d5 * d2 - d1 * d6;
+
+		if (vb <= 0f && d2 >= 0f && d6 <= 0f) {
+			// Edge region of ac
+			s.remove(1);
+			return PVector.add(a, ac.mult(d2 / (d2 - d6)));
+		}
+
+		float va = d3 * d6 - d5 * d4;
+
+		if (va <= 0f && (d4 - d3) >= 0f && (d5 - d6) >= 0f) {
+			// Edge region of bc
+			s.remove(0);
+			float t = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+			return PVector.add(b, PVector.sub(c, b).mult(t));
+		}
+
+		// Face region
+		float denom = 1f / (va + vb + vc);
+		return PVector.add(a, ab.mult(vb * denom)).add(ac.mult(vc * denom));
+	}
+
+	/**
+	 * @see #closestOnSimplex(ArrayList)
+	 */
+	private static PVector closestOnTetrahedron(ArrayList<PVector> s) {
+		PVector[] verts = s.toArray(new PVector[4]);
+		int[][] faces = new int[][] {
+			{ 0, 1, 2, 3 }, { 0, 2, 3, 1 }, { 0, 3, 1, 2 }, { 1, 3, 2, 0 }
+		};
+
+		PVector closest = null;
+		ArrayList<PVector> closestFace = null;
+
+		for (int[] f : faces) {
+			if (outsideOfPlane(verts[f[0]], verts[f[1]], verts[f[2]],
+					verts[f[3]])) {
+
+				ArrayList<PVector> face = new ArrayList<>(3);
+				face.add(verts[f[0]]);
+				face.add(verts[f[1]]);
+				face.add(verts[f[2]]);
+
+				PVector pt = closestOnTriangle(face);
+
+				if (closest == null || pt.magSq() < closest.magSq()) {
+					closest = pt;
+					closestFace = face;
+				}
+			}
+		}
+
+		if (closest != null) {
+			s.clear();
+			s.addAll(closestFace);
+		}
+
+		return closest;
+	}
+
+	/**
+	 * Determines if the given point is in the given list of points.
+	 *
+	 * @param pts	A list of points
+	 * @param pt	The point to find
+	 * @return		If an identical point exists in the list
+	 */
+	private static boolean contains(ArrayList<PVector> pts, PVector pt) {
+		for (PVector p : pts) {
+			if (p.x == pt.x && p.y == pt.y && p.z == pt.z) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Expands the given simplex, which contains the origin, into a
+	 * tetrahedron.
+	 *
+	 * @param a	The first convex volume
+	 * @param b	The second convex volume
+	 * @param s	A simplex of the Minkowski difference of a and b
+	 * @return	If the simplex could be expanded
+	 */
+	private static boolean expandSimplex(ConvexVolume a, ConvexVolume b,
+			ArrayList<PVector> s) {
+
+		if (s.size() == 1) {
+			PVector[] dirs = new PVector[] {
+				new PVector(1f, 0f, 0f), new PVector(-1f, 0f, 0f),
+				new PVector(0f, 1f, 0f), new PVector(0f, -1f, 0f),
+				new PVector(0f, 0f, 1f), new PVector(0f, 0f, -1f)
+			};
+
+			for (PVector d : dirs) {
+				PVector w = support(a, b, d);
+
+				if (PVector.sub(w, s.get(0)).magSq() > EPA_TOLERANCE) {
+					s.add(w);
+					break;
+				}
+			}
+		}
+
+		if (s.size() == 2) {
+			PVector line = PVector.sub(s.get(1), s.get(0));
+			// Find the axis least aligned with the line
+			PVector axis;
+
+			if (Math.abs(line.x) <= Math.abs(line.y) &&
+					Math.abs(line.x) <= Math.abs(line.z)) {
+
+				axis = new PVector(1f, 0f, 0f);
+
+			} else if (Math.abs(line.y) <= Math.abs(line.z)) {
+				axis = new PVector(0f, 1f, 0f);
+
+			} else {
+				axis = new PVector(0f, 0f, 1f);
+			}
+
+			PVector n0 = line.cross(axis);
+			PVector n1 = line.cross(n0);
+			PVector[] dirs = new PVector[] {
+				n0, PVector.mult(n0, -1f), n1, PVector.mult(n1, -1f)
+			};
+
+			for (PVector d : dirs) {
+				PVector w = support(a, b, d);
+				PVector toW = PVector.sub(w, s.get(0));
+
+				if (toW.cross(line).magSq() > EPA_TOLERANCE * line.magSq()) {
+					s.add(w);
+					break;
+				}
+			}
+		}
+
+		if (s.size() == 3) {
+			PVector p0 = s.get(0);
+			PVector n = PVector.sub(s.get(1), p0).cross(PVector.sub(s.get(2),
+					p0));
+
+			if (n.magSq() == 0f) {
+				return false;
+			}
+
+			n.normalize();
+			PVector w = support(a, b, n);
+
+			if (Math.abs(PVector.sub(w, p0).dot(n)) <= EPA_TOLERANCE) {
+				w = support(a, b, PVector.mult(n, -1f));
+			}
+
+			if (Math.abs(PVector.sub(w, p0).dot(n)) <= EPA_TOLERANCE) {
+				return false;
+			}
+
+			s.add(w);
+		}
+
+		return s.size() == 4;
+	}
+
+	/**
+	 * Removes all the vertices, except for the given vertex, from the given
+	 * simplex.
+	 *
+	 * @param s		A simplex
+	 * @param v		The vertex of the simplex to keep
+	 */
+	private static void keep(ArrayList<PVector> s, PVector v) {
+		s.clear();
+		s.add(v);
+	}
+
+	/**
+	 * Determines if the origin and the point d are on opposite sides of the
+	 * plane defined by the points a, b, and c. Degenerate planes are treated
+	 * as separating.
+	 */
+	private static boolean outsideOfPlane(PVector a, PVector b, PVector c,
+			PVector d) {
+
+		PVector n = PVector.sub(b, a).cross(PVector.sub(c, a));
+		float signO = -a.dot(n);
+		float signD = PVector.sub(d, a).dot(n);
+
+		return signO * signD < 0f || Math.abs(signD) <= ZERO_TOLERANCE;
+	}
+
+	/**
+	 * Computes the penetration depth of the two given intersecting volumes
+	 * with the expanding polytope algorithm. The given simplex must contain
+	 * the origin.
+	 *
+	 * @param a	The first convex volume
+	 * @param b	The second convex volume
+	 * @param s	A simplex of the Minkowski difference of a and b, which
+	 * 			contains the origin
+	 * @return	The penetration depth of the two volumes
+	 */
+	private static float penetrationDepth(ConvexVolume a, ConvexVolume b,
+			ArrayList<PVector> s) {
+
+		if (s.size() < 4 && !expandSimplex(a, b, s)) {
+			// The volumes are only touching
+			return 0f;
+		}
+
+		ArrayList<PVector> verts = new ArrayList<>(s);
+		ArrayList<Face> faces = new ArrayList<>();
+
+		faces.add(new Face(verts, 0, 1, 2, 3));
+		faces.add(new Face(verts, 0, 3, 1, 2));
+		faces.add(new Face(verts, 0, 2, 3, 1));
+		faces.add(new Face(verts, 1, 3, 2, 0));
+
+		float minDist = 0f;
+
+		for (int iter = 0; iter < MAX_ITERATIONS; ++iter) {
+			Face closest = null;
+
+			for (Face f : faces) {
+				if (f.isValid() && (closest == null || f.dist < closest.dist)) {
+					closest = f;
+				}
+			}
+
+			if (closest == null) {
+				break;
+			}
+
+			minDist = closest.dist;
+			PVector w = support(a, b, closest.normal);
+
+			if (w.dot(closest.normal) - closest.dist <= EPA_TOLERANCE) {
+				// The polytope cannot be expanded any farther
+				break;
+			}
+
+			int wdx = verts.size();
+			verts.add(w);
+
+			/* Remove all faces visible from the new vertex and keep track of
+			 * the horizon edges, which are the edges of exactly one removed
+			 * face */
+			ArrayList<int[]> horizon = new ArrayList<>();
+
+			for (int fdx = faces.size() - 1; fdx >= 0; --fdx) {
+				Face f = faces.get(fdx);
+
+				if (f.normal.dot(PVector.sub(w, verts.get(f.v[0]))) > 0f) {
+					faces.remove(fdx);
+
+					for (int edx = 0; edx < 3; ++edx) {
+						int i = f.v[edx];
+						int j = f.v[(edx + 1) % 3];
+						boolean shared = false;
+
+						for (int hdx = 0; hdx < horizon.size(); ++hdx) {
+							int[] e = horizon.get(hdx);
+
+							if (e[0] == j && e[1] == i) {
+								horizon.remove(hdx);
+								shared = true;
+								break;
+							}
+						}
+
+						if (!shared) {
+							horizon.add(new int[] { i, j });
+						}
+					}
+				}
+			}
+
+			for (int[] e : horizon) {
+				faces.add(new Face(verts, e[0], e[1], wdx));
+			}
+		}
+
+		return Math.max(0f, minDist);
+	}
+
+	/**
+	 * Computes the support point of the Minkowski difference of the two given
+	 * volumes (a - b) in the given direction.
+	 */
+	private static PVector support(ConvexVolume a, ConvexVolume b,
+			PVector dir) {
+
+		return PVector.sub(a.support(dir), b.support(PVector.mult(dir, -1f)));
+	}
+
+	/**
+	 * A triangular face of the polytope, which is expanded by EPA.
+	 */
+	private static class Face {
+
+		private final int[] v;
+		private final PVector normal;
+		private final float dist;
+
+		/**
+		 * Creates a face with the given vertices and an outward normal.
+		 */
+		private Face(ArrayList<PVector> verts, int a, int b, int c) {
+			v = new int[] { a, b, c };
+			PVector pa = verts.get(a);
+			normal = PVector.sub(verts.get(b), pa).cross(PVector.sub(
+					verts.get(c), pa));
+
+			float mag = normal.mag();
+
+			if (mag > 0f) {
+				normal.div(mag);
+				dist = normal.dot(pa);
+
+			} else {
+				dist = Float.NaN;
+			}
+		}
+
+		/**
+		 * Creates a face with the given vertices, whose normal points away
+		 * from the given opposite vertex.
+		 */
+		private Face(ArrayList<PVector> verts, int a, int b, int c, int opp) {
+			this(verts, a, b, c, PVector.sub(verts.get(opp), verts.get(a))
+					.dot(PVector.sub(verts.get(b), verts.get(a)).cross(
+							PVector.sub(verts.get(c), verts.get(a)))) > 0f);
+		}
+
+		private Face(ArrayList<PVector> verts, int a, int b, int c,
+				boolean flip) {
+
+			this(verts, a, (flip) ? c : b, (flip) ? b : c);
+		}
+
+		/**
+		 * @return	If the face is not degenerate
+		 */
+		private boolean isValid() {
+			return !Float.isNaN(dist);
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package geom;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import processing.core.PConstants;
+import processing.core.PVector;
+import processing.opengl.PGraphicsOpenGL;
+
+/**
+ * The geometry of a triangle mesh, as read from a .stl file, held in main
+ * memory. Mesh data does not depend on the graphics of the application, so
+ * it can be built on any thread, whereas the models built from it should
+ * only be created on the animation thread. Mesh data is immutable, so it can
+ * be shared by any number of models and threads.
+ *
+ * @author Joshua Hooker
+ */
+public class MeshData {
+
+	/**
+	 * The number of floats per vertex: a position followed by a normal.
+	 */
+	public static final int STRIDE = 6;
+
+	/**
+	 * The sizes of the clustering grid cells for each level of detail,
+	 * relative to the length of the diagonal of the mesh's bounds.
+	 */
+	private static final float[] LOD_CELL_SIZES = { 1f / 96f, 1f / 40f,
+			1f / 16f };
+
+	/**
+	 * The minimum number of vertices of a mesh, for which levels of detail
+	 * are built.
+	 */
+	private static final int LOD_MIN_VERTICES = 3000;
+
+	/**
+	 * The name of the file, from which this mesh was read.
+	 */
+	private final String filename;
+
+	/**
+	 * The simplified versions of this mesh ordered from most to least
+	 * detailed, which are built, when first requested.
+	 */
+	private MeshData[] lods;
+
+	/**
+	 * The bounds of the mesh's vertices: {minX, minY, minZ, maxX, maxY, maxZ}.
+	 */
+	private final float[] bounds;
+
+	/**
+	 * The distinct vertex positions of this mesh in the form of a flat array:
+	 * (x0, y0, z0, x1, y1, z1, ...), which is built, when first requested.
+	 */
+	private float[] distinctVertices;
+
+	/**
+	 * The vertices of the mesh's triangles in the form of a flat array:
+	 * (x0, y0, z0, nx0, ny0, nz0, x1, y1, ...).
+	 */
+	private final float[] vertices;
+
+	/**
+	 * Defines a mesh with the given vertices and normals.
+	 *
+	 * @param filename	The name of the mesh's source file
+	 * @param vertices	The interleaved vertex positions and normals of the
+	 * 					mesh's triangles
+	 */
+	public MeshData(String filename, float[] vertices) {
+		this.filename = filename;
+		this.vertices = vertices;
+		bounds = new float[] {
+			Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+			-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE
+		};
+
+		for (int idx = 0; idx < vertices.length; idx += STRIDE) {
+			for (int cdx = 0; cdx < 3; ++cdx) {
+				bounds[cdx] = Math.min(bounds[cdx], vertices[idx + cdx]);
+				bounds[cdx + 3] = Math.max(bounds[cdx + 3], vertices[idx + cdx]);
+			}
+		}
+	}
+
+	/**
+	 * Defines a mesh with the given geometry, which was derived from the
+	 * mesh's vertices beforehand.
+	 *
+	 * @param filename			The name of the mesh's source file
+	 * @param vertices			The interleaved vertex positions and normals
+	 * 							of the mesh's triangles
+	 * @param bounds			The bounds of the vertices
+	 * @param distinctVertices	The distinct vertex positions
+	 */
+	public MeshData(String filename, float[] vertices, float[] bounds,
+			float[] distinctVertices) {
+
+		this.filename = filename;
+		this.vertices = vertices;
+		this.bounds = bounds;
+		this.distinctVertices = distinctVertices;
+	}
+
+	/**
+	 * Returns the bounds of this mesh's vertices.
+	 *
+	 * @return	{minX, minY, minZ, maxX, maxY, maxZ}
+	 */
+	public float[] getBounds() {
+		return bounds.clone();
+	}
+
+	/**
+	 * Returns the distinct vertex positions of this mesh in the form of a
+	 * flat array: (x0, y0, z0, x1, y1, z1, ...). Since the facets of a .stl
+	 * model share vertices, this set is much smaller than the mesh's vertex
+	 * count. The returned array must not be modified.
+	 *
+	 * @return	The distinct vertices of this mesh
+	 */
+	public synchronized float[] getDistinctVertices() {
+		if (distinctVertices == null) {
+			LinkedHashSet<PVector> distinct = new LinkedHashSet<>();
+
+			for (int idx = 0; idx < vertices.length; idx += STRIDE) {
+				distinct.add(new PVector(vertices[idx], vertices[idx + 1],
+						vertices[idx + 2]));
+			}
+
+			distinctVertices = new float[3 * distinct.size()];
+			int idx = 0;
+
+			for (PVector v : distinct) {
+				distinctVertices[idx++] = v.x;
+				distinctVertices[idx++] = v.y;
+				distinctVertices[idx++] = v.z;
+			}
+		}
+
+		return distinctVertices;
+	}
+
+	/**
+	 * Returns the simplified versions of this mesh, ordered from the most to
+	 * the least detailed. Each level is built by clustering the mesh's
+	 * vertices in a grid, which is coarser for each level, and dropping the
+	 * triangles, which collapse. Levels, which do not reduce the number of
+	 * triangles significantly, are omitted, so small meshes have no levels.
+	 *
+	 * @return	The levels of detail of this mesh
+	 */
+	public synchronized MeshData[] getLODs() {
+		if (lods == null) {
+			ArrayList<MeshData> levels = new ArrayList<>();
+
+			if (getVertexCount() >= LOD_MIN_VERTICES) {
+				float diagonal = (float)Math.sqrt(
+						sq(bounds[3] - bounds[0]) + sq(bounds[4] - bounds[1]) +
+						sq(bounds[5] - bounds[2]));
+				int prevCount = getVertexCount();
+
+				for (float cellSize : LOD_CELL_SIZES) {
+					MeshData level = simplify(cellSize * diagonal);
+					// Each level should have at most 70% of the triangles
+					if (level.getVertexCount() > 0 &&
+							10 * level.getVertexCount() <= 7 * prevCount) {
+
+						levels.add(level);
+						prevCount = level.getVertexCount();
+					}
+				}
+			}
+
+			lods = levels.toArray(new MeshData[levels.size()]);
+		}
+
+		return lods;
+	}
+
+	/**
+	 * Returns the name of the file, from which this mesh was read.
+	 *
+	 * @return	This mesh's file name
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Returns the coordinates of the vertex at the given index.
+	 *
+	 * @param vdx		The index of a vertex
+	 * @param coord		The coordinate (0 for x, 1 for y, 2 for z)
+	 * @return			The coordinate of the vertex
+	 */
+	public float getVertex(int vdx, int coord) {
+		return vertices[STRIDE * vdx + coord];
+	}
+
+	/**
+	 * Returns the number of vertices in this mesh, which is three times the
+	 * number of triangles.
+	 *
+	 * @return	The vertex count of this mesh
+	 */
+	public int getVertexCount() {
+		return vertices.length / STRIDE;
+	}
+
+	/**
+	 * Copies the interleaved vertex positions and normals of this mesh into
+	 * the given buffer.
+	 *
+	 * @param dst	The buffer with room for STRIDE * getVertexCount() floats
+	 */
+	public void getVertices(FloatBuffer dst) {
+		dst.put(vertices);
+	}
+
+	/**
+	 * Builds a model with this mesh's geometry and the given fill color. This
+	 * must be called on the animation thread.
+	 *
+	 * @param g		The graphics of the application
+	 * @param fill	The fill color of the model
+	 * @return		A model of this mesh
+	 */
+	public Model toModel(PGraphicsOpenGL g, int fill) {
+		MeshData[] levels = getLODs();
+		Model[] lodModels = new Model[levels.length];
+
+		for (int ldx = 0; ldx < levels.length; ++ldx) {
+			lodModels[ldx] = levels[ldx].toModel(g, fill);
+		}
+
+		Model mesh = new Model(g, this, lodModels);
+		mesh.beginShape(PConstants.TRIANGLES);
+		mesh.noStroke();
+		mesh.fill(fill);
+
+		for (int idx = 0; idx < vertices.length; idx += STRIDE) {
+			mesh.normal(vertices[idx + 3], vertices[idx + 4], vertices[idx + 5]);
+			mesh.vertex(vertices[idx], vertices[idx + 1], vertices[idx + 2]);
+		}
+
+		mesh.endShape();
+
+		return mesh;
+	}
+
+	/**
+	 * Returns the square of the given value.
+	 */
+	private static float sq(float v) {
+		return v * v;
+	}
+
+	/**
+	 * Simplifies this mesh by merging the vertices in each cell of a grid
+	 * with the given cell size into their average. Triangles, which collapse
+	 * to a line or point, and duplicate triangles are dropped, and the normal
+	 * of each remaining triangle is recomputed from its vertices.
+	 */
+	private MeshData simplify(float cellSize) {
+		int vertexCount = getVertexCount();
+		HashMap<Long, Integer> cells = new HashMap<>();
+		int[] cluster = new int[vertexCount];
+		float[] sums = new float[4 * 64];
+		int clusters = 0;
+
+		// Assign each vertex to the cluster of its grid cell
+		for (int vdx = 0; vdx < vertexCount; ++vdx) {
+			int idx = STRIDE * vdx;
+			long cx = (long)((vertices[idx] - bounds[0]) / cellSize);
+			long cy = (long)((vertices[idx + 1] - bounds[1]) / cellSize);
+			long cz = (long)((vertices[idx + 2] - bounds[2]) / cellSize);
+			Long key = (cx << 42) | (cy << 21) | cz;
+			Integer cdx = cells.get(key);
+
+			if (cdx == null) {
+				cdx = clusters++;
+				cells.put(key, cdx);
+
+				if (4 * clusters > sums.length) {
+					sums = Arrays.copyOf(sums, 2 * sums.length);
+				}
+			}
+
+			cluster[vdx] = cdx;
+			sums[4 * cdx] += vertices[idx];
+			sums[4 * cdx + 1] += vertices[idx + 1];
+			sums[4 * cdx + 2] += vertices[idx + 2];
+			sums[4 * cdx + 3] += 1f;
+		}
+
+		for (int cdx = 0; cdx < clusters; ++cdx) {
+			float count = sums[4 * cdx + 3];
+			sums[4 * cdx] /= count;
+			sums[4 * cdx + 1] /= count;
+			sums[4 * cdx + 2] /= count;
+		}
+
+		// Rebuild the triangles between the clusters
+		HashSet<Long> triangles = new HashSet<>();
+		float[] simplified = new float[vertices.length];
+		int count = 0;
+
+		for (int vdx = 0; vdx + 2 < vertexCount; vdx += 3) {
+			int a = cluster[vdx], b = cluster[vdx + 1], c = cluster[vdx + 2];
+
+			if (a == b || b == c || a == c) {
+				continue;
+			}
+
+			int min = Math.min(a, Math.min(b, c));
+			int max = Math.max(a, Math.max(b, c));
+			long key = ((long)min << 42) | ((long)(a + b + c - min - max) << 21)
+					| max;
+
+			if (!triangles.add(key)) {
+				continue;
+			}
+
+			float e0x = sums[4 * b] - sums[4 * a];
+			float e0y = sums[4 * b + 1] - sums[4 * a + 1];
+			float e0z = sums[4 * b + 2] - sums[4 * a + 2];
+			float e1x = sums[4 * c] - sums[4 * a];
+			float e1y = sums[4 * c + 1] - sums[4 * a + 1];
+			float e1z = sums[4 * c + 2] - sums[4 * a + 2];
+			float nx = e0y * e1z - e0z * e1y;
+			float ny = e0z * e1x - e0x * e1z;
+			float nz = e0x * e1y - e0y * e1x;
+			float len = (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+			if (len == 0f) {
+				continue;
+			}
+
+			for (int cdx : new int[] { a, b, c }) {
+				simplified[count++] = sums[4 * cdx];
+				simplified[count++] = sums[4 * cdx + 1];
+				simplified[count++] = sums[4 * cdx + 2];
+				simplified[count++] = nx / len;
+				simplified[count++] = ny / len;
+				simplified[count++] = nz / len;
+			}
+		}
+
+		MeshData level = new MeshData(filename, Arrays.copyOf(simplified,
+				count));
+		// Levels of detail are not simplified any further
+		level.lods = new MeshData[0];
+		return level;
+	}
+}
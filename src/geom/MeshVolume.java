@@ -0,0 +1,124 @@
+package geom;
+
+import java.util.Arrays;
+
+import enums.DimType;
+import processing.core.PVector;
+
+/**
+ * Defines the convex hull of a complex shape's model, placed in world space by
+ * a coordinate system, for distance queries with the GJK algorithm.
+ * 
+ * @author Joshua Hooker
+ */
+public class MeshVolume implements ConvexVolume {
+	
+	/**
+	 * The orientation of the shape in world space.
+	 */
+	private final RMatrix axes;
+	
+	/**
+	 * The position of the shape in world space.
+	 */
+	private final PVector center;
+	
+	/**
+	 * The shape, which defines the volume.
+	 */
+	private final ComplexShape shape;
+	
+	/**
+	 * The scale, center offset and bounding radius of the shape, when this
+	 * volume was defined, so that a copy is unaffected by later edits to the
+	 * shape.
+	 */
+	private final float scale, radius;
+	private final float[] offset;
+	
+	/**
+	 * Defines the volume of the given shape with the given position and
+	 * orientation in world space. The position and orientation are referenced
+	 * and not copied, whereas the shape's scale and center offset are copied.
+	 * 
+	 * @param shape		The complex shape defining the volume
+	 * @param center	The world position of the shape
+	 * @param axes		The world orientation of the shape
+	 */
+	public MeshVolume(ComplexShape shape, PVector center, RMatrix axes) {
+		this(shape, center, axes, shape.getDim(DimType.SCALE),
+				shape.getDims().mag() / 2f, shape.getCenterOffset());
+	}
+	
+	private MeshVolume(ComplexShape shape, PVector center, RMatrix axes,
+			float scale, float radius, float[] offset) {
+		
+		this.shape = shape;
+		this.center = center;
+		this.axes = axes;
+		this.scale = scale;
+		this.radius = radius;
+		this.offset = offset;
+	}
+	
+	@Override
+	public MeshVolume copy() {
+		return new MeshVolume(shape, center.copy(), axes.copy(), scale, radius,
+				offset);
+	}
+	
+	@Override
+	public float getBoundingRadius() {
+		return radius;
+	}
+	
+	@Override
+	public String getSignature() {
+		return String.format("mesh%s|%s%s%s%s", shape.getSourcePath(), scale,
+				Arrays.toString(offset), center,
+				Arrays.deepToString(axes.getDataF()));
+	}
+	
+	@Override
+	public PVector getCenter() {
+		return center;
+	}
+	
+	@Override
+	public PVector support(PVector dir) {
+		float[][] r = axes.getDataF();
+		// Convert the direction into the shape's coordinate frame
+		float dx = r[0][0] * dir.x + r[1][0] * dir.y + r[2][0] * dir.z;
+		float dy = r[0][1] * dir.x + r[1][1] * dir.y + r[2][1] * dir.z;
+		float dz = r[0][2] * dir.x + r[1][2] * dir.y + r[2][2] * dir.z;
+		
+		float[] verts = shape.getDistinctVertices();
+		
+		if (verts.length == 0) {
+			return center.copy();
+		}
+		
+		float maxDot = Float.NEGATIVE_INFINITY;
+		int maxIdx = 0;
+		
+		for (int idx = 0; idx < verts.length; idx += 3) {
+			float dot = verts[idx] * dx + verts[idx + 1] * dy + verts[idx + 2] * dz;
+			
+			if (dot > maxDot) {
+				maxDot = dot;
+				maxIdx = idx;
+			}
+		}
+		
+		// Apply the shape's scale and offset and then the world transform
+		float lx = offset[0] + scale * verts[maxIdx];
+		float ly = offset[1] + scale * verts[maxIdx + 1];
+		float lz = offset[2] + scale * verts[maxIdx + 2];
+		
+		return new PVector(
+				center.x + r[0][0] * lx + r[0][1] * ly + r[0][2] * lz,
+				center.y + r[1][0] * lx + r[1][1] * ly + r[1][2] * lz,
+				center.z + r[2][0] * lx + r[2][1] * ly + r[2][2] * lz
+		);
+	}
+}
@@ -1,69 +1,112 @@
 package geom;
 
-import processing.core.PConstants;
-import processing.core.PVector;
+import processing.core.PGraphics;
+import processing.core.PMatrix3D;
 import processing.opengl.PGraphicsOpenGL;
 import processing.opengl.PShapeOpenGL;
 
 /**
- * The definition of a model, which is loaded from a .STL model.
+ * The definition of a model, which is loaded from a .STL model. A model's
+ * geometry is fixed, once it is built, so a single model is shared by every
+ * robot and world object, which is drawn with it. A model of a dense mesh
+ * has simplified versions of itself, one of which is drawn in its place,
+ * when the model appears small on screen.
  * 
  * @author Joshua Hooker
  */
 public class Model extends PShapeOpenGL {
 	
 	/**
-	 * Processing, I hate you
+	 * The radii on screen in pixels, below which each level of detail is
+	 * drawn in place of the previous level.
 	 */
-	protected PGraphicsOpenGL g;
+	private static final float[] LOD_PIXEL_RADII = { 120f, 45f, 15f };
 	
 	/**
-	 * The name of the file, from which this model was created.
+	 * The geometry of this model in main memory.
 	 */
-	private final String filename;
+	private final MeshData data;
 	
 	/**
-	 * Creates a PShape with the given graphics object and type.
+	 * The simplified versions of this model, ordered from the most to the
+	 * least detailed.
+	 */
+	private final Model[] lods;
+	
+	/**
+	 * The radius of a sphere about the model's origin, which encloses the
+	 * model. Since the sphere is centered at the origin, it encloses the
+	 * model after any rotation of the model.
+	 */
+	private final float radius;
+	
+	/**
+	 * Creates a model of the given mesh with the given graphics object.
+	 * The mesh's vertices are added to the model by the caller.
 	 * 
-	 * @param g			The graphics object of the application
-	 * @param type		One three PShape type constants (GROUP, PATH, GEOMETRY)
-	 * @param filename	
+	 * @param g		The graphics object of the application
+	 * @param data	The mesh of the model
+	 * @param lods	The models of the mesh's levels of detail
 	 */
-	public Model(PGraphicsOpenGL g, int type, String filename) {
-		super(g, type);
+	public Model(PGraphicsOpenGL g, MeshData data, Model[] lods) {
+		super(g, GEOMETRY);
 		
 		if (g.is3D()) {
 			set3D(true);
 		}
 		
-		this.g = g;
-		this.filename = filename;
+		this.data = data;
+		this.lods = lods;
+		
+		float[] b = data.getBounds();
+		float maxX = Math.max(Math.abs(b[0]), Math.abs(b[3]));
+		float maxY = Math.max(Math.abs(b[1]), Math.abs(b[4]));
+		float maxZ = Math.max(Math.abs(b[2]), Math.abs(b[5]));
+		radius = (float)Math.sqrt(maxX * maxX + maxY * maxY + maxZ * maxZ);
 	}
 	
 	/**
-	 * Inspired by the processing thread:
-	 * https://forum.processing.org/two/discussion/752/how-to-copy-a-pshape-object
+	 * Draws the level of detail of this model, which matches the model's
+	 * size on screen with the given graphics' current transformations.
 	 */
 	@Override
-	public Model clone() {
-		Model copy = new Model(g, GEOMETRY, filename);
-		
-		// Copy fill color and all vertices
-		copy.beginShape(PConstants.TRIANGLES);
-		copy.noStroke();
-		copy.fill(fillColor);
+	public void draw(PGraphics g) {
+		Model lod = selectLOD(g);
 		
-		for (int vdx = 0; vdx < getVertexCount(); ++vdx) {
-			PVector n = getNormal(vdx);
-			PVector v = getVertex(vdx);
+		if (lod == this) {
+			super.draw(g);
 			
-			copy.normal(n.x, n.y, n.z);
-			copy.vertex(v.x, v.y, v.z);
+		} else {
+			lod.draw(g);
 		}
-		
-		copy.endShape();
-		
-		return copy;
+	}
+	
+	/**
+	 * Returns the bounds of this model's vertices, in the model's own
+	 * coordinate frame.
+	 * 
+	 * @return	{minX, minY, minZ, maxX, maxY, maxZ}
+	 */
+	public float[] getBounds() {
+		return data.getBounds();
+	}
+	
+	/**
+	 * Returns the distinct vertices of this model in the form of a flat
+	 * array: (x0, y0, z0, x1, y1, z1, ...). Since the facets of a .stl model
+	 * share vertices, this set is much smaller than the model's vertex count.
+	 * 
+	 * @return	The distinct vertices of this model
+	 */
+	public float[] getDistinctVertices() {
+		return data.getDistinctVertices();
+	}
+	
+	/**
+	 * @return	The geometry of this model
+	 */
+	public MeshData getMeshData() {
+		return data;
 	}
 	
 	/**
@@ -72,6 +115,60 @@ public class Model extends PShapeOpenGL {
 	 * @return	This model's file name
 	 */
 	public String getFilename() {
-		return filename;
+		return data.getFilename();
+	}
+	
+	/**
+	 * Selects the level of detail of this model based on the radius of the
+	 * model's bounding sphere projected onto the screen of the given
+	 * graphics.
+	 * 
+	 * @param g	The graphics, with which to draw the model
+	 * @return	This model or one of its simplified versions
+	 */
+	public Model selectLOD(PGraphics g) {
+		if (lods.length == 0 || !(g instanceof PGraphicsOpenGL)) {
+			return this;
+		}
+		
+		PMatrix3D mv = ((PGraphicsOpenGL)g).modelview;
+		PMatrix3D proj = ((PGraphicsOpenGL)g).projection;
+		float scale = (float)Math.sqrt(mv.m00 * mv.m00 + mv.m10 * mv.m10 +
+				mv.m20 * mv.m20);
+		float scrRadius = radius * scale * Math.abs(proj.m11) * g.height / 2f;
+		
+		if (proj.m33 == 0f) {
+			// Perspective projection
+			float depth = -mv.m23;
+			
+			if (depth <= radius * scale) {
+				// The camera is within the model's bounding sphere
+				return this;
+			}
+			
+			scrRadius /= depth;
+		}
+		
+		int level = 0;
+		
+		while (level < lods.length && level < LOD_PIXEL_RADII.length &&
+				scrRadius < LOD_PIXEL_RADII[level]) {
+			
+			++level;
+		}
+		
+		return (level == 0) ? this : lods[level - 1];
+	}
+	
+	/**
+	 * Applies the transformation to this model's levels of detail as well.
+	 */
+	@Override
+	protected void transform(int type, float... args) {
+		super.transform(type, args);
+		
+		for (Model lod : lods) {
+			lod.transform(type, args);
+		}
 	}
 }
@@ -0,0 +1,119 @@
+package geom;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import processing.opengl.PGraphicsOpenGL;
+
+/**
+ * Shares models amongst the robots and world objects of the application.
+ * A model is built once for each combination of a source file and a fill
+ * color, and all models of the same file share the file's mesh data. A
+ * model is only held by this registry for as long as some shape or robot
+ * references it, so that the models of deleted objects are released.
+ *
+ * A model is built on the calling thread, so getModel() must only be called
+ * on the animation thread. The mesh data of a source file can be read on any
+ * thread with getMeshData(), so that a shape can be defined off the animation
+ * thread and its model built later. The registry's state is guarded by the
+ * registry's lock, so that it is never modified by two threads at once.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class ModelRegistry {
+
+	/**
+	 * The graphics of the application, with which models are built.
+	 */
+	private static volatile PGraphicsOpenGL graphics;
+
+	/**
+	 * Returns the mesh data of a source file.
+	 */
+	private static volatile Function<String, MeshData> meshSource;
+
+	/**
+	 * The models, which are in use, mapped to by their source file and fill
+	 * color.
+	 */
+	private static final HashMap<String, WeakReference<Model>> models;
+
+	static {
+		graphics = null;
+		meshSource = null;
+		models = new HashMap<>();
+	}
+
+	/**
+	 * Returns the model of the given source file with the given fill color.
+	 * The model is built, if no model of the file with the fill color is in
+	 * use.
+	 *
+	 * @param filename	The name of a .stl file relative to the data directory
+	 * @param fill		The fill color of the model
+	 * @return			The shared model
+	 * @throws NullPointerException	If the source file cannot be read, or
+	 * 								this registry is not initialized
+	 */
+	public static synchronized Model getModel(String filename, int fill)
+			throws NullPointerException {
+
+		String key = String.format("%s#%08x", filename, fill);
+		WeakReference<Model> ref = models.get(key);
+		Model model = (ref == null) ? null : ref.get();
+
+		if (model == null) {
+			clearReleased();
+			model = meshSource.apply(filename).toModel(graphics, fill);
+			models.put(key, new WeakReference<>(model));
+		}
+
+		return model;
+	}
+
+	/**
+	 * Returns the mesh data of the given source file. Unlike getModel(),
+	 * this can be called on any thread.
+	 *
+	 * @param filename	The name of a .stl file relative to the data directory
+	 * @return			The file's mesh data
+	 * @throws NullPointerException	If the source file cannot be read, or
+	 * 								this registry is not initialized
+	 */
+	public static MeshData getMeshData(String filename)
+			throws NullPointerException {
+
+		return meshSource.apply(filename);
+	}
+
+	/**
+	 * Sets the graphics and mesh source, with which models are built. This
+	 * must be called before any model is requested.
+	 *
+	 * @param g			The graphics of the application
+	 * @param source	Returns the mesh data of a source file
+	 */
+	public static synchronized void initialize(PGraphicsOpenGL g,
+			Function<String, MeshData> source) {
+
+		graphics = g;
+		meshSource = source;
+	}
+
+	/**
+	 * Removes the entries of released models.
+	 */
+	private static void clearReleased() {
+		Iterator<Entry<String, WeakReference<Model>>> it =
+				models.entrySet().iterator();
+
+		while (it.hasNext()) {
+			if (it.next().getValue().get() == null) {
+				it.remove();
+			}
+		}
+	}
+}
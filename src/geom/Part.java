@@ -142,6 +142,31 @@ public class Part extends WorldObject {
 		g.popMatrix();
 	}
 	
+	/**
+	 * Draws the part and its bounding box (depending on the value of
+	 * drawOBBs) with the given transformation and bounding box color in place
+	 * of the part's current position, orientation and bounding box color.
+	 * 
+	 * @param g			The graphics used to draw the part
+	 * @param tMat		The absolute transformation of the part
+	 * @param drawOBBs	Whether to render the bounding boxes
+	 * @param obbColor	The color of the part's bounding box
+	 */
+	public void draw(PGraphics g, RMatrix tMat, boolean drawOBBs,
+			Integer obbColor) {
+		
+		g.pushMatrix();
+		Fields.transform(g, tMat);
+		
+		getModel().draw(g);
+		
+		if (drawOBBs) {
+			absOBB.getFrame().draw(g, obbColor);
+		}
+		
+		g.popMatrix();
+	}
+	
 	/**
 	 * Returns a reference to this part's position with respective to
 	 * Processing's native coordinate system.
@@ -179,6 +204,15 @@ public class Part extends WorldObject {
 		return parent;
 	}
 	
+	/**
+	 * Returns a reference to this part's bounding box in world space.
+	 * 
+	 * @return	This part's bounding box
+	 */
+	public BoundingBox getOBB() {
+		return absOBB;
+	}
+	
 	/**
 	 * @return	The dimensions of this part's bounding box
 	 * @see BoundingBox#getDims()
@@ -205,6 +239,31 @@ public class Part extends WorldObject {
 		return absOBB.getOrientationAxes();
 	}
 	
+	/**
+	 * Returns the bounds enclosing both this part's volume and its bounding
+	 * box, since the bounding box is used for collision checks.
+	 */
+	@Override
+	public float[] getBounds() {
+		return boundsOf(getVolume(), absOBB);
+	}
+	
+	/**
+	 * Returns this part's bounding box, unless this part's shape is complex,
+	 * in which case the convex hull of its model is returned.
+	 */
+	@Override
+	public ConvexVolume getVolume() {
+		RShape s = getModel();
+		
+		if (s instanceof ComplexShape) {
+			return new MeshVolume((ComplexShape)s, absOBB.getCenter(),
+					absOBB.getOrientationAxes());
+		}
+		
+		return absOBB;
+	}
+	
 	/**
 	 * Disassociates this part from its parent fixture.
 	 */
@@ -247,6 +306,7 @@ public class Part extends WorldObject {
 	 */
 	public void setDefaultCenter(PVector newCenter) {
 		defaultOrientation.setOrigin(newCenter);
+		updateState();
 	}
 
 	/**
@@ -256,6 +316,7 @@ public class Part extends WorldObject {
 	 */
 	public void setDefaultOrientation(RMatrix newAxes) {
 		defaultOrientation.setAxes(newAxes);
+		updateState();
 	}
 	
 	/**
@@ -294,6 +355,7 @@ public class Part extends WorldObject {
 	 */
 	public void setOBBDim(Float newVal, DimType dim) {
 		absOBB.setDim(newVal, dim);
+		updateBounds();
 	}
 
 	/**
@@ -302,6 +364,7 @@ public class Part extends WorldObject {
 	 */
 	public void setOBBDimenions(PVector newDims) {
 		absOBB.setDims(newDims);
+		updateBounds();
 	}
 	
 	@Override
@@ -339,6 +402,7 @@ public class Part extends WorldObject {
 		
 		absOBB.setCenter(origin);
 		absOBB.setOrientation(rMat);
+		updateBounds();
 	}
 
 	@Override
@@ -373,5 +437,7 @@ public class Part extends WorldObject {
 			absOBB.setDim(2f * s.getDim(DimType.RADIUS) + minAddition, DimType.HEIGHT);
 			absOBB.setDim(s.getDim(DimType.HEIGHT) + minAddition, DimType.WIDTH); 
 		}
+		
+		updateBounds();
 	}
 }
\ No newline at end of file
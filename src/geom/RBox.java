@@ -59,6 +59,29 @@ public class RBox extends RShape {
 		dimensions = new PVector(len, hgt, wdh);
 	}
 
+	/**
+	 * Draws this box with the given outline color in place of its own
+	 * outline color, which may be modified on another thread.
+	 * 
+	 * @param g			The graphics used to draw this box
+	 * @param strokeVal	The outline color of this box (can be null)
+	 */
+	public void draw(PGraphics g, Integer strokeVal) {
+		g.pushStyle();
+		applyStyle(g);
+		
+		if (strokeVal != null) {
+			g.stroke(strokeVal);
+			
+		} else {
+			g.noStroke();
+		}
+		
+		g.box(dimensions.x, dimensions.y, dimensions.z);
+		
+		g.popStyle();
+	}
+	
 	@Override
 	public RBox clone() {
 		return new RBox(getFillValue(), getStrokeValue(), dimensions.x, dimensions.y, dimensions.z);
@@ -1,11 +1,16 @@
 package geom;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import global.Fields;
+import processing.core.PVector;
 
 /**
  * Defines a set of world objects that are rendered in the same scene.
@@ -17,10 +22,49 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 	/**
 	 * The maximum number of objects allowed in a single scenario.
 	 */
-	public static final int MAX_SIZE = 20;
+	public static final int MAX_SIZE = 10000;
 	
 	private boolean gravity;
 	
+	/**
+	 * A spatial index of all the objects in this scenario. The index is
+	 * queried by both the animation and simulation threads, so it is only
+	 * accessed while holding this scenario's lock.
+	 */
+	private final SpatialGrid index;
+	
+	/**
+	 * The objects, whose bounds changed since the index was last updated.
+	 */
+	private final Set<WorldObject> movedObjs;
+	
+	/**
+	 * The objects, whose states changed since the last snapshot of this
+	 * scenario.
+	 */
+	private final Set<WorldObject> editedObjs;
+	
+	/**
+	 * The slot of each object in this scenario's snapshots.
+	 */
+	private final IdentityHashMap<WorldObject, Integer> slots;
+	
+	/**
+	 * The slots of the objects removed since the last snapshot, which are
+	 * emptied by the next snapshot.
+	 */
+	private final ArrayList<Integer> clearedSlots;
+	
+	/**
+	 * The empty slots, which can be assigned to a new object.
+	 */
+	private final ArrayList<Integer> freeSlots;
+	
+	/**
+	 * The most recent snapshot of this scenario.
+	 */
+	private ScenarioSnapshot snapshot;
+	
 	/**
 	 * The name of this scenario. This should be unique amongst all scenarios
 	 * in a single application.
@@ -41,6 +85,15 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		name = n;
 		objList = new ArrayList<>();
 		gravity = false;
+		index = new SpatialGrid();
+		movedObjs = Collections.newSetFromMap(
+				new IdentityHashMap<WorldObject, Boolean>());
+		editedObjs = Collections.newSetFromMap(
+				new IdentityHashMap<WorldObject, Boolean>());
+		slots = new IdentityHashMap<>();
+		clearedSlots = new ArrayList<>();
+		freeSlots = new ArrayList<>();
+		snapshot = new ScenarioSnapshot(name, gravity);
 	}
 
 	/**
@@ -55,7 +108,7 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 	 * 		<li>2, the scenario is full</li>
 	 * </ul>
 	 */
-	public int addWorldObject(WorldObject newObject) {
+	public synchronized int addWorldObject(WorldObject newObject) {
 		
 		if (newObject == null) {
 			return 1;
@@ -65,6 +118,13 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		}
 		
 		objList.add(newObject);
+		newObject.setScenario(this);
+		index.put(newObject, newObject.getBounds());
+		
+		int slot = freeSlots.isEmpty() ? slots.size() + clearedSlots.size()
+				: freeSlots.remove(freeSlots.size() - 1);
+		slots.put(newObject, slot);
+		editedObjs.add(newObject);
 		return 0;
 	}
 	
@@ -84,47 +144,28 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		}
 	}
 	
+	/**
+	 * Creates a copy of this scenario, whose objects share the geometry of
+	 * this scenario's objects.
+	 * 
+	 * @see #fork(String)
+	 */
 	@Override
 	public Object clone() {
-		Scenario copy = new Scenario(name);
-		HashMap<String, Fixture> nameToFixtureMap = new HashMap<>();
-		ArrayList<Part> parts = new ArrayList<>();
-		ArrayList<String> parentNames = new ArrayList<>();
-		
-		for (WorldObject obj : this) {
-			try {
-				// Add copies of all the objects in this scenario
-				WorldObject newObj = obj.clone();
-				copy.addWorldObject(newObj);
-				
-				// Keep track of all fixtures and parts with non-null references
-				if (newObj instanceof Fixture) {
-					nameToFixtureMap.put(newObj.getName(), (Fixture)newObj);
-	
-				} else if (newObj instanceof Part) {
-					Part p = (Part)newObj;
+		return fork(name);
+	}
 	
-					if (p.getParent() != null) {
-						parts.add( (Part)newObj );
-						parentNames.add(p.getParent().getName());
-					}
-				}
-			
-			} catch (NullPointerException NPEx) {/* Invalid source for model shape */}
-		}
-
-		// Update fixture references of new parts
-		for (int idx = 0; idx < parts.size(); ++idx) {
-			Part p = parts.get(idx);
-			String parentName = parentNames.get(idx);
-			Fixture parent = nameToFixtureMap.get(parentName);
-			
-			if (parent != null) {
-				parent.addDependent(p);
-			}
-		}
-
-		return copy;
+	/**
+	 * Creates a new scenario with the given name from a snapshot of this
+	 * scenario. The new scenario's objects share the geometry of this
+	 * scenario's objects, so that only the objects' positions, orientations
+	 * and dimensions are copied.
+	 * 
+	 * @param forkName	The name of the new scenario
+	 * @return			The new scenario
+	 */
+	public Scenario fork(String forkName) {
+		return snapshot().fork(forkName);
 	}
 	
 	/**
@@ -190,6 +231,45 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		return objList.iterator();
 	}
 
+	/**
+	 * Returns the objects in this scenario, whose axis-aligned bounds overlap
+	 * the given axis-aligned box.
+	 * 
+	 * @param min	The minimum corner of the box
+	 * @param max	The maximum corner of the box
+	 * @return		The objects, whose bounds overlap the box
+	 */
+	public synchronized ArrayList<WorldObject> queryBox(PVector min, PVector max) {
+		updateIndex();
+		return index.queryBox(min, max);
+	}
+	
+	/**
+	 * Returns the objects in this scenario, whose axis-aligned bounds may
+	 * intersect the given frustum.
+	 * 
+	 * @param f	A view frustum
+	 * @return	The objects, which may lie inside the frustum
+	 */
+	public synchronized ArrayList<WorldObject> queryFrustum(Frustum f) {
+		updateIndex();
+		return index.queryFrustum(f);
+	}
+	
+	/**
+	 * Returns the objects in this scenario, whose axis-aligned bounds
+	 * intersect the given ray, ordered by the distance along the ray, at
+	 * which the ray enters their bounds. Since the bounds enclose each object,
+	 * the ray does not necessarily intersect the objects themselves.
+	 * 
+	 * @param ray	A ray
+	 * @return		The objects, whose bounds the ray intersects
+	 */
+	public synchronized ArrayList<WorldObject> queryRay(RRay ray) {
+		updateIndex();
+		return index.queryRay(ray);
+	}
+	
 	/**
 	 * Delete the given world object from the correct object list, if it exists
 	 * in the list.
@@ -203,7 +283,7 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 	 * and was referenced by at least one Part in the scenario</li>
 	 * </ul>
 	 */
-	public int removeWorldObject(WorldObject toRemove) {
+	public synchronized int removeWorldObject(WorldObject toRemove) {
 		if (toRemove == null) {
 			return 1;
 		}
@@ -214,6 +294,12 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		ret = (removed) ? 0 : 1;
 
 		if (removed) {
+			toRemove.setScenario(null);
+			index.remove(toRemove);
+			movedObjs.remove(toRemove);
+			editedObjs.remove(toRemove);
+			clearedSlots.add(slots.remove(toRemove));
+			
 			if (toRemove instanceof Fixture) {
 				/* Remove the reference from all Part objects associated with this
 				 * fixture */
@@ -267,6 +353,48 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		}
 	}
 	
+	/**
+	 * Reverts this scenario to the given snapshot of this scenario. The
+	 * objects added since the snapshot are removed, the objects removed since
+	 * the snapshot are added back and only the objects, whose states differ
+	 * from the snapshot, are modified.
+	 * 
+	 * @param s	A snapshot of this scenario
+	 */
+	public synchronized void restore(ScenarioSnapshot s) {
+		ScenarioSnapshot current = snapshot();
+		ArrayList<WOState> states = s.getStates();
+		Set<WorldObject> kept = Collections.newSetFromMap(
+				new IdentityHashMap<WorldObject, Boolean>());
+		
+		for (WOState state : states) {
+			kept.add(state.getObject());
+		}
+		
+		// Remove the objects added since the snapshot
+		for (WorldObject wo : new ArrayList<>(objList)) {
+			if (!kept.contains(wo)) {
+				removeWorldObject(wo);
+			}
+		}
+		
+		for (WOState state : states) {
+			WorldObject wo = state.getObject();
+			Integer slot = slots.get(wo);
+			
+			if (slot == null) {
+				addWorldObject(wo);
+				state.restore();
+				
+			} else if (current.get(slot) != state) {
+				state.restore();
+			}
+		}
+		
+		name = s.getName();
+		gravity = s.isGravity();
+	}
+	
 	/**
 	 * Sets the name of this scenario.
 	 * 
@@ -284,6 +412,38 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 	public int size() {
 		return objList.size();
 	}
+	
+	/**
+	 * Returns a snapshot of the current state of this scenario's objects.
+	 * Only the states of the objects, which were added or edited since the
+	 * previous snapshot, are copied. If no object changed, then the previous
+	 * snapshot is returned.
+	 * 
+	 * @return	A snapshot of this scenario
+	 */
+	public synchronized ScenarioSnapshot snapshot() {
+		if (!editedObjs.isEmpty() || !clearedSlots.isEmpty() ||
+				!name.equals(snapshot.getName()) ||
+				gravity != snapshot.isGravity()) {
+			
+			Map<Integer, WOState> changes = new HashMap<>();
+			
+			for (Integer slot : clearedSlots) {
+				changes.put(slot, null);
+			}
+			
+			for (WorldObject wo : editedObjs) {
+				changes.put(slots.get(wo), new WOState(wo));
+			}
+			
+			snapshot = snapshot.update(name, gravity, changes);
+			freeSlots.addAll(clearedSlots);
+			clearedSlots.clear();
+			editedObjs.clear();
+		}
+		
+		return snapshot;
+	}
 
 	public boolean toggleGravity() {
 		gravity = !gravity;
@@ -330,6 +490,28 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		return 0;
 	}
 	
+	/**
+	 * Records that the bounds of the given object, in this scenario, have
+	 * changed, so that the object is re-indexed before the next query.
+	 * 
+	 * @param wo	An object in this scenario
+	 */
+	synchronized void objectMoved(WorldObject wo) {
+		movedObjs.add(wo);
+		editedObjs.add(wo);
+	}
+	
+	/**
+	 * Records that the given object, in this scenario, was edited without
+	 * changing its bounds, so that the object's state is copied by the next
+	 * snapshot.
+	 * 
+	 * @param wo	An object in this scenario
+	 */
+	synchronized void objectEdited(WorldObject wo) {
+		editedObjs.add(wo);
+	}
+	
 	/**
 	 * Adds a number suffix to the given name, so that the name is unique
 	 * amongst the names of all the other world objects in the given list. So,
@@ -395,4 +577,16 @@ public class Scenario implements Iterable<WorldObject>, Cloneable {
 		// Concatenate the origin name with the new suffix
 		return String.format("%s%d", originName, suffix);
 	}
+	
+	/**
+	 * Updates the index entries of all the objects, which have moved since the
+	 * last update.
+	 */
+	private void updateIndex() {
+		for (WorldObject wo : movedObjs) {
+			index.put(wo, wo.getBounds());
+		}
+		
+		movedObjs.clear();
+	}
 }
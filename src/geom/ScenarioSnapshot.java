@@ -0,0 +1,216 @@
+package geom;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the state of a scenario's world objects. The
+ * states are held in fixed size chunks, which are shared between successive
+ * snapshots of a scenario. So, a snapshot only copies the states of the
+ * objects, which were edited since the previous snapshot, along with the
+ * chunks, which hold those states. Taking a snapshot of an unmodified
+ * scenario returns the previous snapshot.
+ *
+ * A snapshot can be restored to its scenario, or forked into a new scenario,
+ * whose objects share the geometry of the snapshot's objects.
+ *
+ * @author Joshua Hooker
+ */
+public final class ScenarioSnapshot {
+
+	/**
+	 * The number of object states in each chunk.
+	 */
+	private static final int CHUNK_SIZE = 32;
+
+	private final String name;
+	private final boolean gravity;
+
+	/**
+	 * The object states indexed by the objects' slots in the scenario. An
+	 * empty slot holds null.
+	 */
+	private final WOState[][] chunks;
+
+	/**
+	 * The number of object states in this snapshot.
+	 */
+	private final int size;
+
+	/**
+	 * Creates an empty snapshot of a scenario with the given name.
+	 *
+	 * @param name		The name of the scenario
+	 * @param gravity	Whether the scenario has gravity
+	 */
+	ScenarioSnapshot(String name, boolean gravity) {
+		this(name, gravity, new WOState[0][], 0);
+	}
+
+	private ScenarioSnapshot(String name, boolean gravity, WOState[][] chunks,
+			int size) {
+
+		this.name = name;
+		this.gravity = gravity;
+		this.chunks = chunks;
+		this.size = size;
+	}
+
+	/**
+	 * Creates a new scenario, with the given name, which holds a copy of each
+	 * object in this snapshot, in the object's state in this snapshot. The
+	 * copies share the geometry of the original objects and the copied parts
+	 * reference the copied fixtures.
+	 *
+	 * @param forkName	The name of the new scenario
+	 * @return			The new scenario
+	 */
+	public Scenario fork(String forkName) {
+		Scenario copy = new Scenario(forkName);
+		IdentityHashMap<Fixture, Fixture> fixtureCopies = new IdentityHashMap<>();
+		ArrayList<Part> parts = new ArrayList<>();
+		ArrayList<Fixture> parents = new ArrayList<>();
+
+		if (gravity) {
+			copy.toggleGravity();
+		}
+
+		for (WOState state : getStates()) {
+			try {
+				WorldObject obj = state.getObject();
+				WorldObject newObj = obj.clone();
+				state.applyTo(newObj);
+				copy.addWorldObject(newObj);
+
+				if (newObj instanceof Fixture) {
+					fixtureCopies.put((Fixture)obj, (Fixture)newObj);
+
+				} else if (newObj instanceof Part && state.getParent() != null) {
+					parts.add((Part)newObj);
+					parents.add(state.getParent());
+				}
+
+			} catch (NullPointerException NPEx) {/* Invalid source for model shape */}
+		}
+
+		// Update fixture references of the new parts
+		for (int idx = 0; idx < parts.size(); ++idx) {
+			Fixture parent = fixtureCopies.get(parents.get(idx));
+
+			if (parent != null) {
+				parent.addDependent(parts.get(idx));
+			}
+		}
+
+		return copy;
+	}
+
+	/**
+	 * @return	The name of the scenario at the time of this snapshot
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the states of the objects in this snapshot in the order of the
+	 * objects' slots in the scenario.
+	 *
+	 * @return	The object states of this snapshot
+	 */
+	public ArrayList<WOState> getStates() {
+		ArrayList<WOState> states = new ArrayList<>(size);
+
+		for (WOState[] chunk : chunks) {
+			for (WOState state : chunk) {
+				if (state != null) {
+					states.add(state);
+				}
+			}
+		}
+
+		return states;
+	}
+
+	/**
+	 * @return	Whether the scenario had gravity at the time of this snapshot
+	 */
+	public boolean isGravity() {
+		return gravity;
+	}
+
+	/**
+	 * @return	The number of objects in this snapshot
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the state in the given slot of this snapshot.
+	 *
+	 * @param slot	The slot of an object in the scenario
+	 * @return		The object's state, or null, if the slot is empty
+	 */
+	WOState get(int slot) {
+		int cdx = slot / CHUNK_SIZE;
+
+		if (cdx < chunks.length) {
+			return chunks[cdx][slot % CHUNK_SIZE];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Creates a snapshot, which holds the given changes to this snapshot's
+	 * states. Only the chunks, which hold a changed slot, are copied, all
+	 * other chunks are shared with this snapshot.
+	 *
+	 * @param newName		The name of the scenario
+	 * @param newGravity	Whether the scenario has gravity
+	 * @param changes		The new states mapped to by their slots, where a
+	 * 						null state empties its slot
+	 * @return				The new snapshot
+	 */
+	ScenarioSnapshot update(String newName, boolean newGravity,
+			Map<Integer, WOState> changes) {
+
+		int chunkNum = chunks.length;
+
+		for (Integer slot : changes.keySet()) {
+			chunkNum = Math.max(chunkNum, slot / CHUNK_SIZE + 1);
+		}
+
+		WOState[][] newChunks = new WOState[chunkNum][];
+		boolean[] copied = new boolean[chunkNum];
+		int newSize = size;
+
+		System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+
+		for (Map.Entry<Integer, WOState> change : changes.entrySet()) {
+			int slot = change.getKey();
+			int cdx = slot / CHUNK_SIZE;
+
+			if (!copied[cdx]) {
+				// Copy the chunk on its first change
+				newChunks[cdx] = (cdx < chunks.length) ? chunks[cdx].clone()
+						: new WOState[CHUNK_SIZE];
+				copied[cdx] = true;
+			}
+
+			WOState prev = newChunks[cdx][slot % CHUNK_SIZE];
+			newChunks[cdx][slot % CHUNK_SIZE] = change.getValue();
+
+			if (prev == null && change.getValue() != null) {
+				++newSize;
+
+			} else if (prev != null && change.getValue() == null) {
+				--newSize;
+			}
+		}
+
+		return new ScenarioSnapshot(newName, newGravity, newChunks, newSize);
+	}
+}
@@ -0,0 +1,426 @@
+package geom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import processing.core.PVector;
+
+/**
+ * A uniform grid, stored as a spatial hash, which indexes world objects by
+ * their axis-aligned bounds. Queries only visit the cells, which overlap the
+ * query region, so their cost depends on the density of objects around the
+ * region rather than the total number of objects.
+ *
+ * @author Joshua Hooker
+ */
+class SpatialGrid {
+
+	/**
+	 * The edge length of a grid cell in world units (mm).
+	 */
+	private static final float CELL_SIZE = 250f;
+
+	/**
+	 * Objects, which overlap more than this many cells, are stored in a
+	 * separate list, which is checked by every query, rather than in the
+	 * grid.
+	 */
+	private static final int MAX_CELLS = 512;
+
+	/**
+	 * The maximum number of cells a ray traverses before the traversal is
+	 * stopped.
+	 */
+	private static final int MAX_RAY_STEPS = 4096;
+
+	/**
+	 * The indexed objects mapped to their bounds.
+	 */
+	private final IdentityHashMap<WorldObject, Entry> entries;
+
+	/**
+	 * The grid cells, which contain at least one object, keyed by their cell
+	 * indices.
+	 */
+	private final HashMap<Long, ArrayList<WorldObject>> cells;
+
+	/**
+	 * Objects too large to store in the grid.
+	 */
+	private final ArrayList<WorldObject> oversized;
+
+	/**
+	 * The range of cell indices, which have ever contained an object, used to
+	 * limit ray traversals.
+	 */
+	private int minX, minY, minZ, maxX, maxY, maxZ;
+
+	/**
+	 * Creates an empty grid.
+	 */
+	public SpatialGrid() {
+		entries = new IdentityHashMap<>();
+		cells = new HashMap<>();
+		oversized = new ArrayList<>();
+
+		minX = minY = minZ = Integer.MAX_VALUE;
+		maxX = maxY = maxZ = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Removes all objects from this grid.
+	 */
+	public void clear() {
+		entries.clear();
+		cells.clear();
+		oversized.clear();
+
+		minX = minY = minZ = Integer.MAX_VALUE;
+		maxX = maxY = maxZ = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Adds the given object with the given bounds to this grid, or updates
+	 * the bounds of the object, if it is already in this grid.
+	 *
+	 * @param wo		The object to index
+	 * @param bounds	The object's bounds: {minX, minY, minZ, maxX, maxY,
+	 * 					maxZ}
+	 */
+	public void put(WorldObject wo, float[] bounds) {
+		Entry prev = entries.get(wo);
+		Entry e = new Entry(bounds);
+
+		if (prev != null) {
+			if (prev.sameCells(e)) {
+				// The object remains in the same cells
+				prev.bounds = bounds;
+				return;
+			}
+
+			remove(wo);
+		}
+
+		entries.put(wo, e);
+
+		if (e.isOversized()) {
+			oversized.add(wo);
+			return;
+		}
+
+		for (int x = e.x0; x <= e.x1; ++x) {
+			for (int y = e.y0; y <= e.y1; ++y) {
+				for (int z = e.z0; z <= e.z1; ++z) {
+					Long key = key(x, y, z);
+					ArrayList<WorldObject> cell = cells.get(key);
+
+					if (cell == null) {
+						cell = new ArrayList<>(4);
+						cells.put(key, cell);
+					}
+
+					cell.add(wo);
+				}
+			}
+		}
+
+		minX = Math.min(minX, e.x0);
+		minY = Math.min(minY, e.y0);
+		minZ = Math.min(minZ, e.z0);
+		maxX = Math.max(maxX, e.x1);
+		maxY = Math.max(maxY, e.y1);
+		maxZ = Math.max(maxZ, e.z1);
+	}
+
+	/**
+	 * Returns the objects, whose bounds overlap the given box.
+	 *
+	 * @param min	The minimum corner of the box
+	 * @param max	The maximum corner of the box
+	 * @return		The objects overlapping the box
+	 */
+	public ArrayList<WorldObject> queryBox(PVector min, PVector max) {
+		ArrayList<WorldObject> found = new ArrayList<>();
+		Set<WorldObject> seen = Collections.newSetFromMap(
+				new IdentityHashMap<WorldObject, Boolean>());
+
+		for (WorldObject wo : oversized) {
+			if (entries.get(wo).overlaps(min, max)) {
+				found.add(wo);
+			}
+		}
+
+		int x0 = Math.max(cell(min.x), minX), x1 = Math.min(cell(max.x), maxX);
+		int y0 = Math.max(cell(min.y), minY), y1 = Math.min(cell(max.y), maxY);
+		int z0 = Math.max(cell(min.z), minZ), z1 = Math.min(cell(max.z), maxZ);
+
+		long cellCount = (long)(x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+
+		if (x1 < x0 || y1 < y0 || z1 < z0) {
+			return found;
+
+		} else if (cellCount > cells.size()) {
+			// Fewer occupied cells than cells in the box
+			for (ArrayList<WorldObject> cell : cells.values()) {
+				addOverlapping(cell, min, max, seen, found);
+			}
+
+			return found;
+		}
+
+		for (int x = x0; x <= x1; ++x) {
+			for (int y = y0; y <= y1; ++y) {
+				for (int z = z0; z <= z1; ++z) {
+					ArrayList<WorldObject> cell = cells.get(key(x, y, z));
+
+					if (cell != null) {
+						addOverlapping(cell, min, max, seen, found);
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Returns the objects, whose bounds may intersect the given frustum.
+	 *
+	 * @param f	A view frustum
+	 * @return	The objects, which may be inside the frustum
+	 */
+	public ArrayList<WorldObject> queryFrustum(Frustum f) {
+		PVector[] fBounds = f.getBounds();
+		ArrayList<WorldObject> candidates = queryBox(fBounds[0], fBounds[1]);
+		ArrayList<WorldObject> found = new ArrayList<>(candidates.size());
+
+		for (WorldObject wo : candidates) {
+			float[] b = entries.get(wo).bounds;
+
+			if (f.intersects(new PVector(b[0], b[1], b[2]),
+					new PVector(b[3], b[4], b[5]))) {
+
+				found.add(wo);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Returns the objects, whose bounds intersect the given ray, ordered by
+	 * the distance along the ray, at which the ray enters their bounds.
+	 *
+	 * @param ray	A ray
+	 * @return		The objects, whose bounds intersect the ray
+	 */
+	public ArrayList<WorldObject> queryRay(RRay ray) {
+		PVector o = ray.getOrigin();
+		PVector d = ray.getDirection();
+		ArrayList<WorldObject> found = new ArrayList<>();
+		final IdentityHashMap<WorldObject, Float> entryDist = new IdentityHashMap<>();
+
+		for (WorldObject wo : oversized) {
+			float t = entries.get(wo).rayEntry(o, d);
+
+			if (t >= 0f) {
+				entryDist.put(wo, t);
+				found.add(wo);
+			}
+		}
+
+		if (!cells.isEmpty()) {
+			// Traverse the grid cells along the ray (Amanatides and Woo)
+			int x = cell(o.x), y = cell(o.y), z = cell(o.z);
+			int stepX = (d.x > 0f) ? 1 : -1;
+			int stepY = (d.y > 0f) ? 1 : -1;
+			int stepZ = (d.z > 0f) ? 1 : -1;
+
+			float tDeltaX = (d.x != 0f) ? CELL_SIZE / Math.abs(d.x) : Float.POSITIVE_INFINITY;
+			float tDeltaY = (d.y != 0f) ? CELL_SIZE / Math.abs(d.y) : Float.POSITIVE_INFINITY;
+			float tDeltaZ = (d.z != 0f) ? CELL_SIZE / Math.abs(d.z) : Float.POSITIVE_INFINITY;
+
+			float tMaxX = (d.x != 0f) ? (((stepX > 0) ? x + 1 : x) * CELL_SIZE - o.x) / d.x : Float.POSITIVE_INFINITY;
+			float tMaxY = (d.y != 0f) ? (((stepY > 0) ? y + 1 : y) * CELL_SIZE - o.y) / d.y : Float.POSITIVE_INFINITY;
+			float tMaxZ = (d.z != 0f) ? (((stepZ > 0) ? z + 1 : z) * CELL_SIZE - o.z) / d.z : Float.POSITIVE_INFINITY;
+
+			for (int step = 0; step < MAX_RAY_STEPS; ++step) {
+				if ((stepX > 0 && x > maxX) || (stepX < 0 && x < minX) ||
+						(stepY > 0 && y > maxY) || (stepY < 0 && y < minY) ||
+						(stepZ > 0 && z > maxZ) || (stepZ < 0 && z < minZ)) {
+					// The ray has left the occupied region of the grid
+					break;
+				}
+
+				ArrayList<WorldObject> cell = cells.get(key(x, y, z));
+
+				if (cell != null) {
+					for (WorldObject wo : cell) {
+						if (!entryDist.containsKey(wo)) {
+							float t = entries.get(wo).rayEntry(o, d);
+							entryDist.put(wo, t);
+
+							if (t >= 0f) {
+								found.add(wo);
+							}
+						}
+					}
+				}
+
+				if (tMaxX < tMaxY && tMaxX < tMaxZ) {
+					x += stepX;
+					tMaxX += tDeltaX;
+
+				} else if (tMaxY < tMaxZ) {
+					y += stepY;
+					tMaxY += tDeltaY;
+
+				} else {
+					z += stepZ;
+					tMaxZ += tDeltaZ;
+				}
+			}
+		}
+
+		found.sort((WorldObject a, WorldObject b) ->
+				Float.compare(entryDist.get(a), entryDist.get(b)));
+
+		return found;
+	}
+
+	/**
+	 * Removes the given object from this grid.
+	 *
+	 * @param wo	The object to remove
+	 */
+	public void remove(WorldObject wo) {
+		Entry e = entries.remove(wo);
+
+		if (e == null) {
+			return;
+		}
+
+		if (e.isOversized()) {
+			oversized.remove(wo);
+			return;
+		}
+
+		for (int x = e.x0; x <= e.x1; ++x) {
+			for (int y = e.y0; y <= e.y1; ++y) {
+				for (int z = e.z0; z <= e.z1; ++z) {
+					Long key = key(x, y, z);
+					ArrayList<WorldObject> cell = cells.get(key);
+
+					if (cell != null) {
+						cell.remove(wo);
+
+						if (cell.isEmpty()) {
+							cells.remove(key);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the objects in the given cell, which overlap the given box and are
+	 * not in the given set, to the given list and set.
+	 */
+	private void addOverlapping(ArrayList<WorldObject> cell, PVector min,
+			PVector max, Set<WorldObject> seen, ArrayList<WorldObject> found) {
+
+		for (WorldObject wo : cell) {
+			if (seen.add(wo) && entries.get(wo).overlaps(min, max)) {
+				found.add(wo);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the cell containing the given coordinate.
+	 */
+	private static int cell(float coord) {
+		return (int)Math.floor(coord / CELL_SIZE);
+	}
+
+	/**
+	 * Packs the given cell indices into a single key. Each index is limited to
+	 * 21 bits, which covers well over the range of positions allowed for world
+	 * objects.
+	 */
+	private static long key(int x, int y, int z) {
+		return ((x & 0x1FFFFFL) << 42) | ((y & 0x1FFFFFL) << 21) | (z & 0x1FFFFFL);
+	}
+
+	/**
+	 * The bounds of an indexed object and the range of cells it overlaps.
+	 */
+	private static class Entry {
+
+		private float[] bounds;
+		private final int x0, y0, z0, x1, y1, z1;
+
+		private Entry(float[] bounds) {
+			this.bounds = bounds;
+			x0 = cell(bounds[0]);
+			y0 = cell(bounds[1]);
+			z0 = cell(bounds[2]);
+			x1 = cell(bounds[3]);
+			y1 = cell(bounds[4]);
+			z1 = cell(bounds[5]);
+		}
+
+		private boolean isOversized() {
+			return (long)(x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1) > MAX_CELLS;
+		}
+
+		private boolean overlaps(PVector min, PVector max) {
+			return bounds[0] <= max.x && bounds[3] >= min.x &&
+					bounds[1] <= max.y && bounds[4] >= min.y &&
+					bounds[2] <= max.z && bounds[5] >= min.z;
+		}
+
+		/**
+		 * Returns the distance along the given ray, at which the ray enters
+		 * these bounds, 0 if the ray's origin is inside the bounds, or -1 if
+		 * the ray misses the bounds.
+		 */
+		private float rayEntry(PVector o, PVector d) {
+			float tNear = 0f, tFar = Float.POSITIVE_INFINITY;
+			float[] origin = { o.x, o.y, o.z };
+			float[] dir = { d.x, d.y, d.z };
+
+			for (int axis = 0; axis < 3; ++axis) {
+				float lo = bounds[axis], hi = bounds[axis + 3];
+
+				if (dir[axis] == 0f) {
+					if (origin[axis] < lo || origin[axis] > hi) {
+						return -1f;
+					}
+
+				} else {
+					float t0 = (lo - origin[axis]) / dir[axis];
+					float t1 = (hi - origin[axis]) / dir[axis];
+
+					tNear = Math.max(tNear, Math.min(t0, t1));
+					tFar = Math.min(tFar, Math.max(t0, t1));
+
+					if (tNear > tFar) {
+						return -1f;
+					}
+				}
+			}
+
+			return tNear;
+		}
+
+		private boolean sameCells(Entry e) {
+			return x0 == e.x0 && y0 == e.y0 && z0 == e.z0 && x1 == e.x1 &&
+					y1 == e.y1 && z1 == e.z1;
+		}
+	}
+}
@@ -1,7 +0,0 @@
-package geom;
-import processing.core.PVector;
-
-public class Triangle {
-	// normal, vertex 1, vertex 2, vertex 3
-	public PVector[] components = new PVector[4];
-}
\ No newline at end of file
@@ -0,0 +1,155 @@
+package geom;
+
+import enums.DimType;
+import global.Fields;
+import processing.core.PVector;
+
+/**
+ * An immutable copy of the editable state of a world object: its name, local
+ * coordinates, shape dimensions and, for a part, its default coordinates,
+ * bounding box dimensions and fixture reference. A state holds a reference to
+ * its world object, but never a copy of the object's shape, so the object's
+ * geometry is shared by all of its states.
+ *
+ * @author Joshua Hooker
+ */
+public final class WOState {
+
+	/**
+	 * The world object, whose state this is.
+	 */
+	private final WorldObject obj;
+
+	private final String name;
+	private final CoordinateSystem local;
+
+	/**
+	 * The dimensions of the object's shape in the order defined by
+	 * dimTypesOf() for the shape.
+	 */
+	private final float[] dims;
+
+	/**
+	 * The part's default coordinates, or null, if the object is not a part.
+	 */
+	private final CoordinateSystem def;
+
+	/**
+	 * The dimensions of the part's bounding box, or null, if the object is
+	 * not a part.
+	 */
+	private final PVector obbDims;
+
+	/**
+	 * The part's fixture reference, or null, if the object is not a part or
+	 * the part has no fixture reference.
+	 */
+	private final Fixture parent;
+
+	/**
+	 * Copies the current state of the given world object.
+	 *
+	 * @param wo	The world object, whose state to copy
+	 */
+	public WOState(WorldObject wo) {
+		obj = wo;
+		name = wo.getName();
+		local = new CoordinateSystem(wo.getLocalCenter().copy(),
+				wo.getLocalOrientation().copy());
+
+		RShape form = wo.getModel();
+		DimType[] dimTypes = dimTypesOf(form);
+		dims = new float[dimTypes.length];
+
+		for (int idx = 0; idx < dims.length; ++idx) {
+			dims[idx] = form.getDim(dimTypes[idx]);
+		}
+
+		if (wo instanceof Part) {
+			Part p = (Part)wo;
+			def = new CoordinateSystem(p.getDefaultCenter().copy(),
+					p.getDefaultOrientation().copy());
+			obbDims = p.getOBBDims().copy();
+			parent = p.getParent();
+
+		} else {
+			def = null;
+			obbDims = null;
+			parent = null;
+		}
+	}
+
+	/**
+	 * Returns the dimensions, which define the size of the given shape.
+	 *
+	 * @param form	A world object's shape
+	 * @return		The types of the shape's dimensions
+	 */
+	private static DimType[] dimTypesOf(RShape form) {
+		if (form instanceof RBox) {
+			return new DimType[] { DimType.LENGTH, DimType.HEIGHT,
+					DimType.WIDTH };
+
+		} else if (form instanceof RCylinder) {
+			return new DimType[] { DimType.RADIUS, DimType.HEIGHT };
+
+		} else if (form instanceof ComplexShape) {
+			return new DimType[] { DimType.SCALE };
+		}
+
+		return new DimType[0];
+	}
+
+	/**
+	 * @return	The world object, whose state this is
+	 */
+	public WorldObject getObject() {
+		return obj;
+	}
+
+	/**
+	 * @return	The part's fixture reference in this state, or null
+	 */
+	public Fixture getParent() {
+		return parent;
+	}
+
+	/**
+	 * Sets the given world object, which must be a copy of this state's
+	 * object, to this state. The given object's fixture reference is not
+	 * modified.
+	 *
+	 * @param wo	A copy of this state's world object
+	 */
+	void applyTo(WorldObject wo) {
+		wo.setName(name);
+
+		RShape form = wo.getModel();
+		DimType[] dimTypes = dimTypesOf(form);
+
+		for (int idx = 0; idx < dims.length && idx < dimTypes.length; ++idx) {
+			form.setDim(dims[idx], dimTypes[idx]);
+		}
+
+		if (wo instanceof Part) {
+			Part p = (Part)wo;
+			p.setDefaultCenter(def.getOrigin());
+			p.setDefaultOrientation(def.getAxes());
+			p.setOBBDimenions(obbDims);
+		}
+
+		wo.setLocalCoordinates(local.getOrigin(), local.getAxes());
+		wo.updateBounds();
+	}
+
+	/**
+	 * Reverts this state's world object to this state.
+	 */
+	void restore() {
+		if (obj instanceof Part && ((Part)obj).getParent() != parent) {
+			Fields.setWODependency(parent, (Part)obj);
+		}
+
+		applyTo(obj);
+	}
+}
@@ -17,6 +17,12 @@ public abstract class WorldObject implements Cloneable {
 	private RShape model;
 	private String name;
 	
+	/**
+	 * The scenario, which contains this object, if any. The scenario is
+	 * notified when the bounds of this object change.
+	 */
+	private Scenario scenario;
+	
 	public WorldObject() {
 		name = "Object";
 		model = new RBox();
@@ -194,6 +200,34 @@ public abstract class WorldObject implements Cloneable {
 		g.popMatrix();
 	}
 
+	/**
+	 * Returns the axis-aligned bounds of this object in world space.
+	 * 
+	 * @return	{minX, minY, minZ, maxX, maxY, maxZ}
+	 */
+	public float[] getBounds() {
+		return boundsOf(getVolume());
+	}
+	
+	/**
+	 * Returns the convex volume occupied by this world object, which is used
+	 * for distance queries. The convex hull of a model is used for complex
+	 * shapes, otherwise a box enclosing the object's shape is used. The volume
+	 * references this object's current position and orientation.
+	 * 
+	 * @return	The volume of this world object
+	 */
+	public ConvexVolume getVolume() {
+		if (model instanceof ComplexShape) {
+			return new MeshVolume((ComplexShape)model,
+					localOrientation.getOrigin(), localOrientation.getAxes());
+		}
+		
+		PVector dims = model.getDims();
+		return new BoundingBox(new RBox(Fields.OBB_DEFAULT, dims.x, dims.y,
+				dims.z), localOrientation);
+	}
+
 	// Getter and Setter methods for the World Object's local orientation, name, and form
 
 	public PVector getLocalCenter() {
@@ -229,6 +263,7 @@ public abstract class WorldObject implements Cloneable {
 	 */
 	public void setLocalCenter(PVector newCenter) {
 		localOrientation.setOrigin(newCenter);
+		updateBounds();
 	}
 	
 	/**
@@ -240,6 +275,7 @@ public abstract class WorldObject implements Cloneable {
 	public void setLocalCoordinates(PVector newCenter, RMatrix newAxes) {
 		localOrientation.setOrigin(newCenter);
 		localOrientation.setAxes(newAxes);
+		updateBounds();
 	}
 	
 	/**
@@ -249,9 +285,13 @@ public abstract class WorldObject implements Cloneable {
 	 */
 	public void setLocalOrientation(RMatrix newAxes) {
 		localOrientation.setAxes(newAxes);
+		updateBounds();
 	}
 
-	public void setName(String newName) { name = newName; }
+	public void setName(String newName) {
+		name = newName;
+		updateState();
+	}
 	
 	/**
 	 * Moves the world object's center position by the given x, y, z
@@ -268,6 +308,28 @@ public abstract class WorldObject implements Cloneable {
 		center.x = RMath.clamp(center.x + dx, -9999f, 9999f);
 		center.y = RMath.clamp(center.y + dy, -9999f, 9999f);
 		center.z = RMath.clamp(center.z + dz, -9999f, 9999f);
+		updateBounds();
+	}
+	
+	/**
+	 * Notifies the scenario containing this object that the bounds of this
+	 * object have changed. This must be called after the object is moved, or
+	 * the dimensions of its shape are modified.
+	 */
+	public void updateBounds() {
+		if (scenario != null) {
+			scenario.objectMoved(this);
+		}
+	}
+	
+	/**
+	 * Notifies the scenario containing this object that a property of this
+	 * object, which does not affect its bounds, has changed.
+	 */
+	protected void updateState() {
+		if (scenario != null) {
+			scenario.objectEdited(this);
+		}
 	}
 	
 	/**
@@ -294,5 +356,40 @@ public abstract class WorldObject implements Cloneable {
 			// update z value
 			center.z = z;
 		}
+		
+		updateBounds();
+	}
+	
+	/**
+	 * Returns the axis-aligned bounds, which enclose all the given volumes.
+	 * 
+	 * @param vols	The volumes to enclose
+	 * @return		{minX, minY, minZ, maxX, maxY, maxZ}
+	 */
+	public static float[] boundsOf(ConvexVolume... vols) {
+		float[] bounds = new float[] {
+			Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+			-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE
+		};
+		
+		for (ConvexVolume vol : vols) {
+			bounds[0] = Math.min(bounds[0], vol.support(new PVector(-1f, 0f, 0f)).x);
+			bounds[1] = Math.min(bounds[1], vol.support(new PVector(0f, -1f, 0f)).y);
+			bounds[2] = Math.min(bounds[2], vol.support(new PVector(0f, 0f, -1f)).z);
+			bounds[3] = Math.max(bounds[3], vol.support(new PVector(1f, 0f, 0f)).x);
+			bounds[4] = Math.max(bounds[4], vol.support(new PVector(0f, 1f, 0f)).y);
+			bounds[5] = Math.max(bounds[5], vol.support(new PVector(0f, 0f, 1f)).z);
+		}
+		
+		return bounds;
+	}
+	
+	/**
+	 * Sets the scenario, which contains this object.
+	 * 
+	 * @param s	The scenario containing this object, or null
+	 */
+	void setScenario(Scenario s) {
+		scenario = s;
 	}
 }
\ No newline at end of file
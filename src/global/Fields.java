@@ -1,7 +1,5 @@
 package global;
 
-import java.util.HashMap;
-
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -9,7 +7,6 @@ import org.apache.commons.math3.linear.SingularValueDecomposition;
 
 import geom.CoordinateSystem;
 import geom.Fixture;
-import geom.Model;
 import geom.Part;
 import geom.RMatrix;
 import processing.core.PApplet;
@@ -53,6 +50,19 @@ public abstract class Fields {
 	 */
 	public static final int DPREG_NUM = 100;
 	
+	/**
+	 * Whether a robot's programs are saved to a single archive file, rather
+	 * than to a save file for each program. A robot, whose programs are
+	 * already archived, always uses its archive.
+	 */
+	public static final boolean PROG_ARCHIVE = false;
+	
+	/**
+	 * Whether saved programs are compressed, when compression makes them
+	 * smaller.
+	 */
+	public static final boolean PROG_COMPRESSION = true;
+	
 	/**
 	 * The y position of the floor of the world.
 	 */
@@ -211,7 +221,6 @@ public abstract class Fields {
 	 */
 	public static final RMatrix WORLD_AXES_MAT;
 	
-	private static final HashMap<String, Model> nameToModelMap;
 	
 	/**
 	 * Initialize the static fields.
@@ -281,16 +290,6 @@ public abstract class Fields {
 		bond = null;
 		
 		msgSystem = new MessageDisplay();
-		nameToModelMap = new HashMap<>();
-	}
-	
-	/**
-	 * TODO comment this
-	 * 
-	 * @param model
-	 */
-	public static void addModel(Model model) {
-		nameToModelMap.put(model.getFilename(), model);
 	}
 	
 	/**
@@ -781,17 +780,6 @@ public abstract class Fields {
 		
 	}
 	
-	/**
-	 * Returns a reference to the model with the given file name.
-	 * 
-	 * @param name	The name of the model's file
-	 * @return		The model associated with the given file name or null
-	 * 				if no such model exists.
-	 */
-	public static Model getModel(String name) {
-		return nameToModelMap.get(name);
-	}
-	
 	/**
 	 * Calls msgSystem.resetMessage().
 	 */
@@ -0,0 +1,217 @@
+package global;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import enums.ProfSection;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+/**
+ * Records the execution times of the sections of the application, defined by
+ * ProfSection, in fixed size ring buffers of nanosecond samples, so that the
+ * recent distribution of each section's time can be displayed or exported.
+ * Nothing is recorded, while the profiler is disabled. Samples can be
+ * recorded from any thread.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class Profiler {
+
+	/**
+	 * The number of the most recent samples kept for each section. This must
+	 * be a power of two.
+	 */
+	public static final int CAPACITY = 512;
+
+	/**
+	 * The number of samples recorded for each section since the profiler was
+	 * last cleared.
+	 */
+	private static final AtomicIntegerArray counts;
+
+	/**
+	 * Is the profiler recording samples?
+	 */
+	private static volatile boolean enabled;
+
+	/**
+	 * The sample ring buffers of each section indexed by the section's
+	 * ordinal.
+	 */
+	private static final long[][] samples;
+
+	/**
+	 * Holds the samples of a section, while their percentiles are computed.
+	 */
+	private static final long[] sorted;
+
+	static {
+		int numOfSections = ProfSection.values().length;
+
+		counts = new AtomicIntegerArray(numOfSections);
+		enabled = false;
+		samples = new long[numOfSections][CAPACITY];
+		sorted = new long[CAPACITY];
+	}
+
+	/**
+	 * Removes all recorded samples.
+	 */
+	public static void clear() {
+		for (int sdx = 0; sdx < counts.length(); ++sdx) {
+			counts.set(sdx, 0);
+		}
+	}
+
+	/**
+	 * Draws the rolling median and 99th percentile times of each section, in
+	 * milliseconds, with the top right corner of the table at the given
+	 * position.
+	 *
+	 * @param g	The graphics used to draw the table
+	 * @param x	The right edge of the table
+	 * @param y	The top edge of the table
+	 * @return	The bottom edge of the table
+	 */
+	public static int draw(PGraphics g, int x, int y) {
+		g.pushStyle();
+		g.textAlign(PConstants.RIGHT, PConstants.TOP);
+		g.fill(0);
+
+		g.text(String.format("%-18s %8s %8s", "Section", "p50 ms", "p99 ms"),
+				x, y);
+		y += 20;
+
+		for (ProfSection section : ProfSection.values()) {
+			long[] p = percentiles(section, 0.5f, 0.99f);
+
+			if (p != null) {
+				g.text(String.format("%-18s %8.3f %8.3f", section,
+						p[0] / 1e6, p[1] / 1e6), x, y);
+				y += 20;
+			}
+		}
+
+		g.popStyle();
+		return y;
+	}
+
+	/**
+	 * Records the time since the given start time for the given section.
+	 *
+	 * @param section	The section, which was timed
+	 * @param start		The start time returned by start()
+	 */
+	public static void end(ProfSection section, long start) {
+		if (enabled && start != 0L) {
+			int sdx = section.ordinal();
+			int idx = counts.getAndIncrement(sdx) & (CAPACITY - 1);
+			samples[sdx][idx] = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Writes the recorded samples of each section to the given file in the
+	 * form of comma-separated values. Each row holds the name of a section,
+	 * the sequence number of the sample and the sample's time in
+	 * nanoseconds, with the oldest samples first.
+	 *
+	 * @param dest			The file, to which to write the samples
+	 * @throws IOException	If the file cannot be written
+	 */
+	public static void exportCSV(File dest) throws IOException {
+		File dir = dest.getParentFile();
+
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException(String.format("Failed to create %s", dir));
+		}
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+				dest.toPath(), StandardCharsets.UTF_8))) {
+
+			out.println("section,sample,nanos");
+
+			for (ProfSection section : ProfSection.values()) {
+				int sdx = section.ordinal();
+				int count = counts.get(sdx);
+
+				for (int seq = Math.max(0, count - CAPACITY); seq < count; ++seq) {
+					out.printf("%s,%d,%d\n", section.name(), seq,
+							samples[sdx][seq & (CAPACITY - 1)]);
+				}
+			}
+
+			if (out.checkError()) {
+				throw new IOException(String.format("Failed to write %s",
+						dest));
+			}
+		}
+	}
+
+	/**
+	 * @return	Is the profiler recording samples?
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Computes the given percentiles of the recorded samples of the given
+	 * section. This should only be called from one thread at a time.
+	 *
+	 * @param section		A section of the application
+	 * @param fractions		The percentiles to compute in the range [0, 1]
+	 * @return				The sample at each percentile in nanoseconds, or
+	 * 						null, if no samples were recorded for the section
+	 */
+	public static long[] percentiles(ProfSection section, float... fractions) {
+		int sdx = section.ordinal();
+		int num = Math.min(counts.get(sdx), CAPACITY);
+
+		if (num == 0) {
+			return null;
+		}
+
+		System.arraycopy(samples[sdx], 0, sorted, 0, num);
+		Arrays.sort(sorted, 0, num);
+
+		long[] values = new long[fractions.length];
+
+		for (int fdx = 0; fdx < fractions.length; ++fdx) {
+			int idx = (int)Math.ceil(fractions[fdx] * num) - 1;
+			values[fdx] = sorted[Math.max(0, Math.min(num - 1, idx))];
+		}
+
+		return values;
+	}
+
+	/**
+	 * Starts or stops recording samples. The recorded samples are removed,
+	 * when recording starts.
+	 *
+	 * @param enable	Whether to record samples
+	 */
+	public static void setEnabled(boolean enable) {
+		if (enable && !enabled) {
+			clear();
+		}
+
+		enabled = enable;
+	}
+
+	/**
+	 * Returns the start time of a timed section.
+	 *
+	 * @return	The current time in nanoseconds, or 0, if the profiler is
+	 * 			disabled
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+}
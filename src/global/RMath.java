@@ -1,5 +1,7 @@
 package global;
 
+import java.util.function.Function;
+
 import core.RobotRun;
 import geom.Point;
 import geom.RMatrix;
@@ -88,6 +90,17 @@ public abstract class RMath {
 	 * approximation of the robot's motion for each joint in units per radian.
 	 */
 	public static RMatrix calculateJacobian(RoboticArm model, float[] angles, boolean posOffset) {
+		return calculateJacobian(model::getToolTipNative, angles, posOffset);
+	}
+	
+	/**
+	 * Calculates the Jacobian matrix of the given tool tip function.
+	 * 
+	 * @see #calculateJacobian(RoboticArm, float[], boolean)
+	 */
+	private static RMatrix calculateJacobian(Function<float[], Point> toolTip,
+			float[] angles, boolean posOffset) {
+		
 		float dAngle = DEG_TO_RAD;
 		if (!posOffset) {
 			dAngle *= -1;
@@ -95,14 +108,14 @@ public abstract class RMath {
 
 		float[][] J = new float[7][6];
 		// get current tooltip position
-		Point curRP = model.getToolTipNative(angles);
+		Point curRP = toolTip.apply(angles);
 		
 		// examine each segment of the arm
 		for (int i = 0; i < 6; i += 1) {
 			// test angular offset
 			angles[i] += dAngle;
 			// get updated tooltip position
-			Point newRP = model.getToolTipNative(angles);
+			Point newRP = toolTip.apply(angles);
 
 			if (curRP.orientation.dot(newRP.orientation) < 0f) {
 				// Use -q instead of q
@@ -516,66 +529,40 @@ public abstract class RMath {
 	 */
 	public static float[] inverseKinematics(RoboticArm model, float[] startAngles, PVector tgtPosition,
 			RQuaternion tgtOrientation) {
-
-		final int limit = 1000; // Max number of times to loop
-		int count = 0;
-
-		float[] angles = startAngles.clone();
-
-		while (count < limit) {
-			Point cPoint = model.getToolTipNative(angles);
-
-			if (tgtOrientation.dot(cPoint.orientation) < 0f) {
-				// Use -q instead of q
-				tgtOrientation.scalarMult(-1);
-			}
-
-			// calculate our translational offset from target
-			PVector tDelta = PVector.sub(tgtPosition, cPoint.position);
-			// calculate our rotational offset from target
-			RQuaternion rDelta = RQuaternion.addValues(tgtOrientation, RQuaternion.scalarMult(-1, cPoint.orientation));
-			float[] delta = new float[7];
-
-			delta[0] = tDelta.x;
-			delta[1] = tDelta.y;
-			delta[2] = tDelta.z;
-			delta[3] = rDelta.getValue(0);
-			delta[4] = rDelta.getValue(1);
-			delta[5] = rDelta.getValue(2);
-			delta[6] = rDelta.getValue(3);
-
-			float dist = PVector.dist(cPoint.position, tgtPosition);
-			float rDist = rDelta.magnitude();
-			// check whether our current position is within tolerance
-			if (dist <= (0.001f * model.getLiveSpeed()) &&
-					rDist <= (0.00005f * model.getLiveSpeed())) {
-				
-				return angles;
-			}
-
-			// calculate jacobian, 'J', and its inverse
-			RMatrix J = calculateJacobian(model, angles, true);
-			RMatrix JInverse = J.getInverse();
-
-			// calculate and apply joint angular changes
-			float[] dAngle = { 0, 0, 0, 0, 0, 0 };
-			for (int i = 0; i < 6; i += 1) {
-				for (int j = 0; j < 7; j += 1) {
-					dAngle[i] += JInverse.getEntry(i, j) * delta[j];
-				}
-				
-				angles[i] = RMath.mod2PI(angles[i] + dAngle[i]);
-			}
-			
-			++count;
-			
-			if (count == limit) {
-				//Fields.debug("IK\n%s\n", J.toString());
-			}
-		}
-
-		return null;
+		
+		return solveIK(model::getToolTipNative, model.getLiveSpeed(),
+				startAngles, tgtPosition, tgtOrientation);
+	}
+	
+	/**
+	 * Calculates the joint angles, which place the Robot in the given target
+	 * position and orientation, with the given tool tip offset and speed.
+	 * Unlike inverseKinematics(RoboticArm, float[], PVector, RQuaternion),
+	 * the Robot's active tool frame and speed are not read, so this can be
+	 * called on any thread.
+	 * 
+	 * @param model
+	 *            The Robot model of which to base the inverse kinematics off
+	 * @param tcpOffset
+	 *            The tool tip offset of the Robot (can be null)
+	 * @param liveSpeed
+	 *            The speed of the Robot, which scales the tolerance
+	 * @param startAngles
+	 *            The initial position of the Robot
+	 * @param tgtPosition
+	 *            The desired position of the Robot
+	 * @param tgtOrientation
+	 *            The desired orientation of the Robot
+	 */
+	public static float[] inverseKinematics(RoboticArm model, PVector tcpOffset,
+			int liveSpeed, float[] startAngles, PVector tgtPosition,
+			RQuaternion tgtOrientation) {
+		
+		return solveIK((float[] jointAngles) ->
+				model.getToolTipNative(jointAngles, tcpOffset), liveSpeed,
+				startAngles, tgtPosition, tgtOrientation);
 	}
+	
 
 	/**
 	 * Computes the inverse of the given row major 4x4 Homogeneous Coordinate Matrix.
@@ -1249,4 +1236,74 @@ public abstract class RMath {
 		
 		return RMath.eulerToMatrix(wpr);
 	}
+	
+	/**
+	 * Iteratively solves for the joint angles, which place the given tool tip
+	 * function at the given target position and orientation.
+	 * 
+	 * @see #inverseKinematics(RoboticArm, float[], PVector, RQuaternion)
+	 */
+	private static float[] solveIK(Function<float[], Point> toolTip,
+			int liveSpeed, float[] startAngles, PVector tgtPosition,
+			RQuaternion tgtOrientation) {
+
+		final int limit = 1000; // Max number of times to loop
+		int count = 0;
+
+		float[] angles = startAngles.clone();
+
+		while (count < limit) {
+			Point cPoint = toolTip.apply(angles);
+
+			if (tgtOrientation.dot(cPoint.orientation) < 0f) {
+				// Use -q instead of q
+				tgtOrientation.scalarMult(-1);
+			}
+
+			// calculate our translational offset from target
+			PVector tDelta = PVector.sub(tgtPosition, cPoint.position);
+			// calculate our rotational offset from target
+			RQuaternion rDelta = RQuaternion.addValues(tgtOrientation, RQuaternion.scalarMult(-1, cPoint.orientation));
+			float[] delta = new float[7];
+
+			delta[0] = tDelta.x;
+			delta[1] = tDelta.y;
+			delta[2] = tDelta.z;
+			delta[3] = rDelta.getValue(0);
+			delta[4] = rDelta.getValue(1);
+			delta[5] = rDelta.getValue(2);
+			delta[6] = rDelta.getValue(3);
+
+			float dist = PVector.dist(cPoint.position, tgtPosition);
+			float rDist = rDelta.magnitude();
+			// check whether our current position is within tolerance
+			if (dist <= (0.001f * liveSpeed) &&
+					rDist <= (0.00005f * liveSpeed)) {
+				
+				return angles;
+			}
+
+			// calculate jacobian, 'J', and its inverse
+			RMatrix J = calculateJacobian(toolTip, angles, true);
+			RMatrix JInverse = J.getInverse();
+
+			// calculate and apply joint angular changes
+			float[] dAngle = { 0, 0, 0, 0, 0, 0 };
+			for (int i = 0; i < 6; i += 1) {
+				for (int j = 0; j < 7; j += 1) {
+					dAngle[i] += JInverse.getEntry(i, j) * delta[j];
+				}
+				
+				angles[i] = RMath.mod2PI(angles[i] + dAngle[i]);
+			}
+			
+			++count;
+			
+			if (count == limit) {
+				//Fields.debug("IK\n%s\n", J.toString());
+			}
+		}
+
+		return null;
+	}
 }
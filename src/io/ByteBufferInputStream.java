@@ -0,0 +1,43 @@
+package io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer as a stream without copying them.
+ * Reading from the stream advances the buffer's position, so the buffer and
+ * the stream can be read in turn.
+ *
+ * @author Joshua Hooker
+ */
+class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buf;
+
+	ByteBufferInputStream(ByteBuffer buf) {
+		this.buf = buf;
+	}
+
+	@Override
+	public int available() {
+		return buf.remaining();
+	}
+
+	@Override
+	public int read() {
+		return buf.hasRemaining() ? (buf.get() & 0xff) : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+
+		} else if (!buf.hasRemaining()) {
+			return -1;
+		}
+
+		len = Math.min(len, buf.remaining());
+		buf.get(b, off, len);
+		return len;
+	}
+}
@@ -1,5 +1,10 @@
 package io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -7,9 +12,36 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import camera.RobotCamera;
 import core.RobotRun;
@@ -40,7 +72,8 @@ import geom.CameraObject;
 import geom.ComplexShape;
 import geom.CoordinateSystem;
 import geom.Fixture;
-import geom.Model;
+import geom.MeshData;
+import geom.ModelRegistry;
 import geom.Part;
 import geom.Point;
 import geom.RBox;
@@ -83,6 +116,106 @@ public abstract class DataManagement {
 	
 	private static String dataDirPath, errDirPath, tmpDirPath, scenarioDirPath;
 	
+	/**
+	 * The checksums of the contents of the save files, as of the last time
+	 * each file was read or written, mapped to by the files' absolute paths.
+	 * A save file, whose new contents match its checksum, is not rewritten.
+	 */
+	private static final ConcurrentHashMap<String, Long> fileChecksums;
+	
+	/**
+	 * The edit journals of the robots indexed by the robots' IDs, which are
+	 * opened, once the robots' data is loaded.
+	 */
+	private static final EditJournal[] journals;
+	
+	/**
+	 * The program archives of the robots indexed by the robots' IDs. A
+	 * robot, whose programs are saved to separate files, has no archive.
+	 */
+	private static final ProgramArchive[] archives;
+	
+	/**
+	 * The name of the archive, to which the text form of a robot's programs
+	 * can be exported.
+	 */
+	private static final String TXT_ARCHIVE = "programs.zip";
+	
+	/**
+	 * The thread, on which the edit journals are written and compacted.
+	 */
+	private static final ScheduledExecutorService journalWriter;
+	
+	/**
+	 * The threads, on which programs are loaded, saved and post-processed,
+	 * one per available processor. Idle threads are released, once all the
+	 * submitted tasks are finished.
+	 */
+	private static final ThreadPoolExecutor workers;
+	
+	/**
+	 * The preprocessed meshes of the application's .stl files.
+	 */
+	private static MeshCache meshCache;
+	
+	static {
+		fileChecksums = new ConcurrentHashMap<>();
+		journals = new EditJournal[2];
+		archives = new ProgramArchive[2];
+		journalWriter = Executors.newSingleThreadScheduledExecutor(
+				(Runnable r) -> {
+					Thread t = new Thread(r, "Edit Journal");
+					t.setDaemon(true);
+					return t;
+				});
+		
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+		workers = new ThreadPoolExecutor(threads, threads, 1L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), (Runnable r) -> {
+					Thread t = new Thread(r, "Data Worker");
+					t.setDaemon(true);
+					return t;
+				});
+		workers.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Reads an instruction from its encoding in the save file format.
+	 * 
+	 * @param robot	The robot, which owns the instruction
+	 * @param data	The encoding of an instruction
+	 * @return		The instruction, or null, if the encoding is invalid
+	 */
+	public static Instruction decodeInstruction(RoboticArm robot, byte[] data) {
+		try {
+			return loadInstruction(robot, new DataInputStream(
+					new ByteArrayInputStream(data)));
+			
+		} catch (IOException IOEx) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the encoding of the given instruction in the save file format.
+	 * 
+	 * @param inst	An instruction
+	 * @return		The instruction's encoding
+	 */
+	public static byte[] encodeInstruction(Instruction inst) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		try {
+			saveInstruction(inst, new DataOutputStream(out));
+			
+		} catch (IOException IOEx) {
+			// Writing to a byte array never fails
+			errLog(IOEx);
+		}
+		
+		return out.toByteArray();
+	}
+	
 	/**
 	 * Prints the given error's stack trace to a log file in the err sub
 	 * directory. The file's name is the month-day-year-hour-minute the
@@ -90,7 +223,7 @@ public abstract class DataManagement {
 	 * 
 	 * @param Ex	the error for which to print the stack trace
 	 */
-	public static void errLog(Exception Ex) {
+	public static void errLog(Throwable Ex) {
 		try {
 			File errDir = new File(errDirPath);
 			// create the err subdirectory
@@ -121,53 +254,81 @@ public abstract class DataManagement {
 		}
 	}
 	
+	/**
+	 * Exports each of the given robot's programs in the text form of the
+	 * pendant to its own file in the robot's export directory.
+	 * 
+	 * @param r	The robot, whose programs to export
+	 */
 	public static void exportProgsToTxt(RoboticArm r) {
-		String destDirPath = String.format("%s/robot%d/out", tmpDirPath,
-				r.RID);
-		File destDir = new File(destDirPath);
+		exportProgsToTxt(r, false);
+	}
+	
+	/**
+	 * Exports the given robot's programs in the text form of the pendant to
+	 * the robot's export directory. Each program is streamed to its file one
+	 * line at a time. Either each program is written to its own file, in
+	 * parallel on the data worker pool, or all the programs are written to a
+	 * single zip archive.
+	 * 
+	 * @param r			The robot, whose programs to export
+	 * @param archive	Whether to write the programs to a single archive
+	 */
+	public static void exportProgsToTxt(RoboticArm r, boolean archive) {
+		File destDir = new File(String.format("%s/robot%d/out", tmpDirPath,
+				r.RID));
 		
 		if (!destDir.exists()) {
-			destDir.mkdir();
+			destDir.mkdirs();
 		}
 		
-		for(int i = 0; i < r.numOfPrograms(); i += 1) {
-			Program p = r.getProgram(i);
-			File textfile = new File(destDirPath + "/" + p.getName() + ".txt");
-			
-			try {
-				PrintWriter out = new PrintWriter(textfile);
-				out.write(p.getName() + ":");
-				out.write(System.lineSeparator());
-				out.write(System.lineSeparator());
+		try {
+			if (archive) {
+				File dest = new File(destDir, TXT_ARCHIVE);
 				
-				for(int j = 0; j < p.getNumOfInst(); j += 1) {
-					Instruction instr = p.getInstAt(j);
-					String[] text = instr.toStringArray();
+				try (ZipOutputStream zipOut = new ZipOutputStream(
+						new BufferedOutputStream(new FileOutputStream(dest)))) {
 					
-					out.write((j + 1) + ") ");
+					Writer out = new OutputStreamWriter(zipOut,
+							StandardCharsets.UTF_8);
 					
-					for(int k = 0; k < text.length; k += 1) {
-						String str = text[k];
-						
-						if(str.compareTo("\n") != 0) {
-							out.write(str + " ");
-						}
+					for (int pdx = 0; pdx < r.numOfPrograms(); ++pdx) {
+						Program p = r.getProgram(pdx);
 						
-						if(instr instanceof SelectStatement && k >= 5 && (k - 1) % 4 == 0 && k < text.length - 1) {
-							out.write(System.lineSeparator());
-							out.write("    ");
-						}
+						zipOut.putNextEntry(new ZipEntry(p.getName() + ".txt"));
+						ProgramText.write(p, out);
+						out.flush();
+						zipOut.closeEntry();
 					}
+				}
+				
+			} else {
+				ArrayList<Callable<Void>> writers = new ArrayList<>();
+				
+				for (int pdx = 0; pdx < r.numOfPrograms(); ++pdx) {
+					final int idx = pdx;
 					
-					out.write(System.lineSeparator());
+					writers.add(() -> {
+						Program p = r.getProgram(idx);
+						File textfile = new File(destDir, p.getName() + ".txt");
+						
+						try (Writer out = Files.newBufferedWriter(
+								textfile.toPath(), StandardCharsets.UTF_8)) {
+							
+							ProgramText.write(p, out);
+						}
+						
+						return null;
+					});
 				}
 				
-				out.write("[END]");
-				out.close();
-			} 
-			catch (FileNotFoundException e) {
-				e.printStackTrace();
+				waitForTasks(submitTasks(writers));
 			}
+			
+		} catch (IOException IOEx) {
+			System.err.printf("Failed to export the programs of robot %d!\n",
+					r.RID);
+			errLog(IOEx);
 		}
 	}
 	
@@ -214,38 +375,50 @@ public abstract class DataManagement {
 		errDirPath = appRef.sketchPath("err/");
 		tmpDirPath = appRef.sketchPath("tmp/");
 		scenarioDirPath = appRef.sketchPath(tmpDirPath + "scenarios/");
+		meshCache = new MeshCache(new File(tmpDirPath + "meshes/"));
 	}
 	
 	/**
-	 * TODO comment this
+	 * Returns the mesh of the given .stl file. The mesh is read from its
+	 * entry in the mesh cache, if the entry is up to date, otherwise the file
+	 * is parsed and its cache entry is rebuilt. This method may be called on
+	 * any thread.
 	 * 
-	 * @param appRef
+	 * @param src		A .stl file
+	 * @param filename	The name of the file relative to the data directory
+	 * @return			The mesh of the file
+	 * @throws IOException	If the file cannot be read
 	 */
-	public static void loadState(RobotRun appRef) {
-		// Run threads to load each robot's data
-		Thread loadRobot0 = new Thread(new LoadRobotData(appRef.getRobot(0),
-				tmpDirPath));
-		Thread loadRobot1 = new Thread(new LoadRobotData(appRef.getRobot(1),
-				tmpDirPath));
-		
-		loadRobot0.start();
-		loadRobot1.start();
+	public static MeshData loadMesh(File src, String filename)
+			throws IOException {
 		
+		return meshCache.get(src, filename);
+	}
+	
+	/**
+	 * Loads the robots' data, the scenarios and the camera data from the
+	 * application's save files. Only the names of the robots' programs are
+	 * read from each robot's program index, and each program is loaded and
+	 * post-processed, when it is first used. Any programs, which are loaded
+	 * on start up, are post-processed on the data worker pool. A failure of
+	 * any worker task is logged, once all the tasks are finished.
+	 * 
+	 * @param appRef	The application
+	 */
+	public static void loadState(RobotRun appRef) {
 		loadScenarioBytes(appRef, scenarioDirPath);
 		
 		File activeFile = new File(tmpDirPath + "activeScenario.bin");
 		
 		try {
 			if (activeFile.exists()) {
-				FileInputStream in = new FileInputStream(activeFile);
-				DataInputStream dataIn = new DataInputStream(in);
+				DataInputStream dataIn = readFile(activeFile);
 				
 				// Read the name of the active scenario
 				String activeName = dataIn.readUTF();
 				appRef.setActiveScenario(activeName);
 				
 				dataIn.close();
-				in.close();
 			}
 		
 		} catch (IOException IOEx) {
@@ -256,38 +429,252 @@ public abstract class DataManagement {
 		
 		loadCameraData(appRef);
 		
-		// Wait for the robot data threads to finish
-		Fields.waitForThread(loadRobot0);
-		Fields.waitForThread(loadRobot1);
+		try {
+			// Load each robot's data
+			new LoadRobotData(appRef, appRef.getRobot(0), tmpDirPath).call();
+			new LoadRobotData(appRef, appRef.getRobot(1), tmpDirPath).call();
+			
+			/* Update the references of certain instructions of each loaded
+			 * program of each robot */
+			ArrayList<RobotPostProcessing> postProc = new ArrayList<>();
+			
+			for (int rdx = 0; rdx < 2; ++rdx) {
+				RoboticArm r = appRef.getRobot(rdx);
+				
+				for (int pdx = 0; pdx < r.numOfPrograms(); ++pdx) {
+					if (r.isProgramLoaded(pdx)) {
+						postProc.add(new RobotPostProcessing(appRef,
+								r.getProgram(pdx)));
+					}
+				}
+			}
+			
+			waitForTasks(submitTasks(postProc));
+			
+		} catch (IOException IOEx) {
+			System.err.println("Failed to load the robots' data!");
+			errLog(IOEx);
+		}
 		
-		/* Run a thread for each program of each robot to update references for
-		 * certain instructions */
-		int totalThreads = appRef.getRobot(0).numOfPrograms() +
-				appRef.getRobot(1).numOfPrograms();
-		Thread[] robotPostProc = new Thread[totalThreads]; 
-		int tdx = 0;
+		// Journal the edits made to each robot's data from now on
+		for (int rdx = 0; rdx < journals.length; ++rdx) {
+			journals[rdx] = EditJournal.open(appRef.getRobot(rdx),
+					new File(String.format("%srobot%d/", tmpDirPath, rdx)),
+					getArchive(rdx), journalWriter);
+		}
+	}
+	
+	/**
+	 * Returns the program archive of the robot with the given ID. The archive
+	 * is opened on first use, if the robot's programs are already archived,
+	 * or if new archives are enabled by Fields.PROG_ARCHIVE. While archives
+	 * are disabled, an existing archive is moved back to separate files by
+	 * exportArchive(), when the robot's data is loaded.
+	 * 
+	 * @param RID	The ID of a robot
+	 * @return		The robot's program archive, or null, if the robot's
+	 * 				programs are saved to separate files
+	 */
+	protected static synchronized ProgramArchive getArchive(int RID) {
+		if (archives[RID] == null) {
+			File dir = new File(String.format("%srobot%d/", tmpDirPath, RID));
+			File src = new File(dir, ProgramArchive.FILE_NAME);
+			
+			if (Fields.PROG_ARCHIVE || src.isFile()) {
+				try {
+					dir.mkdirs();
+					archives[RID] = ProgramArchive.open(src);
+					
+				} catch (IOException IOEx) {
+					System.err.printf("%s is corrupt!\n", src.getName());
+					errLog(IOEx);
+				}
+			}
+		}
 		
-		for (int rdx = 0; rdx < 2; ++rdx) {
-			RoboticArm r = appRef.getRobot(rdx);
+		return archives[RID];
+	}
+	
+	/**
+	 * Moves the programs of the given robot's archive, if it is open, back
+	 * to separate save files in the robot's programs directory. The archive
+	 * is removed, only once all of its programs are written, so an
+	 * interrupted export is repeated on the next start. If the export fails,
+	 * then the archive remains in use.
+	 * 
+	 * @param RID	The ID of a robot
+	 */
+	protected static synchronized void exportArchive(int RID) {
+		ProgramArchive archive = archives[RID];
+		
+		if (archive == null) {
+			return;
+		}
+		
+		File dir = new File(String.format("%srobot%d/", tmpDirPath, RID));
+		
+		try {
+			archive.exportFiles(new File(dir, "programs"));
+			archive.close();
+			archives[RID] = null;
+			new File(dir, ProgramArchive.FILE_NAME).delete();
 			
-			for (int pdx = 0; pdx < r.numOfPrograms(); ++pdx) {
-				RobotPostProcessing threadLogic = new RobotPostProcessing(appRef,
-						r, pdx);
-				robotPostProc[tdx] = new Thread(threadLogic);
-				robotPostProc[tdx].start();
-				++tdx;
+		} catch (IOException IOEx) {
+			// The programs are loaded from the archive instead
+			System.err.printf("Failed to export the programs of robot %d!\n",
+					RID);
+			errLog(IOEx);
+		}
+	}
+	
+	/**
+	 * Informs the edit journal of the given robot, that the given program
+	 * was loaded from its save file after the journal was opened.
+	 * 
+	 * @param robot	The robot, which owns the program
+	 * @param p		The program, which was loaded
+	 */
+	protected static void programLoaded(RoboticArm robot, Program p) {
+		EditJournal journal = journals[robot.RID];
+		
+		if (journal != null) {
+			journal.track(p);
+		}
+	}
+	
+	/**
+	 * Imports the programs in the text form of the pendant from the given
+	 * robot's export directory, which holds the text files or the archive
+	 * written by exportProgsToTxt(). Each file is streamed one line at a
+	 * time. An imported program replaces the contents of the robot's program
+	 * with the same name, so that the program's macros are kept. A file,
+	 * which cannot be imported, is reported and skipped.
+	 * 
+	 * @param appRef	The application
+	 * @param r			The robot, to which to import the programs
+	 * @return			The number of imported programs
+	 */
+	public static int importProgsFromTxt(RobotRun appRef, RoboticArm r) {
+		File srcDir = new File(String.format("%s/robot%d/out", tmpDirPath,
+				r.RID));
+		File[] files = srcDir.listFiles();
+		int count = 0;
+		
+		if (files == null) {
+			return 0;
+		}
+		
+		for (File f : files) {
+			try {
+				if (f.getName().equals(TXT_ARCHIVE)) {
+					try (ZipInputStream zipIn = new ZipInputStream(
+							new BufferedInputStream(new FileInputStream(f)))) {
+						
+						while (zipIn.getNextEntry() != null) {
+							count += importProgs(appRef, r, new BufferedReader(
+									new InputStreamReader(zipIn,
+											StandardCharsets.UTF_8)));
+						}
+					}
+					
+				} else if (f.getName().endsWith(".txt")) {
+					try (BufferedReader in = Files.newBufferedReader(
+							f.toPath(), StandardCharsets.UTF_8)) {
+						
+						count += importProgs(appRef, r, in);
+					}
+				}
+				
+			} catch (IOException IOEx) {
+				System.err.printf("%s cannot be imported!\n", f.getName());
+				errLog(IOEx);
 			}
 		}
 		
-		// Wait for all the threads to finish
-		for (Thread t : robotPostProc) {
-			Fields.waitForThread(t);
+		return count;
+	}
+	
+	/**
+	 * Reads each program in the text form from the given reader and adds it
+	 * to, or replaces the contents of the program with the same name of, the
+	 * given robot.
+	 */
+	private static int importProgs(RobotRun appRef, RoboticArm r,
+			BufferedReader in) throws IOException {
+		
+		int count = 0;
+		Program p;
+		
+		while ((p = ProgramText.read(appRef, r, in)) != null) {
+			Program existing = r.getProgram(p.getName());
+			
+			if (existing != null && r.isProgramFailed(existing)) {
+				// The imported program replaces a program, which failed to load
+				r.rmProg(existing);
+				existing = null;
+			}
+			
+			if (existing == null) {
+				if (r.addProgram(p) < 0) {
+					System.err.printf("%s cannot be added to robot %d!\n",
+							p.getName(), r.RID);
+					continue;
+				}
+				
+				existing = p;
+				
+			} else {
+				// Replace the contents of the existing program
+				existing.clearPositions();
+				
+				while (existing.getNumOfInst() > 0) {
+					existing.rmInstAt(existing.getNumOfInst() - 1);
+				}
+				
+				for (Integer idx : p.getPositionNums()) {
+					existing.setPosition(idx, p.getPosition(idx));
+				}
+				
+				for (int idx = 0; idx < p.getNumOfInst(); ++idx) {
+					existing.addInstAtEnd(p.getInstAt(idx));
+				}
+			}
+			
+			saveProgram(r.RID, existing);
+			++count;
 		}
+		
+		return count;
 	}
 	
 	public static int removeProgramFile(int RID, Program p) {
 		validateTmpDir();
 		
+		if (journals[RID] != null) {
+			journals[RID].removeProgram(p.getName());
+		}
+		
+		ProgramArchive archive = getArchive(RID);
+		
+		if (archive != null) {
+			if (!archive.contains(p.getName())) {
+				return 2;
+				
+			} else if (journals[RID] == null) {
+				try {
+					archive.update(Collections.emptyMap(),
+							Collections.singleton(p.getName()));
+					
+				} catch (IOException IOEx) {
+					IOEx.printStackTrace();
+					return 1;
+				}
+			}
+			
+			// The journal removes the program from the archive
+			return 0;
+		}
+		
 		File file = new File(String.format("%srobot%d/programs/%s.bin",
 				tmpDirPath, RID, p.getName()));
 		
@@ -315,13 +702,43 @@ public abstract class DataManagement {
 	}
 	
 	/**
-	 * TODO comment this
+	 * Saves the given program of the robot with the given ID. Once the
+	 * robot's edit journal is open, only the program's changes since it was
+	 * last saved are appended to the journal.
 	 * 
-	 * @param RID
-	 * @param p
-	 * @return
+	 * @param RID	The ID of the robot, which owns the program
+	 * @param p		The program to save
+	 * @return		0 if the program was saved, 1 if an error occurred
 	 */
 	public static int saveProgram(int RID, Program p) {
+		if (journals[RID] != null) {
+			journals[RID].commitProgram(p);
+			return 0;
+		}
+		
+		ProgramArchive archive = getArchive(RID);
+		
+		if (archive != null) {
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				DataOutputStream dataOut = new DataOutputStream(out);
+				
+				saveProgram(p, dataOut);
+				
+				dataOut.close();
+				archive.update(Collections.singletonMap(p.getName(),
+						out.toByteArray()), Collections.emptyList());
+				
+			} catch (IOException IOEx) {
+				System.err.printf("An error occured while saving %s\n",
+						p.getName());
+				IOEx.printStackTrace();
+				return 1;
+			}
+			
+			return 0;
+		}
+		
 		String dirPath = String.format("%srobot%d/programs", tmpDirPath, RID);
 		File destDir = new File(dirPath);
 		// Create the robot's programs directory if it does not exist
@@ -338,13 +755,13 @@ public abstract class DataManagement {
 				progFile.createNewFile();
 			}
 			
-			FileOutputStream out = new FileOutputStream(progFile);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 			
 			saveProgram(p, dataOut);
 			
 			dataOut.close();
-			out.close();
+			writeFile(progFile, out);
 			
 		} catch (IOException IOEx) {
 			System.err.println("An error occured while saving %s\n");
@@ -363,9 +780,41 @@ public abstract class DataManagement {
 	 */
 	public static void saveRobotData(RoboticArm robot, int dataFlag) {
 		validateTmpDir();
-		// Save the data for the given robot
-		SaveRobotData process = new SaveRobotData(robot, tmpDirPath, dataFlag);
-		process.run();
+		EditJournal journal = journals[robot.RID];
+		
+		if (journal != null) {
+			/* Journal the changes to the robot's programs, frames and
+			 * registers. A program, which is not loaded, is unchanged. */
+			if ((dataFlag & 0x1) != 0) {
+				for (int pdx = 0; pdx < robot.numOfPrograms(); ++pdx) {
+					if (robot.isProgramLoaded(pdx)) {
+						journal.commitProgram(robot.getProgram(pdx));
+					}
+				}
+			}
+			
+			if ((dataFlag & 0x2) != 0) {
+				journal.commitFrames(robot);
+			}
+			
+			if ((dataFlag & 0x4) != 0) {
+				journal.commitRegisters(robot);
+			}
+			
+			dataFlag &= ~0x7;
+		}
+		
+		if (dataFlag != 0) {
+			try {
+				// Save the data for the given robot
+				new SaveRobotData(robot, tmpDirPath, dataFlag).call();
+				
+			} catch (IOException IOEx) {
+				System.err.printf("Failed to save the data of robot %d!\n",
+						robot.RID);
+				errLog(IOEx);
+			}
+		}
 	}
 	
 	public static void saveScenario(Scenario s) {
@@ -378,13 +827,13 @@ public abstract class DataManagement {
 				dest.createNewFile();
 			}
 			
-			FileOutputStream out = new FileOutputStream(dest);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 			// Save the scenario data
 			saveScenario(s, dataOut);
 			
 			dataOut.close();
-			out.close();
+			writeFile(dest, out);
 			
 		} catch (IOException IOEx) {
 			// Issue with writing or opening a file
@@ -408,13 +857,13 @@ public abstract class DataManagement {
 					scenarioFile.createNewFile();
 				}
 				
-				FileOutputStream out = new FileOutputStream(scenarioFile);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
 				DataOutputStream dataOut = new DataOutputStream(out);
 				
 				dataOut.writeUTF(active.getName());
 				
 				dataOut.close();
-				out.close();
+				writeFile(scenarioFile, out);
 				
 			} catch (IOException IOEx) {
 				// Issue with writing or opening a file
@@ -432,13 +881,22 @@ public abstract class DataManagement {
 	 */
 	public static void saveState(RobotRun appRef) {
 		validateTmpDir();
-		// Run threads for saving each robot's data
-		Thread saveRobot0 = new Thread(new SaveRobotData(appRef.getRobot(0),
-				tmpDirPath, 14));
-		Thread saveRobot1 = new Thread(new SaveRobotData(appRef.getRobot(1),
-				tmpDirPath, 14));
-		saveRobot0.start();
-		saveRobot1.start();
+		
+		for (int rdx = 0; rdx < journals.length; ++rdx) {
+			RoboticArm r = appRef.getRobot(rdx);
+			
+			if (journals[rdx] != null) {
+				// Journal the changes to the robot's loaded programs
+				for (int pdx = 0; pdx < r.numOfPrograms(); ++pdx) {
+					if (r.isProgramLoaded(pdx)) {
+						journals[rdx].commitProgram(r.getProgram(pdx));
+					}
+				}
+			}
+			
+			// Save the robot's frames, registers and macros
+			saveRobotData(r, 14);
+		}
 		
 		Program activeProg = appRef.getActiveProg();
 		if (activeProg != null) {
@@ -457,13 +915,13 @@ public abstract class DataManagement {
 					scenarioFile.createNewFile();
 				}
 				
-				FileOutputStream out = new FileOutputStream(scenarioFile);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
 				DataOutputStream dataOut = new DataOutputStream(out);
 				
 				dataOut.writeUTF(activeScenario.getName());
 				
 				dataOut.close();
-				out.close();
+				writeFile(scenarioFile, out);
 				
 			} catch (IOException IOEx) {
 				// Issue with writing or opening a file
@@ -480,9 +938,33 @@ public abstract class DataManagement {
 		
 		saveCameraData(appRef, appRef.getRobotCamera());
 		
-		// Wait for the robot threads to finish
-		Fields.waitForThread(saveRobot0);
-		Fields.waitForThread(saveRobot1);
+		for (EditJournal journal : journals) {
+			if (journal != null) {
+				// Make the journaled edits durable
+				journal.flush();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the checksum of the contents of the given save file, as of the
+	 * last time the file was read or written.
+	 * 
+	 * @param file	A save file
+	 * @return		The file's checksum, or null, if the file was neither
+	 * 				read nor written
+	 */
+	protected static Long getChecksum(File file) {
+		return fileChecksums.get(file.getAbsolutePath());
+	}
+	
+	/**
+	 * Computes the CRC-32 checksum of the first len bytes of the given data.
+	 */
+	protected static long checksum(byte[] data, int len) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, len);
+		return crc.getValue();
 	}
 	
 	private static double[][] load2DDoubleArray(DataInputStream in) throws IOException {
@@ -515,8 +997,7 @@ public abstract class DataManagement {
 		}
 		
 		try {
-			FileInputStream in = new FileInputStream(camSave);
-			DataInputStream dataIn = new DataInputStream(in);
+			DataInputStream dataIn = readFile(camSave);
 			
 			boolean camEnable = dataIn.readBoolean();
 			robotRun.setRCamEnable(camEnable);
@@ -545,7 +1026,6 @@ public abstract class DataManagement {
 			}
 			
 			dataIn.close();
-			in.close();
 		} catch(FileNotFoundException e) {
 			e.printStackTrace();
 		} catch(IOException e) {
@@ -692,7 +1172,7 @@ public abstract class DataManagement {
 	
 	
 	
-	private static Instruction loadInstruction(RoboticArm robot, DataInputStream in)
+	protected static Instruction loadInstruction(RoboticArm robot, DataInputStream in)
 			throws IOException {
 		
 		Instruction inst = null;
@@ -763,7 +1243,9 @@ public abstract class DataManagement {
 			int tgtRID = in.readInt();
 			String pName = in.readUTF();
 			
-			inst = new CallInstruction(tgtRID, pName);
+			// The target program is resolved by name, when it is first used
+			inst = new CallInstruction(tgtRID, pName.equals("N/A") ? null :
+				pName);
 			inst.setIsCommented(isCommented);
 
 		} else if (instType == 8) {
@@ -898,9 +1380,12 @@ public abstract class DataManagement {
 
 		if (flag == 0) {
 			return null;
+			
+		} else if (flag == ProgramCodec.FORMAT_FLAG) {
+			return ProgramCodec.read(robot, in);
 		}
 		
-		// Read program name
+		// Read a program in the fixed width format of earlier versions
 		String name = in.readUTF();
 		Program prog = new Program(name);
 		int nReg;
@@ -1049,6 +1534,13 @@ public abstract class DataManagement {
 				loadThreads[idx].join();
 				
 				if (loadedScenarios[idx] != null) {
+					// Build the models of the scenario's complex shapes
+					for (WorldObject wo : loadedScenarios[idx]) {
+						if (wo.getModel() instanceof ComplexShape) {
+							((ComplexShape)wo.getModel()).buildModel();
+						}
+					}
+					
 					appRef.addScenario(loadedScenarios[idx]);
 				}
 				
@@ -1100,9 +1592,11 @@ public abstract class DataManagement {
 					throw new NullPointerException(error);
 				}
 				
-				// Creates a complex shape from the srcPath located in RobotRun/data/
-				Model model = Fields.getModel(srcPath);
-				shape = new ComplexShape(model, fill, scale);
+				/* Creates a complex shape from the srcPath located in
+				 * RobotRun/data/. The shape's model is built on the animation
+				 * thread, after the scenario is loaded. */
+				MeshData data = ModelRegistry.getMeshData(srcPath);
+				shape = new ComplexShape(data, fill, scale);
 			}
 		}
 
@@ -1246,6 +1740,38 @@ public abstract class DataManagement {
 		return wldObjFields;
 	}
 	
+	/**
+	 * Reads the entire given file into memory with a single read into a
+	 * buffer of the file's size, so that the data of the file can be parsed
+	 * without a read call for each value.
+	 * 
+	 * @param src	The file to read
+	 * @return		A stream of the file's data
+	 * @throws FileNotFoundException	If the file does not exist
+	 * @throws IOException				If the file cannot be read
+	 */
+	protected static DataInputStream readFile(File src) throws IOException {
+		try (FileInputStream in = new FileInputStream(src);
+				FileChannel channel = in.getChannel()) {
+			
+			long size = channel.size();
+			
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(String.format("%s is too large",
+						src.getName()));
+			}
+			
+			ByteBuffer data = ByteBuffer.allocate((int)size);
+			
+			while (data.hasRemaining() && channel.read(data) >= 0);
+			
+			fileChecksums.put(src.getAbsolutePath(), checksum(data.array(),
+					data.position()));
+			return new DataInputStream(new ByteArrayInputStream(data.array(),
+					0, data.position()));
+		}
+	}
+	
 	private static void save2DDoubleArray(double[][] list, DataOutputStream out) throws IOException {
 		if (list == null) {
 			// Write flag value
@@ -1282,7 +1808,7 @@ public abstract class DataManagement {
 		}
 		
 		try {
-			FileOutputStream out = new FileOutputStream(camSave);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 			
 			dataOut.writeBoolean(robotRun.isRCamEnable());
@@ -1315,7 +1841,7 @@ public abstract class DataManagement {
 			}
 			
 			dataOut.close();
-			out.close();
+			writeFile(camSave, out);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch(IOException e) {
@@ -1417,7 +1943,7 @@ public abstract class DataManagement {
 		}
 	}
 	
-	private static void saveInstruction(Instruction inst, DataOutputStream out)
+	protected static void saveInstruction(Instruction inst, DataOutputStream out)
 			throws IOException {
 
 		/* Each Instruction subclass MUST have its own saving code block
@@ -1485,11 +2011,11 @@ public abstract class DataManagement {
 				out.writeInt(c_inst.getTgtDevice().RID);
 			}
 			
-			if (c_inst.getProg() == null) {
+			if (c_inst.getTgtName() == null) {
 				out.writeUTF("N/A");
 				
 			} else {
-				out.writeUTF( c_inst.getProg().getName() );
+				out.writeUTF( c_inst.getTgtName() );
 			}
 
 		} else if (inst instanceof RegisterStatement) {
@@ -1632,27 +2158,26 @@ public abstract class DataManagement {
 			out.writeByte(0);
 
 		} else {
-			// Indicates a non-null value is saved
-			out.writeByte(1);
-
-			out.writeUTF(p.getName());
+			TreeMap<Integer, Point> positions = new TreeMap<>();
+			ArrayList<byte[]> insts = new ArrayList<>(p.getNumOfInst());
+			ByteArrayOutputStream instData = new ByteArrayOutputStream();
+			DataOutputStream instOut = new DataOutputStream(instData);
 
 			for (int pdx = 0; pdx < 1000; ++pdx) {
 				if (p.getPosition(pdx) != null) {
-					// Save the position with its respective index
-					out.writeInt(pdx);
-					savePoint(p.getPosition(pdx), out);
+					positions.put(pdx, p.getPosition(pdx));
 				}
 			}
 
-			// End of saved positions
-			out.writeInt(-1);
-
-			out.writeInt(p.getNumOfInst());
 			// Save each instruction
 			for (int idx = 0; idx < p.getNumOfInst(); ++idx) {
-				saveInstruction(p.getInstAt(idx), out);
+				instData.reset();
+				saveInstruction(p.getInstAt(idx), instOut);
+				insts.add(instData.toByteArray());
 			}
+
+			// Save the program in the compact format
+			ProgramCodec.write(p.getName(), positions, insts, out);
 		}
 	}
 
@@ -1895,4 +2420,165 @@ public abstract class DataManagement {
 			tmpDir.mkdir();
 		}
 	}
+	
+	/**
+	 * Replaces the given destination file with the given file by renaming it,
+	 * atomically, if the file system supports it.
+	 * 
+	 * @param src	The file, which replaces dest
+	 * @param dest	The file to replace
+	 * @throws IOException	If the file cannot be renamed
+	 */
+	protected static void replaceFile(File src, File dest) throws IOException {
+		fileChecksums.remove(dest.getAbsolutePath());
+		
+		try {
+			Files.move(src.toPath(), dest.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			
+		} catch (AtomicMoveNotSupportedException AMNSEx) {
+			Files.move(src.toPath(), dest.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Runs the given tasks on the data worker pool. The returned future
+	 * completes, once all the tasks are finished, with the tasks' results in
+	 * order, or with the failure of the first failed task, to which the
+	 * failures of the other tasks are added as suppressed exceptions. A task
+	 * must not wait on other tasks of the pool.
+	 * 
+	 * @param tasks	The tasks to run
+	 * @return		The pending results of the tasks
+	 */
+	protected static <T> Future<ArrayList<T>> submitTasks(
+			List<? extends Callable<T>> tasks) {
+		
+		ArrayList<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+		
+		for (Callable<T> task : tasks) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return task.call();
+					
+				} catch (Exception Ex) {
+					throw new CompletionException(Ex);
+				}
+			}, workers));
+		}
+		
+		return CompletableFuture.allOf(futures.toArray(
+				new CompletableFuture<?>[futures.size()])).handle(
+				(Void v, Throwable ignored) -> {
+					ArrayList<T> results = new ArrayList<>(futures.size());
+					Throwable failure = null;
+					
+					for (CompletableFuture<T> f : futures) {
+						try {
+							results.add(f.join());
+							
+						} catch (CompletionException CEx) {
+							Throwable cause = (CEx.getCause() != null) ?
+									CEx.getCause() : CEx;
+							
+							if (failure == null) {
+								failure = cause;
+								
+							} else if (failure != cause) {
+								failure.addSuppressed(cause);
+							}
+						}
+					}
+					
+					if (failure != null) {
+						throw new CompletionException(failure);
+					}
+					
+					return results;
+				});
+	}
+	
+	/**
+	 * Waits for the given tasks, which were submitted by submitTasks(), to
+	 * finish and returns their results. The failure of a task is rethrown.
+	 * 
+	 * @param tasks	The pending results of a set of tasks
+	 * @return		The results of the tasks in order
+	 * @throws IOException	If a task failed with an IOException or another
+	 * 						checked exception
+	 */
+	protected static <T> ArrayList<T> waitForTasks(Future<ArrayList<T>> tasks)
+			throws IOException {
+		
+		boolean interrupted = false;
+		
+		try {
+			while (true) {
+				try {
+					return tasks.get();
+					
+				} catch (InterruptedException IEx) {
+					// The tasks must finish before the caller continues
+					interrupted = true;
+				}
+			}
+			
+		} catch (ExecutionException EEx) {
+			Throwable cause = EEx.getCause();
+			
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+				
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+				
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			
+			throw new IOException(cause);
+			
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the given data, which was serialized in memory, to the given
+	 * file with a single write call, replacing the file's contents. The file
+	 * is left untouched, if its contents already match the given data, as of
+	 * the last time the file was read or written, so that saving unmodified
+	 * programs, registers, frames and scenarios costs no file I/O.
+	 * 
+	 * @param dest	The file to write
+	 * @param data	The data to write to the file
+	 * @throws FileNotFoundException	If the file cannot be opened
+	 * @throws IOException				If the file cannot be written
+	 */
+	protected static void writeFile(File dest, ByteArrayOutputStream data)
+			throws IOException {
+		
+		byte[] bytes = data.toByteArray();
+		String key = dest.getAbsolutePath();
+		long checksum = checksum(bytes, bytes.length);
+		Long savedChecksum = fileChecksums.remove(key);
+		
+		if (savedChecksum != null && savedChecksum == checksum &&
+				dest.isFile() && dest.length() == bytes.length) {
+			
+			// The file has not changed since it was last saved
+			fileChecksums.put(key, checksum);
+			return;
+		}
+		
+		try (FileOutputStream out = new FileOutputStream(dest)) {
+			out.write(bytes);
+		}
+		
+		fileChecksums.put(key, checksum);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,1205 @@
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import geom.Point;
+import global.Fields;
+import programming.Instruction;
+import programming.Program;
+import regs.DataRegister;
+import regs.PositionRegister;
+import robot.RoboticArm;
+
+/**
+ * An append-only journal of the edits made to a robot's programs, registers
+ * and frames. The edits are found by comparing the serialized form of each
+ * instruction, position, register and frame with the form, which was last
+ * journaled, so that only the inserted, removed and replaced elements are
+ * recorded. Records are buffered and written to the journal file together,
+ * after a short delay, so that a burst of edits costs a single write and
+ * sync (group commit).
+ *
+ * Once the journal grows large enough, it is compacted into the robot's
+ * program, register and frame save files in the background. Each save file
+ * is written to a temporary file, which replaces the save file by a rename,
+ * once all the save files are written, so that a crash never leaves a
+ * partially written save file. On start up, the save files are loaded and
+ * the journal's records are replayed on top of them.
+ *
+ * @author Joshua Hooker
+ */
+public class EditJournal {
+
+	/**
+	 * The types of journal records.
+	 */
+	private static final byte PROG_PUT = 1, PROG_REMOVE = 2, INST_INSERT = 3,
+			INST_REMOVE = 4, INST_REPLACE = 5, POS_SET = 6, DREG_SET = 7,
+			PREG_SET = 8, TFRAME_SET = 9, UFRAME_SET = 10;
+
+	/**
+	 * The time in milliseconds, for which records are buffered before they
+	 * are written to the journal file.
+	 */
+	private static final long COMMIT_DELAY = 20L;
+
+	/**
+	 * The size in bytes of the journal file, at which it is compacted.
+	 */
+	private static final long COMPACT_SIZE = 1L << 20;
+
+	/**
+	 * The name of the file, which lists the save files of an unfinished
+	 * compaction.
+	 */
+	private static final String COMPACT_FILE = "compact.bin";
+
+	/**
+	 * The suffix of the temporary files written by a compaction.
+	 */
+	private static final String TMP_SUFFIX = ".tmp";
+
+	/**
+	 * The robot, whose edits are journaled.
+	 */
+	private final RoboticArm robot;
+
+	/**
+	 * The robot's save directory.
+	 */
+	private final File dir;
+
+	/**
+	 * The archive, to which the robot's programs are compacted, or null, if
+	 * each program is compacted to its own save file.
+	 */
+	private final ProgramArchive archive;
+
+	/**
+	 * Orders the writes to the journal file and the compaction of the
+	 * journal.
+	 */
+	private final Object ioLock;
+
+	/**
+	 * The thread, on which buffered records are written and the journal is
+	 * compacted.
+	 */
+	private final ScheduledExecutorService writer;
+
+	/**
+	 * The journaled form of the robot's programs mapped to by the programs'
+	 * names.
+	 */
+	private final TreeMap<String, ProgramImage> programs;
+
+	/**
+	 * The names of the programs, which were removed since the last
+	 * compaction, whose save files are removed by the next compaction.
+	 */
+	private final TreeSet<String> removed;
+
+	/**
+	 * The journaled form of the robot's data and position registers, tool
+	 * frames and user frames. An uninitialized register is null.
+	 */
+	private final byte[][] dRegs, pRegs, tFrames, uFrames;
+
+	/**
+	 * The records, which have not been written to the journal file.
+	 */
+	private final ByteArrayOutputStream pending;
+
+	/**
+	 * The record, which is being built.
+	 */
+	private final ByteArrayOutputStream record;
+	private final DataOutputStream recordOut;
+
+	/**
+	 * The journal file, which is open for appending, or null, if it is
+	 * closed.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Is compaction of the journal scheduled?
+	 */
+	private boolean compactScheduled;
+
+	/**
+	 * Is a write of the pending records scheduled?
+	 */
+	private boolean flushScheduled;
+
+	/**
+	 * The generation of the journal file, to which records are written. The
+	 * journal file of each generation is named journal.<gen>.bin.
+	 */
+	private int generation;
+
+	/**
+	 * Defines the journal of the given robot, whose state has already been
+	 * loaded from the given directory.
+	 */
+	private EditJournal(RoboticArm robot, File dir, ProgramArchive archive,
+			ScheduledExecutorService writer) {
+
+		this.robot = robot;
+		this.dir = dir;
+		this.archive = archive;
+		this.writer = writer;
+		ioLock = new Object();
+		programs = new TreeMap<>();
+		removed = new TreeSet<>();
+		dRegs = new byte[Fields.DPREG_NUM][];
+		pRegs = new byte[Fields.DPREG_NUM][];
+		tFrames = new byte[Fields.FRAME_NUM][];
+		uFrames = new byte[Fields.FRAME_NUM][];
+		pending = new ByteArrayOutputStream();
+		record = new ByteArrayOutputStream();
+		recordOut = new DataOutputStream(record);
+		channel = null;
+		compactScheduled = false;
+		flushScheduled = false;
+		generation = 0;
+
+		try {
+			// A program, which is not loaded, matches its save file
+			for (int pdx = 0; pdx < robot.numOfPrograms(); ++pdx) {
+				if (robot.isProgramLoaded(pdx)) {
+					Program p = robot.getProgram(pdx);
+					programs.put(p.getName(), new ProgramImage(p));
+				}
+			}
+
+			for (int idx = 0; idx < Fields.DPREG_NUM; ++idx) {
+				dRegs[idx] = image(robot.getDReg(idx));
+				pRegs[idx] = image(robot.getPReg(idx));
+			}
+
+			for (int idx = 0; idx < Fields.FRAME_NUM; ++idx) {
+				tFrames[idx] = image(robot, idx, true);
+				uFrames[idx] = image(robot, idx, false);
+			}
+
+		} catch (IOException IOEx) {
+			// Serializing to memory does not fail
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * Opens the journal of the given robot, whose save files and journal
+	 * have already been loaded and replayed from the given directory. Any
+	 * existing journal files are compacted into the save files, before the
+	 * journal is returned.
+	 *
+	 * @param robot		The robot, whose edits are journaled
+	 * @param dir		The robot's save directory
+	 * @param archive	The robot's program archive, or null, if the robot's
+	 * 					programs are saved to separate files
+	 * @param writer	The thread, on which the journal is written
+	 * @return			The robot's journal
+	 */
+	public static EditJournal open(RoboticArm robot, File dir,
+			ProgramArchive archive, ScheduledExecutorService writer) {
+
+		if (!dir.isDirectory()) {
+			dir.mkdirs();
+		}
+
+		EditJournal journal = new EditJournal(robot, dir, archive, writer);
+		int[] gens = generations(dir);
+
+		if (gens.length > 0) {
+			// Fold the replayed journal into the save files
+			journal.generation = gens[gens.length - 1];
+			journal.compact();
+		}
+
+		return journal;
+	}
+
+	/**
+	 * Finishes or discards an interrupted compaction of the journal in the
+	 * given save directory. This must be called before the robot's save files
+	 * are loaded.
+	 *
+	 * @param dir		A robot's save directory
+	 * @param archive	The robot's program archive, or null, if the robot's
+	 * 					programs are saved to separate files
+	 */
+	public static void recover(File dir, ProgramArchive archive) {
+		File compactFile = new File(dir, COMPACT_FILE);
+
+		if (compactFile.isFile()) {
+			try {
+				// All the new save files were written, so finish the renames
+				finishCompaction(dir, archive,
+						DataManagement.readFile(compactFile));
+
+			} catch (IOException IOEx) {
+				System.err.printf("%s is corrupt!\n", compactFile.getName());
+				IOEx.printStackTrace();
+			}
+		}
+
+		// Remove the new save files of an unfinished compaction
+		deleteTmpFiles(dir);
+		deleteTmpFiles(new File(dir, "programs"));
+	}
+
+	/**
+	 * Applies the records of the journal files in the given save directory,
+	 * oldest first, to the given robot, whose save files have been loaded.
+	 * Replay stops at the first incomplete or corrupt record, which is left
+	 * by a crash during a write.
+	 *
+	 * @param robot	The robot, whose save files were loaded
+	 * @param dir	The robot's save directory
+	 */
+	public static void replay(RoboticArm robot, File dir) {
+		for (int gen : generations(dir)) {
+			File src = journalFile(dir, gen);
+
+			try {
+				DataInputStream in = DataManagement.readFile(src);
+
+				while (in.available() > 0) {
+					int len = in.readInt();
+
+					if (len <= 0 || len > in.available() - 4) {
+						throw new EOFException();
+					}
+
+					byte[] data = new byte[len];
+					in.readFully(data);
+					CRC32 crc = new CRC32();
+					crc.update(data, 0, len);
+
+					if (in.readInt() != (int)crc.getValue()) {
+						throw new IOException("Checksum mismatch");
+					}
+
+					apply(robot, dir, new DataInputStream(
+							new ByteArrayInputStream(data)));
+				}
+
+				in.close();
+
+			} catch (EOFException EOFEx) {
+				// The journal ends with a partially written record
+				System.err.printf("End of file, %s, was reached unexpectedly!\n",
+						src.getName());
+				return;
+
+			} catch (IOException IOEx) {
+				System.err.printf("%s is corrupt!\n", src.getName());
+				IOEx.printStackTrace();
+				return;
+
+			} catch (ClassCastException CCEx) {
+				System.err.printf("%s is corrupt!\n", src.getName());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Journals the changes to the given program's positions and
+	 * instructions, since it was last journaled. A program, which has not
+	 * been journaled under its current name, is journaled in full. A
+	 * program, whose body failed to load, is not journaled, so that its save
+	 * file is never replaced by the empty placeholder.
+	 *
+	 * @param p	A program of this journal's robot
+	 */
+	public synchronized void commitProgram(Program p) {
+		if (robot.isProgramFailed(p)) {
+			return;
+		}
+
+		try {
+			String name = p.getName();
+			ProgramImage last = programs.get(name);
+			ProgramImage cur = new ProgramImage(p);
+
+			if (last == null) {
+				DataOutputStream out = beginRecord(PROG_PUT);
+				cur.write(name, out);
+				endRecord();
+				removed.remove(name);
+
+			} else {
+				commitPositions(name, last, cur);
+				commitInstructions(name, last, cur);
+			}
+
+			programs.put(name, cur);
+
+		} catch (IOException IOEx) {
+			// Serializing to memory does not fail
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * Journals the changes to the given robot's tool and user frames, since
+	 * they were last journaled.
+	 *
+	 * @param robot	This journal's robot
+	 */
+	public synchronized void commitFrames(RoboticArm robot) {
+		try {
+			for (int idx = 0; idx < Fields.FRAME_NUM; ++idx) {
+				byte[] tImage = image(robot, idx, true);
+				byte[] uImage = image(robot, idx, false);
+
+				if (!Arrays.equals(tImage, tFrames[idx])) {
+					DataOutputStream out = beginRecord(TFRAME_SET);
+					out.writeInt(idx);
+					out.write(tImage);
+					endRecord();
+					tFrames[idx] = tImage;
+				}
+
+				if (!Arrays.equals(uImage, uFrames[idx])) {
+					DataOutputStream out = beginRecord(UFRAME_SET);
+					out.writeInt(idx);
+					out.write(uImage);
+					endRecord();
+					uFrames[idx] = uImage;
+				}
+			}
+
+		} catch (IOException IOEx) {
+			// Serializing to memory does not fail
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * Journals the changes to the given robot's data and position registers,
+	 * since they were last journaled.
+	 *
+	 * @param robot	This journal's robot
+	 */
+	public synchronized void commitRegisters(RoboticArm robot) {
+		try {
+			for (int idx = 0; idx < Fields.DPREG_NUM; ++idx) {
+				byte[] dImage = image(robot.getDReg(idx));
+				byte[] pImage = image(robot.getPReg(idx));
+
+				if (!Arrays.equals(dImage, dRegs[idx])) {
+					DataOutputStream out = beginRecord(DREG_SET);
+					out.writeInt(idx);
+					writeImage(dImage, out);
+					endRecord();
+					dRegs[idx] = dImage;
+				}
+
+				if (!Arrays.equals(pImage, pRegs[idx])) {
+					DataOutputStream out = beginRecord(PREG_SET);
+					out.writeInt(idx);
+					writeImage(pImage, out);
+					endRecord();
+					pRegs[idx] = pImage;
+				}
+			}
+
+		} catch (IOException IOEx) {
+			// Serializing to memory does not fail
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * Compacts the journal into the robot's save files. The current journal
+	 * file is closed and a new journal file is started for the following
+	 * records, before the save files are written.
+	 */
+	public void compact() {
+		TreeMap<String, byte[]> files = new TreeMap<>();
+		TreeMap<String, byte[]> progFiles = new TreeMap<>();
+		TreeSet<String> removedProgs;
+		byte[] records;
+		int covered;
+
+		synchronized (ioLock) {
+			synchronized (this) {
+				compactScheduled = false;
+				// The buffered records are held by the new save files
+				records = pending.toByteArray();
+				pending.reset();
+				removedProgs = new TreeSet<>(removed);
+				removed.clear();
+
+				try {
+					// Build the save files of the journaled state
+					for (Map.Entry<String, ProgramImage> entry :
+							programs.entrySet()) {
+
+						ByteArrayOutputStream progFile = new ByteArrayOutputStream();
+						entry.getValue().write(entry.getKey(),
+								new DataOutputStream(progFile));
+						progFiles.put(entry.getKey(), progFile.toByteArray());
+					}
+
+					files.put("registers.bin", registerFile());
+					files.put("frames.bin", frameFile());
+
+				} catch (IOException IOEx) {
+					// Serializing to memory does not fail
+					IOEx.printStackTrace();
+					return;
+				}
+			}
+
+			try {
+				writeRecords(records);
+
+			} catch (IOException IOEx) {
+				// The records are held by the new save files
+				IOEx.printStackTrace();
+			}
+
+			// Start a new journal file for the following records
+			closeChannel();
+			covered = generation++;
+		}
+
+		try {
+			ProgramArchive.Extent archiveDir = null;
+
+			if (archive != null) {
+				/* Write the programs to the archive, which is unchanged, until
+				 * the compaction is finished */
+				archiveDir = archive.stage(progFiles, removedProgs);
+
+			} else {
+				new File(dir, "programs").mkdirs();
+
+				for (Map.Entry<String, byte[]> entry : progFiles.entrySet()) {
+					files.put("programs/" + entry.getKey() + ".bin",
+							entry.getValue());
+				}
+			}
+
+			for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+				writeSynced(new File(dir, entry.getKey() + TMP_SUFFIX),
+						entry.getValue());
+			}
+
+			// Record that all the new save files were written
+			ByteArrayOutputStream compactData = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(compactData);
+
+			out.writeInt(covered);
+			out.writeInt(files.size());
+
+			for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+				byte[] data = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(data.length);
+				out.writeLong(DataManagement.checksum(data, data.length));
+			}
+
+			out.writeInt(removedProgs.size());
+
+			for (String name : removedProgs) {
+				out.writeUTF(name);
+			}
+
+			out.writeBoolean(archiveDir != null);
+
+			if (archiveDir != null) {
+				out.writeLong(archiveDir.offset);
+				out.writeInt(archiveDir.length);
+			}
+
+			out.close();
+			File compactFile = new File(dir, COMPACT_FILE);
+			File compactTmp = new File(dir, COMPACT_FILE + TMP_SUFFIX);
+			writeSynced(compactTmp, compactData.toByteArray());
+			DataManagement.replaceFile(compactTmp, compactFile);
+
+			finishCompaction(dir, archive, DataManagement.readFile(compactFile));
+
+		} catch (IOException IOEx) {
+			/* The journal files are kept, so the edits are replayed from them
+			 * on start up */
+			System.err.printf("Failed to compact the journal in %s!\n",
+					dir.getName());
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the journal file and syncs the file.
+	 * This blocks until the records are durable.
+	 */
+	public void flush() {
+		synchronized (ioLock) {
+			byte[] data;
+
+			synchronized (this) {
+				flushScheduled = false;
+
+				if (pending.size() == 0) {
+					return;
+				}
+
+				data = pending.toByteArray();
+				pending.reset();
+			}
+
+			try {
+				writeRecords(data);
+
+				if (channel.size() >= COMPACT_SIZE) {
+					scheduleCompaction();
+				}
+
+			} catch (IOException IOEx) {
+				/* The edits remain in the journaled state, so they are saved
+				 * by the next compaction */
+				System.err.printf("Failed to write the journal in %s!\n",
+						dir.getName());
+				IOEx.printStackTrace();
+				closeChannel();
+				scheduleCompaction();
+			}
+		}
+	}
+
+	/**
+	 * Journals the removal of the program with the given name.
+	 *
+	 * @param name	The name of a removed program
+	 */
+	public synchronized void removeProgram(String name) {
+		// A program, which was never loaded, has no image
+		programs.remove(name);
+		removed.add(name);
+
+		try {
+			DataOutputStream out = beginRecord(PROG_REMOVE);
+			out.writeUTF(name);
+			endRecord();
+
+		} catch (IOException IOEx) {
+			// Serializing to memory does not fail
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * Adds the given program, which was loaded from its save file after this
+	 * journal was opened, to the journaled state, unless the program has
+	 * already been journaled.
+	 *
+	 * @param p	A program of this journal's robot
+	 */
+	public synchronized void track(Program p) {
+		if (!programs.containsKey(p.getName())) {
+			try {
+				programs.put(p.getName(), new ProgramImage(p));
+
+			} catch (IOException IOEx) {
+				// Serializing to memory does not fail
+				IOEx.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Applies the given journal record to the given robot, whose save
+	 * directory is given. A replaced or removed program is not loaded.
+	 */
+	private static void apply(RoboticArm robot, File dir,
+			DataInputStream in) throws IOException {
+
+		byte type = in.readByte();
+
+		if (type == PROG_PUT) {
+			Program p = DataManagement.loadProgram(robot, in);
+			robot.rmProgAt(robot.getProgIdx(p.getName()));
+			robot.addProgram(p);
+
+		} else if (type == PROG_REMOVE) {
+			String name = in.readUTF();
+			robot.rmProgAt(robot.getProgIdx(name));
+			// The save file may outlive the program's removal
+			new File(dir, "programs/" + name + ".bin").delete();
+
+		} else if (type == INST_INSERT || type == INST_REMOVE ||
+				type == INST_REPLACE || type == POS_SET) {
+
+			Program p = robot.getProgram(in.readUTF());
+			int idx = in.readInt();
+
+			if (p == null) {
+				return;
+			}
+
+			if (type == INST_INSERT) {
+				p.addInstAt(idx, DataManagement.loadInstruction(robot, in));
+
+			} else if (type == INST_REMOVE) {
+				int count = in.readInt();
+
+				while (count-- > 0 && idx < p.getNumOfInst()) {
+					p.rmInstAt(idx);
+				}
+
+			} else if (type == INST_REPLACE) {
+				p.replaceInstAt(idx, DataManagement.loadInstruction(robot, in));
+
+			} else {
+				p.setPosition(idx, DataManagement.loadPoint(in));
+			}
+
+		} else if (type == DREG_SET) {
+			DataRegister dReg = robot.getDReg(in.readInt());
+			Float value = null;
+			String comment = null;
+
+			if (in.readBoolean()) {
+				value = in.readFloat();
+				// Null values are saved as NaN
+				if (Float.isNaN(value)) { value = null; }
+
+				comment = in.readUTF();
+				// Null comments are saved as ""
+				if (comment.equals("")) { comment = null; }
+			}
+
+			if (dReg != null) {
+				dReg.value = value;
+				dReg.comment = comment;
+			}
+
+		} else if (type == PREG_SET) {
+			PositionRegister pReg = robot.getPReg(in.readInt());
+
+			if (pReg != null) {
+				if (in.readBoolean()) {
+					pReg.point = DataManagement.loadPoint(in);
+					pReg.comment = in.readUTF();
+					// Null comments are saved as ""
+					if (pReg.comment.equals("")) { pReg.comment = null; }
+					pReg.isCartesian = in.readBoolean();
+
+				} else {
+					pReg.point = null;
+					pReg.comment = null;
+				}
+			}
+
+		} else if (type == TFRAME_SET) {
+			DataManagement.loadTFrameData(robot.getToolFrame(in.readInt()), in);
+
+		} else if (type == UFRAME_SET) {
+			DataManagement.loadUFrameData(robot.getUserFrame(in.readInt()), in);
+
+		} else {
+			throw new IOException(String.format("Unknown record type %d",
+					type));
+		}
+	}
+
+	/**
+	 * Removes the temporary files of a compaction in the given directory.
+	 */
+	private static void deleteTmpFiles(File dir) {
+		File[] files = dir.listFiles();
+
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(TMP_SUFFIX)) {
+					f.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the save files with the new save files of a compaction, which
+	 * are listed in the given compaction file, removes the save files of the
+	 * removed programs, updates the program index or publishes the new
+	 * directory of the program archive and removes the journal files, whose
+	 * records are held by the new save files. Each step can be repeated, so a
+	 * compaction interrupted by a crash is finished on start up.
+	 */
+	private static void finishCompaction(File dir, ProgramArchive archive,
+			DataInputStream in) throws IOException {
+
+		ProgramIndex index = new ProgramIndex(dir);
+		int covered = in.readInt();
+		int numOfFiles = in.readInt();
+
+		for (int fdx = 0; fdx < numOfFiles; ++fdx) {
+			String name = in.readUTF();
+			long size = in.readLong();
+			long checksum = in.readLong();
+			File tmp = new File(dir, name + TMP_SUFFIX);
+
+			if (tmp.isFile()) {
+				DataManagement.replaceFile(tmp, new File(dir, name));
+			}
+
+			if (name.startsWith("programs/")) {
+				index.put(name.substring(9, name.length() - 4), size,
+						checksum);
+			}
+		}
+
+		// Remove the save files of removed programs
+		int numOfRemoved = in.readInt();
+
+		for (int rdx = 0; rdx < numOfRemoved; ++rdx) {
+			String name = in.readUTF();
+			new File(dir, "programs/" + name + ".bin").delete();
+			index.remove(name);
+		}
+
+		if (in.readBoolean()) {
+			long offset = in.readLong();
+			int length = in.readInt();
+
+			if (archive == null) {
+				throw new IOException("The program archive is not open");
+			}
+
+			archive.publish(offset, length);
+
+		} else {
+			index.write();
+		}
+
+		in.close();
+
+		for (int gen : generations(dir)) {
+			if (gen <= covered) {
+				journalFile(dir, gen).delete();
+			}
+		}
+
+		new File(dir, COMPACT_FILE).delete();
+	}
+
+	/**
+	 * Returns the generations of the journal files in the given directory in
+	 * increasing order.
+	 */
+	private static int[] generations(File dir) {
+		ArrayList<Integer> gens = new ArrayList<>();
+		File[] files = dir.listFiles();
+
+		if (files != null) {
+			for (File f : files) {
+				String name = f.getName();
+
+				if (name.startsWith("journal.") && name.endsWith(".bin")) {
+					try {
+						gens.add(Integer.parseInt(name.substring(8,
+								name.length() - 4)));
+
+					} catch (NumberFormatException NFEx) {
+						// Not a journal file
+					}
+				}
+			}
+		}
+
+		int[] sorted = new int[gens.size()];
+
+		for (int idx = 0; idx < sorted.length; ++idx) {
+			sorted[idx] = gens.get(idx);
+		}
+
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Returns the serialized form of the given data register, or null, if the
+	 * register is uninitialized.
+	 */
+	private static byte[] image(DataRegister dReg) throws IOException {
+		if (dReg.value == null && dReg.comment == null) {
+			return null;
+		}
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(data);
+		// Null values are saved as NaN and null comments as ""
+		out.writeFloat((dReg.value == null) ? Float.NaN : dReg.value);
+		out.writeUTF((dReg.comment == null) ? "" : dReg.comment);
+		out.close();
+
+		return data.toByteArray();
+	}
+
+	/**
+	 * Returns the serialized form of the given position register, or null, if
+	 * the register is uninitialized.
+	 */
+	private static byte[] image(PositionRegister pReg) throws IOException {
+		if (pReg.point == null && pReg.comment == null) {
+			return null;
+		}
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(data);
+		DataManagement.savePoint(pReg.point, out);
+		out.writeUTF((pReg.comment == null) ? "" : pReg.comment);
+		out.writeBoolean(pReg.isCartesian);
+		out.close();
+
+		return data.toByteArray();
+	}
+
+	/**
+	 * Returns the serialized form of the tool or user frame of the given
+	 * robot with the given index.
+	 */
+	private static byte[] image(RoboticArm robot, int idx, boolean isTool)
+			throws IOException {
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(data);
+
+		if (isTool) {
+			DataManagement.saveToolFrame(robot.getToolFrame(idx), out);
+
+		} else {
+			DataManagement.saveUserFrame(robot.getUserFrame(idx), out);
+		}
+
+		out.close();
+		return data.toByteArray();
+	}
+
+	/**
+	 * Returns the journal file of the given generation.
+	 */
+	private static File journalFile(File dir, int gen) {
+		return new File(dir, String.format("journal.%d.bin", gen));
+	}
+
+	/**
+	 * Writes the given serialized register, preceded by a flag, which
+	 * indicates whether the register is initialized.
+	 */
+	private static void writeImage(byte[] image, DataOutputStream out)
+			throws IOException {
+
+		out.writeBoolean(image != null);
+
+		if (image != null) {
+			out.write(image);
+		}
+	}
+
+	/**
+	 * Writes the given data to the given file and syncs the file.
+	 */
+	private static void writeSynced(File dest, byte[] data)
+			throws IOException {
+
+		try (FileOutputStream out = new FileOutputStream(dest)) {
+			out.write(data);
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * Starts a record of the given type.
+	 */
+	private DataOutputStream beginRecord(byte type) throws IOException {
+		record.reset();
+		recordOut.writeByte(type);
+		return recordOut;
+	}
+
+	/**
+	 * Closes the current journal file, if it is open.
+	 */
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+
+			} catch (IOException IOEx) {
+				IOEx.printStackTrace();
+			}
+
+			channel = null;
+		}
+	}
+
+	/**
+	 * Journals the instructions, which were inserted, removed or replaced in
+	 * the program with the given name. The changed instructions are found
+	 * between the longest common prefix and suffix of the last and current
+	 * instructions.
+	 */
+	private void commitInstructions(String name, ProgramImage last,
+			ProgramImage cur) throws IOException {
+
+		ArrayList<byte[]> lastInsts = last.insts, curInsts = cur.insts;
+		int lastSize = lastInsts.size(), curSize = curInsts.size();
+		int prefix = 0, suffix = 0;
+
+		while (prefix < lastSize && prefix < curSize &&
+				Arrays.equals(lastInsts.get(prefix), curInsts.get(prefix))) {
+
+			++prefix;
+		}
+
+		while (suffix < lastSize - prefix && suffix < curSize - prefix &&
+				Arrays.equals(lastInsts.get(lastSize - suffix - 1),
+						curInsts.get(curSize - suffix - 1))) {
+
+			++suffix;
+		}
+
+		int removed = lastSize - prefix - suffix;
+		int inserted = curSize - prefix - suffix;
+		int replaced = Math.min(removed, inserted);
+
+		for (int idx = prefix; idx < prefix + replaced; ++idx) {
+			DataOutputStream out = beginRecord(INST_REPLACE);
+			out.writeUTF(name);
+			out.writeInt(idx);
+			out.write(curInsts.get(idx));
+			endRecord();
+		}
+
+		if (removed > replaced) {
+			DataOutputStream out = beginRecord(INST_REMOVE);
+			out.writeUTF(name);
+			out.writeInt(prefix + replaced);
+			out.writeInt(removed - replaced);
+			endRecord();
+		}
+
+		for (int idx = prefix + replaced; idx < prefix + inserted; ++idx) {
+			DataOutputStream out = beginRecord(INST_INSERT);
+			out.writeUTF(name);
+			out.writeInt(idx);
+			out.write(curInsts.get(idx));
+			endRecord();
+		}
+	}
+
+	/**
+	 * Journals the positions, which were set or cleared in the program with
+	 * the given name.
+	 */
+	private void commitPositions(String name, ProgramImage last,
+			ProgramImage cur) throws IOException {
+
+		TreeSet<Integer> indices = new TreeSet<>(last.positions.keySet());
+		indices.addAll(cur.positions.keySet());
+
+		for (Integer idx : indices) {
+			byte[] curPos = cur.positions.get(idx);
+
+			if (!Arrays.equals(last.positions.get(idx), curPos)) {
+				DataOutputStream out = beginRecord(POS_SET);
+				out.writeUTF(name);
+				out.writeInt(idx);
+
+				if (curPos == null) {
+					DataManagement.savePoint(null, out);
+
+				} else {
+					out.write(curPos);
+				}
+
+				endRecord();
+			}
+		}
+	}
+
+	/**
+	 * Appends the record, which was built, to the buffered records, with
+	 * its length and checksum, and schedules a write of the buffered records.
+	 */
+	private void endRecord() throws IOException {
+		byte[] data = record.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+
+		DataOutputStream out = new DataOutputStream(pending);
+		out.writeInt(data.length);
+		out.write(data);
+		out.writeInt((int)crc.getValue());
+
+		if (!flushScheduled) {
+			flushScheduled = true;
+			writer.schedule(this::flush, COMMIT_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Returns the contents of the frames save file of the journaled frames.
+	 */
+	private byte[] frameFile() throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(data);
+
+		out.writeInt(Fields.FRAME_NUM);
+
+		for (byte[] tFrame : tFrames) {
+			out.write(tFrame);
+		}
+
+		out.writeInt(Fields.FRAME_NUM);
+
+		for (byte[] uFrame : uFrames) {
+			out.write(uFrame);
+		}
+
+		out.close();
+		return data.toByteArray();
+	}
+
+	/**
+	 * Returns the contents of the registers save file of the journaled
+	 * registers.
+	 */
+	private byte[] registerFile() throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(data);
+
+		for (byte[][] regs : new byte[][][] { dRegs, pRegs }) {
+			int numOfEntries = 0;
+
+			for (byte[] reg : regs) {
+				if (reg != null) {
+					++numOfEntries;
+				}
+			}
+
+			out.writeInt(numOfEntries);
+
+			for (int idx = 0; idx < regs.length; ++idx) {
+				if (regs[idx] != null) {
+					out.writeInt(idx);
+					out.write(regs[idx]);
+				}
+			}
+		}
+
+		out.close();
+		return data.toByteArray();
+	}
+
+	/**
+	 * Schedules a compaction of the journal, if one is not already scheduled.
+	 */
+	private synchronized void scheduleCompaction() {
+		if (!compactScheduled) {
+			compactScheduled = true;
+			writer.execute(this::compact);
+		}
+	}
+
+	/**
+	 * Appends the given records to the current journal file and syncs the
+	 * file.
+	 */
+	private void writeRecords(byte[] data) throws IOException {
+		if (channel == null) {
+			channel = FileChannel.open(journalFile(dir, generation).toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+		}
+
+		ByteBuffer buf = ByteBuffer.wrap(data);
+
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+
+		channel.force(false);
+	}
+
+	/**
+	 * The serialized form of a program's positions and instructions.
+	 */
+	private static class ProgramImage {
+
+		/**
+		 * The serialized instructions of the program in order.
+		 */
+		private final ArrayList<byte[]> insts;
+
+		/**
+		 * The serialized positions of the program mapped to by their indices.
+		 */
+		private final TreeMap<Integer, byte[]> positions;
+
+		private ProgramImage(Program p) throws IOException {
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(data);
+
+			insts = new ArrayList<>(p.getNumOfInst());
+			positions = new TreeMap<>();
+
+			for (Integer idx : p.getPositionNums()) {
+				if (idx < 1000 && p.getPosition(idx) != null) {
+					data.reset();
+					DataManagement.savePoint(p.getPosition(idx), out);
+					positions.put(idx, data.toByteArray());
+				}
+			}
+
+			for (int idx = 0; idx < p.getNumOfInst(); ++idx) {
+				Instruction inst = p.getInstAt(idx);
+				data.reset();
+				DataManagement.saveInstruction(inst, out);
+				insts.add(data.toByteArray());
+			}
+		}
+
+		/**
+		 * Writes the program in the form of a program save file.
+		 */
+		private void write(String name, DataOutputStream out)
+				throws IOException {
+
+			TreeMap<Integer, Point> points = new TreeMap<>();
+
+			for (Map.Entry<Integer, byte[]> entry : positions.entrySet()) {
+				points.put(entry.getKey(), DataManagement.loadPoint(
+						new DataInputStream(new ByteArrayInputStream(
+								entry.getValue()))));
+			}
+
+			ProgramCodec.write(name, points, insts, out);
+		}
+	}
+}
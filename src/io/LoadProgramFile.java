@@ -3,55 +3,50 @@ package io;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 import programming.Program;
 import robot.RoboticArm;
 
 /**
- * TODO general comments
+ * Loads a single program from its save file, as a task of the data worker
+ * pool. A corrupt save file is reported and skipped, so that the rest of the
+ * robot's programs are still loaded.
  * 
  * @author Joshua Hooker
  */
-public class LoadProgramFile implements Runnable {
+public class LoadProgramFile implements Callable<Program> {
 	private RoboticArm robotRef;
-	private Program[] listRef;
-	private int idx;
 	private File src;
 	
 	/**
-	 * TODO comment this
+	 * Defines the task of loading the given save file.
 	 * 
-	 * @param robotRef
-	 * @param listRef
-	 * @param idx
-	 * @param src
+	 * @param robotRef	The robot, which owns the program
+	 * @param src		The program's save file
 	 */
-	public LoadProgramFile(RoboticArm robotRef, Program[] listRef, int idx,
-			File src) {
-		
+	public LoadProgramFile(RoboticArm robotRef, File src) {
 		this.robotRef = robotRef;
-		this.listRef = listRef;
-		this.idx = idx;
 		this.src = src;
 	}
 	
+	/**
+	 * @return	The loaded program, or null, if the save file does not exist or
+	 * 			is corrupt
+	 */
 	@Override
-	public void run() {
+	public Program call() {
 		
 		if (src.exists()) {
 			try {
-				FileInputStream in = new FileInputStream(src);
-				DataInputStream dataIn = new DataInputStream(in);
-				/* Load the program from the file and insert it in the program
-				 * list at the specified index */
+				DataInputStream dataIn = DataManagement.readFile(src);
+				// Load the program from the file
 				Program p = DataManagement.loadProgram(robotRef, dataIn);
-				listRef[idx] = p;
 				
-				in.close();
 				dataIn.close();
+				return p;
 				
 			} catch (FileNotFoundException FNFEx) {
 				// Could not locate src
@@ -77,6 +72,8 @@ public class LoadProgramFile implements Runnable {
 			}
 			
 		}
+		
+		return null;
 	}
 
 }
@@ -3,10 +3,12 @@ package io;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
+import core.RobotRun;
 import geom.Point;
 import global.Fields;
 import programming.Macro;
@@ -20,38 +22,81 @@ import robot.RoboticArm;
  * 
  * @author Joshua Hooker
  */
-public class LoadRobotData implements Runnable {
+public class LoadRobotData implements Callable<Void> {
 	
+	private RobotRun appRef;
 	private RoboticArm robotRef;
 	private String tmpDirPath;
 	
 	/**
 	 * TODO comment this
 	 * 
+	 * @param appRef
 	 * @param robotRef
 	 * @param tmpDirPath
 	 */
-	public LoadRobotData(RoboticArm robotRef, String tmpDirPath) {
+	public LoadRobotData(RobotRun appRef, RoboticArm robotRef,
+			String tmpDirPath) {
+		
+		this.appRef = appRef;
 		this.robotRef = robotRef;
 		this.tmpDirPath = tmpDirPath;
 	}
 	
+	/**
+	 * Loads the robot's data from its save directory. Only the names of the
+	 * robot's programs are read from the robot's program index, which is
+	 * brought up to date with the programs directory first. The body of each
+	 * program is loaded, when the program is first used.
+	 * 
+	 * @throws IOException	If the robot's data cannot be loaded
+	 */
 	@Override
-	public void run() {
+	public Void call() throws IOException {
 		File srcDir = new File(String.format("%srobot%d/",
 				tmpDirPath, robotRef.RID));
 		
 		if (!srcDir.exists() || !srcDir.isDirectory()) {
 			// No such directory exists
-			return;
+			return null;
 		}
 		
+		// Finish or discard an interrupted compaction of the edit journal
+		EditJournal.recover(srcDir, DataManagement.getArchive(robotRef.RID));
+		
+		if (!Fields.PROG_ARCHIVE) {
+			// Archives are disabled, so the programs are moved back to files
+			DataManagement.exportArchive(robotRef.RID);
+		}
+		
+		ProgramArchive archive = DataManagement.getArchive(robotRef.RID);
+		
 		// Check for the programs.bin and programs directory
 		File progDir = new File(tmpDirPath + String.format("robot%d/",
 				robotRef.RID) + "programs");
 		File progFile = new File(tmpDirPath + String.format(
 				"robot%d/programs.bin", robotRef.RID));
 		
+		if (archive != null && (!archive.names().isEmpty() ||
+				progDir.isDirectory()) && importProgramFiles(archive, progDir)) {
+			
+			// Add each archived program, whose body is loaded on its first use
+			for (String name : archive.names()) {
+				robotRef.addProgram(name, () -> finishLoad(archive.load(
+						robotRef, name)));
+			}
+			
+			loadFrameBytes(String.format("%s/frames.bin",
+					srcDir.getAbsolutePath()));
+			loadRegisterBytes(String.format("%s/registers.bin",
+					srcDir.getAbsolutePath()));
+			// Apply the edits made since the data was last saved
+			EditJournal.replay(robotRef, srcDir);
+			loadMacros(String.format("%s/macros.bin",
+					srcDir.getAbsolutePath()));
+			return null;
+		}
+		
 		// If the programs directory does not exist
 		if (!progDir.exists() || !progDir.isDirectory()) {
 			// Load the Robot's programs, frames, and registers from their respective files
@@ -63,20 +108,24 @@ public class LoadRobotData implements Runnable {
 					srcDir.getAbsolutePath()));
 			loadRegisterBytes(String.format("%s/registers.bin",
 					srcDir.getAbsolutePath()));
+			// Apply the edits made since the data was last saved
+			EditJournal.replay(robotRef, srcDir);
 			loadMacros(String.format("%s/macros.bin",
 					srcDir.getAbsolutePath()));
-			return;
+			return null;
+		}
+		
+		ProgramIndex index = new ProgramIndex(srcDir);
+		
+		if (index.validate()) {
+			// Save the program files added or modified since the last save
+			writeIndex(index);
 		}
 		
-		File[] progFiles = progDir.listFiles();
-		Program[] programs = new Program[progFiles.length];
-		Thread[] loadThreads = new Thread[progFiles.length];
-		// Initialize a thread for each program file
-		for (int idx = 0; idx < progFiles.length; ++idx) {
-			LoadProgramFile loader = new LoadProgramFile(robotRef, programs, idx,
-					progFiles[idx]);
-			loadThreads[idx] = new Thread(loader);
-			loadThreads[idx].start();
+		// Add each program, whose body is loaded on its first use
+		for (String name : index.getNames()) {
+			robotRef.addProgram(name, programLoader(name, new File(progDir,
+					name + ".bin"), index));
 		}
 		
 		// Load the Robot's frames, and registers from their respective files
@@ -85,18 +134,12 @@ public class LoadRobotData implements Runnable {
 		loadRegisterBytes(String.format("%s/registers.bin",
 				srcDir.getAbsolutePath()));
 		
-		/* Wait for each thread to finish and add the program once the thread
-		 * has completed */
-		for (int idx = 0; idx < loadThreads.length; ++idx) {
-			Fields.waitForThread(loadThreads[idx]);
-			
-			if (programs[idx] != null) {
-				robotRef.addProgram(programs[idx]);
-			}
-		}
+		// Apply the edits made since the data was last saved
+		EditJournal.replay(robotRef, srcDir);
 		
 		// Load the robot's macros after its programs have been initialized
 		loadMacros(String.format("%s/macros.bin", srcDir.getAbsolutePath()));
+		return null;
 	}
 	
 	/**
@@ -110,8 +153,7 @@ public class LoadRobotData implements Runnable {
 		File src = new File(srcPath);
 		
 		try {
-			FileInputStream in = new FileInputStream(src);
-			DataInputStream dataIn = new DataInputStream(in);
+			DataInputStream dataIn = DataManagement.readFile(src);
 
 			// Load Tool Frames
 			int size = Math.max(0, Math.min(dataIn.readInt(), 10));
@@ -130,7 +172,6 @@ public class LoadRobotData implements Runnable {
 			}
 
 			dataIn.close();
-			in.close();
 			return 0;
 
 		} catch (Exception FNFEx) {
@@ -151,8 +192,7 @@ public class LoadRobotData implements Runnable {
 		File src = new File(srcPath);
 		
 		try {
-			FileInputStream in = new FileInputStream(src);
-			DataInputStream dataIn = new DataInputStream(in);
+			DataInputStream dataIn = DataManagement.readFile(src);
 
 			// Load Tool Frames
 			int size = Math.max(0, Math.min(dataIn.readInt(), 10));
@@ -171,7 +211,6 @@ public class LoadRobotData implements Runnable {
 			}
 
 			dataIn.close();
-			in.close();
 			return 0;
 
 		} catch (FileNotFoundException FNFEx) {
@@ -202,8 +241,7 @@ public class LoadRobotData implements Runnable {
 	private void loadMacros(String filePath) {	
 		try {
 			File destDir = new File(filePath);
-			FileInputStream in = new FileInputStream(destDir);
-			DataInputStream dataIn = new DataInputStream(in);
+			DataInputStream dataIn = DataManagement.readFile(destDir);
 			
 			if (!destDir.exists()) {
 				destDir.mkdirs();
@@ -225,7 +263,6 @@ public class LoadRobotData implements Runnable {
 			}
 			
 			dataIn.close();
-			in.close();
 		}
 		catch (Exception e) {
 			System.err.println("Unable to load macros for robot " +
@@ -243,8 +280,7 @@ public class LoadRobotData implements Runnable {
 		File src = new File(srcPath);
 
 		try {
-			FileInputStream in = new FileInputStream(src);
-			DataInputStream dataIn = new DataInputStream(in);
+			DataInputStream dataIn = DataManagement.readFile(src);
 			// Read the number of programs stored in src
 			int size = Math.max(0, Math.min(dataIn.readInt(),
 					RoboticArm.PROG_NUM));
@@ -257,7 +293,6 @@ public class LoadRobotData implements Runnable {
 			}
 
 			dataIn.close();
-			in.close();
 			
 			return 0;
 
@@ -289,6 +324,108 @@ public class LoadRobotData implements Runnable {
 		}
 	}
 	
+	/**
+	 * Returns the loader of the program with the given name. The loader reads
+	 * the program from its save file, checks the file against its checksum
+	 * in the program index and updates the references of the program's
+	 * instructions.
+	 * 
+	 * @param name	The name of the program
+	 * @param src	The program's save file
+	 * @param index	The robot's program index
+	 * @return		The loader of the program's body
+	 */
+	private Supplier<Program> programLoader(String name, File src,
+			ProgramIndex index) {
+		
+		return () -> {
+			Program p = new LoadProgramFile(robotRef, src).call();
+			
+			if (p == null) {
+				return null;
+			}
+			
+			p.setName(name);
+			Long checksum = DataManagement.getChecksum(src);
+			
+			if (checksum != null && !checksum.equals(index.getChecksum(name))) {
+				// The file was modified without changing its size
+				System.err.printf("%s does not match the program index!\n",
+						src.getName());
+				index.put(name, src.length(), checksum);
+				writeIndex(index);
+			}
+			
+			return finishLoad(p);
+		};
+	}
+	
+	/**
+	 * Updates the references of the instructions of the given program, which
+	 * was loaded on its first use, and adds the program to the robot's edit
+	 * journal.
+	 * 
+	 * @param p	The loaded program, or null, if it failed to load
+	 * @return	The given program
+	 */
+	private Program finishLoad(Program p) {
+		if (p != null) {
+			new RobotPostProcessing(appRef, p).call();
+			DataManagement.programLoaded(robotRef, p);
+		}
+		
+		return p;
+	}
+	
+	/**
+	 * Moves the program save files in the given programs directory, if it
+	 * exists, into the given program archive. The programs directory is
+	 * removed, once its programs are archived.
+	 * 
+	 * @param archive	The robot's program archive
+	 * @param progDir	The robot's programs directory
+	 * @return			Whether the archive holds the robot's programs
+	 */
+	private boolean importProgramFiles(ProgramArchive archive, File progDir) {
+		if (!progDir.isDirectory()) {
+			return true;
+		}
+		
+		try {
+			for (String name : archive.importFiles(progDir)) {
+				new File(progDir, name + ".bin").delete();
+			}
+			
+			new File(progDir.getParentFile(), "programs.idx").delete();
+			progDir.delete();
+			return true;
+			
+		} catch (IOException IOEx) {
+			// The programs are loaded from their save files instead
+			System.err.printf("Failed to archive the programs of robot %d!\n",
+					robotRef.RID);
+			DataManagement.errLog(IOEx);
+			return false;
+		}
+	}
+	
+	/**
+	 * Writes the given program index to its file. A failure is only logged,
+	 * since the index is rebuilt from the program files on the next start.
+	 * 
+	 * @param index	The robot's program index
+	 */
+	private void writeIndex(ProgramIndex index) {
+		try {
+			index.write();
+			
+		} catch (IOException IOEx) {
+			System.err.printf("Failed to save the program index of robot %d!\n",
+					robotRef.RID);
+			DataManagement.errLog(IOEx);
+		}
+	}
+	
 	/**
 	 * TODO comment this
 	 * 
@@ -299,8 +436,7 @@ public class LoadRobotData implements Runnable {
 		File src = new File(srcPath);
 		
 		try {
-			FileInputStream in = new FileInputStream(src);
-			DataInputStream dataIn = new DataInputStream(in);
+			DataInputStream dataIn = DataManagement.readFile(src);
 
 			int size = Math.max(0, Math.min(dataIn.readInt(), Fields.DPREG_NUM));
 
@@ -348,7 +484,6 @@ public class LoadRobotData implements Runnable {
 			}
 
 			dataIn.close();
-			in.close();
 			return 0;
 
 		} catch (FileNotFoundException FNFEx) {
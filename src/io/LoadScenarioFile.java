@@ -2,7 +2,6 @@ package io;
 
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
@@ -37,15 +36,13 @@ public class LoadScenarioFile implements Runnable {
 	public void run() {
 		if (src.exists()) {
 			try {
-				FileInputStream in = new FileInputStream(src);
-				DataInputStream dataIn = new DataInputStream(in);
+				DataInputStream dataIn = DataManagement.readFile(src);
 				/* Store the loaded scenario at the defined index in the
 				 * list of scenarios */
 				Scenario s = DataManagement.loadScenario(dataIn);
 				scenarioList[idx] = s;
 
 				dataIn.close();
-				in.close();
 
 			} catch (FileNotFoundException FNFEx) {
 				System.err.printf("File %s does not exist in \\tmp\\scenarios.\n", src.getName());
@@ -0,0 +1,190 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import geom.MeshData;
+
+/**
+ * Stores the preprocessed meshes of .stl files, so that the files do not
+ * have to be parsed again on the next start of the application. An entry
+ * holds a mesh's interleaved vertices and normals along with its bounds and
+ * its distinct vertices, and is tied to the path, size and modification time
+ * of its source file. An entry, whose source file has changed, is rebuilt
+ * from the source file.
+ *
+ * @author Joshua Hooker
+ */
+public class MeshCache {
+
+	/**
+	 * Identifies a mesh cache file ('RMSH').
+	 */
+	private static final int MAGIC = 0x524D5348;
+
+	/**
+	 * The version of the cache file format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The directory, in which the cache files are stored.
+	 */
+	private final File dir;
+
+	/**
+	 * Creates a cache, which stores its entries in the given directory.
+	 *
+	 * @param dir	The cache directory
+	 */
+	public MeshCache(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Returns the mesh of the given source file from this cache, if the
+	 * cached entry is up to date, otherwise the source file is read and its
+	 * entry is rebuilt.
+	 *
+	 * @param src		A .stl file
+	 * @param filename	The name of the source file relative to the data
+	 * 					directory
+	 * @return			The mesh of the source file
+	 * @throws IOException	If the source file cannot be read
+	 */
+	public MeshData get(File src, String filename) throws IOException {
+		File entry = new File(dir, entryName(filename));
+
+		if (entry.isFile()) {
+			try {
+				MeshData mesh = load(entry, src, filename);
+
+				if (mesh != null) {
+					return mesh;
+				}
+
+			} catch (IOException | RuntimeException Ex) {
+				// A corrupt entry is rebuilt
+				Ex.printStackTrace();
+			}
+		}
+
+		MeshData mesh = STLReader.read(src, filename);
+
+		try {
+			save(entry, src, mesh);
+
+		} catch (IOException IOEx) {
+			// The mesh is still usable without its cache entry
+			IOEx.printStackTrace();
+		}
+
+		return mesh;
+	}
+
+	/**
+	 * Returns the name of the cache file for the given source file.
+	 */
+	private static String entryName(String filename) {
+		return filename.replaceAll("[^A-Za-z0-9._-]", "_") + ".mesh";
+	}
+
+	/**
+	 * Memory-maps the given cache entry and reads its mesh, if the entry
+	 * matches the current state of its source file.
+	 *
+	 * @return	The cached mesh or null, if the entry is out of date
+	 */
+	private static MeshData load(File entry, File src, String filename)
+			throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(entry, "r");
+				FileChannel channel = raf.getChannel()) {
+
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+
+			if (data.getInt() != MAGIC || data.getInt() != VERSION ||
+					data.getLong() != src.length() ||
+					data.getLong() != src.lastModified()) {
+
+				return null;
+			}
+
+			byte[] path = new byte[data.getInt()];
+			data.get(path);
+			data.position(pad(data.position()));
+
+			if (!filename.equals(new String(path, StandardCharsets.UTF_8))) {
+				return null;
+			}
+
+			float[] bounds = new float[6];
+			float[] vertices = new float[data.getInt()];
+			float[] distinct = new float[data.getInt()];
+			FloatBuffer floats = data.asFloatBuffer();
+
+			floats.get(bounds);
+			floats.get(vertices);
+			floats.get(distinct);
+
+			return new MeshData(filename, vertices, bounds, distinct);
+		}
+	}
+
+	/**
+	 * Returns the given position rounded up to a multiple of four bytes.
+	 */
+	private static int pad(int pos) {
+		return (pos + 3) & ~3;
+	}
+
+	/**
+	 * Writes the given mesh to the given cache entry. The entry is written
+	 * to a temporary file first, so that an interrupted write never leaves a
+	 * partial entry.
+	 */
+	private void save(File entry, File src, MeshData mesh) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException(String.format("Failed to create %s", dir));
+		}
+
+		byte[] path = mesh.getFilename().getBytes(StandardCharsets.UTF_8);
+		float[] distinct = mesh.getDistinctVertices();
+		int vertexFloats = MeshData.STRIDE * mesh.getVertexCount();
+		int headerLen = pad(28 + path.length) + 8;
+
+		ByteBuffer data = ByteBuffer.allocate(headerLen + 4 * (6 +
+				vertexFloats + distinct.length));
+
+		data.putInt(MAGIC).putInt(VERSION).putLong(src.length())
+			.putLong(src.lastModified()).putInt(path.length).put(path);
+		data.position(pad(data.position()));
+		data.putInt(vertexFloats).putInt(distinct.length);
+
+		FloatBuffer floats = data.asFloatBuffer();
+		floats.put(mesh.getBounds());
+		mesh.getVertices(floats);
+		floats.put(distinct);
+
+		File tmp = File.createTempFile(entry.getName(), ".tmp", dir);
+
+		try {
+			Files.write(tmp.toPath(), data.array());
+			Files.move(tmp.toPath(), entry.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import geom.MeshData;
+import processing.core.PApplet;
+
+/**
+ * Reads .stl files on a pool of worker threads, so that the meshes of the
+ * application can be read concurrently with one another and with the rest
+ * of the application's setup. Only the mesh data is built by the workers;
+ * the models built from the mesh data are left to the animation thread.
+ *
+ * @author Joshua Hooker
+ */
+public class MeshLoader {
+
+	/**
+	 * The application, whose data directory contains the mesh files.
+	 */
+	private final PApplet APP;
+
+	/**
+	 * The threads, on which the mesh files are read. Idle threads are
+	 * released, once all the requested meshes are read.
+	 */
+	private final ThreadPoolExecutor POOL;
+
+	/**
+	 * The meshes, which have been requested, mapped to by their file names.
+	 */
+	private final HashMap<String, Future<MeshData>> requests;
+
+	/**
+	 * Creates a loader for the mesh files in the given application's data
+	 * directory with one worker thread per available processor.
+	 *
+	 * @param app	The application
+	 */
+	public MeshLoader(PApplet app) {
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+		APP = app;
+		POOL = new ThreadPoolExecutor(threads, threads, 1L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), (Runnable r) -> {
+					Thread t = new Thread(r, "MeshLoader");
+					t.setDaemon(true);
+					return t;
+				});
+		POOL.allowCoreThreadTimeOut(true);
+		requests = new HashMap<>();
+	}
+
+	/**
+	 * Returns the mesh of the given file, waiting for the mesh to be read,
+	 * if necessary. The file is requested, if it has not been already.
+	 *
+	 * @param filename	The name of a .stl file relative to the data directory
+	 * @return			The mesh of the file
+	 * @throws NullPointerException	If the file cannot be read
+	 */
+	public MeshData get(String filename) throws NullPointerException {
+		Future<MeshData> mesh = request(filename);
+
+		try {
+			return mesh.get();
+
+		} catch (ExecutionException EEx) {
+			NullPointerException NPEx = new NullPointerException(
+					String.format("Failed to read %s", filename));
+			NPEx.initCause(EEx.getCause());
+			throw NPEx;
+
+		} catch (InterruptedException IEx) {
+			Thread.currentThread().interrupt();
+			throw new NullPointerException(
+					String.format("Interrupted reading %s", filename));
+		}
+	}
+
+	/**
+	 * Requests the mesh of the given file, which is read and simplified on a
+	 * worker thread. Any file is only read once.
+	 *
+	 * @param filename	The name of a .stl file relative to the data directory
+	 * @return			The pending mesh of the file
+	 */
+	public synchronized Future<MeshData> request(String filename) {
+		Future<MeshData> mesh = requests.get(filename);
+
+		if (mesh == null) {
+			mesh = POOL.submit(() -> {
+				MeshData data = read(filename);
+				// Simplify the mesh on the worker thread as well
+				data.getLODs();
+				return data;
+			});
+			requests.put(filename, mesh);
+		}
+
+		return mesh;
+	}
+
+	/**
+	 * Reads the mesh of the given file through the mesh cache, if the file
+	 * exists in the data directory.
+	 */
+	private MeshData read(String filename) throws IOException {
+		File file = APP.dataFile(filename);
+
+		if (file.isFile()) {
+			return DataManagement.loadMesh(file, filename);
+		}
+
+		// Fall back on processing's resource loading
+		byte[] data = APP.loadBytes(filename);
+
+		if (data == null) {
+			throw new IOException(String.format("%s does not exist",
+					filename));
+		}
+
+		return STLReader.read(ByteBuffer.wrap(data), filename);
+	}
+}
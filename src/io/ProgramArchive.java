@@ -0,0 +1,596 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import programming.Program;
+import robot.RoboticArm;
+
+/**
+ * A single memory-mapped file, which holds all the programs of a robot, as an
+ * alternative to a save file for each program. Each program is a variable
+ * length record, which holds the same data as the program's save file. The
+ * records are listed by a directory block, which holds the name, offset,
+ * length and checksum of each record.
+ *
+ * Updates are copy-on-write: new records and a new directory block are
+ * written to free space, which is not referenced by the current directory,
+ * and then one of two alternating headers is rewritten to point to the new
+ * directory. A crash before the header is written leaves the previous
+ * directory intact. The space of replaced and removed records is reused by
+ * the following updates.
+ *
+ * @author Joshua Hooker
+ */
+public class ProgramArchive {
+
+	/**
+	 * The name of the archive file in a robot's save directory.
+	 */
+	public static final String FILE_NAME = "programs.arc";
+
+	/**
+	 * Identifies a valid header.
+	 */
+	private static final int MAGIC = 0x52525041;
+
+	/**
+	 * The size of each of the two headers. The records start after the
+	 * headers.
+	 */
+	private static final int HEADER_SIZE = 32, DATA_START = 2 * HEADER_SIZE;
+
+	/**
+	 * The minimum amount, by which the mapping of the file grows.
+	 */
+	private static final int MIN_GROWTH = 64 * 1024;
+
+	/**
+	 * The archive file.
+	 */
+	private final File file;
+
+	/**
+	 * The archive file's channel, which is open for reading and writing.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The records of the current directory mapped to by the programs' names.
+	 */
+	private TreeMap<String, Extent> directory;
+
+	/**
+	 * The extent of the current directory block.
+	 */
+	private Extent dirExtent;
+
+	/**
+	 * The mapping of the archive file.
+	 */
+	private MappedByteBuffer map;
+
+	/**
+	 * The sequence number of the current header. The header with the greater
+	 * sequence number is current.
+	 */
+	private long sequence;
+
+	/**
+	 * Opens the given archive file, which is created, if it does not exist.
+	 */
+	private ProgramArchive(File file) throws IOException {
+		this.file = file;
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		directory = new TreeMap<>();
+		dirExtent = null;
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+				Math.max(channel.size(), DATA_START));
+		sequence = 0L;
+	}
+
+	/**
+	 * Opens the given archive file and reads its directory. An archive file,
+	 * which does not exist, is created with an empty directory.
+	 *
+	 * @param file			An archive file
+	 * @return				The archive
+	 * @throws IOException	If the archive file cannot be opened or neither of
+	 * 						its headers is valid
+	 */
+	public static ProgramArchive open(File file) throws IOException {
+		boolean exists = file.isFile() && file.length() > 0;
+		ProgramArchive archive = new ProgramArchive(file);
+
+		try {
+			if (exists) {
+				archive.readHeaders();
+
+			} else {
+				// Initialize the headers of a new archive
+				Extent dir = archive.stage(Collections.emptyMap(),
+						Collections.emptyList());
+				archive.publish(dir.offset, dir.length);
+			}
+
+		} catch (IOException | RuntimeException Ex) {
+			archive.close();
+			throw Ex;
+		}
+
+		return archive;
+	}
+
+	/**
+	 * Closes the archive file.
+	 */
+	public synchronized void close() {
+		try {
+			channel.close();
+
+		} catch (IOException IOEx) {
+			IOEx.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return	Whether a program with the given name is archived
+	 */
+	public synchronized boolean contains(String name) {
+		return directory.containsKey(name);
+	}
+
+	/**
+	 * Writes the record of each archived program to a save file in the given
+	 * directory, in the format of the programs directory.
+	 *
+	 * @param destDir		The directory, to which to write the save files
+	 * @throws IOException	If a save file cannot be written
+	 */
+	public synchronized void exportFiles(File destDir) throws IOException {
+		if (!destDir.isDirectory() && !destDir.mkdirs()) {
+			throw new IOException(String.format("Failed to create %s",
+					destDir));
+		}
+
+		for (Map.Entry<String, Extent> entry : directory.entrySet()) {
+			try (FileOutputStream out = new FileOutputStream(new File(destDir,
+					entry.getKey() + ".bin"))) {
+
+				ByteBuffer view = view(entry.getValue());
+
+				while (view.hasRemaining()) {
+					out.getChannel().write(view);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the save files in the given directory, in the format of the
+	 * programs directory, to the archive. An archived program with the same
+	 * name as a save file is replaced.
+	 *
+	 * @param srcDir		A robot's programs directory
+	 * @return				The names of the imported programs
+	 * @throws IOException	If a save file cannot be read or the archive
+	 * 						cannot be written
+	 */
+	public synchronized ArrayList<String> importFiles(File srcDir)
+			throws IOException {
+
+		TreeMap<String, byte[]> records = new TreeMap<>();
+		File[] files = srcDir.listFiles();
+
+		if (files != null) {
+			for (File f : files) {
+				String filename = f.getName();
+
+				if (f.isFile() && filename.endsWith(".bin")) {
+					records.put(filename.substring(0, filename.length() - 4),
+							Files.readAllBytes(f.toPath()));
+				}
+			}
+		}
+
+		Extent dir = stage(records, Collections.emptyList());
+		publish(dir.offset, dir.length);
+		return new ArrayList<>(records.keySet());
+	}
+
+	/**
+	 * Decodes the archived program with the given name directly from the
+	 * mapping of the archive file. A corrupt record is reported and skipped.
+	 *
+	 * @param robot	The robot, which owns the program
+	 * @param name	The name of an archived program
+	 * @return		The program, or null, if it is not archived or its record
+	 * 				is corrupt
+	 */
+	public synchronized Program load(RoboticArm robot, String name) {
+		Extent record = directory.get(name);
+
+		if (record == null) {
+			return null;
+		}
+
+		ByteBuffer view = view(record);
+		CRC32 crc = new CRC32();
+		crc.update(view.duplicate());
+
+		if ((int)crc.getValue() != record.checksum) {
+			System.err.printf("%s in %s is corrupt!\n", name, file.getName());
+			return null;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new ByteBufferInputStream(view));
+			Program p = DataManagement.loadProgram(robot, in);
+			p.setName(name);
+			return p;
+
+		} catch (EOFException EOFEx) {
+			System.err.printf("End of %s in %s was reached unexpectedly!\n",
+					name, file.getName());
+
+		} catch (IOException | ClassCastException | NegativeArraySizeException
+				Ex) {
+
+			System.err.printf("%s in %s is corrupt!\n", name, file.getName());
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return	The names of the archived programs in alphabetical order
+	 */
+	public synchronized ArrayList<String> names() {
+		return new ArrayList<>(directory.keySet());
+	}
+
+	/**
+	 * Makes the directory block at the given position of the archive file,
+	 * which was written by stage(), the current directory. Publishing the
+	 * same directory again has no effect on the archived programs.
+	 *
+	 * @param offset		The offset of the directory block
+	 * @param length		The length of the directory block
+	 * @throws IOException	If the directory block is corrupt or the header
+	 * 						cannot be written
+	 */
+	public synchronized void publish(long offset, int length)
+			throws IOException {
+
+		if (offset < DATA_START || length < 4 ||
+				offset + length > map.capacity()) {
+
+			throw new IOException(String.format("%s is corrupt!",
+					file.getName()));
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(view(offset, length));
+		Extent dir = new Extent(offset, length, (int)crc.getValue());
+		TreeMap<String, Extent> entries = readDirectory(dir);
+
+		// Write the header, which is not current
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putLong(sequence + 1);
+		header.putLong(offset);
+		header.putInt(length);
+		header.putInt(dir.checksum);
+		crc.reset();
+		crc.update(header.array(), 0, HEADER_SIZE - 4);
+		header.putInt((int)crc.getValue());
+
+		ByteBuffer dest = map.duplicate();
+		dest.position((int)(((sequence + 1) & 1) * HEADER_SIZE));
+		dest.put(header.array());
+		map.force();
+
+		++sequence;
+		directory = entries;
+		dirExtent = dir;
+	}
+
+	/**
+	 * Adds or replaces the given archived programs and removes the programs
+	 * with the given names, and publishes the new directory.
+	 *
+	 * @param records		The record of each program mapped to by the
+	 * 						program's name
+	 * @param removed		The names of the programs to remove
+	 * @throws IOException	If the archive file cannot be written
+	 */
+	public synchronized void update(Map<String, byte[]> records,
+			Collection<String> removed) throws IOException {
+
+		Extent dir = stage(records, removed);
+		publish(dir.offset, dir.length);
+	}
+
+	/**
+	 * Writes the given records and a new directory block, which lists them
+	 * along with the current records, except those with the given names, to
+	 * space, which is not referenced by the current directory. A record,
+	 * which matches the program's current record, is not rewritten. The
+	 * archive is unchanged, until the new directory is published.
+	 *
+	 * @param records		The record of each program mapped to by the
+	 * 						program's name
+	 * @param removed		The names of the programs to remove
+	 * @return				The extent of the new directory block
+	 * @throws IOException	If the archive file cannot be written
+	 */
+	public synchronized Extent stage(Map<String, byte[]> records,
+			Collection<String> removed) throws IOException {
+
+		TreeMap<String, Extent> entries = new TreeMap<>(directory);
+		TreeMap<Long, Long> free = freeSpace();
+
+		for (String name : removed) {
+			entries.remove(name);
+		}
+
+		for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+			byte[] data = entry.getValue();
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, data.length);
+
+			Extent current = entries.get(entry.getKey());
+
+			if (current != null && current.length == data.length &&
+					current.checksum == (int)crc.getValue()) {
+				// The program is unchanged
+				continue;
+			}
+
+			Extent record = new Extent(allocate(free, data.length),
+					data.length, (int)crc.getValue());
+			write(record.offset, data);
+			entries.put(entry.getKey(), record);
+		}
+
+		// Write the new directory block
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(out);
+
+		dataOut.writeInt(entries.size());
+
+		for (Map.Entry<String, Extent> entry : entries.entrySet()) {
+			Extent record = entry.getValue();
+			dataOut.writeUTF(entry.getKey());
+			dataOut.writeLong(record.offset);
+			dataOut.writeInt(record.length);
+			dataOut.writeInt(record.checksum);
+		}
+
+		dataOut.close();
+		byte[] data = out.toByteArray();
+		Extent dir = new Extent(allocate(free, data.length), data.length, 0);
+		write(dir.offset, data);
+		map.force();
+
+		return dir;
+	}
+
+	/**
+	 * Allocates the given number of bytes from the first free extent, which
+	 * is large enough, or from the end of the archive file.
+	 */
+	private long allocate(TreeMap<Long, Long> free, int length) {
+		for (Map.Entry<Long, Long> extent : free.entrySet()) {
+			long offset = extent.getKey();
+			long size = extent.getValue();
+
+			if (size >= length) {
+				free.remove(offset);
+
+				if (size > length) {
+					free.put(offset + length, size - length);
+				}
+
+				return offset;
+			}
+		}
+
+		// The last free extent is unbounded
+		throw new IllegalStateException("No free space");
+	}
+
+	/**
+	 * Returns the extents of the archive file, which are not referenced by
+	 * the current directory, mapped to by their offsets. The last extent
+	 * starts at the end of the referenced data and is unbounded.
+	 */
+	private TreeMap<Long, Long> freeSpace() {
+		TreeMap<Long, Integer> used = new TreeMap<>();
+
+		for (Extent record : directory.values()) {
+			used.put(record.offset, record.length);
+		}
+
+		if (dirExtent != null) {
+			used.put(dirExtent.offset, dirExtent.length);
+		}
+
+		TreeMap<Long, Long> free = new TreeMap<>();
+		long pos = DATA_START;
+
+		for (Map.Entry<Long, Integer> extent : used.entrySet()) {
+			if (extent.getKey() > pos) {
+				free.put(pos, extent.getKey() - pos);
+			}
+
+			pos = Math.max(pos, extent.getKey() + extent.getValue());
+		}
+
+		free.put(pos, Long.MAX_VALUE);
+		return free;
+	}
+
+	/**
+	 * Reads both headers and the directory of the valid header with the
+	 * greater sequence number.
+	 */
+	private void readHeaders() throws IOException {
+		IOException error = null;
+		boolean found = false;
+
+		for (int hdx = 0; hdx < 2; ++hdx) {
+			ByteBuffer header = map.duplicate();
+			header.position(hdx * HEADER_SIZE);
+			header.limit(header.position() + HEADER_SIZE);
+			header = header.slice();
+
+			byte[] data = new byte[HEADER_SIZE];
+			header.get(data);
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, HEADER_SIZE - 4);
+			header.rewind();
+
+			int magic = header.getInt();
+			long seq = header.getLong();
+			long offset = header.getLong();
+			int length = header.getInt();
+			int dirChecksum = header.getInt();
+
+			if (magic != MAGIC || header.getInt() != (int)crc.getValue() ||
+					(found && seq <= sequence)) {
+				continue;
+			}
+
+			try {
+				if (offset < DATA_START || length < 4 ||
+						offset + length > map.capacity()) {
+					throw new EOFException();
+				}
+
+				Extent dir = new Extent(offset, length, dirChecksum);
+				crc.reset();
+				crc.update(view(dir));
+
+				if ((int)crc.getValue() != dirChecksum) {
+					throw new IOException("Checksum mismatch");
+				}
+
+				directory = readDirectory(dir);
+				dirExtent = dir;
+				sequence = seq;
+				found = true;
+
+			} catch (IOException IOEx) {
+				// A torn directory of an interrupted update
+				error = IOEx;
+			}
+		}
+
+		if (!found) {
+			throw (error != null) ? error : new IOException(String.format(
+					"%s is corrupt!", file.getName()));
+		}
+	}
+
+	/**
+	 * Reads the directory block with the given extent.
+	 */
+	private TreeMap<String, Extent> readDirectory(Extent dir)
+			throws IOException {
+
+		TreeMap<String, Extent> entries = new TreeMap<>();
+		DataInputStream in = new DataInputStream(new ByteBufferInputStream(view(dir)));
+		int size = in.readInt();
+
+		while (size-- > 0) {
+			String name = in.readUTF();
+			Extent record = new Extent(in.readLong(), in.readInt(),
+					in.readInt());
+
+			if (record.offset < DATA_START || record.length < 0 ||
+					record.offset + record.length > map.capacity()) {
+				throw new IOException(String.format("%s is corrupt!",
+						file.getName()));
+			}
+
+			entries.put(name, record);
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Returns a read only view of the given extent of the archive file.
+	 */
+	private ByteBuffer view(Extent extent) {
+		return view(extent.offset, extent.length);
+	}
+
+	/**
+	 * Returns a read only view of the given number of bytes at the given
+	 * offset of the archive file.
+	 */
+	private ByteBuffer view(long offset, int length) {
+		ByteBuffer view = map.asReadOnlyBuffer();
+		view.position((int)offset);
+		view.limit((int)(offset + length));
+		return view.slice();
+	}
+
+	/**
+	 * Writes the given data at the given offset of the archive file, which is
+	 * remapped, if it is too small.
+	 */
+	private void write(long offset, byte[] data) throws IOException {
+		long end = offset + data.length;
+
+		if (end > Integer.MAX_VALUE) {
+			throw new IOException(String.format("%s is too large",
+					file.getName()));
+		}
+
+		if (end > map.capacity()) {
+			// Grow the file geometrically to limit the number of remaps
+			long capacity = Math.max(end, Math.min(Integer.MAX_VALUE,
+					map.capacity() + Math.max(map.capacity(), MIN_GROWTH)));
+			map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+
+		ByteBuffer dest = map.duplicate();
+		dest.position((int)offset);
+		dest.put(data);
+	}
+
+	/**
+	 * The position, length and checksum of a record or directory block in
+	 * the archive file.
+	 */
+	public static class Extent {
+		public final long offset;
+		public final int length;
+		private final int checksum;
+
+		private Extent(long offset, int length, int checksum) {
+			this.offset = offset;
+			this.length = length;
+			this.checksum = checksum;
+		}
+	}
+}
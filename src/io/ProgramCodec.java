@@ -0,0 +1,729 @@
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geom.Point;
+import geom.RQuaternion;
+import global.Fields;
+import processing.core.PVector;
+import programming.CallInstruction;
+import programming.Instruction;
+import programming.PosMotionInst;
+import programming.Program;
+import robot.RoboticArm;
+
+/**
+ * Encodes programs in the compact program format, which replaces the fixed
+ * width format written by earlier versions. Integers are written as varints,
+ * each position is written as the difference from the previous position and
+ * the strings of a program are written once in a string table. The encoded
+ * program is compressed with an LZ4 block, if that makes it smaller.
+ *
+ * The compact format begins with the flag byte 2 in place of the flag byte 1
+ * of the fixed width format, so that DataManagement.loadProgram() reads both
+ * formats.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class ProgramCodec {
+
+	/**
+	 * The flag byte, which begins a program in the compact format.
+	 */
+	public static final byte FORMAT_FLAG = 2;
+
+	/**
+	 * The version of the compact format written by this class.
+	 */
+	private static final byte VERSION = 1;
+
+	/**
+	 * The option bit, which indicates a compressed body.
+	 */
+	private static final int OPT_COMPRESSED = 0x1;
+
+	/**
+	 * The kinds of the encoded instructions. An instruction, which has no
+	 * compact encoding, is written in the fixed width format.
+	 */
+	private static final byte INST_FIXED = 0, INST_MOTION = 1, INST_CALL = 2;
+
+	/**
+	 * The bits of the mask, which indicates the non-null fields of a point.
+	 */
+	private static final int PT_POSITION = 0x1, PT_ORIENTATION = 0x2,
+			PT_ANGLES = 0x4;
+
+	/**
+	 * The minimum length of a match and the number of bytes at the end of a
+	 * block, which are always literals, in an LZ4 block.
+	 */
+	private static final int MIN_MATCH = 4, LAST_LITERALS = 5;
+
+	/**
+	 * The number of bits of the hash of a sequence of four bytes, which are
+	 * matched by the compressor.
+	 */
+	private static final int HASH_BITS = 12;
+
+	/**
+	 * Writes the program with the given name, positions and instructions in
+	 * the compact format. The instructions are given in the fixed width
+	 * format written by DataManagement.saveInstruction().
+	 *
+	 * @param name			The name of the program
+	 * @param positions		The program's positions mapped to by their
+	 * 						indices in increasing order
+	 * @param insts			The program's instructions in the fixed width
+	 * 						format
+	 * @param out			The stream, to which to write the program
+	 * @throws IOException	If the program cannot be written to the stream
+	 */
+	public static void write(String name, Map<Integer, Point> positions,
+			List<byte[]> insts, DataOutputStream out) throws IOException {
+
+		ByteArrayOutputStream bodyData = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bodyData);
+		StringTable strings = new StringTable();
+
+		writeVarInt(strings.intern(name), body);
+		writeVarInt(positions.size(), body);
+
+		// The previous point's fields as raw bits
+		int[] prev = new int[16];
+		int prevIdx = -1;
+
+		for (Map.Entry<Integer, Point> entry : positions.entrySet()) {
+			writeVarInt(entry.getKey() - prevIdx - 1, body);
+			prev = writePoint(entry.getValue(), prev, body);
+			prevIdx = entry.getKey();
+		}
+
+		writeVarInt(insts.size(), body);
+		int prevPosIdx = 0;
+
+		for (byte[] inst : insts) {
+			prevPosIdx = writeInstruction(inst, prevPosIdx, strings, body);
+		}
+
+		body.close();
+
+		// The string table precedes the body
+		ByteArrayOutputStream rawData = new ByteArrayOutputStream();
+		DataOutputStream raw = new DataOutputStream(rawData);
+
+		writeVarInt(strings.size(), raw);
+
+		for (String s : strings.values) {
+			raw.writeUTF(s);
+		}
+
+		bodyData.writeTo(raw);
+		raw.close();
+
+		byte[] data = rawData.toByteArray();
+		byte[] compressed = (Fields.PROG_COMPRESSION) ? compress(data) : null;
+
+		out.writeByte(FORMAT_FLAG);
+		out.writeByte(VERSION);
+
+		if (compressed != null && compressed.length < data.length) {
+			out.writeByte(OPT_COMPRESSED);
+			writeVarInt(data.length, out);
+			writeVarInt(compressed.length, out);
+			out.write(compressed);
+
+		} else {
+			out.writeByte(0);
+			writeVarInt(data.length, out);
+			out.write(data);
+		}
+	}
+
+	/**
+	 * Reads a program in the compact format, whose flag byte has already
+	 * been read, from the given stream.
+	 *
+	 * @param robot			The robot, which owns the program
+	 * @param in			The stream, from which to read the program
+	 * @return				The program
+	 * @throws IOException	If the program is corrupt or was written by a
+	 * 						newer version of the format
+	 */
+	public static Program read(RoboticArm robot, DataInputStream in)
+			throws IOException {
+
+		byte version = in.readByte();
+
+		if (version > VERSION) {
+			throw new IOException(String.format(
+					"Unsupported program format version %d", version));
+		}
+
+		int options = in.readByte();
+		int length = readVarInt(in);
+		byte[] data;
+
+		if ((options & OPT_COMPRESSED) != 0) {
+			byte[] compressed = new byte[readVarInt(in)];
+			in.readFully(compressed);
+			data = decompress(compressed, length);
+
+		} else {
+			data = new byte[length];
+			in.readFully(data);
+		}
+
+		try {
+			return readBody(robot, ByteBuffer.wrap(data));
+
+		} catch (BufferUnderflowException BUEx) {
+			throw new EOFException("Truncated program");
+		}
+	}
+
+	/**
+	 * Reads the decompressed body of a program in the compact format. The
+	 * varints are read directly from the buffer, while the strings and the
+	 * fixed width instructions are read through a stream of the buffer.
+	 */
+	private static Program readBody(RoboticArm robot, ByteBuffer body)
+			throws IOException {
+
+		DataInputStream bodyIn = new DataInputStream(
+				new ByteBufferInputStream(body));
+		String[] strings = new String[readVarInt(body)];
+
+		for (int sdx = 0; sdx < strings.length; ++sdx) {
+			strings[sdx] = bodyIn.readUTF();
+		}
+
+		Program prog = new Program(readString(strings, body));
+
+		// Read the positions
+		int numOfPositions = readVarInt(body);
+		int[] prev = new int[16];
+		int posIdx = -1;
+
+		while (numOfPositions-- > 0) {
+			posIdx += readVarInt(body) + 1;
+			Point pt = readPoint(prev, body);
+			prog.setPosition(posIdx, pt);
+			prev = pointBits(pt);
+		}
+
+		// Read the instructions
+		int numOfInst = Math.max(0, Math.min(readVarInt(body),
+				Program.MAX_SIZE));
+		int prevPosIdx = 0;
+
+		while (numOfInst-- > 0) {
+			byte kind = body.get();
+			Instruction inst;
+
+			if (kind == INST_MOTION) {
+				int flags = body.get();
+				int mType = readZigZag(body);
+				int pType = readZigZag(body);
+				int instPosIdx = prevPosIdx + readZigZag(body);
+				int circPType = readZigZag(body);
+				int circPosIdx = readZigZag(body);
+				float spdMod = body.getFloat();
+				int term = readZigZag(body);
+				int tFrameIdx = readZigZag(body);
+				int uFrameIdx = readZigZag(body);
+				int offType = readZigZag(body);
+				int offIdx = readZigZag(body);
+
+				inst = new PosMotionInst((flags & 0x1) != 0, mType, pType,
+						instPosIdx, circPType, circPosIdx, spdMod, term,
+						tFrameIdx, uFrameIdx, offType, offIdx);
+				prevPosIdx = instPosIdx;
+
+			} else if (kind == INST_CALL) {
+				boolean isCommented = body.get() != 0;
+				int tgtRID = readZigZag(body);
+				String tgtName = readString(strings, body);
+
+				// The target program is resolved by name, when it is first used
+				inst = new CallInstruction(tgtRID, tgtName);
+				inst.setIsCommented(isCommented);
+
+			} else if (kind == INST_FIXED) {
+				inst = DataManagement.loadInstruction(robot, bodyIn);
+
+			} else {
+				throw new IOException(String.format(
+						"Unknown instruction kind %d", kind));
+			}
+
+			prog.addInstAtEnd(inst);
+		}
+
+		return prog;
+	}
+
+	/**
+	 * Compresses the given data into an LZ4 block.
+	 */
+	private static byte[] compress(byte[] src) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(src.length);
+		int[] table = new int[1 << HASH_BITS];
+		int limit = src.length - LAST_LITERALS - MIN_MATCH;
+		int anchor = 0;
+		int pos = 0;
+
+		Arrays.fill(table, -1);
+
+		while (pos < limit) {
+			int seq = readIntLE(src, pos);
+			int hash = (seq * -1640531535) >>> (32 - HASH_BITS);
+			int ref = table[hash];
+			table[hash] = pos;
+
+			if (ref < 0 || pos - ref > 0xffff || readIntLE(src, ref) != seq) {
+				++pos;
+				continue;
+			}
+
+			// Extend the match
+			int matchLen = MIN_MATCH;
+			int maxLen = src.length - LAST_LITERALS - pos;
+
+			while (matchLen < maxLen && src[ref + matchLen] == src[pos + matchLen]) {
+				++matchLen;
+			}
+
+			writeSequence(src, anchor, pos - anchor, pos - ref, matchLen, out);
+			pos += matchLen;
+			anchor = pos;
+		}
+
+		// The block ends with a sequence of only literals
+		writeSequence(src, anchor, src.length - anchor, 0, 0, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decompresses the given LZ4 block, whose decompressed length is given.
+	 */
+	private static byte[] decompress(byte[] src, int length)
+			throws IOException {
+
+		byte[] dest = new byte[length];
+		int sdx = 0;
+		int ddx = 0;
+
+		try {
+			while (sdx < src.length) {
+				int token = src[sdx++] & 0xff;
+
+				// Copy the literals
+				int literals = token >>> 4;
+
+				if (literals == 15) {
+					int b;
+
+					do {
+						b = src[sdx++] & 0xff;
+						literals += b;
+					} while (b == 255);
+				}
+
+				System.arraycopy(src, sdx, dest, ddx, literals);
+				sdx += literals;
+				ddx += literals;
+
+				if (sdx == src.length) {
+					// The last sequence has no match
+					break;
+				}
+
+				// Copy the match, which may overlap its own output
+				int offset = (src[sdx] & 0xff) | ((src[sdx + 1] & 0xff) << 8);
+				sdx += 2;
+				int matchLen = token & 0xf;
+
+				if (matchLen == 15) {
+					int b;
+
+					do {
+						b = src[sdx++] & 0xff;
+						matchLen += b;
+					} while (b == 255);
+				}
+
+				matchLen += MIN_MATCH;
+
+				if (offset == 0 || offset > ddx || ddx + matchLen > length) {
+					throw new IOException("Corrupt compressed block");
+				}
+
+				for (int idx = 0; idx < matchLen; ++idx, ++ddx) {
+					dest[ddx] = dest[ddx - offset];
+				}
+			}
+
+		} catch (ArrayIndexOutOfBoundsException AIOOBEx) {
+			throw new EOFException("Truncated compressed block");
+		}
+
+		if (ddx != length) {
+			throw new IOException("Corrupt compressed block");
+		}
+
+		return dest;
+	}
+
+	/**
+	 * Returns the raw bits of the fields of the given point in the order, in
+	 * which they are encoded.
+	 */
+	private static int[] pointBits(Point pt) {
+		int numOfAngles = (pt.angles == null) ? 0 : pt.angles.length;
+		int[] bits = new int[Math.max(16, 7 + numOfAngles)];
+
+		if (pt.position != null) {
+			bits[0] = Float.floatToIntBits(pt.position.x);
+			bits[1] = Float.floatToIntBits(pt.position.y);
+			bits[2] = Float.floatToIntBits(pt.position.z);
+		}
+
+		if (pt.orientation != null) {
+			bits[3] = Float.floatToIntBits(pt.orientation.w());
+			bits[4] = Float.floatToIntBits(pt.orientation.x());
+			bits[5] = Float.floatToIntBits(pt.orientation.y());
+			bits[6] = Float.floatToIntBits(pt.orientation.z());
+		}
+
+		for (int adx = 0; adx < numOfAngles; ++adx) {
+			bits[7 + adx] = Float.floatToIntBits(pt.angles[adx]);
+		}
+
+		return bits;
+	}
+
+	/**
+	 * Reads a point, whose fields are encoded as the differences from the
+	 * raw bits of the given previous point's fields.
+	 */
+	private static Point readPoint(int[] prev, ByteBuffer in)
+			throws IOException {
+
+		int mask = in.get();
+		int numOfAngles = ((mask & PT_ANGLES) != 0) ? readVarInt(in) : 0;
+		float[] fields = new float[7 + numOfAngles];
+
+		for (int fdx = 0; fdx < fields.length; ++fdx) {
+			if ((fdx < 3 && (mask & PT_POSITION) == 0) ||
+					(fdx >= 3 && fdx < 7 && (mask & PT_ORIENTATION) == 0)) {
+				continue;
+			}
+
+			int last = (fdx < prev.length) ? prev[fdx] : 0;
+			fields[fdx] = Float.intBitsToFloat(readVarInt(in) ^ last);
+		}
+
+		PVector position = null;
+		RQuaternion orientation = null;
+		float[] angles = null;
+
+		if ((mask & PT_POSITION) != 0) {
+			position = new PVector(fields[0], fields[1], fields[2]);
+		}
+
+		if ((mask & PT_ORIENTATION) != 0) {
+			orientation = new RQuaternion(fields[3], fields[4], fields[5],
+					fields[6]);
+		}
+
+		if ((mask & PT_ANGLES) != 0) {
+			angles = Arrays.copyOfRange(fields, 7, fields.length);
+		}
+
+		return new Point(position, orientation, angles);
+	}
+
+	/**
+	 * Reads the index of a string in the string table and returns the
+	 * string. The index 0 is a null string.
+	 */
+	private static String readString(String[] strings, ByteBuffer in)
+			throws IOException {
+
+		int sdx = readVarInt(in);
+
+		if (sdx == 0) {
+			return null;
+
+		} else if (sdx > strings.length) {
+			throw new IOException(String.format("Invalid string index %d",
+					sdx));
+		}
+
+		return strings[sdx - 1];
+	}
+
+	/**
+	 * Reads an unsigned integer, which is encoded in seven bit groups, the
+	 * least significant group first.
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7f) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads an unsigned integer, which is encoded in seven bit groups, the
+	 * least significant group first.
+	 */
+	private static int readVarInt(ByteBuffer in) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.get();
+			value |= (b & 0x7f) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads a signed integer, which is encoded as a zig-zag varint.
+	 */
+	private static int readZigZag(ByteBuffer in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads four bytes of the given data in little endian order.
+	 */
+	private static int readIntLE(byte[] data, int pos) {
+		return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8) |
+				((data[pos + 2] & 0xff) << 16) | ((data[pos + 3] & 0xff) << 24);
+	}
+
+	/**
+	 * Writes an instruction, which is given in the fixed width format. A
+	 * motion or call instruction is re-encoded in its compact form. The
+	 * position index of a motion instruction is written as the difference
+	 * from the given position index of the previous motion instruction.
+	 *
+	 * @return	The position index of the written motion instruction, or the
+	 * 			given position index, if the instruction is not a motion
+	 */
+	private static int writeInstruction(byte[] inst, int prevPosIdx,
+			StringTable strings, DataOutputStream out) throws IOException {
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				inst));
+		byte type = in.readByte();
+
+		if (type == 2) {
+			// A motion instruction
+			boolean isCommented = in.readBoolean();
+			int mType = in.readInt();
+			int pType = in.readInt();
+			int posIdx = in.readInt();
+			int circPType = in.readInt();
+			int circPosIdx = in.readInt();
+			float spdMod = in.readFloat();
+			int term = in.readInt();
+			int tFrameIdx = in.readInt();
+			int uFrameIdx = in.readInt();
+			int offType = in.readInt();
+			int offIdx = in.readInt();
+
+			out.writeByte(INST_MOTION);
+			out.writeByte(isCommented ? 0x1 : 0);
+			writeZigZag(mType, out);
+			writeZigZag(pType, out);
+			writeZigZag(posIdx - prevPosIdx, out);
+			writeZigZag(circPType, out);
+			writeZigZag(circPosIdx, out);
+			out.writeFloat(spdMod);
+			writeZigZag(term, out);
+			writeZigZag(tFrameIdx, out);
+			writeZigZag(uFrameIdx, out);
+			writeZigZag(offType, out);
+			writeZigZag(offIdx, out);
+			return posIdx;
+
+		} else if (type == 7) {
+			// A call instruction
+			boolean isCommented = in.readBoolean();
+			int tgtRID = in.readInt();
+			String tgtName = in.readUTF();
+
+			out.writeByte(INST_CALL);
+			out.writeBoolean(isCommented);
+			writeZigZag(tgtRID, out);
+			writeVarInt(tgtName.equals("N/A") ? 0 : strings.intern(tgtName),
+					out);
+			return prevPosIdx;
+		}
+
+		out.writeByte(INST_FIXED);
+		out.write(inst);
+		return prevPosIdx;
+	}
+
+	/**
+	 * Writes the given point's fields as the exclusive or of their raw bits
+	 * with the raw bits of the given previous point's fields. Nearby points
+	 * share the sign, exponent and high mantissa bits of their fields, so
+	 * their differences are small varints. The difference is exact, unlike
+	 * the arithmetic difference of floats.
+	 *
+	 * @return	The raw bits of the given point's fields
+	 */
+	private static int[] writePoint(Point pt, int[] prev, DataOutputStream out)
+			throws IOException {
+
+		int mask = 0;
+
+		if (pt.position != null) { mask |= PT_POSITION; }
+		if (pt.orientation != null) { mask |= PT_ORIENTATION; }
+		if (pt.angles != null) { mask |= PT_ANGLES; }
+
+		out.writeByte(mask);
+
+		if (pt.angles != null) {
+			writeVarInt(pt.angles.length, out);
+		}
+
+		int[] bits = pointBits(pt);
+		int numOfFields = 7 + ((pt.angles == null) ? 0 : pt.angles.length);
+
+		for (int fdx = 0; fdx < numOfFields; ++fdx) {
+			if ((fdx < 3 && pt.position == null) ||
+					(fdx >= 3 && fdx < 7 && pt.orientation == null)) {
+				continue;
+			}
+
+			int last = (fdx < prev.length) ? prev[fdx] : 0;
+			writeVarInt(bits[fdx] ^ last, out);
+		}
+
+		return bits;
+	}
+
+	/**
+	 * Writes a sequence of the given literals followed by a match with the
+	 * given offset and length to an LZ4 block. A match length of 0 writes
+	 * only the literals.
+	 */
+	private static void writeSequence(byte[] src, int start, int literals,
+			int offset, int matchLen, ByteArrayOutputStream out) {
+
+		int litToken = Math.min(literals, 15);
+		int matchToken = (matchLen == 0) ? 0 : Math.min(matchLen - MIN_MATCH,
+				15);
+
+		out.write((litToken << 4) | matchToken);
+
+		if (litToken == 15) {
+			writeLength(literals - 15, out);
+		}
+
+		out.write(src, start, literals);
+
+		if (matchLen > 0) {
+			out.write(offset & 0xff);
+			out.write(offset >>> 8);
+
+			if (matchToken == 15) {
+				writeLength(matchLen - MIN_MATCH - 15, out);
+			}
+		}
+	}
+
+	/**
+	 * Writes the remainder of a literal or match length of an LZ4 block.
+	 */
+	private static void writeLength(int length, ByteArrayOutputStream out) {
+		while (length >= 255) {
+			out.write(255);
+			length -= 255;
+		}
+
+		out.write(length);
+	}
+
+	/**
+	 * Writes an unsigned integer in seven bit groups, the least significant
+	 * group first.
+	 */
+	private static void writeVarInt(int value, DataOutputStream out)
+			throws IOException {
+
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	/**
+	 * Writes a signed integer as a zig-zag varint, so that small negative
+	 * values are written in few bytes.
+	 */
+	private static void writeZigZag(int value, DataOutputStream out)
+			throws IOException {
+
+		writeVarInt((value << 1) ^ (value >> 31), out);
+	}
+
+	/**
+	 * The strings of a program, each of which is written once. Each string
+	 * is referenced by its index in the table plus one.
+	 */
+	private static class StringTable {
+		private final ArrayList<String> values = new ArrayList<>();
+		private final HashMap<String, Integer> indices = new HashMap<>();
+
+		private int intern(String s) {
+			Integer idx = indices.get(s);
+
+			if (idx == null) {
+				values.add(s);
+				idx = values.size();
+				indices.put(s, idx);
+			}
+
+			return idx;
+		}
+
+		private int size() {
+			return values.size();
+		}
+	}
+}
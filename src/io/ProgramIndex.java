@@ -0,0 +1,192 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The index of a robot's program save files, which holds the name, size and
+ * checksum of each program's save file. The index allows a robot's programs
+ * to be listed on start up without reading their save files, so that each
+ * program's save file is only read, when the program is first used.
+ *
+ * @author Joshua Hooker
+ */
+public class ProgramIndex {
+
+	/**
+	 * The name of the index file in a robot's save directory.
+	 */
+	private static final String FILE_NAME = "programs.idx";
+
+	/**
+	 * The robot's save directory.
+	 */
+	private final File dir;
+
+	/**
+	 * The size and checksum of each program's save file mapped to by the
+	 * program's name.
+	 */
+	private final TreeMap<String, long[]> entries;
+
+	/**
+	 * Reads the program index in the given robot save directory. The index is
+	 * empty, if the index file does not exist or is corrupt.
+	 *
+	 * @param dir	A robot's save directory
+	 */
+	public ProgramIndex(File dir) {
+		this.dir = dir;
+		entries = new TreeMap<>();
+
+		File src = new File(dir, FILE_NAME);
+
+		if (src.isFile()) {
+			try {
+				DataInputStream dataIn = DataManagement.readFile(src);
+				int size = dataIn.readInt();
+
+				while (size-- > 0) {
+					String name = dataIn.readUTF();
+					long fileSize = dataIn.readLong();
+					long checksum = dataIn.readLong();
+
+					entries.put(name, new long[] { fileSize, checksum });
+				}
+
+				dataIn.close();
+
+			} catch (IOException IOEx) {
+				// The index is rebuilt from the program files
+				System.err.printf("%s is corrupt!\n", src.getName());
+				entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the checksum of the save file of the program with the given
+	 * name.
+	 *
+	 * @param name	The name of a program
+	 * @return		The checksum of the program's save file, or null, if the
+	 * 				program is not indexed
+	 */
+	public synchronized Long getChecksum(String name) {
+		long[] entry = entries.get(name);
+		return (entry == null) ? null : entry[1];
+	}
+
+	/**
+	 * @return	The names of the indexed programs in alphabetical order
+	 */
+	public synchronized ArrayList<String> getNames() {
+		return new ArrayList<>(entries.keySet());
+	}
+
+	/**
+	 * Sets the size and checksum of the save file of the program with the
+	 * given name.
+	 *
+	 * @param name		The name of a program
+	 * @param size		The size of the program's save file in bytes
+	 * @param checksum	The checksum of the program's save file
+	 */
+	public synchronized void put(String name, long size, long checksum) {
+		entries.put(name, new long[] { size, checksum });
+	}
+
+	/**
+	 * Removes the program with the given name from the index.
+	 *
+	 * @param name	The name of a program
+	 */
+	public synchronized void remove(String name) {
+		entries.remove(name);
+	}
+
+	/**
+	 * Brings the index up to date with the program save files in the robot's
+	 * programs directory. Only the save files, which are missing from the
+	 * index or whose sizes differ from the index, are read.
+	 *
+	 * @return	Whether the index was modified
+	 */
+	public synchronized boolean validate() {
+		File[] progFiles = new File(dir, "programs").listFiles();
+		TreeMap<String, long[]> found = new TreeMap<>();
+		boolean modified = false;
+
+		if (progFiles != null) {
+			for (File file : progFiles) {
+				String filename = file.getName();
+
+				if (!file.isFile() || !filename.endsWith(".bin")) {
+					continue;
+				}
+
+				String name = filename.substring(0, filename.length() - 4);
+				long[] entry = entries.get(name);
+
+				if (entry == null || entry[0] != file.length()) {
+					try {
+						// Index the new or modified save file
+						byte[] data = Files.readAllBytes(file.toPath());
+						entry = new long[] { data.length,
+								DataManagement.checksum(data, data.length) };
+						modified = true;
+
+					} catch (IOException IOEx) {
+						System.err.printf("%s is corrupt!\n", filename);
+						continue;
+					}
+				}
+
+				found.put(name, entry);
+			}
+		}
+
+		if (found.size() != entries.size()) {
+			// Save files were removed
+			modified = true;
+		}
+
+		entries.clear();
+		entries.putAll(found);
+		return modified;
+	}
+
+	/**
+	 * Writes the index to its file, which is replaced by a rename, so that a
+	 * crash never leaves a partially written index.
+	 *
+	 * @throws IOException	If the index file cannot be written
+	 */
+	public void write() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(out);
+
+		synchronized (this) {
+			dataOut.writeInt(entries.size());
+
+			for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+				dataOut.writeUTF(entry.getKey());
+				dataOut.writeLong(entry.getValue()[0]);
+				dataOut.writeLong(entry.getValue()[1]);
+			}
+		}
+
+		dataOut.close();
+
+		File tmp = new File(dir, FILE_NAME + ".tmp");
+		DataManagement.writeFile(tmp, out);
+		DataManagement.replaceFile(tmp, new File(dir, FILE_NAME));
+	}
+}
@@ -0,0 +1,408 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Base64;
+
+import core.RobotRun;
+import geom.Point;
+import geom.RQuaternion;
+import processing.core.PVector;
+import programming.Instruction;
+import programming.Program;
+import programming.SelectStatement;
+import robot.RoboticArm;
+
+/**
+ * Writes programs in the text form of the pendant and reads them back. The
+ * first line of each instruction holds the instruction's pendant text followed
+ * by the instruction's encoding, after "##", from which the instruction is
+ * read. The pendant text of an instruction, which spans several lines, is
+ * continued on the following indented lines. An instruction, whose pendant
+ * text no longer matches its encoding, is rejected. The program's positions
+ * follow the instructions, with one line per position, which holds the
+ * position's coordinates, orientation and joint angles. So, the instructions
+ * of a program can be reordered, copied or removed and its positions edited,
+ * outside of the application.
+ *
+ * Both writing and reading stream a program one line at a time.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class ProgramText {
+
+	/**
+	 * Separates an instruction's pendant text from its encoding.
+	 */
+	private static final String ENCODING_MARK = " ##";
+
+	/**
+	 * Begins the positions of a program.
+	 */
+	private static final String POSITIONS = "[POSITIONS]";
+
+	/**
+	 * Ends a program.
+	 */
+	private static final String END = "[END]";
+
+	/**
+	 * Reads the next program in the text form from the given reader. Each
+	 * instruction is read from its encoding, and its pendant text must match
+	 * the text of the encoded instruction, apart from the instruction's
+	 * number and whitespace. So, an instruction, whose text was edited
+	 * outside of the application, is rejected rather than silently replaced
+	 * by its encoding.
+	 *
+	 * @param appRef		The application, which resolves the references of
+	 * 						the program's instructions
+	 * @param robot			The robot, which owns the program
+	 * @param in			The reader, from which to read the program
+	 * @return				The program, or null, if the reader has no more
+	 * 						programs
+	 * @throws IOException	If the program's text is malformed, or the text
+	 * 						of an instruction does not match its encoding
+	 */
+	public static Program read(RobotRun appRef, RoboticArm robot,
+			BufferedReader in) throws IOException {
+
+		String line;
+
+		// Skip the blank lines before the program
+		do {
+			line = in.readLine();
+
+			if (line == null) {
+				return null;
+			}
+
+		} while (line.trim().isEmpty());
+
+		if (!line.endsWith(":")) {
+			throw new IOException(String.format("Expected a program name: %s",
+					line));
+		}
+
+		Program p = new Program(line.substring(0, line.length() - 1));
+		boolean positions = false;
+		// The first line and the text of each instruction
+		ArrayList<String> firstLines = new ArrayList<>();
+		ArrayList<String> texts = new ArrayList<>();
+		// The instruction, whose lines are being read
+		String first = null;
+		StringBuilder text = new StringBuilder();
+		byte[] data = null;
+
+		while ((line = in.readLine()) != null) {
+			String trimmed = line.trim();
+			boolean continued = !trimmed.isEmpty() && line.startsWith("    ");
+
+			if (first != null && !continued && !trimmed.isEmpty()) {
+				// The previous line was the instruction's last line
+				addInst(robot, p, first, data);
+				firstLines.add(first);
+				texts.add(text.toString());
+				first = null;
+			}
+
+			if (trimmed.equals(END)) {
+				// Resolve the instructions' references before rendering them
+				new RobotPostProcessing(appRef, p).call();
+				verify(p, firstLines, texts);
+				return p;
+
+			} else if (trimmed.equals(POSITIONS)) {
+				positions = true;
+
+			} else if (positions && !trimmed.isEmpty()) {
+				readPosition(p, trimmed);
+
+			} else if (!trimmed.isEmpty()) {
+				int mark = line.lastIndexOf(ENCODING_MARK);
+				String lineText = (mark >= 0) ? line.substring(0, mark) : line;
+
+				if (continued) {
+					if (first == null) {
+						throw new IOException(String.format(
+								"%s has a continuation line without an "
+								+ "instruction: %s", p.getName(), line));
+					}
+
+				} else {
+					// The first line of an instruction
+					first = lineText;
+					text.setLength(0);
+					data = null;
+					lineText = lineText.replaceFirst("^\\s*\\d+\\)", "");
+				}
+
+				text.append(' ').append(lineText);
+
+				if (mark >= 0) {
+					if (data != null) {
+						throw new IOException(String.format(
+								"%s has an instruction with two encodings: %s",
+								p.getName(), first));
+					}
+
+					try {
+						data = Base64.getDecoder().decode(line.substring(
+								mark + ENCODING_MARK.length()).trim());
+
+					} catch (IllegalArgumentException IAEx) {
+						throw new IOException(String.format(
+								"%s has an invalid encoding: %s", p.getName(),
+								line));
+					}
+				}
+			}
+		}
+
+		throw new IOException(String.format("%s has no %s", p.getName(),
+				END));
+	}
+
+	/**
+	 * Decodes the given encoding of an instruction and adds the instruction
+	 * to the end of the given program.
+	 */
+	private static void addInst(RoboticArm robot, Program p, String first,
+			byte[] data) throws IOException {
+
+		if (data == null) {
+			throw new IOException(String.format(
+					"%s has an instruction without an encoding: %s",
+					p.getName(), first));
+		}
+
+		p.addInstAtEnd(DataManagement.loadInstruction(robot,
+				new DataInputStream(new ByteArrayInputStream(data))));
+	}
+
+	/**
+	 * Compares the text of each of the given program's instructions with the
+	 * given text, which was read along with the instruction's encoding.
+	 */
+	private static void verify(Program p, ArrayList<String> firstLines,
+			ArrayList<String> texts) throws IOException {
+
+		for (int idx = 0; idx < texts.size(); ++idx) {
+			StringBuilder rendered = new StringBuilder();
+
+			for (String str : p.getInstAt(idx).toStringArray()) {
+				if (str.compareTo("\n") != 0) {
+					rendered.append(' ').append(str);
+				}
+			}
+
+			if (!normalize(rendered).equals(normalize(texts.get(idx)))) {
+				throw new IOException(String.format(
+						"%s has an instruction, whose text does not match its "
+						+ "encoding: %s", p.getName(), firstLines.get(idx)));
+			}
+		}
+	}
+
+	/**
+	 * Collapses each run of whitespace in the given text into one space.
+	 */
+	private static String normalize(CharSequence text) {
+		return text.toString().trim().replaceAll("\\s+", " ");
+	}
+
+	/**
+	 * Writes the given program in the text form to the given writer, one
+	 * line at a time.
+	 *
+	 * @param p				The program to write
+	 * @param out			The writer, to which to write the program
+	 * @throws IOException	If the writer fails
+	 */
+	public static void write(Program p, Writer out) throws IOException {
+		String newLine = System.lineSeparator();
+		ByteArrayOutputStream instData = new ByteArrayOutputStream();
+		DataOutputStream instOut = new DataOutputStream(instData);
+
+		out.write(p.getName() + ":");
+		out.write(newLine);
+		out.write(newLine);
+
+		for (int j = 0; j < p.getNumOfInst(); j += 1) {
+			Instruction instr = p.getInstAt(j);
+			String[] text = instr.toStringArray();
+			// The encoding follows the first line of the instruction
+			StringBuilder first = new StringBuilder();
+			StringBuilder rest = new StringBuilder();
+			StringBuilder cur = first;
+
+			cur.append(j + 1).append(") ");
+
+			for (int k = 0; k < text.length; k += 1) {
+				String str = text[k];
+
+				if (str.compareTo("\n") != 0) {
+					cur.append(str).append(' ');
+				}
+
+				if (instr instanceof SelectStatement && k >= 5 &&
+						(k - 1) % 4 == 0 && k < text.length - 1) {
+
+					cur = rest;
+					cur.append(newLine).append("    ");
+				}
+			}
+
+			instData.reset();
+			DataManagement.saveInstruction(instr, instOut);
+
+			out.write(first.toString());
+			out.write(ENCODING_MARK);
+			out.write(Base64.getEncoder().encodeToString(
+					instData.toByteArray()));
+			out.write(rest.toString());
+			out.write(newLine);
+		}
+
+		out.write(POSITIONS);
+		out.write(newLine);
+
+		for (Integer idx : p.getPositionNums()) {
+			Point pt = p.getPosition(idx);
+
+			if (pt != null) {
+				out.write(String.format("P[%d]: ", idx));
+				writePosition(pt, out);
+				out.write(newLine);
+			}
+		}
+
+		out.write(END);
+		out.write(newLine);
+	}
+
+	/**
+	 * Parses the given number of floats separated by whitespace, or any
+	 * number of floats, if the given number is negative. A null field is
+	 * written as "-".
+	 */
+	private static float[] parseFloats(String text, int len)
+			throws IOException {
+
+		text = text.trim();
+
+		if (text.equals("-")) {
+			return null;
+
+		} else if (text.isEmpty() && len < 0) {
+			return new float[0];
+		}
+
+		String[] values = text.split("\\s+");
+
+		if (len >= 0 && values.length != len) {
+			throw new IOException(String.format("Expected %d values: %s", len,
+					text));
+		}
+
+		float[] floats = new float[values.length];
+
+		try {
+			for (int idx = 0; idx < values.length; ++idx) {
+				floats[idx] = Float.parseFloat(values[idx]);
+			}
+
+		} catch (NumberFormatException NFEx) {
+			throw new IOException(String.format("Invalid value: %s", text));
+		}
+
+		return floats;
+	}
+
+	/**
+	 * Reads a position line of the form
+	 * "P[idx]: x y z | w qx qy qz | j1 ... jn".
+	 */
+	private static void readPosition(Program p, String line)
+			throws IOException {
+
+		int colon = line.indexOf("]:");
+
+		if (!line.startsWith("P[") || colon < 0) {
+			throw new IOException(String.format("Expected a position: %s",
+					line));
+		}
+
+		String[] fields = line.substring(colon + 2).split("\\|", -1);
+
+		if (fields.length != 3) {
+			throw new IOException(String.format("Expected a position: %s",
+					line));
+		}
+
+		try {
+			int idx = Integer.parseInt(line.substring(2, colon));
+			float[] pos = parseFloats(fields[0], 3);
+			float[] orient = parseFloats(fields[1], 4);
+			float[] angles = parseFloats(fields[2], -1);
+
+			p.setPosition(idx, new Point(
+					(pos == null) ? null : new PVector(pos[0], pos[1], pos[2]),
+					(orient == null) ? null : new RQuaternion(orient[0],
+							orient[1], orient[2], orient[3]), angles));
+
+		} catch (NumberFormatException NFEx) {
+			throw new IOException(String.format("Invalid position index: %s",
+					line));
+		}
+	}
+
+	/**
+	 * Writes the given point's fields with the exact float values, so that
+	 * the point is read back unchanged.
+	 */
+	private static void writePosition(Point pt, Writer out)
+			throws IOException {
+
+		if (pt.position == null) {
+			out.write("-");
+
+		} else {
+			out.write(String.format("%s %s %s", Float.toString(pt.position.x),
+					Float.toString(pt.position.y),
+					Float.toString(pt.position.z)));
+		}
+
+		out.write(" | ");
+
+		if (pt.orientation == null) {
+			out.write("-");
+
+		} else {
+			RQuaternion q = pt.orientation;
+			out.write(String.format("%s %s %s %s", Float.toString(q.w()),
+					Float.toString(q.x()), Float.toString(q.y()),
+					Float.toString(q.z())));
+		}
+
+		out.write(" | ");
+
+		if (pt.angles == null) {
+			out.write("-");
+
+		} else {
+			for (int adx = 0; adx < pt.angles.length; ++adx) {
+				if (adx > 0) {
+					out.write(" ");
+				}
+
+				out.write(Float.toString(pt.angles[adx]));
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package io;
 
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 import core.RobotRun;
 import geom.Scenario;
@@ -10,52 +11,39 @@ import programming.IfStatement;
 import programming.Instruction;
 import programming.Program;
 import programming.SelectStatement;
-import robot.RoboticArm;
 
 /**
- * TODO general comments
+ * Resolves the references of a loaded program's instructions to other
+ * programs, robots and scenarios, as a task of the data worker pool.
  * 
  * @author Joshua Hooker
  */
-public class RobotPostProcessing implements Runnable {
+public class RobotPostProcessing implements Callable<Void> {
 	
 	private RobotRun appRef;
-	private RoboticArm robotRef;
-	private int progIdx;
+	private Program prog;
 	
 	/**
-	 * TODO comment this
+	 * Defines the task of resolving the references of the given program's
+	 * instructions.
 	 * 
-	 * @param appRef
-	 * @param robotRef
-	 * @param progIdx
+	 * @param appRef	The application
+	 * @param prog		A loaded program
 	 */
-	public RobotPostProcessing(RobotRun appRef, RoboticArm robotRef,
-			int progIdx) {
-		
+	public RobotPostProcessing(RobotRun appRef, Program prog) {
 		this.appRef = appRef;
-		this.robotRef = robotRef;
-		this.progIdx = progIdx;
+		this.prog = prog;
 	}
 	
 	@Override
-	public void run() {
-		Program prog = robotRef.getProgram(progIdx);
-		
+	public Void call() {
+
 		for (int idx = 0; idx < prog.getNumOfInst(); ++idx) {
 			Instruction inst = prog.getInstAt(idx);
 			
 			if (inst instanceof CallInstruction) {
 				// Update a top call instruction
-				CallInstruction cInst = (CallInstruction)inst;
-				RoboticArm tgtDevice = appRef.getRobot(cInst.getLoadedID());
-				String tgtName = cInst.getLoadedName();
-				
-				cInst.setTgtDevice(tgtDevice);
-				if (tgtDevice != null && tgtName != null) {
-					Program tgt = tgtDevice.getProgram(tgtName);
-					cInst.setProg(tgt);
-				}
+				resolveTgtDevice((CallInstruction)inst);
 				
 			} else if (inst instanceof SelectStatement) {
 				// Update call instructions in a select statement
@@ -65,15 +53,7 @@ public class RobotPostProcessing implements Runnable {
 				for (Instruction caseInst : instList) {
 					
 					if (caseInst instanceof CallInstruction) {
-						CallInstruction cInst = (CallInstruction)caseInst;
-						RoboticArm tgtDevice = appRef.getRobot(cInst.getLoadedID());
-						String tgtName = cInst.getLoadedName();
-						
-						cInst.setTgtDevice(tgtDevice);
-						if (tgtDevice != null && tgtName != null) {
-							Program tgt = tgtDevice.getProgram(tgtName);
-							cInst.setProg(tgt);
-						}
+						resolveTgtDevice((CallInstruction)caseInst);
 					}
 				}
 				
@@ -83,15 +63,7 @@ public class RobotPostProcessing implements Runnable {
 				Instruction subInst = stmt.getInstr();
 				
 				if (subInst instanceof CallInstruction) {
-					CallInstruction cInst = (CallInstruction)subInst;
-					RoboticArm tgtDevice = appRef.getRobot(cInst.getLoadedID());
-					String tgtName = cInst.getLoadedName();
-					
-					cInst.setTgtDevice(tgtDevice);
-					if (tgtDevice != null && tgtName != null) {
-						Program tgt = tgtDevice.getProgram(tgtName);
-						cInst.setProg(tgt);
-					}
+					resolveTgtDevice((CallInstruction)subInst);
 				}
 				
 			} else if (inst instanceof CamMoveToObject) {
@@ -101,6 +73,18 @@ public class RobotPostProcessing implements Runnable {
 				cMInst.setScene(scene);
 			}
 		}
+		
+		return null;
+	}
+	
+	/**
+	 * Sets the target robot of the given loaded call instruction. The target
+	 * program is looked up by name, when the instruction is first used, so
+	 * that the target does not have to be loaded along with this program.
+	 */
+	private void resolveTgtDevice(CallInstruction cInst) {
+		if (cInst.getTgtDevice() == null) {
+			cInst.setTgtDevice(appRef.getRobot(cInst.getLoadedID()));
+		}
 	}
-
 }
@@ -0,0 +1,240 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import geom.MeshData;
+
+/**
+ * Reads binary and ASCII .stl files into mesh data. A file is memory-mapped
+ * and its facets are copied directly into a single float array, without
+ * creating any intermediate objects for the facets. Reading a file does not
+ * involve the graphics of the application, so files can be read on any
+ * thread.
+ *
+ * @author Joshua Hooker
+ */
+public abstract class STLReader {
+
+	/**
+	 * The length of the header of a binary .stl file, including the facet
+	 * count.
+	 */
+	private static final int BIN_HEADER_LEN = 84;
+
+	/**
+	 * The length of a single facet in a binary .stl file: a normal, three
+	 * vertices and a two-byte attribute.
+	 */
+	private static final int BIN_FACET_LEN = 50;
+
+	/**
+	 * Reads the .stl data in the given buffer. The data is read as an ASCII
+	 * .stl, if it begins with 'solid' and its first facet follows the solid's
+	 * name, otherwise the data is read as a binary .stl, if it holds at least
+	 * as many facets as the facet count in its header. Many binary files
+	 * begin with 'solid' and some are padded after their last facet, so
+	 * neither the header text nor the exact length identify a binary file on
+	 * their own.
+	 *
+	 * @param data		The contents of a .stl file
+	 * @param filename	The name of the mesh's source file
+	 * @return			The mesh defined by the data
+	 */
+	public static MeshData read(ByteBuffer data, String filename) {
+		if (isBinary(data)) {
+			return new MeshData(filename, readBinary(data));
+		}
+
+		return new MeshData(filename, readASCII(data));
+	}
+
+	/**
+	 * Memory-maps the given .stl file and reads its mesh.
+	 *
+	 * @param file		A binary or ASCII .stl file
+	 * @param filename	The name of the mesh's source file
+	 * @return			The mesh defined by the file
+	 * @throws IOException	If the file cannot be read
+	 */
+	public static MeshData read(File file, String filename)
+			throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+
+			return read(data, filename);
+		}
+	}
+
+	/**
+	 * Determines if the given data is a binary .stl, based on its leading
+	 * keywords and the facet count in its header.
+	 */
+	private static boolean isBinary(ByteBuffer data) {
+		if (data.capacity() < BIN_HEADER_LEN || isASCII(data)) {
+			return false;
+		}
+
+		return BIN_HEADER_LEN + BIN_FACET_LEN * binFacets(data) <=
+				data.capacity();
+	}
+
+	/**
+	 * Determines if the given data begins with 'solid' followed, on the next
+	 * line, by a 'facet' or 'endsolid' keyword, as only an ASCII .stl does.
+	 */
+	private static boolean isASCII(ByteBuffer data) {
+		int idx = skipSpace(data, 0);
+
+		if (skipToken(data, idx) - idx != 5 || !matches(data, idx, "solid")) {
+			return false;
+		}
+
+		// Skip the name of the solid
+		while (idx < data.capacity() && data.get(idx) != '\n') {
+			++idx;
+		}
+
+		idx = skipSpace(data, idx);
+		int len = skipToken(data, idx) - idx;
+
+		return (len == 5 && matches(data, idx, "facet")) ||
+				(len == 8 && matches(data, idx, "endsolid"));
+	}
+
+	/**
+	 * Returns the facet count in the header of the given binary .stl data.
+	 */
+	private static long binFacets(ByteBuffer data) {
+		return data.order(ByteOrder.LITTLE_ENDIAN).getInt(80) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Determines if the bytes at the given index match the given keyword.
+	 */
+	private static boolean matches(ByteBuffer data, int idx, String keyword) {
+		for (int cdx = 0; cdx < keyword.length(); ++cdx) {
+			if (data.get(idx + cdx) != keyword.charAt(cdx)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads the facets of an ASCII .stl file. Only the 'normal' and 'vertex'
+	 * keywords are significant, each of which is followed by three values.
+	 */
+	private static float[] readASCII(ByteBuffer data) {
+		byte[] token = new byte[64];
+		float[] values = new float[3];
+		float[] normal = new float[3];
+		float[] vertices = new float[MeshData.STRIDE * 3 * 64];
+		int count = 0;
+		int idx = skipSpace(data, 0);
+
+		while (idx < data.capacity()) {
+			int end = skipToken(data, idx);
+			int len = end - idx;
+			boolean isNormal = len == 6 && matches(data, idx, "normal");
+			boolean isVertex = len == 6 && matches(data, idx, "vertex");
+			idx = skipSpace(data, end);
+
+			if (isNormal || isVertex) {
+				for (int vdx = 0; vdx < 3; ++vdx) {
+					end = skipToken(data, idx);
+					len = Math.min(end - idx, token.length);
+
+					for (int bdx = 0; bdx < len; ++bdx) {
+						token[bdx] = data.get(idx + bdx);
+					}
+
+					values[vdx] = Float.parseFloat(new String(token, 0, len,
+							StandardCharsets.US_ASCII));
+					idx = skipSpace(data, end);
+				}
+
+				if (isNormal) {
+					System.arraycopy(values, 0, normal, 0, 3);
+
+				} else {
+					if (count + MeshData.STRIDE > vertices.length) {
+						vertices = Arrays.copyOf(vertices, 2 * vertices.length);
+					}
+
+					System.arraycopy(values, 0, vertices, count, 3);
+					System.arraycopy(normal, 0, vertices, count + 3, 3);
+					count += MeshData.STRIDE;
+				}
+			}
+		}
+
+		return Arrays.copyOf(vertices, count);
+	}
+
+	/**
+	 * Reads the facets of a binary .stl file. Each float is read directly
+	 * from the little-endian buffer.
+	 */
+	private static float[] readBinary(ByteBuffer data) {
+		ByteBuffer le = data.order(ByteOrder.LITTLE_ENDIAN);
+		// Any bytes after the last facet are ignored
+		int facets = (int)binFacets(data);
+		int end = BIN_HEADER_LEN + BIN_FACET_LEN * facets;
+		float[] vertices = new float[MeshData.STRIDE * 3 * facets];
+		int count = 0;
+
+		for (int idx = BIN_HEADER_LEN; idx < end; idx += BIN_FACET_LEN) {
+
+			float nx = le.getFloat(idx);
+			float ny = le.getFloat(idx + 4);
+			float nz = le.getFloat(idx + 8);
+
+			for (int vdx = idx + 12; vdx < idx + 48; vdx += 12) {
+				vertices[count++] = le.getFloat(vdx);
+				vertices[count++] = le.getFloat(vdx + 4);
+				vertices[count++] = le.getFloat(vdx + 8);
+				vertices[count++] = nx;
+				vertices[count++] = ny;
+				vertices[count++] = nz;
+			}
+		}
+
+		return vertices;
+	}
+
+	/**
+	 * Returns the index of the first byte after the given index, which is not
+	 * whitespace.
+	 */
+	private static int skipSpace(ByteBuffer data, int idx) {
+		while (idx < data.capacity() && data.get(idx) <= ' ') {
+			++idx;
+		}
+
+		return idx;
+	}
+
+	/**
+	 * Returns the index of the first whitespace byte after the given index.
+	 */
+	private static int skipToken(ByteBuffer data, int idx) {
+		while (idx < data.capacity() && data.get(idx) > ' ') {
+			++idx;
+		}
+
+		return idx;
+	}
+}
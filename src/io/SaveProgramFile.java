@@ -1,18 +1,20 @@
 package io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 import programming.Program;
 
 /**
- * TODO general comments
+ * Saves a single program to its save file, as a task of the data worker
+ * pool.
  * 
  * @author Joshua Hooker
  */
-public class SaveProgramFile implements Runnable {
+public class SaveProgramFile implements Callable<Void> {
 	
 	private Program progRef;
 	private File dest;
@@ -29,25 +31,20 @@ public class SaveProgramFile implements Runnable {
 	}
 	
 	@Override
-	public void run() {
-		try {
-			if (!dest.exists()) {
-				// Create the file if it does not exist
-				dest.createNewFile();
-			}
-			
-			FileOutputStream out = new FileOutputStream(dest);
-			DataOutputStream dataOut = new DataOutputStream(out);
-			
-			DataManagement.saveProgram(progRef, dataOut);
-
-			dataOut.close();
-			out.close();
-
-		} catch (IOException IOEx) {
-			// An error occurred with writing to dest
-			System.err.printf("%s is corrupt!\n", dest.getName());;
+	public Void call() throws IOException {
+		if (!dest.exists()) {
+			// Create the file if it does not exist
+			dest.createNewFile();
 		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(out);
+		
+		DataManagement.saveProgram(progRef, dataOut);
+
+		dataOut.close();
+		DataManagement.writeFile(dest, out);
+		return null;
 	}
 
 }
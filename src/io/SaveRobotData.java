@@ -1,11 +1,13 @@
 package io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import global.Fields;
 import programming.Macro;
@@ -19,7 +21,7 @@ import robot.RoboticArm;
  * 
  * @author Joshua Hooker
  */
-public class SaveRobotData implements Runnable {
+public class SaveRobotData implements Callable<Void> {
 
 	private RoboticArm robotRef;
 	private String tmpDirPath;
@@ -40,8 +42,14 @@ public class SaveRobotData implements Runnable {
 		this.tmpDirPath = tmpDirPath;
 	}
 	
+	/**
+	 * Saves the robot's data, which is selected by the data flag. The
+	 * robot's programs are saved in parallel on the data worker pool.
+	 * 
+	 * @throws IOException	If a program cannot be saved
+	 */
 	@Override
-	public void run() {
+	public Void call() throws IOException {
 		File destDir = new File(String.format("%srobot%d/", tmpDirPath,
 				robotRef.RID));
 		
@@ -56,7 +64,7 @@ public class SaveRobotData implements Runnable {
 		
 		final boolean savePrograms = oldSaveFile.exists() ||
 				((dataFlag & 0x1) != 0);
-		Thread[] progThreads;
+		ArrayList<SaveProgramFile> progTasks = new ArrayList<>();
 		
 		if (savePrograms) {
 			File progDir = new File(String.format("%s/programs",
@@ -78,20 +86,18 @@ public class SaveRobotData implements Runnable {
 			
 			/* Save each program in a separate file within the given robot's program
 			 * directory */
-			progThreads = new Thread[robotRef.numOfPrograms()];
-			// Run a thread for saving each program
-			for (int idx = 0; idx < progThreads.length; ++idx) {
+			for (int idx = 0; idx < robotRef.numOfPrograms(); ++idx) {
 				Program p = robotRef.getProgram(idx);
 				File dest = new File( String.format("%s/%s.bin", progDir,
 						p.getName()) );
-				progThreads[idx] = new Thread(new SaveProgramFile(p, dest));
-				progThreads[idx].start();
+				progTasks.add(new SaveProgramFile(p, dest));
 			}
-			
-		} else {
-			progThreads = null;
 		}
 		
+		// Save the programs, while the rest of the robot's data is saved
+		Future<ArrayList<Void>> progSaves = DataManagement.submitTasks(
+				progTasks);
+		
 		if ((dataFlag & 0x2) != 0) {
 			// Save the robot's frames
 			saveFrameBytes(String.format("%s/frames.bin", destDir.getAbsolutePath()));
@@ -107,12 +113,9 @@ public class SaveRobotData implements Runnable {
 			saveMacros(String.format("%s/macros.bin", destDir.getAbsolutePath()));
 		}
 		
-		if (savePrograms) {
-			// Wait for program threads to finish
-			for (int idx = 0; idx < progThreads.length; ++idx) {
-				Fields.waitForThread(progThreads[idx]);
-			}
-		}
+		// Wait for the programs to be saved
+		DataManagement.waitForTasks(progSaves);
+		return null;
 	}
 	
 	/**
@@ -130,7 +133,7 @@ public class SaveRobotData implements Runnable {
 				dest.createNewFile();
 			}
 
-			FileOutputStream out = new FileOutputStream(dest);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 
 			// Save Tool Frames
@@ -148,7 +151,7 @@ public class SaveRobotData implements Runnable {
 			}
 
 			dataOut.close();
-			out.close();
+			DataManagement.writeFile(dest, out);
 			return 0;
 
 		} catch (FileNotFoundException FNFEx) {
@@ -187,7 +190,7 @@ public class SaveRobotData implements Runnable {
 				}
 			}
 						
-			FileOutputStream out = new FileOutputStream(destDir);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 			
 			dataOut.writeInt(robotRef.numOfMacros());
@@ -209,7 +212,7 @@ public class SaveRobotData implements Runnable {
 			}
 			
 			dataOut.close();
-			out.close();
+			DataManagement.writeFile(destDir, out);
 		} 
 		catch (Exception e) {
 			System.err.println("Unable to save macros for robot " +
@@ -232,7 +235,7 @@ public class SaveRobotData implements Runnable {
 				dest.createNewFile();
 			}
 
-			FileOutputStream out = new FileOutputStream(dest);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 
 			int numOfREntries = 0,
@@ -297,7 +300,7 @@ public class SaveRobotData implements Runnable {
 			}
 
 			dataOut.close();
-			out.close();
+			DataManagement.writeFile(dest, out);
 			return 0;
 
 		} catch (FileNotFoundException FNFEx) {
@@ -1,8 +1,8 @@
 package io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 import geom.Scenario;
@@ -35,13 +35,13 @@ public class SaveScenarioFile implements Runnable {
 				dest.createNewFile();
 			}
 			
-			FileOutputStream out = new FileOutputStream(dest);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			DataOutputStream dataOut = new DataOutputStream(out);
 			// Save the scenario data
 			DataManagement.saveScenario(scenario, dataOut);
 			
 			dataOut.close();
-			out.close();
+			DataManagement.writeFile(dest, out);
 			
 		} catch (IOException IOEx) {
 			// Issue with writing or opening a file
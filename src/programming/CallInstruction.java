@@ -26,9 +26,9 @@ public class CallInstruction extends Instruction {
 	
 	/**
 	 * Primarily used for loading programs. Since programs are loaded
-	 * sequentially, some call instructions need a temporary
-	 * reference to a program. This field is NOT always equivalent
-	 * with the tgt's name, since the user can rename programs.
+	 * lazily, a loaded call instruction refers to its target program by
+	 * name, until the target is first used. This field is cleared, once the
+	 * target is resolved, since the user can rename programs.
 	 */
 	private String loadedName;
 	
@@ -62,7 +62,11 @@ public class CallInstruction extends Instruction {
 
 	@Override
 	public Instruction clone() {
-		return new CallInstruction(tgtDevice, tgt);
+		CallInstruction copy = new CallInstruction(tgtDevice, tgt);
+		copy.loadedID = loadedID;
+		copy.loadedName = loadedName;
+		
+		return copy;
 	}
 	
 	public int getLoadedID() {
@@ -73,16 +77,45 @@ public class CallInstruction extends Instruction {
 		return loadedName;
 	}
 	
+	/**
+	 * Returns the target program of this call instruction. A loaded call
+	 * instruction's target is looked up by name, when it is first used.
+	 * 
+	 * @return	The target program, or null, if the target is not set
+	 */
 	public Program getProg() {
+		if (tgt == null && loadedName != null && tgtDevice != null) {
+			tgt = tgtDevice.getProgram(loadedName);
+			
+			if (tgt != null) {
+				loadedName = null;
+			}
+		}
+		
 		return tgt;
 	}
 	
+	/**
+	 * Returns the name of the target program of this call instruction,
+	 * without loading the target.
+	 * 
+	 * @return	The target program's name, or null, if the target is not set
+	 */
+	public String getTgtName() {
+		if (tgt != null) {
+			return tgt.getName();
+		}
+		
+		return loadedName;
+	}
+	
 	public RoboticArm getTgtDevice() {
 		return tgtDevice;
 	}
 
 	public void setProg(Program p) {
 		tgt = p;
+		loadedName = null;
 	}
 	
 	public void setTgtDevice(RoboticArm tgt) {
@@ -109,6 +142,7 @@ public class CallInstruction extends Instruction {
 	}
 
 	private String getProgName() {
-		return (tgt == null) ? "..." : tgt.getName();
+		String name = getTgtName();
+		return (name == null) ? "..." : name;
 	}
 }
\ No newline at end of file
@@ -1,58 +1,369 @@
 package programming;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import enums.InstUndoType;
+import global.Fields;
+import io.DataManagement;
+import robot.RoboticArm;
 
 /**
- * TODO general comments
- * 
+ * Defines a reversible modification of a program's instructions. An insertion
+ * or removal undo state covers a contiguous range of instructions, so that a
+ * paste or a deletion of several lines is stored as a single undo state. An
+ * edit undo state stores only the bytes of the instruction's encoding, which
+ * were modified by the edit, rather than a copy of the instruction.
+ *
  * @author Joshua Hooker
  */
 public class InstUndoState {
-	private InstElement elemRef;
-	private int groupNum;
+
+	/**
+	 * The estimated number of bytes occupied by an undo state, aside from its
+	 * instruction data.
+	 */
+	private static final int OVERHEAD = 48;
+
+	/**
+	 * The elements of the removed range in program order, or the replaced
+	 * element.
+	 */
+	private final ArrayList<InstElement> elems;
+
+	private final int groupNum;
 	private int idx;
-	private Program parent;
-	private InstUndoType type;
-	
+	private final Program parent;
+	private final InstUndoType type;
+
+	/**
+	 * The number of inserted instructions.
+	 */
+	private int count;
+
+	/**
+	 * The ID of the edited instruction.
+	 */
+	private int instID;
+
+	/**
+	 * The edited instruction, until the edit is settled.
+	 */
+	private Instruction edited;
+
+	/**
+	 * The encoding of the edited instruction before the edit, until the edit
+	 * is settled.
+	 */
+	private byte[] before;
+
+	/**
+	 * The changes of the edit, which revert the encoding of the instruction
+	 * after the edit to its encoding before the edit.
+	 */
+	private byte[] patch;
+
+	/**
+	 * The length of the encoding of the instruction after the edit.
+	 */
+	private int afterLen;
+
+	/**
+	 * A copy of an edited instruction, whose references are resolved after
+	 * the instruction is loaded, so it cannot be decoded.
+	 */
+	private InstElement copy;
+
+	/**
+	 * The estimated number of bytes occupied by this undo state.
+	 */
+	private int size;
+
+	/**
+	 * Creates an undo state for the modification of the given instruction
+	 * element. An edited element must be the program's element, before it is
+	 * edited, whereas an inserted, removed or replaced element is the element
+	 * after the modification.
+	 *
+	 * @param type		The type of modification
+	 * @param groupNum	The undo group of this state
+	 * @param parent	The modified program
+	 * @param idx		The index of the modified instruction in the program
+	 * @param ref		The modified instruction element
+	 */
 	public InstUndoState(InstUndoType type, int groupNum, Program parent,
 			int idx, InstElement ref) {
-		
+
 		this.type = type;
 		this.groupNum = groupNum;
 		this.parent = parent;
 		this.idx = idx;
-		this.elemRef = ref;
-		
+		elems = new ArrayList<>();
+		size = OVERHEAD;
+
+		if (type == InstUndoType.EDITED) {
+			instID = ref.getID();
+
+			if (needsResolution(ref.getInst())) {
+				copy = new InstElement(ref.getID(), ref.getInst().clone());
+				size += DataManagement.encodeInstruction(ref.getInst()).length;
+
+			} else {
+				edited = ref.getInst();
+				before = DataManagement.encodeInstruction(edited);
+				size += before.length;
+			}
+
+		} else if (type == InstUndoType.INSERTED) {
+			count = 1;
+
+		} else {
+			elems.add(ref);
+			size += DataManagement.encodeInstruction(ref.getInst()).length;
+		}
+	}
+
+	/**
+	 * Determines if the given instruction holds references, which are
+	 * resolved after the instruction is loaded.
+	 */
+	private static boolean needsResolution(Instruction inst) {
+		return inst instanceof CallInstruction ||
+				inst instanceof CamMoveToObject ||
+				inst instanceof IfStatement || inst instanceof SelectStatement;
+	}
+
+	/**
+	 * Reads an unsigned variable length integer from the given patch.
+	 */
+	private static int readVarInt(byte[] data, int[] pos) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = data[pos[0]++];
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	/**
+	 * Writes an unsigned variable length integer to the given patch.
+	 */
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+
+		out.write(value);
 	}
-	
+
+	/**
+	 * Adds the given modification to this undo state, if the modification
+	 * extends the range of this state's insertion or removal.
+	 *
+	 * @param type		The type of modification
+	 * @param groupNum	The undo group of the modification
+	 * @param parent	The modified program
+	 * @param idx		The index of the modified instruction in the program
+	 * @param ref		The modified instruction element
+	 * @return			Whether the modification was added to this state
+	 */
+	public boolean extend(InstUndoType type, int groupNum, Program parent,
+			int idx, InstElement ref) {
+
+		if (type != this.type || groupNum != this.groupNum ||
+				parent != this.parent) {
+
+			return false;
+
+		} else if (type == InstUndoType.INSERTED && idx == this.idx + count) {
+			// Insertion after the inserted range
+			++count;
+			return true;
+
+		} else if (type == InstUndoType.REMOVED) {
+			if (idx == this.idx) {
+				// Removal of the instruction after the removed range
+				elems.add(ref);
+
+			} else if (idx == this.idx - 1) {
+				// Removal of the instruction before the removed range
+				elems.add(0, ref);
+				this.idx = idx;
+
+			} else {
+				return false;
+			}
+
+			size += DataManagement.encodeInstruction(ref.getInst()).length;
+			return true;
+		}
+
+		return false;
+	}
+
 	public int groupNum() {
 		return groupNum;
 	}
-	
+
+	/**
+	 * Replaces the encoding of the edited instruction with the changes made
+	 * by the edit. This must be called after the edit is complete and before
+	 * any further modifications to the program.
+	 *
+	 * @return	Whether this undo state modified its program, as an edit,
+	 * 			which changed nothing, can be discarded
+	 */
+	public boolean settle() {
+		if (edited == null) {
+			return true;
+		}
+
+		byte[] after = DataManagement.encodeInstruction(edited);
+		edited = null;
+
+		if (Arrays.equals(before, after)) {
+			before = null;
+			size = OVERHEAD;
+			return false;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		if (before.length != after.length) {
+			// Keep the whole encoding
+			out.write(1);
+			out.write(before, 0, before.length);
+
+		} else {
+			// Keep each run of the modified bytes
+			out.write(0);
+			int prev = 0;
+			int bdx = 0;
+
+			while (bdx < before.length) {
+				if (before[bdx] == after[bdx]) {
+					++bdx;
+					continue;
+				}
+
+				int start = bdx;
+
+				while (bdx < before.length && before[bdx] != after[bdx]) {
+					++bdx;
+				}
+
+				writeVarInt(out, start - prev);
+				writeVarInt(out, bdx - start);
+				out.write(before, start, bdx - start);
+				prev = bdx;
+			}
+		}
+
+		afterLen = after.length;
+		patch = out.toByteArray();
+		before = null;
+		size = OVERHEAD + patch.length;
+		return true;
+	}
+
+	/**
+	 * @return	The estimated number of bytes occupied by this undo state
+	 */
+	public int size() {
+		return size;
+	}
+
 	@Override
 	public String toString() {
-		return String.format("%s %d %s %d %s %d", type.name(), groupNum,
-				parent.getName(), idx, elemRef.getInst().getClass(),
-				elemRef.getID());
+		return String.format("%s %d %s %d %d %d", type.name(), groupNum,
+				parent.getName(), idx, Math.max(count, elems.size()), size);
 	}
-	
+
 	/**
-	 * Reverts the state of the instruction element associated with this undo
+	 * Reverts the modification of the instructions associated with this undo
 	 * state.
+	 *
+	 * @param robot	The robot, which owns the modified program
 	 */
-	public void undo() {
-		if (type == InstUndoType.EDITED || type == InstUndoType.REPLACED) {
-			// Undo an edit or replacement
-			parent.replace(idx, elemRef);
-			
+	public void undo(RoboticArm robot) {
+		if (type == InstUndoType.EDITED) {
+			// Undo an edit
+			settle();
+
+			if (copy != null) {
+				parent.replace(idx, copy);
+
+			} else if (patch != null) {
+				Instruction prev = revert(robot);
+
+				if (prev != null) {
+					parent.replace(idx, new InstElement(instID, prev));
+
+				} else {
+					Fields.debug("Cannot undo the edit of %s at %d\n",
+							parent.getName(), idx);
+				}
+			}
+
+		} else if (type == InstUndoType.REPLACED) {
+			// Undo a replacement
+			parent.replace(idx, elems.get(0));
+
 		} else if (type == InstUndoType.INSERTED) {
 			// Undo an insertion
-			parent.rmInst(elemRef.getID());
-			
+			parent.rmRange(idx, idx + count);
+
 		} else if (type == InstUndoType.REMOVED) {
 			// Undo a deletion
-			parent.addAt(idx, elemRef);
+			parent.addAllAt(idx, elems);
+		}
+	}
+
+	/**
+	 * Applies the edit's changes to the encoding of the program's current
+	 * instruction, which must be the instruction after the edit.
+	 *
+	 * @param robot	The robot, which owns the modified program
+	 * @return		The instruction before the edit, or null, if the current
+	 * 				instruction is not the instruction after the edit
+	 */
+	private Instruction revert(RoboticArm robot) {
+		if (idx < 0 || idx >= parent.getNumOfInst()) {
+			return null;
+		}
+
+		byte[] data;
+
+		if (patch[0] == 1) {
+			data = Arrays.copyOfRange(patch, 1, patch.length);
+
+		} else {
+			data = DataManagement.encodeInstruction(parent.getInstAt(idx));
+
+			if (data.length != afterLen) {
+				return null;
+			}
+
+			int[] pos = new int[] { 1 };
+			int bdx = 0;
+
+			while (pos[0] < patch.length) {
+				bdx += readVarInt(patch, pos);
+				int len = readVarInt(patch, pos);
+				System.arraycopy(patch, pos[0], data, bdx, len);
+				pos[0] += len;
+				bdx += len;
+			}
 		}
+
+		return DataManagement.decodeInstruction(robot, data);
 	}
-	
 }
@@ -1,6 +1,7 @@
 package programming;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Set;
@@ -20,9 +21,16 @@ public class Program implements Iterable<InstElement> {
 	 */
 	public static final int MAX_UNDO_SIZE;
 	
+	/**
+	 * The maximum number of bytes, which the stored program modifications may
+	 * occupy at one time.
+	 */
+	public static final int MAX_UNDO_BYTES;
+	
 	static {
 		MAX_SIZE = 500;
 		MAX_UNDO_SIZE = 50;
+		MAX_UNDO_BYTES = 64 * 1024;
 	}
 	
 	private final ArrayList<InstElement> instructions;
@@ -35,6 +43,12 @@ public class Program implements Iterable<InstElement> {
 	
 	private String name;
 	
+	/**
+	 * The number of modifications made to this program's instructions or
+	 * positions. This is used to detect when a program has been modified.
+	 */
+	private int editCount;
+	
 	private int nextID;
 	private int nextPosition;
 
@@ -44,6 +58,7 @@ public class Program implements Iterable<InstElement> {
 		LPosReg = new HashMap<>();
 		instructions = new ArrayList<>();
 		
+		editCount = 0;
 		nextID = 0;
 		nextPosition = 0;
 	}
@@ -57,6 +72,7 @@ public class Program implements Iterable<InstElement> {
 			if (nextID >= 0) {
 				InstElement e = new InstElement(nextID, inst);
 				instructions.add(idx, e);
+				++editCount;
 				
 			} else {
 				Fields.setMessage("Program is full!");
@@ -80,6 +96,7 @@ public class Program implements Iterable<InstElement> {
 	public void addPosition(Point pt) {
 		LPosReg.put(nextPosition, pt);
 		updateNextPosition();
+		++editCount;
 	}
 
 	/**
@@ -88,6 +105,7 @@ public class Program implements Iterable<InstElement> {
 	public void clearPositions() {
 		LPosReg.clear();
 		nextPosition = 0;
+		++editCount;
 	}
 
 	/**
@@ -144,6 +162,16 @@ public class Program implements Iterable<InstElement> {
 		return instructions.get(idx);
 	}
 	
+	/**
+	 * Returns the number of modifications made to this program. A change in
+	 * this value indicates that the program was modified.
+	 * 
+	 * @return	The number of modifications made to this program
+	 */
+	public int getEditCount() {
+		return editCount;
+	}
+	
 	/**
 	 * Returns the instruction at the given index in the program's list of
 	 * instructions.
@@ -226,6 +254,14 @@ public class Program implements Iterable<InstElement> {
 		return instructions.iterator();
 	}
 	
+	/**
+	 * Records a modification made to one of this program's instructions,
+	 * which is edited in place rather than replaced.
+	 */
+	public void markEdited() {
+		++editCount;
+	}
+	
 	/**
 	 * Replaces the instruction and ID of the instruction element at the given
 	 * index in the program's list of instruction elements.
@@ -241,6 +277,7 @@ public class Program implements Iterable<InstElement> {
 			Instruction old = e.getInst();
 			// Add the new instruction
 			e.setElement(getNextID(), inst);
+			++editCount;
 			
 			return old;
 		}
@@ -261,6 +298,7 @@ public class Program implements Iterable<InstElement> {
 			if (e.getID() == id) {
 				// Remove the instruction's ID from the list ordering
 				instructions.remove(idx);
+				++editCount;
 				return e;
 			}
 		}
@@ -277,6 +315,7 @@ public class Program implements Iterable<InstElement> {
 	 */
 	public InstElement rmInstAt(int idx) {
 		InstElement removed = instructions.remove(idx);
+		++editCount;
 		return removed;
 	}
 	
@@ -300,6 +339,7 @@ public class Program implements Iterable<InstElement> {
 		if (idx >= 0 && idx < 1000) {
 			Point prevPt = LPosReg.get(idx);
 			LPosReg.put(idx, pt);
+			++editCount;
 
 			if (idx == nextPosition) {
 				// update the next position index if necessary
@@ -322,6 +362,35 @@ public class Program implements Iterable<InstElement> {
 	protected void addAt(int idx, InstElement e) {
 		if (idx >= 0 && idx < instructions.size()) {
 			instructions.add(idx, e);
+			++editCount;
+		}
+	}
+	
+	/**
+	 * Adds the given instruction elements to the program's list of
+	 * instruction elements starting at the given index.
+	 * 
+	 * @param idx	The index at which to add the first element
+	 * @param elems	The elements to add to this program in order
+	 */
+	protected void addAllAt(int idx, Collection<InstElement> elems) {
+		if (idx >= 0 && idx <= instructions.size()) {
+			instructions.addAll(idx, elems);
+			++editCount;
+		}
+	}
+	
+	/**
+	 * Removes the instruction elements in the given range of the program's
+	 * list of instruction elements.
+	 * 
+	 * @param from	The index of the first element to remove
+	 * @param to	The index after the last element to remove
+	 */
+	protected void rmRange(int from, int to) {
+		if (from >= 0 && from <= to && to <= instructions.size()) {
+			instructions.subList(from, to).clear();
+			++editCount;
 		}
 	}
 	
@@ -335,6 +404,7 @@ public class Program implements Iterable<InstElement> {
 	protected void replace(int idx, InstElement e) {
 		if (idx >= 0 && idx < instructions.size()) {
 			instructions.set(idx, e);
+			++editCount;
 		}
 	}
 
@@ -0,0 +1,39 @@
+package robot;
+
+import geom.WorldObject;
+
+/**
+ * Defines the clearance between a robot and the closest obstacle in its
+ * scenario.
+ * 
+ * @author Joshua Hooker
+ */
+public class Clearance {
+	
+	/**
+	 * The distance between the robot and the obstacle. A negative distance is
+	 * the penetration depth of a collision between the robot and the obstacle.
+	 */
+	public final float distance;
+	
+	/**
+	 * The world object closest to the robot.
+	 */
+	public final WorldObject obstacle;
+	
+	/**
+	 * Defines the clearance between a robot and the given obstacle.
+	 * 
+	 * @param obstacle	The closest obstacle to the robot
+	 * @param distance	The signed distance between the robot and the obstacle
+	 */
+	public Clearance(WorldObject obstacle, float distance) {
+		this.obstacle = obstacle;
+		this.distance = distance;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s: %4.3f", obstacle.getName(), distance);
+	}
+}
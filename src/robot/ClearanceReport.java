@@ -0,0 +1,80 @@
+package robot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the minimum clearance between a robot and the obstacles in its
+ * scenario for each program executed by the robot.
+ * 
+ * @author Joshua Hooker
+ */
+public class ClearanceReport {
+	
+	/**
+	 * The minimum clearance recorded for each program, keyed by the name of
+	 * the program.
+	 */
+	private final LinkedHashMap<String, Clearance> minClearance;
+	
+	/**
+	 * Creates an empty report.
+	 */
+	public ClearanceReport() {
+		minClearance = new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Removes all the records from this report.
+	 */
+	public void clear() {
+		minClearance.clear();
+	}
+	
+	/**
+	 * Returns the minimum clearance recorded for the program with the given
+	 * name.
+	 * 
+	 * @param progName	The name of a program
+	 * @return			The minimum clearance recorded for the program, or null
+	 * 					if no clearance was recorded for the program
+	 */
+	public Clearance getMinClearance(String progName) {
+		return minClearance.get(progName);
+	}
+	
+	/**
+	 * Updates the minimum clearance of the program with the given name, if the
+	 * given clearance is less than that recorded for the program.
+	 * 
+	 * @param progName	The name of the program being executed
+	 * @param c			The current clearance of the robot
+	 */
+	public void record(String progName, Clearance c) {
+		if (progName != null && c != null) {
+			Clearance min = minClearance.get(progName);
+			
+			if (min == null || c.distance < min.distance) {
+				minClearance.put(progName, c);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a line for each program in this report, which includes the
+	 * name of the program, the closest obstacle and its distance.
+	 * 
+	 * @return	The lines of this report
+	 */
+	public ArrayList<String> toLines() {
+		ArrayList<String> lines = new ArrayList<>();
+		
+		for (Map.Entry<String, Clearance> entry : minClearance.entrySet()) {
+			lines.add(String.format("%s -> %s", entry.getKey(),
+					entry.getValue()));
+		}
+		
+		return lines;
+	}
+}
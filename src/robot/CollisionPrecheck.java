@@ -0,0 +1,683 @@
+package robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import frame.ToolFrame;
+import geom.BoundingBox;
+import geom.ConvexVolume;
+import geom.GJK;
+import geom.Part;
+import geom.Point;
+import geom.RQuaternion;
+import geom.Scenario;
+import geom.WorldObject;
+import global.Fields;
+import global.RMath;
+import processing.core.PConstants;
+import processing.core.PVector;
+import programming.InstElement;
+import programming.Instruction;
+import programming.MotionInstruction;
+import programming.PosMotionInst;
+import programming.Program;
+
+/**
+ * Checks the path of each motion instruction in a program for collisions
+ * between the robot and the obstacles in a scenario, or between the robot and
+ * itself, before the program is executed. The check runs on a background
+ * thread, so that the path of a long program can be checked without stalling
+ * the application. The instructions, whose paths have a collision, are
+ * flagged once the check completes.
+ *
+ * The state of the program, robot and scenario is copied when a check is
+ * requested, so the background thread never reads state, which the
+ * application may modify. The robot's joint angles, active end effector and
+ * its state, tool tip offset and speed are all captured on the requesting
+ * thread, so the background thread only reads the robot's fixed geometry.
+ * The results of each path segment are cached, so
+ * that only the segments affected by an edit are rechecked.
+ *
+ * @author Joshua Hooker
+ */
+public class CollisionPrecheck {
+
+	/**
+	 * The delay in milliseconds between a request and the start of a check.
+	 * Successive edits within this delay only trigger a single check.
+	 */
+	private static final long DEBOUNCE_DELAY = 250L;
+
+	/**
+	 * The maximum change in a joint angle (in radians) between two samples of
+	 * a joint motion.
+	 */
+	private static final float JOINT_STEP = 0.035f;
+
+	/**
+	 * The maximum distance (in mm) between two samples of a linear or
+	 * circular motion.
+	 */
+	private static final float LINEAR_STEP = 10f;
+
+	/**
+	 * The maximum number of cached segment results.
+	 */
+	private static final int MAX_CACHE_SIZE = 2000;
+
+	/**
+	 * The maximum number of samples taken along a single motion.
+	 */
+	private static final int MAX_SAMPLES = 1000;
+
+	/**
+	 * The maximum change in orientation (in radians) between two samples of a
+	 * linear or circular motion.
+	 */
+	private static final float ROTATION_STEP = 0.035f;
+
+	/**
+	 * The collision results of previously checked motion segments, keyed by
+	 * the segment's start angles, motion type and target positions. Only
+	 * accessed by the worker thread.
+	 */
+	private final LinkedHashMap<String, Boolean> SEGMENT_CACHE;
+
+	/**
+	 * The single thread, on which checks are run.
+	 */
+	private final ScheduledExecutorService WORKER;
+
+	/**
+	 * The signature of the obstacles, for which the cached results are valid.
+	 * Only accessed by the worker thread.
+	 */
+	private String cacheSignature;
+
+	/**
+	 * The most recently requested check.
+	 */
+	private Future<?> pending;
+
+	/**
+	 * The results of the most recently completed check.
+	 */
+	private volatile Result result;
+
+	/**
+	 * Whether a check completed since the last call to pollUpdate().
+	 */
+	private volatile boolean updated;
+
+	/**
+	 * Initializes the background thread and an empty segment cache.
+	 */
+	public CollisionPrecheck() {
+		SEGMENT_CACHE = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> e) {
+				return size() > MAX_CACHE_SIZE;
+			}
+		};
+
+		WORKER = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+			Thread t = new Thread(r, "CollisionPrecheck");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+
+		cacheSignature = null;
+		pending = null;
+		result = null;
+		updated = false;
+	}
+
+	/**
+	 * Cancels the pending check, if one exists.
+	 */
+	public void cancel() {
+		if (pending != null) {
+			pending.cancel(true);
+			pending = null;
+		}
+	}
+
+	/**
+	 * Requests a check of the given program's motion paths for the given
+	 * robot in the given scenario. The robot is assumed to start from its
+	 * current position. Any pending check is cancelled. This method must be
+	 * called from the thread, which modifies the program, robot and scenario.
+	 *
+	 * @param robot		The robot, which executes the program
+	 * @param prog		The program to check
+	 * @param scenario	The scenario, in which the program is executed (can
+	 * 					be null)
+	 */
+	public void check(RoboticArm robot, Program prog, Scenario scenario) {
+		cancel();
+
+		if (robot == null || prog == null) {
+			result = null;
+			updated = true;
+			return;
+		}
+
+		ArrayList<Segment> segments = getSegments(robot, prog);
+		ArrayList<ConvexVolume> obstacles = new ArrayList<>();
+		StringBuilder signature = new StringBuilder();
+		RobotState state = new RobotState(robot);
+
+		signature.append(robot.RID).append(':').append(state.EE_IDX)
+			.append(':').append(state.EE_STATE).append(':')
+			.append(state.TCP_OFFSET);
+
+		if (scenario != null) {
+			for (WorldObject wo : scenario) {
+				if (wo instanceof Part && robot.isHeld((Part)wo)) {
+					// The held part moves with the robot
+					continue;
+				}
+
+				ConvexVolume vol = wo.getVolume().copy();
+				String name = wo.getName();
+				obstacles.add(vol);
+				// The name's length separates it from the volume's signature
+				signature.append('|').append(name.length()).append(':')
+					.append(name).append(vol.getSignature());
+			}
+		}
+
+		BoundingBox[][] obbs = robot.copyOBBs();
+
+		pending = WORKER.schedule(() -> run(robot, state, prog, segments,
+				obstacles, obbs, signature.toString()), DEBOUNCE_DELAY,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Determines if the path of the given instruction element, in the given
+	 * program, was found to have a collision by the last completed check.
+	 *
+	 * @param prog	The program containing the instruction element
+	 * @param e		An instruction element
+	 * @return		If the instruction's path has a collision
+	 */
+	public boolean isFlagged(Program prog, InstElement e) {
+		Result r = result;
+		return r != null && r.PROG == prog && r.FLAGGED.contains(e.getID());
+	}
+
+	/**
+	 * Returns whether a check completed since the last call to this method.
+	 *
+	 * @return	If the results of this check were updated
+	 */
+	public boolean pollUpdate() {
+		if (updated) {
+			updated = false;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Determines if any of the given OBBs collide with each other or with
+	 * any of the given obstacles.
+	 *
+	 * @param robot		The robot, which defines the self collision checks
+	 * @param obbs		The positioned OBBs of the robot
+	 * @param obstacles	The obstacles in the robot's scenario
+	 * @return			If a collision exists
+	 */
+	private boolean collides(RoboticArm robot, BoundingBox[][] obbs,
+			ArrayList<ConvexVolume> obstacles) {
+
+		if (robot.checkSelfCollisions(obbs, null)) {
+			return true;
+		}
+
+		// Pickup OBBs are meant to contact parts, so they are ignored
+		for (int sdx = 0; sdx < 7; ++sdx) {
+			for (BoundingBox obb : obbs[sdx]) {
+				float obbRadius = obb.getBoundingRadius();
+
+				for (ConvexVolume vol : obstacles) {
+					float dist = PVector.dist(obb.getCenter(), vol.getCenter());
+
+					if (dist > obbRadius + vol.getBoundingRadius()) {
+						// Bounding spheres do not intersect
+						continue;
+					}
+
+					if (vol instanceof BoundingBox) {
+						if (obb.collision3D((BoundingBox)vol)) {
+							return true;
+						}
+
+					} else if (GJK.intersects(obb, vol)) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Builds the list of motion segments defined by the given program's
+	 * motion instructions. The first segment starts at the robot's current
+	 * joint angles and each subsequent segment starts at the end of the
+	 * previous segment.
+	 *
+	 * @param robot	The robot, which executes the program
+	 * @param prog	The program, whose motion segments to build
+	 * @return		The motion segments of the program
+	 */
+	private ArrayList<Segment> getSegments(RoboticArm robot, Program prog) {
+		ArrayList<Segment> segments = new ArrayList<>();
+		float[] startAngles = robot.getJointAngles();
+
+		for (InstElement e : prog) {
+			Instruction inst = e.getInst();
+
+			if (!(inst instanceof MotionInstruction) || inst.isCommented()) {
+				continue;
+			}
+
+			if (!(inst instanceof PosMotionInst)) {
+				// The target of the motion is unknown until execution
+				startAngles = null;
+				continue;
+			}
+
+			PosMotionInst mInst = (PosMotionInst)inst;
+			Point tgt = robot.getVector(mInst, prog, false);
+			Point end = null;
+
+			if (mInst.getMotionType() == Fields.MTYPE_CIRCULAR) {
+				end = robot.getVector(mInst, prog, true);
+			}
+
+			if (tgt == null || (mInst.getMotionType() == Fields.MTYPE_CIRCULAR
+					&& end == null)) {
+				// The motion would fault, so the robot stays in place
+				continue;
+			}
+
+			if (startAngles != null) {
+				Point start = robot.getToolTipNative(startAngles);
+				segments.add(new Segment(e.getID(), mInst.getMotionType(),
+						start, tgt, end));
+			}
+
+			startAngles = (end != null) ? end.angles : tgt.angles;
+		}
+
+		return segments;
+	}
+
+	/**
+	 * Checks each of the given motion segments for collisions and publishes
+	 * the IDs of the instructions, whose segments have a collision. This is
+	 * run on the worker thread.
+	 */
+	private void run(RoboticArm robot, RobotState state, Program prog,
+			ArrayList<Segment> segments, ArrayList<ConvexVolume> obstacles,
+			BoundingBox[][] obbs, String signature) {
+
+		try {
+			if (!signature.equals(cacheSignature)) {
+				// The obstacles changed, so all previous results are invalid
+				SEGMENT_CACHE.clear();
+				cacheSignature = signature;
+			}
+
+			HashSet<Integer> flagged = new HashSet<>();
+
+			for (Segment seg : segments) {
+				Boolean collision = SEGMENT_CACHE.get(seg.KEY);
+
+				if (collision == null) {
+					collision = sweep(robot, state, seg, obstacles, obbs);
+
+					if (collision == null) {
+						// The check was cancelled
+						return;
+					}
+
+					SEGMENT_CACHE.put(seg.KEY, collision);
+				}
+
+				if (collision) {
+					flagged.add(seg.INST_ID);
+				}
+			}
+
+			result = new Result(prog, Collections.unmodifiableSet(flagged));
+			updated = true;
+
+		} catch (Exception Ex) {
+			// The check is only advisory, so a failure clears the results
+			Ex.printStackTrace();
+			result = null;
+			updated = true;
+		}
+	}
+
+	/**
+	 * Samples the path of the given motion segment and checks the robot's
+	 * OBBs at each sample for collisions. Joint motions are sampled by
+	 * interpolating the joint angles. Linear and circular motions are sampled
+	 * by interpolating the tool tip position and orientation and solving for
+	 * the joint angles at each sample.
+	 *
+	 * @param robot		The robot, which executes the motion
+	 * @param state		The state of the robot, when the check was requested
+	 * @param seg		The motion segment to sample
+	 * @param obstacles	The obstacles in the robot's scenario
+	 * @param obbs		A copy of the robot's OBBs
+	 * @return			If a collision exists along the segment, or null if
+	 * 					the check was interrupted
+	 */
+	private Boolean sweep(RoboticArm robot, RobotState state, Segment seg,
+			ArrayList<ConvexVolume> obstacles, BoundingBox[][] obbs) {
+
+		float[] startAngles = seg.START.angles;
+
+		if (seg.MOTION_TYPE == Fields.MTYPE_JOINT) {
+			float[] tgtAngles = seg.TARGET.angles;
+			float[] travel = new float[tgtAngles.length];
+			float maxTravel = 0f;
+
+			for (int jdx = 0; jdx < tgtAngles.length; ++jdx) {
+				travel[jdx] = jointTravel(robot.getSegment(jdx),
+						startAngles[jdx], tgtAngles[jdx]);
+				maxTravel = Math.max(maxTravel, Math.abs(travel[jdx]));
+			}
+
+			int samples = sampleCount(maxTravel / JOINT_STEP);
+			float[] angles = new float[tgtAngles.length];
+
+			for (int sdx = 1; sdx <= samples; ++sdx) {
+				if (Thread.currentThread().isInterrupted()) {
+					return null;
+				}
+
+				float t = sdx / (float)samples;
+
+				for (int jdx = 0; jdx < angles.length; ++jdx) {
+					angles[jdx] = RMath.mod2PI(startAngles[jdx] + t * travel[jdx]);
+				}
+
+				robot.placeOBBs(angles, state.EE_IDX, state.EE_STATE, obbs);
+
+				if (collides(robot, obbs, obstacles)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		Arc arc = null;
+		Point end = seg.TARGET;
+		float pathLen;
+
+		if (seg.MOTION_TYPE == Fields.MTYPE_CIRCULAR) {
+			arc = Arc.through(seg.START.position, seg.TARGET.position,
+					seg.END.position);
+			end = seg.END;
+		}
+
+		if (arc != null) {
+			pathLen = arc.RADIUS * arc.SWEEP;
+
+		} else {
+			pathLen = PVector.dist(seg.START.position, end.position);
+		}
+
+		float rotation = 2f * (float)Math.acos(Math.min(1f,
+				Math.abs(seg.START.orientation.dot(end.orientation))));
+		int samples = sampleCount(Math.max(pathLen / LINEAR_STEP,
+				rotation / ROTATION_STEP));
+		float[] angles = startAngles;
+
+		for (int sdx = 1; sdx <= samples; ++sdx) {
+			if (Thread.currentThread().isInterrupted()) {
+				return null;
+			}
+
+			float t = sdx / (float)samples;
+			PVector pos;
+
+			if (arc != null) {
+				pos = arc.pointAt(t);
+
+			} else {
+				pos = PVector.lerp(seg.START.position, end.position, t);
+			}
+
+			RQuaternion orien = RQuaternion.minSLERP(seg.START.orientation,
+					end.orientation, t);
+			angles = RMath.inverseKinematics(robot, state.TCP_OFFSET,
+					state.LIVE_SPEED, angles, pos, orien);
+
+			if (angles == null) {
+				// The motion would fault before reaching this point
+				return false;
+			}
+
+			robot.placeOBBs(angles, state.EE_IDX, state.EE_STATE, obbs);
+
+			if (collides(robot, obbs, obstacles)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the signed rotation of the given joint from the given start
+	 * angle to the given target angle. The shortest rotation is taken, unless
+	 * it passes through one of the joint's bounds, in the same manner as a
+	 * joint motion.
+	 *
+	 * @param seg	The robot segment of the joint
+	 * @param start	The start angle of the joint
+	 * @param tgt	The target angle of the joint
+	 * @return		The rotation of the joint from the start to the target
+	 */
+	private static float jointTravel(RSegWithJoint seg, float start, float tgt) {
+		float minDist = RMath.minDist(start, RMath.mod2PI(tgt));
+
+		if (seg.LOW_BOUND == 0f && seg.UP_BOUND == PConstants.TWO_PI) {
+			return minDist;
+		}
+
+		float distLB = RMath.minDist(start, seg.LOW_BOUND);
+		float distUB = RMath.minDist(start, seg.UP_BOUND);
+
+		if (minDist < 0 && ((distLB < 0 && distLB > minDist) ||
+				(distUB < 0 && distUB > minDist))) {
+			// A bound lies within the shortest path
+			return PConstants.TWO_PI + minDist;
+
+		} else if (minDist > 0 && ((distLB > 0 && distLB < minDist) ||
+				(distUB > 0 && distUB < minDist))) {
+			// A bound lies within the shortest path
+			return minDist - PConstants.TWO_PI;
+		}
+
+		return minDist;
+	}
+
+	/**
+	 * Returns the number of samples for a path, which requires the given
+	 * number of steps, limited to the range [1, MAX_SAMPLES].
+	 *
+	 * @param steps	The number of steps required by the path
+	 * @return		The number of samples to take along the path
+	 */
+	private static int sampleCount(float steps) {
+		return Math.max(1, Math.min(MAX_SAMPLES, (int)Math.ceil(steps)));
+	}
+
+	/**
+	 * A circular arc, which passes through three points.
+	 */
+	private static class Arc {
+
+		private final PVector CENTER, U, V;
+		private final float RADIUS, SWEEP;
+
+		private Arc(PVector center, PVector u, PVector v, float radius,
+				float sweep) {
+
+			CENTER = center;
+			U = u;
+			V = v;
+			RADIUS = radius;
+			SWEEP = sweep;
+		}
+
+		/**
+		 * Defines the arc, which starts at a, passes through b, and ends at
+		 * c, or returns null if the three points are collinear.
+		 */
+		private static Arc through(PVector a, PVector b, PVector c) {
+			PVector ab = PVector.sub(b, a);
+			PVector ac = PVector.sub(c, a);
+			PVector n = ab.cross(ac);
+			float nMagSq = n.magSq();
+
+			if (nMagSq < 1e-6f) {
+				return null;
+			}
+
+			// Circumcenter of the triangle abc
+			PVector toCenter = PVector.add(
+					n.cross(ab).mult(ac.magSq()),
+					ac.cross(n).mult(ab.magSq())
+			).div(2f * nMagSq);
+
+			PVector center = PVector.add(a, toCenter);
+			PVector u = PVector.sub(a, center);
+			float radius = u.mag();
+			u.div(radius);
+			PVector v = n.normalize().cross(u);
+
+			// Points are ordered counterclockwise about n
+			PVector cDir = PVector.sub(c, center);
+			float sweep = (float)Math.atan2(cDir.dot(v), cDir.dot(u));
+
+			if (sweep <= 0f) {
+				sweep += 2f * (float)Math.PI;
+			}
+
+			return new Arc(center, u, v, radius, sweep);
+		}
+
+		/**
+		 * Returns the point at the given fraction of the arc.
+		 */
+		private PVector pointAt(float t) {
+			float theta = t * SWEEP;
+			PVector pt = PVector.mult(U, RADIUS * (float)Math.cos(theta));
+			pt.add(PVector.mult(V, RADIUS * (float)Math.sin(theta)));
+			return pt.add(CENTER);
+		}
+	}
+
+	/**
+	 * The results of a completed check.
+	 */
+	private static class Result {
+
+		private final Set<Integer> FLAGGED;
+		private final Program PROG;
+
+		private Result(Program prog, Set<Integer> flagged) {
+			PROG = prog;
+			FLAGGED = flagged;
+		}
+	}
+
+	/**
+	 * The state of the robot, on which the motions of a check depend,
+	 * captured when the check is requested.
+	 */
+	private static class RobotState {
+
+		private final int EE_IDX, LIVE_SPEED;
+		private final boolean EE_STATE;
+		private final PVector TCP_OFFSET;
+
+		private RobotState(RoboticArm robot) {
+			ToolFrame tool = robot.getActiveTool();
+
+			EE_IDX = robot.getActiveEEIdx();
+			EE_STATE = robot.getEEState();
+			LIVE_SPEED = robot.getLiveSpeed();
+			TCP_OFFSET = (tool != null) ? tool.getTCPOffset().copy() : null;
+		}
+	}
+
+	/**
+	 * A motion from the end of the previous motion instruction to the target
+	 * of a motion instruction.
+	 */
+	private static class Segment {
+
+		private final int INST_ID, MOTION_TYPE;
+		private final String KEY;
+		private final Point START, TARGET, END;
+
+		/**
+		 * @param instID	The ID of the motion instruction
+		 * @param mType		The motion type of the instruction
+		 * @param start		The start of the motion
+		 * @param tgt		The target of the motion, or the intermediate
+		 * 					point of a circular motion
+		 * @param end		The end of a circular motion, or null
+		 */
+		private Segment(int instID, int mType, Point start, Point tgt,
+				Point end) {
+
+			INST_ID = instID;
+			MOTION_TYPE = mType;
+			START = start;
+			TARGET = tgt;
+			END = end;
+
+			StringBuilder key = new StringBuilder();
+			key.append(mType).append(Arrays.toString(start.angles));
+			appendPoint(key, tgt);
+
+			if (end != null) {
+				appendPoint(key, end);
+			}
+
+			KEY = key.toString();
+		}
+
+		private static void appendPoint(StringBuilder key, Point pt) {
+			key.append('|').append(Arrays.toString(pt.angles))
+				.append(pt.position).append(pt.orientation);
+		}
+	}
+}
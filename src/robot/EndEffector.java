@@ -2,8 +2,10 @@ package robot;
 
 import geom.BoundingBox;
 import geom.Part;
+import geom.WorldObject;
 import global.Fields;
 import processing.core.PShape;
+import processing.core.PVector;
 import regs.IORegTrace;
 import regs.IORegister;
 
@@ -126,6 +128,34 @@ public class EndEffector extends RSegment {
 		return reg.comment;
 	}
 	
+	/**
+	 * Returns the axis-aligned bounds, which enclose all of this end
+	 * effector's pickup bounding boxes.
+	 * 
+	 * @return	{minX, minY, minZ, maxX, maxY, maxZ}
+	 */
+	public float[] getPickupBounds() {
+		return WorldObject.boundsOf(PICKUP_OBBS);
+	}
+	
+	/**
+	 * Returns the distance between the given part's center and the center of
+	 * the closest of this end effector's pickup bounding boxes.
+	 * 
+	 * @param p	A part
+	 * @return	The distance from the part to the pickup bounding boxes
+	 */
+	public float getPickupDist(Part p) {
+		float minDist = Float.MAX_VALUE;
+		
+		for (BoundingBox obb : PICKUP_OBBS) {
+			minDist = Math.min(minDist, PVector.dist(obb.getCenter(),
+					p.getCenter()));
+		}
+		
+		return minDist;
+	}
+	
 	public boolean getState() {
 		return reg.getState();
 	}
@@ -1,136 +1,321 @@
 package robot;
 
-import java.util.LinkedList;
+import java.util.BitSet;
 
+import processing.core.PConstants;
 import processing.core.PGraphics;
+import processing.core.PShape;
 import processing.core.PVector;
 
 /**
  * Defines a trace: a set of line segments, which are composed of lines drawn
- * between many points.
- * 
+ * between many points. The points are stored in a ring buffer of floats and
+ * the completed portions of the trace are kept as retained shapes, so that
+ * drawing a long trace does not resubmit every segment each frame.
+ *
  * @author Joshua Hooker
  */
 public class RTrace {
-	
+
+	/**
+	 * The number of segments in each retained portion of the trace.
+	 */
+	private static final int CHUNK_SIZE = 512;
+
+	/**
+	 * Marks the slots in the point buffer, which hold breaks in the trace
+	 * (null points).
+	 */
+	private BitSet breaks;
+
+	/**
+	 * The index of the first retained portion of the trace and the index
+	 * after the last retained portion. Portion k holds the segments ending at
+	 * points k * CHUNK_SIZE through (k + 1) * CHUNK_SIZE - 1.
+	 */
+	private long chunkFirst, chunkEnd;
+
+	/**
+	 * The sequence number of the oldest point in the point buffer. Every
+	 * point added to the trace has a sequence number one greater than the
+	 * previous point.
+	 */
+	private long first;
+
 	/**
 	 * The maximum number of points, which will be stored at one time for
 	 * drawing the trace.
 	 */
 	private int maxSize;
-	
+
 	/**
-	 * The points, which makeup the trace segments.
+	 * The graphics, with which the retained shapes were created.
 	 */
-	private LinkedList<PVector> ptBuffer;
-	
+	private PGraphics owner;
+
+	/**
+	 * The points, which makeup the trace segments, in the form of a ring
+	 * buffer: the point with sequence number s is stored at index
+	 * 3 * (s % maxSize).
+	 */
+	private float[] ptBuffer;
+
+	/**
+	 * The retained portions of the trace, or null, if the portions must be
+	 * rebuilt.
+	 */
+	private PShape retained;
+
+	/**
+	 * The number of points in the point buffer.
+	 */
+	private int size;
+
 	/**
 	 * Defines an empty point buffer with a max size of 10000 points.
 	 */
 	public RTrace() {
-		ptBuffer = new LinkedList<>();
 		maxSize = 10000;
+		ptBuffer = new float[3 * maxSize];
+		breaks = new BitSet(maxSize);
+		first = 0L;
+		size = 0;
+		retained = null;
+		owner = null;
 	}
-	
+
 	/**
 	 * Adds the given point to the end of the point buffer. If the point buffer
 	 * is already at its maximum size, then the  first point in the trace is
 	 * removed to accommodate the new point. Null points are allowed.
-	 * 
+	 *
 	 * @param pt	The point to add to the trace
 	 */
 	public void addPt(PVector pt) {
-		if (ptBuffer.size() > maxSize) {
+		if (maxSize == 0) {
+			return;
+		}
+
+		if (size == maxSize) {
 			// Remove beginning points when the buffer reaches maximum size
-			ptBuffer.removeFirst();
+			++first;
+			--size;
 		}
-		
-		ptBuffer.addLast(pt);
+
+		int slot = slot(first + size);
+
+		if (pt == null) {
+			breaks.set(slot);
+
+		} else {
+			breaks.clear(slot);
+			ptBuffer[3 * slot] = pt.x;
+			ptBuffer[3 * slot + 1] = pt.y;
+			ptBuffer[3 * slot + 2] = pt.z;
+		}
+
+		++size;
 	}
-	
+
 	/**
 	 * Removes all points from the point buffer.
 	 */
 	public void clear() {
-		ptBuffer.clear();
+		first = 0L;
+		size = 0;
+		breaks.clear();
+		retained = null;
 	}
-	
+
 	/**
-	 * Draws the trace with all the points stored in the point buffer.
-	 * 
+	 * Draws the trace with all the points stored in the point buffer. The
+	 * completed portions of the trace are drawn as a single retained shape
+	 * and only the segments at the ends of the trace are drawn directly.
+	 *
 	 * @param g	The graphics object to use when drawing the trace
 	 */
 	public void draw(PGraphics g) {
-		if (ptBuffer.size() > 1) {
-			PVector lastPt = null;
-			
+		if (size > 1) {
+			long last = first + size - 1;
+
+			if (retained == null || owner != g) {
+				// Rebuild the retained portions
+				retained = g.createShape(PConstants.GROUP);
+				owner = g;
+				chunkFirst = (first + CHUNK_SIZE) / CHUNK_SIZE;
+				chunkEnd = chunkFirst;
+			}
+
+			// Remove portions, which contain removed points
+			while (chunkFirst < chunkEnd && chunkFirst * CHUNK_SIZE - 1 < first) {
+				retained.removeChild(0);
+				++chunkFirst;
+			}
+
+			if (chunkFirst == chunkEnd) {
+				chunkFirst = Math.max(chunkFirst,
+						(first + CHUNK_SIZE) / CHUNK_SIZE);
+				chunkEnd = chunkFirst;
+			}
+
+			// Retain the portions, which have been completed
+			while ((chunkEnd + 1) * CHUNK_SIZE - 1 <= last) {
+				retained.addChild(buildChunk(g, chunkEnd));
+				++chunkEnd;
+			}
+
 			g.pushStyle();
 			g.stroke(0);
 			g.strokeWeight(3);
-			
-			for(PVector curPt : ptBuffer) {
-				if (lastPt != null && curPt != null) {
-					/* Draw lines between each non-null point stored in the
-					 * point buffer */
-					g.line(lastPt.x, lastPt.y, lastPt.z, curPt.x, curPt.y,
-							curPt.z);
-				}
-				
-				lastPt = curPt;
+			g.noFill();
+
+			if (chunkFirst < chunkEnd) {
+				g.shape(retained);
+				drawSegments(g, first + 1, chunkFirst * CHUNK_SIZE);
+				drawSegments(g, chunkEnd * CHUNK_SIZE, last + 1);
+
+			} else {
+				drawSegments(g, first + 1, last + 1);
 			}
-			
+
 			g.popStyle();
 		}
 	}
-	
+
 	/**
 	 * The last point in the trace point buffer, or null if the trace is empty.
-	 * 
+	 *
 	 * @return	The last point defined for the trace
 	 */
 	public PVector getLastPt() {
-		if (ptBuffer.isEmpty()) {
+		if (size == 0) {
 			return null;
 		}
-		
-		return ptBuffer.getLast();
+
+		int slot = slot(first + size - 1);
+
+		if (breaks.get(slot)) {
+			return null;
+		}
+
+		return new PVector(ptBuffer[3 * slot], ptBuffer[3 * slot + 1],
+				ptBuffer[3 * slot + 2]);
 	}
-	
+
 	/**
 	 * @return	the current maximum size for the point buffer
 	 */
 	public int getMaxSize() {
 		return maxSize;
 	}
-	
+
 	/**
 	 * @return	Does this trace have no points?
 	 */
 	public boolean isEmpty() {
-		return ptBuffer.isEmpty();
+		return size == 0;
 	}
-	
+
 	/**
 	 * @return	the current size of the point buffer
 	 */
 	public int numOfPts() {
-		return ptBuffer.size();
+		return size;
 	}
-	
+
 	/**
 	 * Sets the maximum size for the point buffer. If the point buffer is
 	 * larger than the given value, then points will be remove from the front
 	 * of the list until the size is equal to the new max size.
-	 * 
+	 *
 	 * @param newMax	A positive integer defining the maximum number of points
 	 * 					to store for the trace
 	 */
 	public void setMaxSize(int newMax) {
-		maxSize = Math.max(0, newMax);
+		newMax = Math.max(0, newMax);
 		// Remove points from buffer to match the new max size
-		while (ptBuffer.size() > newMax) {
-			ptBuffer.removeFirst();
+		int newSize = Math.min(size, newMax);
+		long newFirst = first + size - newSize;
+		float[] newBuffer = new float[3 * newMax];
+		BitSet newBreaks = new BitSet(newMax);
+
+		for (long seq = newFirst; seq < newFirst + newSize; ++seq) {
+			int slot = slot(seq);
+			int newSlot = (int)(seq % newMax);
+
+			if (breaks.get(slot)) {
+				newBreaks.set(newSlot);
+
+			} else {
+				System.arraycopy(ptBuffer, 3 * slot, newBuffer, 3 * newSlot, 3);
+			}
 		}
+
+		maxSize = newMax;
+		ptBuffer = newBuffer;
+		breaks = newBreaks;
+		first = newFirst;
+		size = newSize;
+		retained = null;
+	}
+
+	/**
+	 * Builds a retained shape of the segments ending at the points in the
+	 * given portion of the trace.
+	 */
+	private PShape buildChunk(PGraphics g, long chunk) {
+		PShape shape = g.createShape();
+		shape.beginShape(PConstants.LINES);
+		shape.stroke(0);
+		shape.strokeWeight(3);
+		shape.noFill();
+
+		for (long seq = chunk * CHUNK_SIZE; seq < (chunk + 1) * CHUNK_SIZE;
+				++seq) {
+
+			int prev = slot(seq - 1), cur = slot(seq);
+
+			if (!breaks.get(prev) && !breaks.get(cur)) {
+				shape.vertex(ptBuffer[3 * prev], ptBuffer[3 * prev + 1],
+						ptBuffer[3 * prev + 2]);
+				shape.vertex(ptBuffer[3 * cur], ptBuffer[3 * cur + 1],
+						ptBuffer[3 * cur + 2]);
+			}
+		}
+
+		shape.endShape();
+		return shape;
+	}
+
+	/**
+	 * Draws the segments ending at the points with the sequence numbers in
+	 * the range [from, to) as a single batch of lines.
+	 */
+	private void drawSegments(PGraphics g, long from, long to) {
+		if (from >= to) {
+			return;
+		}
+
+		g.beginShape(PConstants.LINES);
+
+		for (long seq = from; seq < to; ++seq) {
+			int prev = slot(seq - 1), cur = slot(seq);
+
+			if (!breaks.get(prev) && !breaks.get(cur)) {
+				g.vertex(ptBuffer[3 * prev], ptBuffer[3 * prev + 1],
+						ptBuffer[3 * prev + 2]);
+				g.vertex(ptBuffer[3 * cur], ptBuffer[3 * cur + 1],
+						ptBuffer[3 * cur + 2]);
+			}
+		}
+
+		g.endShape();
+	}
+
+	/**
+	 * Returns the index of the given point in the ring buffer.
+	 */
+	private int slot(long seq) {
+		return (int)(seq % maxSize);
 	}
-	
 }
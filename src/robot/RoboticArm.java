@@ -1,15 +1,23 @@
 package robot;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import core.RobotRun;
 import enums.AxesDisplay;
 import enums.CoordFrame;
+import enums.ProfSection;
 import enums.InstUndoType;
 import frame.ToolFrame;
 import frame.UserFrame;
 import geom.BoundingBox;
+import geom.ConvexVolume;
+import geom.GJK;
 import geom.Model;
 import geom.Part;
 import geom.Point;
@@ -19,6 +27,7 @@ import geom.RRay;
 import geom.Scenario;
 import geom.WorldObject;
 import global.Fields;
+import global.Profiler;
 import global.RMath;
 import processing.core.PConstants;
 import processing.core.PGraphics;
@@ -94,6 +103,11 @@ public class RoboticArm {
 	 */
 	private final PVector BASE_POSITION;
 	
+	/**
+	 * The minimum clearance recorded for each program executed by the robot.
+	 */
+	private final ClearanceReport CLEARANCE_REPORT;
+	
 	/**
 	 * The current coordinate frame of the robot.
 	 */
@@ -153,15 +167,34 @@ public class RoboticArm {
 	private final PositionRegister[] PREG;
 	
 	/**
-	 * A stack of previous states of instructions that the user has since edited.
+	 * A stack of the reversible modifications to this robot's programs with
+	 * the most recent modification first.
+	 */
+	private final ArrayDeque<InstUndoState> PROG_UNDO;
+	
+	/**
+	 * The estimated number of bytes occupied by the program undo stack.
 	 */
-	private final Stack<InstUndoState> PROG_UNDO;
+	private int progUndoBytes;
 	
 	/**
 	 * The list of programs associated with this robot.
 	 */
 	private final ArrayList<Program> PROGRAM;
 	
+	/**
+	 * The loaders of the programs, whose bodies have not been loaded yet,
+	 * mapped to by the programs' placeholders in the program list. A program
+	 * is loaded, when it is first accessed through getProgram().
+	 */
+	private final IdentityHashMap<Program, Supplier<Program>> UNLOADED_PROGS;
+	
+	/**
+	 * The placeholders of the programs, whose bodies failed to load. Such a
+	 * program is never saved, so that its save file is left intact.
+	 */
+	private final Set<Program> FAILED_PROGS;
+	
 	/**
 	 * Defines sets of indices which map to pairs of bounding boxes between
 	 * two of the robot's segments. This is used for checking self-collisions
@@ -328,7 +361,9 @@ public class RoboticArm {
 		
 		// Initialize program fields
 		PROGRAM = new ArrayList<>();
-		PROG_UNDO = new Stack<>();
+		UNLOADED_PROGS = new IdentityHashMap<>();
+		FAILED_PROGS = Collections.newSetFromMap(new IdentityHashMap<>());
+		PROG_UNDO = new ArrayDeque<>();
 		
 		motion = null;
 		
@@ -357,6 +392,7 @@ public class RoboticArm {
 		}
 
 		heldPart = null;
+		CLEARANCE_REPORT = new ClearanceReport();
 		
 		DEFAULT_PT = getFacePlatePoint(
 				new float[] { 0f, 0f, 0f, 0f, 0f, 0f }
@@ -452,6 +488,30 @@ public class RoboticArm {
 		}
 	}
 	
+	/**
+	 * Adds a program with the given name, whose body is loaded by the given
+	 * loader, when the program is first accessed through getProgram(). If the
+	 * loader fails, then the program is left empty and is never saved.
+	 * 
+	 * @param name		The name of the program
+	 * @param loader	Loads the program's body, or returns null, if the body
+	 * 					cannot be loaded
+	 * @return			The index of the program in the program list, or a
+	 * 					negative value, as described by addProgram(Program)
+	 */
+	public int addProgram(String name, Supplier<Program> loader) {
+		Program placeholder = new Program(name);
+		int idx = addProgram(placeholder);
+		
+		if (idx >= 0) {
+			synchronized (UNLOADED_PROGS) {
+				UNLOADED_PROGS.put(placeholder, loader);
+			}
+		}
+		
+		return idx;
+	}
+	
 	/**
 	 * Converts the given point, pt, into the Coordinate System defined by the
 	 * given origin vector and rotation quaternion axes. The joint angles
@@ -545,14 +605,32 @@ public class RoboticArm {
 			if (activeEE.canPickup() && activeEE.getState() == Fields.ON
 					&& heldPart == null) {
 				
-				for (WorldObject wldObj : scenario) {
+				// Only objects near the pickup OBBs are candidates
+				float[] bounds = activeEE.getPickupBounds();
+				ArrayList<WorldObject> nearby = scenario.queryBox(
+						new PVector(bounds[0], bounds[1], bounds[2]),
+						new PVector(bounds[3], bounds[4], bounds[5]));
+				
+				Part closest = null;
+				float minDist = Float.MAX_VALUE;
+				
+				for (WorldObject wldObj : nearby) {
 					// Only parts can be picked up
 					if (wldObj instanceof Part && activeEE.canPickup((Part)wldObj)) {
-						// Pickup the object
-						heldPart = (Part)wldObj;
-						return 0;
+						float dist = activeEE.getPickupDist((Part)wldObj);
+						
+						if (dist < minDist) {
+							closest = (Part)wldObj;
+							minDist = dist;
+						}
 					}
 				}
+				
+				if (closest != null) {
+					// Pickup the closest object
+					heldPart = closest;
+					return 0;
+				}
 
 			} else if (activeEE.getState() == Fields.OFF && heldPart != null) {
 				// Release the object
@@ -619,6 +697,56 @@ public class RoboticArm {
 		return selfCollision;
 	}
 	
+	/**
+	 * Checks the given set of OBBs, which are laid out as described in
+	 * placeOBBs(), for collisions between the same pairs of bounding boxes
+	 * checked by checkSelfCollisions(). Unlike checkSelfCollisions(), the
+	 * colors of the bounding boxes are not modified. Instead, if hits is
+	 * non-null, then the entry of hits corresponding to each colliding OBB is
+	 * set. Otherwise, the check stops at the first collision.
+	 * 
+	 * @param obbs	The set of OBBs to check
+	 * @param hits	Flags, with the same layout as obbs, for the colliding
+	 * 				OBBs (can be null)
+	 * @return		If at least one pair of the OBBs collide
+	 */
+	public boolean checkSelfCollisions(BoundingBox[][] obbs, boolean[][] hits) {
+		boolean selfCollision = false;
+		
+		for (int cdx = 3; cdx < SEG_OBB_CHECKS.length; cdx += 4) {
+			int s0 = SEG_OBB_CHECKS[cdx - 3], o0 = SEG_OBB_CHECKS[cdx - 2];
+			int s1 = SEG_OBB_CHECKS[cdx - 1], o1 = SEG_OBB_CHECKS[cdx];
+			
+			if (obbs[s0][o0].collision3D(obbs[s1][o1])) {
+				if (hits == null) {
+					return true;
+				}
+				
+				hits[s0][o0] = true;
+				hits[s1][o1] = true;
+				selfCollision = true;
+			}
+		}
+		
+		for (int odx = 0; odx < obbs[6].length; ++odx) {
+			for (int cdx = 1; cdx < EE_SEG_OBB_CHECKS.length; cdx += 2) {
+				int s1 = EE_SEG_OBB_CHECKS[cdx - 1], o1 = EE_SEG_OBB_CHECKS[cdx];
+				
+				if (obbs[6][odx].collision3D(obbs[s1][o1])) {
+					if (hits == null) {
+						return true;
+					}
+					
+					hits[6][odx] = true;
+					hits[s1][o1] = true;
+					selfCollision = true;
+				}
+			}
+		}
+		
+		return selfCollision;
+	}
+	
 	/**
 	 * Checks if the given ray collides with any of the robot's bounding boxes.
 	 * If the ray does collides with a bounding box, then the position of the
@@ -656,6 +784,90 @@ public class RoboticArm {
 		return closestCollPt;
 	}
 	
+	/**
+	 * Finds the world object in the given scenario, which is closest to the
+	 * bounding boxes of the robot's segments and active end effector, with the
+	 * exception of the part held by the robot. The distances are computed with
+	 * the GJK algorithm, so the convex hulls of complex shapes are used.
+	 * 
+	 * @param scenario	The scenario, of which to check the world objects
+	 * @return			The closest object and its distance from the robot, or
+	 * 					null if the scenario has no obstacles
+	 */
+	public Clearance closestObstacle(Scenario scenario) {
+		if (scenario == null) {
+			return null;
+		}
+		
+		ArrayList<BoundingBox> robotOBBs = new ArrayList<>();
+		
+		for (RSegment seg : SEGMENT) {
+			for (BoundingBox obb : seg.OBBS) {
+				robotOBBs.add(obb);
+			}
+		}
+		
+		for (BoundingBox obb : getActiveEE().OBBS) {
+			robotOBBs.add(obb);
+		}
+		
+		WorldObject closest = null;
+		float minDist = Float.MAX_VALUE;
+		
+		for (WorldObject wldObj : scenario) {
+			if (wldObj == heldPart) {
+				continue;
+			}
+			
+			ConvexVolume vol = wldObj.getVolume();
+			float volRadius = vol.getBoundingRadius();
+			
+			for (BoundingBox obb : robotOBBs) {
+				float lowerBound = PVector.dist(obb.getCenter(),
+						vol.getCenter()) - obb.getBoundingRadius() - volRadius;
+				
+				if (lowerBound >= minDist) {
+					// This pair cannot be closer than the closest pair so far
+					continue;
+				}
+				
+				float dist = GJK.distance(obb, vol);
+				
+				if (dist < minDist) {
+					closest = wldObj;
+					minDist = dist;
+				}
+			}
+		}
+		
+		if (closest == null) {
+			return null;
+		}
+		
+		return new Clearance(closest, minDist);
+	}
+	
+	/**
+	 * Returns copies of the robot's segment OBBs and the active end effector's
+	 * OBBs, laid out as described in placeOBBs(). The copies can be positioned
+	 * without affecting the robot.
+	 * 
+	 * @return	Copies of the robot's OBBs
+	 */
+	public BoundingBox[][] copyOBBs() {
+		EndEffector activeEE = getActiveEE();
+		BoundingBox[][] obbs = new BoundingBox[8][];
+		
+		for (int sdx = 0; sdx < SEGMENT.length; ++sdx) {
+			obbs[sdx] = copyOBBs(SEGMENT[sdx].OBBS);
+		}
+		
+		obbs[6] = copyOBBs(activeEE.OBBS);
+		obbs[7] = copyOBBs(activeEE.PICKUP_OBBS);
+		
+		return obbs;
+	}
+	
 	/**
 	 * Transitions from the current End Effector
 	 * to the next End Effector in a cyclic pattern:
@@ -678,8 +890,27 @@ public class RoboticArm {
 	 * 					frame of the robot
 	 */
 	public void draw(PGraphics g, boolean drawOBBs, AxesDisplay axesType) {
-		
-		float[] jointAngles = getJointAngles();
+		draw(g, getJointAngles(), drawOBBs ? getOBBTMats() : null,
+				getOBBColors(), axesType);
+	}
+	
+	/**
+	 * Draws the robotic arm at the given joint angles along with its bounding
+	 * boxes at the given transformations and its active coordinate frame
+	 * axes.
+	 * 
+	 * @param g				The graphics used to render the robot
+	 * @param jointAngles	The joint angles, at which to draw the robot
+	 * @param obbTMats		The transformations of the robot's bounding boxes
+	 * 						(see getOBBTMats()), or null, if the bounding boxes
+	 * 						are not drawn
+	 * @param obbColors		The colors of the robot's bounding boxes (see
+	 * 						getOBBColors())
+	 * @param axesType		Defines how to draw the axes of the active
+	 * 						coordinate frame of the robot
+	 */
+	public void draw(PGraphics g, float[] jointAngles, RMatrix[] obbTMats,
+			Integer[] obbColors, AxesDisplay axesType) {
 		
 		/* DRAW ROBOT SEGMENT */
 		
@@ -860,30 +1091,15 @@ public class RoboticArm {
 		g.popMatrix();
 		g.popStyle();
 		
-		if (drawOBBs) {
-			for (RSegWithJoint seg : SEGMENT) {
-				// Draw each segment's OBBs
-				for (BoundingBox obb : seg.OBBS) {
-					g.pushMatrix();
-					Fields.transform(g, obb.getCenter(), obb.getOrientationAxes());
-					obb.getFrame().draw(g);
-					g.popMatrix();
-				}
-			}
+		if (obbTMats != null) {
+			ArrayList<BoundingBox> obbs = getDrawnOBBs();
+			// The active end effector may have changed since the snapshot
+			int numOfOBBs = Math.min(obbs.size(), obbTMats.length);
 			
-			// Draw the active End Effector's OBBs
-			
-			for (BoundingBox obb : activeEE.OBBS) {
-				g.pushMatrix();
-				Fields.transform(g, obb.getCenter(), obb.getOrientationAxes());
-				obb.getFrame().draw(g);
-				g.popMatrix();
-			}
-			
-			for (BoundingBox obb : activeEE.PICKUP_OBBS) {
+			for (int idx = 0; idx < numOfOBBs; ++idx) {
 				g.pushMatrix();
-				Fields.transform(g, obb.getCenter(), obb.getOrientationAxes());
-				obb.getFrame().draw(g);
+				Fields.transform(g, obbTMats[idx]);
+				obbs.get(idx).getFrame().draw(g, obbColors[idx]);
 				g.popMatrix();
 			}
 		}
@@ -1027,6 +1243,14 @@ public class RoboticArm {
 		return BASE_POSITION.copy();
 	}
 	
+	/**
+	 * @return	The minimum clearance recorded for each program executed by
+	 * 			this robot
+	 */
+	public ClearanceReport getClearanceReport() {
+		return CLEARANCE_REPORT;
+	}
+	
 	/**
 	 * Returns a copy of the secondary position of a position motion
 	 * instruction.
@@ -1259,9 +1483,9 @@ public class RoboticArm {
 	}
 	
 	/**
-	 * A wrapper method for getting an instruction from the active program. A
-	 * copy of the instruction is placed on the program undo stack for this
-	 * active program.
+	 * A wrapper method for getting an instruction from the active program. The
+	 * instruction's edit is placed on the program undo stack for this active
+	 * program.
 	 * 
 	 * NOTE: only use this method, if you intend to edit the instruction
 	 * 		 returned by this method!!!!
@@ -1277,8 +1501,7 @@ public class RoboticArm {
 		if (p != null && idx >= 0 && idx < p.getNumOfInst()) {
 			InstElement e = p.get(idx);
 			
-			pushUndoState(InstUndoType.EDITED, p, idx, new InstElement(e.getID(),
-					e.getInst().clone()), false);
+			pushUndoState(InstUndoType.EDITED, p, idx, e, false);
 			
 			/* TEST CODE *
 			try {
@@ -1381,6 +1604,44 @@ public class RoboticArm {
 		return macros.get(idx);
 	}
 	
+	/**
+	 * Returns the current colors of the robot's bounding boxes in the same
+	 * order as getOBBTMats().
+	 * 
+	 * @return	The colors of the robot's bounding boxes
+	 */
+	public Integer[] getOBBColors() {
+		ArrayList<BoundingBox> obbs = getDrawnOBBs();
+		Integer[] colors = new Integer[obbs.size()];
+		
+		for (int idx = 0; idx < colors.length; ++idx) {
+			colors[idx] = obbs.get(idx).getFrame().getStrokeValue();
+		}
+		
+		return colors;
+	}
+	
+	/**
+	 * Returns the current transformations of the robot's bounding boxes in
+	 * the order, in which they are drawn: the bounding boxes of each segment,
+	 * followed by those of the active end effector and its pickup bounding
+	 * boxes.
+	 * 
+	 * @return	The transformations of the robot's bounding boxes
+	 */
+	public RMatrix[] getOBBTMats() {
+		ArrayList<BoundingBox> obbs = getDrawnOBBs();
+		RMatrix[] tMats = new RMatrix[obbs.size()];
+		
+		for (int idx = 0; idx < tMats.length; ++idx) {
+			BoundingBox obb = obbs.get(idx);
+			tMats[idx] = RMath.formTMat(obb.getCenter(),
+					obb.getOrientationAxes());
+		}
+		
+		return tMats;
+	}
+	
 	/**
 	 * Returns a copy of the primary position of the given position motion
 	 * instruction.
@@ -1465,7 +1726,41 @@ public class RoboticArm {
 	 */
 	public Program getProgram(int pdx) {
 		if (pdx >= 0 && pdx < PROGRAM.size()) {
-			return PROGRAM.get(pdx);
+			synchronized (UNLOADED_PROGS) {
+				Program p = PROGRAM.get(pdx);
+				Supplier<Program> loader = UNLOADED_PROGS.remove(p);
+				
+				if (loader != null) {
+					// Load the program's body on its first access
+					Program loaded = loader.get();
+					
+					if (loaded != null) {
+						PROGRAM.set(pdx, loaded);
+						p = loaded;
+						
+					} else {
+						FAILED_PROGS.add(p);
+					}
+				}
+				
+				return p;
+			}
+		}
+		
+		// Invalid index
+		return null;
+	}
+	
+	/**
+	 * Returns the name of the program with the given index, without loading
+	 * the program's body.
+	 * 
+	 * @param pdx	The index of a program of this robot
+	 * @return		The program's name, or null, if the index is invalid
+	 */
+	public String getProgName(int pdx) {
+		if (pdx >= 0 && pdx < PROGRAM.size()) {
+			return PROGRAM.get(pdx).getName();
 		}
 		
 		// Invalid index
@@ -1554,6 +1849,29 @@ public class RoboticArm {
 		return getToolTipPoint(jointAngles, getActiveTool(), null);
 	}
 	
+	/**
+	 * Calculates the robot's tooltip position and orientation based off the
+	 * given joint angles and the given tooltip offset. Unlike
+	 * getToolTipNative(float[]), the robot's active tool frame is not read,
+	 * so this can be called on any thread.
+	 * 
+	 * @param jointAngles	A 6-element array of joint angles used to
+	 * 						calculate the robot's tooltip position
+	 * @param tcpOffset		The tooltip offset (can be null)
+	 * @return				The robot's tooltip position in native coordinates
+	 */
+	public Point getToolTipNative(float[] jointAngles, PVector tcpOffset) {
+		Point toolTip = getFacePlatePoint(jointAngles);
+		
+		if (tcpOffset != null) {
+			// Apply the tooltip offset
+			RQuaternion invOrien = toolTip.orientation.conjugate();
+			toolTip.position.add( invOrien.rotateVector(tcpOffset) );
+		}
+		
+		return toolTip;
+	}
+	
 	/**
 	 * @return	The robot's tool tip position and orientation with respect to the
 	 * 			active user frame
@@ -1789,6 +2107,38 @@ public class RoboticArm {
 	public boolean isMarcoSet(int idx) {
 		return macroKeyBinds[idx] != null;
 	}
+	
+	/**
+	 * Has the body of the program with the given index been loaded? A
+	 * program, whose body failed to load, is not loaded.
+	 * 
+	 * @param pdx	The index of a program of this robot
+	 * @return		Whether the program's body is loaded
+	 */
+	public boolean isProgramLoaded(int pdx) {
+		synchronized (UNLOADED_PROGS) {
+			if (pdx >= 0 && pdx < PROGRAM.size()) {
+				Program p = PROGRAM.get(pdx);
+				return !UNLOADED_PROGS.containsKey(p) &&
+						!FAILED_PROGS.contains(p);
+			}
+			
+			return false;
+		}
+	}
+	
+	/**
+	 * Did the body of the given program fail to load? Such a program is an
+	 * empty placeholder, which must not replace the program's save file.
+	 * 
+	 * @param p	A program of this robot
+	 * @return	Whether the program's body failed to load
+	 */
+	public boolean isProgramFailed(Program p) {
+		synchronized (UNLOADED_PROGS) {
+			return FAILED_PROGS.contains(p);
+		}
+	}
 
 	/**
 	 * Attempts to move the Robot to the given position and orientation from its current
@@ -1805,8 +2155,11 @@ public class RoboticArm {
 	public int jumpTo(PVector destPosition, RQuaternion destOrientation) {
 		boolean invalidAngle = false;
 		float[] srcAngles = getJointAngles();
-		// Calculate the joint angles for the desired position and orientation
+		/* Calculate the joint angles for the desired position and orientation.
+		 * Only the solves of the robot's motion are profiled. */
+		long start = Profiler.start();
 		float[] destAngles = RMath.inverseKinematics(this, srcAngles, destPosition, destOrientation);
+		Profiler.end(ProfSection.IK, start);
 
 		// Check the destination joint angles with each joint's range of valid joint angles
 		for(int joint = 0; !(destAngles == null) && joint < 6; joint += 1) {
@@ -1838,6 +2191,21 @@ public class RoboticArm {
 		return 0;
 	}
 	
+	/**
+	 * Sets the color of each of the robot's segment OBBs and active end
+	 * effector OBBs, whose entry in the given flags is set, to the collision
+	 * color. The flags are laid out as described in placeOBBs().
+	 * 
+	 * @param hits	Flags for the colliding OBBs
+	 */
+	public void markOBBCollisions(boolean[][] hits) {
+		for (int sdx = 0; sdx < SEGMENT.length; ++sdx) {
+			markOBBCollisions(SEGMENT[sdx].OBBS, hits[sdx]);
+		}
+		
+		markOBBCollisions(getActiveEE().OBBS, hits[6]);
+	}
+	
 	/**
 	 * @return	The number of end effectors associated with this robot
 	 */
@@ -1967,87 +2335,269 @@ public class RoboticArm {
 	}
 
 	/**
-	 * Returns a list of display lines, which contain the program instruction
-	 * list output for the pendant display.
+	 * Positions the given set of OBBs as the robot's OBBs would be positioned
+	 * at the given joint angles with the active end effector. The first six
+	 * sets of OBBs correspond to the robot's segments, the seventh to the
+	 * active end effector's OBBs, and the eighth to the active end effector's
+	 * pickup OBBs.
 	 * 
-	 * @return	A list of display lines for the pendant display, representing
-	 * 			the list instructions in the program
+	 * @param jointAngles	The joint angles at which to place the OBBs
+	 * @param obbs			The sets of OBBs to position
 	 */
-	public ArrayList<DisplayLine> printProgList() {
-		int size = numOfPrograms();
-
-		//int start = start_render;
-		//int end = min(start + ITEMS_TO_SHOW, size);
-
-		ArrayList<DisplayLine> progList = new ArrayList<>();
-		for(int i = 0; i < size; i += 1) {
-			progList.add(new DisplayLine(i, 0, PROGRAM.get(i).getName()));
-		}
-		
-		return progList;
+	public void placeOBBs(float[] jointAngles, BoundingBox[][] obbs) {
+		placeOBBs(jointAngles, activeEEIdx, getEEState(), obbs);
 	}
 	
 	/**
-	 * If an object is currently being held by the Robot arm, then release it.
-	 * Then, update the Robot's End Effector status and IO Registers.
-	 */
-	public void releaseHeldObject() {
-		heldPart = null;
-	}
-
-	/**
-	 * Converts the given point, pt, from the Coordinate System defined by the
-	 * given origin vector and rotation quaternion axes.
+	 * Positions the given set of OBBs as the robot's OBBs would be positioned
+	 * at the given joint angles with the given end effector in the given
+	 * state. Unlike placeOBBs(float[], BoundingBox[][]), the robot's active
+	 * end effector is not read, so this can be called on any thread.
 	 * 
-	 * @param pt
-	 *            A point with initialized position and orientation
-	 * @param origin
-	 *            The origin of the Coordinate System
-	 * @param axes
-	 *            The axes of the Coordinate System representing as a rotation
-	 *            quanternion
-	 * @return		The point, pt, interms of the given coordinate system
+	 * @param jointAngles	The joint angles at which to place the OBBs
+	 * @param eeIdx			The index of the end effector
+	 * @param eeState		The state of the end effector
+	 * @param obbs			The sets of OBBs to position
 	 */
-	public static Point removeFrame(Point pt, PVector origin, RQuaternion axes) {
-		PVector position = RMath.vFromFrame(pt.position, origin, axes);
-		RQuaternion orientation = RQuaternion.mult(pt.orientation, axes);
+	public void placeOBBs(float[] jointAngles, int eeIdx, boolean eeState,
+			BoundingBox[][] obbs) {
 		
-		return new Point(position, orientation, pt.angles);
-	}
-	
-	/**
-	 * Reorders the program list of the robot, so that the programs are in
-	 * alphabetical order.
-	 */
-	@SuppressWarnings("unchecked")
-	public void reorderPrograms() {
-		// Move programs to a temporary list
-		ArrayList<Program> limboList = (ArrayList<Program>) PROGRAM.clone();
-		PROGRAM.clear();
+		/* Segment OBBs */
 		
-		for (int pdx = 0; pdx < limboList.size(); ++pdx) {
-			int insertIdx = PROGRAM.size() - 1;
-			Program toInsert = limboList.get(pdx);
-			
-			if (PROGRAM.size() > 0) {
-				Program predecessor = PROGRAM.get(insertIdx);
-				/* Search to new list from back to front to find where to
-				 * insert the program */
-				while (predecessor.getName().compareTo(toInsert.getName())
-						> 0) {
-					
-					if (--insertIdx < 0) { break; }
-					predecessor = PROGRAM.get(insertIdx);
-				}
-			}
-			
-			PROGRAM.add(insertIdx + 1, toInsert);
-		}
+		RMatrix base = RMath.formTMat(BASE_POSITION);
 		
-	}
-	
-	/**
-	 * A wrapper method for replacing an instruction in the active program of
+		RMath.translateTMat(base, -50.0, -163.0, -350.0);
+		
+		RMatrix obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -150.0, 112.0, 150.0);
+		obbs[0][0].setCoordinateSystem(obbTMat);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -150.0, 18.0, 150.0);
+		obbs[1][0].setCoordinateSystem(obbTMat);
+		
+		// First joint rotation
+		RMath.translateTMat(base, -150.0, 0.0, 150.0);
+		RMatrix jointTMat = RMath.formTMat(SEGMENT[0].AXIS, jointAngles[0]);
+		base = base.multiply(jointTMat);
+		RMath.translateTMat(base, 150.0, 0.0, -150.0);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -150.0, -73.0, 150.0);
+		obbs[1][1].setCoordinateSystem(obbTMat);
+		
+		RMath.translateTMat(base, -125.0, -75.0, 180.0);
+		
+		// Second joint rotation
+		RMath.translateTMat(base, -62.0, -62.0, 0.0);
+		jointTMat = RMath.formTMat(SEGMENT[1].AXIS, jointAngles[1]);
+		base = base.multiply(jointTMat);
+		RMath.translateTMat(base, 62.0, 62.0, 0.0);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -62.0, -59.0, -30.0);
+		obbs[2][0].setCoordinateSystem(obbTMat);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -62.0, -279.0, -30.0);
+		obbs[2][1].setCoordinateSystem(obbTMat);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -62.0, -520.0, -22.0);
+		obbs[2][2].setCoordinateSystem(obbTMat);
+		
+		RMath.translateTMat(base, 10.0, -605.0, -200.0);
+		
+		// Third joint rotation
+		RMath.translateTMat(base, -75.0, 45.0, 0.0);
+		jointTMat = RMath.formTMat(SEGMENT[2].AXIS, jointAngles[2]);
+		base = base.multiply(jointTMat);
+		RMath.translateTMat(base, 75.0, -45.0, 0.0);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, -75.0, 75.0, 75.0);
+		obbs[3][0].setCoordinateSystem(obbTMat);
+		
+		RMath.translateTMat(base, -725.0, 0.0, 0.0);
+		
+		// Fourth joint rotation
+		RMath.translateTMat(base, 0.0, 75.0, 75.0);
+		jointTMat = RMath.formTMat(SEGMENT[3].AXIS, jointAngles[3]);
+		base = base.multiply(jointTMat);
+		RMath.translateTMat(base, 0.0, -75.0, -75.0);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, 361.0, 75.0, 75.0);
+		obbs[3][1].setCoordinateSystem(obbTMat);
+		
+		obbTMat = base.copy();
+		RMath.translateTMat(obbTMat, 75.0, 75.0, 75.0);
+		obbs[3][2].setCoordinateSystem(obbTMat);
+		
+		RMath.translateTMat(base, 120.0, 20.0, 25.0);
+		
+		// Fifth joint rotation
+		RMath.translateTMat(base, -55.0, 55.0, 50.0);
+		jointTMat = RMath.formTMat(SEGMENT[4].AXIS, jointAngles[4]);
+		base = base.multiply(jointTMat);
+		RMath.translateTMat(base, 55.0, -55.0, -50.0);
+		
+		RMath.translateTMat(base, -150.0, 10.0, 95.0);
+		
+		// Sixth joint rotation
+		RMath.translateTMat(base, 0.0, 45.0, -45.0);
+		jointTMat = RMath.formTMat(SEGMENT[5].AXIS, jointAngles[5]);
+		base = base.multiply(jointTMat);
+		RMath.translateTMat(base, 0.0, -45.0, 45.0);
+		
+		/* End Effector OBBs */
+		if (eeIdx == 1) {
+			// Suction EE OBBs
+			RMath.translateTMat(base, 25.0, -37.5, -90.0);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -8.0, 82.5, 45.0);
+			obbs[6][0].setCoordinateSystem(obbTMat);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -64.0, 82.5, 45.0);
+			obbs[6][1].setCoordinateSystem(obbTMat);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -45.0, 32.0, 45.0);
+			obbs[6][2].setCoordinateSystem(obbTMat);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -106.5, 82.5, 45.0);
+			obbs[7][0].setCoordinateSystem(obbTMat);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -45.0, -2.0, 45.0);
+			obbs[7][1].setCoordinateSystem(obbTMat);
+			
+		} else if (eeIdx == 2) {
+			// Gripper EE OBBs
+			RMath.translateTMat(base, 25.0, 0.0, -90.0);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -8.0, 45.0, 45.0);
+			obbs[6][0].setCoordinateSystem(obbTMat);
+			
+			float firstGripper, secondGripper;
+			
+			if(eeState == Fields.ON) {
+				// Closed grippers
+				firstGripper = 22.5f;
+				secondGripper = 25f;
+
+			} else {
+				// Open grippers
+				firstGripper = 10f;
+				secondGripper = 55f;
+			}
+			
+			RMath.translateTMat(base, -32.5, 0.0, 85.0);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -24.0, 45.0, -40.0);
+			obbs[7][0].setCoordinateSystem(obbTMat);
+			
+			RMath.translateTMat(base, 0.0, firstGripper, 0.0);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -24.0, 8.0, -40.0);
+			obbs[6][1].setCoordinateSystem(obbTMat);
+			
+			RMath.translateTMat(base, 0, secondGripper, 0);
+			
+			obbTMat = base.copy();
+			RMath.translateTMat(obbTMat, -24.0, 8.0, -40.0);
+			obbs[6][2].setCoordinateSystem(obbTMat);
+		}
+	}
+	
+	/**
+	 * Returns a list of display lines, which contain the program instruction
+	 * list output for the pendant display.
+	 * 
+	 * @return	A list of display lines for the pendant display, representing
+	 * 			the list instructions in the program
+	 */
+	public ArrayList<DisplayLine> printProgList() {
+		int size = numOfPrograms();
+
+		//int start = start_render;
+		//int end = min(start + ITEMS_TO_SHOW, size);
+
+		ArrayList<DisplayLine> progList = new ArrayList<>();
+		for(int i = 0; i < size; i += 1) {
+			progList.add(new DisplayLine(i, 0, PROGRAM.get(i).getName()));
+		}
+		
+		return progList;
+	}
+	
+	/**
+	 * If an object is currently being held by the Robot arm, then release it.
+	 * Then, update the Robot's End Effector status and IO Registers.
+	 */
+	public void releaseHeldObject() {
+		heldPart = null;
+	}
+
+	/**
+	 * Converts the given point, pt, from the Coordinate System defined by the
+	 * given origin vector and rotation quaternion axes.
+	 * 
+	 * @param pt
+	 *            A point with initialized position and orientation
+	 * @param origin
+	 *            The origin of the Coordinate System
+	 * @param axes
+	 *            The axes of the Coordinate System representing as a rotation
+	 *            quanternion
+	 * @return		The point, pt, interms of the given coordinate system
+	 */
+	public static Point removeFrame(Point pt, PVector origin, RQuaternion axes) {
+		PVector position = RMath.vFromFrame(pt.position, origin, axes);
+		RQuaternion orientation = RQuaternion.mult(pt.orientation, axes);
+		
+		return new Point(position, orientation, pt.angles);
+	}
+	
+	/**
+	 * Reorders the program list of the robot, so that the programs are in
+	 * alphabetical order.
+	 */
+	@SuppressWarnings("unchecked")
+	public void reorderPrograms() {
+		// Move programs to a temporary list
+		ArrayList<Program> limboList = (ArrayList<Program>) PROGRAM.clone();
+		PROGRAM.clear();
+		
+		for (int pdx = 0; pdx < limboList.size(); ++pdx) {
+			int insertIdx = PROGRAM.size() - 1;
+			Program toInsert = limboList.get(pdx);
+			
+			if (PROGRAM.size() > 0) {
+				Program predecessor = PROGRAM.get(insertIdx);
+				/* Search to new list from back to front to find where to
+				 * insert the program */
+				while (predecessor.getName().compareTo(toInsert.getName())
+						> 0) {
+					
+					if (--insertIdx < 0) { break; }
+					predecessor = PROGRAM.get(insertIdx);
+				}
+			}
+			
+			PROGRAM.add(insertIdx + 1, toInsert);
+		}
+		
+	}
+	
+	/**
+	 * A wrapper method for replacing an instruction in the active program of
 	 * this robot. The replacement is added onto the program undo stack for the
 	 * active program.
 	 * 
@@ -2136,7 +2686,12 @@ public class RoboticArm {
 	 */
 	public boolean rmProg(Program p) {
 		rmMacros(p);
-		return PROGRAM.remove(p);
+		
+		synchronized (UNLOADED_PROGS) {
+			UNLOADED_PROGS.remove(p);
+			FAILED_PROGS.remove(p);
+			return PROGRAM.remove(p);
+		}
 	}
 	
 	/**
@@ -2149,7 +2704,14 @@ public class RoboticArm {
 	 */
 	public Program rmProgAt(int pdx) {
 		if (pdx >= 0 && pdx < PROGRAM.size()) {
-			Program removed = PROGRAM.remove(pdx);
+			Program removed;
+			
+			synchronized (UNLOADED_PROGS) {
+				removed = PROGRAM.remove(pdx);
+				UNLOADED_PROGS.remove(removed);
+				FAILED_PROGS.remove(removed);
+			}
+			
 			rmMacros(removed);
 			// Return the removed program
 			return removed;
@@ -2491,9 +3053,12 @@ public class RoboticArm {
 	 */
 	public void undoProgramEdit() {
 		
+		settleProgUndo();
+		
 		if (!PROG_UNDO.isEmpty()) {
 			InstUndoState undoState = PROG_UNDO.pop();
-			undoState.undo();
+			progUndoBytes -= undoState.size();
+			undoState.undo(this);
 			
 			// Chain undo states with the same group
 			int groupNum = undoState.groupNum();
@@ -2508,8 +3073,9 @@ public class RoboticArm {
 				/* TEST CODE *
 				Fields.debug("UNDO %s\n", undoState);
 				/**/
-				undoState.undo();
+				undoState.undo(this);
 				PROG_UNDO.pop();
+				progUndoBytes -= undoState.size();
 			}
 			
 		} else {
@@ -2796,10 +3362,32 @@ public class RoboticArm {
 	 */
 	public void updateRobot() {	
 		if (inMotion()) {
+			long start = Profiler.start();
 			motion.executeMotion(this);
+			Profiler.end(ProfSection.MOTION, start);
 		}
 		
+		long start = Profiler.start();
 		updateOBBs();
+		Profiler.end(ProfSection.OBB_UPDATE, start);
+	}
+	
+	/**
+	 * Computes the robot's current clearance with the obstacles in the given
+	 * scenario and records it for the given program.
+	 * 
+	 * @param p			The program being executed by the robot
+	 * @param scenario	The scenario, in which the program is executed
+	 * @return			The current clearance of the robot
+	 */
+	public Clearance updateClearance(Program p, Scenario scenario) {
+		Clearance c = closestObstacle(scenario);
+		
+		if (p != null) {
+			CLEARANCE_REPORT.record(p.getName(), c);
+		}
+		
+		return c;
 	}
 	
 	/**
@@ -2844,6 +3432,22 @@ public class RoboticArm {
 		return null;
 	}
 
+	/**
+	 * Returns a copy of each of the given bounding boxes.
+	 * 
+	 * @param obbs	The bounding boxes to copy
+	 * @return		The copies of the bounding boxes
+	 */
+	private BoundingBox[] copyOBBs(BoundingBox[] obbs) {
+		BoundingBox[] copies = new BoundingBox[obbs.length];
+		
+		for (int idx = 0; idx < obbs.length; ++idx) {
+			copies[idx] = obbs[idx].clone();
+		}
+		
+		return copies;
+	}
+	
 	/**
 	 * Draws the position of the robot's tool tip with respect to the
 	 * coordinate system of the given graphics object. If the robot has an
@@ -2895,6 +3499,31 @@ public class RoboticArm {
 		return EE_LIST[activeEEIdx];
 	}
 	
+	/**
+	 * @return	The robot's bounding boxes in the order, in which they are
+	 * 			drawn
+	 */
+	private ArrayList<BoundingBox> getDrawnOBBs() {
+		ArrayList<BoundingBox> obbs = new ArrayList<>();
+		EndEffector activeEE = getActiveEE();
+		
+		for (RSegWithJoint seg : SEGMENT) {
+			for (BoundingBox obb : seg.OBBS) {
+				obbs.add(obb);
+			}
+		}
+		
+		for (BoundingBox obb : activeEE.OBBS) {
+			obbs.add(obb);
+		}
+		
+		for (BoundingBox obb : activeEE.PICKUP_OBBS) {
+			obbs.add(obb);
+		}
+		
+		return obbs;
+	}
+	
 	/**
 	 * Computes the position and orientation of the robot's tool tip based on
 	 * the given joint angles, tool and user frame. The position offset of the
@@ -2916,14 +3545,8 @@ public class RoboticArm {
 	private Point getToolTipPoint(float[] jointAngles, ToolFrame tFrame,
 			UserFrame uFrame) {
 		
-		Point toolTip = getFacePlatePoint(jointAngles);
-		
-		if (tFrame != null) {
-			// Apply the tooltip offset of the given tool frame
-			PVector toolOrigin = tFrame.getTCPOffset();
-			RQuaternion invOrien = toolTip.orientation.conjugate();
-			toolTip.position.add( invOrien.rotateVector(toolOrigin) );
-		}
+		Point toolTip = getToolTipNative(jointAngles,
+				(tFrame != null) ? tFrame.getTCPOffset() : null);
 		
 		if (uFrame != null) {
 			// Apply the given user frame to the robot's tooltip position
@@ -2937,9 +3560,26 @@ public class RoboticArm {
 		return toolTip;
 	}
 	
+	/**
+	 * Sets the color of each of the given OBBs, whose corresponding flag is
+	 * set, to the collision color.
+	 * 
+	 * @param obbs	A set of OBBs
+	 * @param hits	Flags for the colliding OBBs
+	 */
+	private void markOBBCollisions(BoundingBox[] obbs, boolean[] hits) {
+		for (int odx = 0; odx < obbs.length; ++odx) {
+			if (hits[odx]) {
+				obbs[odx].setColor(Fields.OBB_COLLISION);
+			}
+		}
+	}
+	
 	/**
 	 * Adds the undo state defined the given parameters to the program undo
-	 * stack.
+	 * stack. A contiguous insertion or removal is added to the range of the
+	 * previous undo state in the same group. The oldest groups of undo states
+	 * are removed, while the undo stack exceeds its size or byte capacity.
 	 * 
 	 * @param type	The undo state type (i.e. edit, remove, etc.)
 	 * @param idx	The index in the program of the modified instruction
@@ -2950,10 +3590,7 @@ public class RoboticArm {
 	private void pushUndoState(InstUndoType type, Program prog, int idx,
 			InstElement inst, boolean group) {
 		
-		if (PROG_UNDO.size() >= Program.MAX_UNDO_SIZE) {
-			// Remove old unused undo states to make room for new undo states
-			PROG_UNDO.remove(0);
-		}
+		settleProgUndo();
 		
 		// Determine the group number of the undo state
 		int groupNum;
@@ -2972,16 +3609,66 @@ public class RoboticArm {
 			} else {
 				groupNum = 0;
 			}
+			
+			int prevSize = top.size();
+			
+			if (top.extend(type, groupNum, prog, idx, inst)) {
+				progUndoBytes += top.size() - prevSize;
+				prog.markEdited();
+				return;
+			}
 		}
 		
 		InstUndoState undoState = new InstUndoState(type, groupNum, prog, idx,
 				inst);
 		PROG_UNDO.push(undoState);
+		progUndoBytes += undoState.size();
+		prog.markEdited();
+		
+		while (PROG_UNDO.size() > Program.MAX_UNDO_SIZE ||
+				progUndoBytes > Program.MAX_UNDO_BYTES) {
+			
+			// Remove the oldest group, unless it is the only group
+			int oldest = PROG_UNDO.peekLast().groupNum();
+			int groupSize = 0;
+			Iterator<InstUndoState> it = PROG_UNDO.descendingIterator();
+			
+			while (it.hasNext() && it.next().groupNum() == oldest) {
+				++groupSize;
+			}
+			
+			if (groupSize == PROG_UNDO.size()) {
+				break;
+			}
+			
+			while (groupSize-- > 0) {
+				progUndoBytes -= PROG_UNDO.removeLast().size();
+			}
+		}
 		/* TEST CODE *
 		Fields.debug("%s\n", undoState);
 		/**/
 	}
 	
+	/**
+	 * Completes the edit undo state on the top of the program undo stack, if
+	 * any, and removes it, if the edit did not modify its instruction.
+	 */
+	private void settleProgUndo() {
+		if (!PROG_UNDO.isEmpty()) {
+			InstUndoState top = PROG_UNDO.peek();
+			int prevSize = top.size();
+			
+			if (top.settle()) {
+				progUndoBytes += top.size() - prevSize;
+				
+			} else {
+				PROG_UNDO.pop();
+				progUndoBytes -= prevSize;
+			}
+		}
+	}
+	
 	/**
 	 * Removes all macros defined for the given program
 	 * 
@@ -3007,160 +3694,16 @@ public class RoboticArm {
 	 * current joint angles.
 	 */
 	private void updateOBBs() {
-		/* Segment OBBs */
-		
-		RMatrix base = RMath.formTMat(BASE_POSITION);
-		
-		RMath.translateTMat(base, -50.0, -163.0, -350.0);
-		
-		RMatrix obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -150.0, 112.0, 150.0);
-		SEGMENT[0].OBBS[0].setCoordinateSystem(obbTMat);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -150.0, 18.0, 150.0);
-		SEGMENT[1].OBBS[0].setCoordinateSystem(obbTMat);
-		
-		// First joint rotation
-		RMath.translateTMat(base, -150.0, 0.0, 150.0);
-		RMatrix jointTMat = RMath.formTMat(SEGMENT[0].AXIS, SEGMENT[0].getJointRotation());
-		base = base.multiply(jointTMat);
-		RMath.translateTMat(base, 150.0, 0.0, -150.0);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -150.0, -73.0, 150.0);
-		SEGMENT[1].OBBS[1].setCoordinateSystem(obbTMat);
-		
-		RMath.translateTMat(base, -125.0, -75.0, 180.0);
-		
-		// Second joint rotation
-		RMath.translateTMat(base, -62.0, -62.0, 0.0);
-		jointTMat = RMath.formTMat(SEGMENT[1].AXIS, SEGMENT[1].getJointRotation());
-		base = base.multiply(jointTMat);
-		RMath.translateTMat(base, 62.0, 62.0, 0.0);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -62.0, -59.0, -30.0);
-		SEGMENT[2].OBBS[0].setCoordinateSystem(obbTMat);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -62.0, -279.0, -30.0);
-		SEGMENT[2].OBBS[1].setCoordinateSystem(obbTMat);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -62.0, -520.0, -22.0);
-		SEGMENT[2].OBBS[2].setCoordinateSystem(obbTMat);
-		
-		RMath.translateTMat(base, 10.0, -605.0, -200.0);
-		
-		// Third joint rotation
-		RMath.translateTMat(base, -75.0, 45.0, 0.0);
-		jointTMat = RMath.formTMat(SEGMENT[2].AXIS, SEGMENT[2].getJointRotation());
-		base = base.multiply(jointTMat);
-		RMath.translateTMat(base, 75.0, -45.0, 0.0);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, -75.0, 75.0, 75.0);
-		SEGMENT[3].OBBS[0].setCoordinateSystem(obbTMat);
-		
-		RMath.translateTMat(base, -725.0, 0.0, 0.0);
-		
-		// Fourth joint rotation
-		RMath.translateTMat(base, 0.0, 75.0, 75.0);
-		jointTMat = RMath.formTMat(SEGMENT[3].AXIS, SEGMENT[3].getJointRotation());
-		base = base.multiply(jointTMat);
-		RMath.translateTMat(base, 0.0, -75.0, -75.0);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, 361.0, 75.0, 75.0);
-		SEGMENT[3].OBBS[1].setCoordinateSystem(obbTMat);
-		
-		obbTMat = base.copy();
-		RMath.translateTMat(obbTMat, 75.0, 75.0, 75.0);
-		SEGMENT[3].OBBS[2].setCoordinateSystem(obbTMat);
-		
-		RMath.translateTMat(base, 120.0, 20.0, 25.0);
-		
-		// Fifth joint rotation
-		RMath.translateTMat(base, -55.0, 55.0, 50.0);
-		jointTMat = RMath.formTMat(SEGMENT[4].AXIS, SEGMENT[4].getJointRotation());
-		base = base.multiply(jointTMat);
-		RMath.translateTMat(base, 55.0, -55.0, -50.0);
-		
-		RMath.translateTMat(base, -150.0, 10.0, 95.0);
-		
-		// Sixth joint rotation
-		RMath.translateTMat(base, 0.0, 45.0, -45.0);
-		jointTMat = RMath.formTMat(SEGMENT[5].AXIS, SEGMENT[5].getJointRotation());
-		base = base.multiply(jointTMat);
-		RMath.translateTMat(base, 0.0, -45.0, 45.0);
-		
-		/* End Effector OBBs */
 		EndEffector activeEE = getActiveEE();
+		BoundingBox[][] obbs = new BoundingBox[8][];
 		
-		if (activeEEIdx == 1) {
-			// Suction EE OBBs
-			RMath.translateTMat(base, 25.0, -37.5, -90.0);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -8.0, 82.5, 45.0);
-			activeEE.OBBS[0].setCoordinateSystem(obbTMat);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -64.0, 82.5, 45.0);
-			activeEE.OBBS[1].setCoordinateSystem(obbTMat);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -45.0, 32.0, 45.0);
-			activeEE.OBBS[2].setCoordinateSystem(obbTMat);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -106.5, 82.5, 45.0);
-			activeEE.PICKUP_OBBS[0].setCoordinateSystem(obbTMat);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -45.0, -2.0, 45.0);
-			activeEE.PICKUP_OBBS[1].setCoordinateSystem(obbTMat);
-			
-		} else if (activeEEIdx == 2) {
-			// Gripper EE OBBs
-			RMath.translateTMat(base, 25.0, 0.0, -90.0);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -8.0, 45.0, 45.0);
-			activeEE.OBBS[0].setCoordinateSystem(obbTMat);
-			
-			float firstGripper, secondGripper;
-			
-			if(activeEE.getState() == Fields.ON) {
-				// Closed grippers
-				firstGripper = 22.5f;
-				secondGripper = 25f;
-
-			} else {
-				// Open grippers
-				firstGripper = 10f;
-				secondGripper = 55f;
-			}
-			
-			RMath.translateTMat(base, -32.5, 0.0, 85.0);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -24.0, 45.0, -40.0);
-			activeEE.PICKUP_OBBS[0].setCoordinateSystem(obbTMat);
-			
-			RMath.translateTMat(base, 0.0, firstGripper, 0.0);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -24.0, 8.0, -40.0);
-			activeEE.OBBS[1].setCoordinateSystem(obbTMat);
-			
-			RMath.translateTMat(base, 0, secondGripper, 0);
-			
-			obbTMat = base.copy();
-			RMath.translateTMat(obbTMat, -24.0, 8.0, -40.0);
-			activeEE.OBBS[2].setCoordinateSystem(obbTMat);
+		for (int sdx = 0; sdx < SEGMENT.length; ++sdx) {
+			obbs[sdx] = SEGMENT[sdx].OBBS;
 		}
-	}	
+		
+		obbs[6] = activeEE.OBBS;
+		obbs[7] = activeEE.PICKUP_OBBS;
+		
+		placeOBBs(getJointAngles(), obbs);
+	}
 }
-
@@ -281,6 +281,10 @@ public abstract class Screen {
 				if (isRobotAt != null && isRobotAt) {
 					line.add("@");
 					
+				} else if (robotRun.isCollisionFlagged(p, i)) {
+					// The instruction's path has a collision
+					line.add("!");
+					
 				} else {
 					// Add a placeholder for the '@' symbol
 					line.add("\0");
@@ -443,8 +447,7 @@ public abstract class Screen {
 			progList = new ArrayList<>();
 			// Get a list of program names for the given robot
 			for (int idx = 0; idx < r.numOfPrograms(); ++idx) {
-				DisplayLine line = new DisplayLine(idx, 0,
-						r.getProgram(idx).getName());
+				DisplayLine line = new DisplayLine(idx, 0, r.getProgName(idx));
 				progList.add(line);
 			}
 			
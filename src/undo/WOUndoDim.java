@@ -67,6 +67,9 @@ public class WOUndoDim extends WOUndoState {
 		if (woRef instanceof Part) {
 			// Update the bounding box dimension of a part as well
 			((Part) woRef).updateOBBDims();
+			
+		} else {
+			woRef.updateBounds();
 		}
 	}
 
@@ -26,6 +26,7 @@ import geom.CameraObject;
 import geom.ComplexShape;
 import geom.Fixture;
 import geom.Model;
+import geom.ModelRegistry;
 import geom.Part;
 import geom.RBox;
 import geom.RCylinder;
@@ -937,6 +938,8 @@ public class WGUI implements ControlListener {
 				mdropItemWidth, sButtonHeight, Fields.small);
 		addButton(WGUI_Buttons.ExportProgs, "Export Programs", miscellaneous,
 				ldropItemWidth, sButtonHeight, Fields.small);
+		addButton(WGUI_Buttons.ImportProgs, "Import Programs", miscellaneous,
+				ldropItemWidth, sButtonHeight, Fields.small);
 		
 		togValues = new float[] { 0f, 1f };
 		togNames = new String[] { "RenderMouseRayOpt", "RenderPointOpt" };
@@ -2268,6 +2271,9 @@ public class WGUI implements ControlListener {
 		if (dimChanged && selectedWO instanceof Part) {
 			// Update the bounding box dimensions of a part
 			((Part)selectedWO).updateOBBDims();
+			
+		} else if (dimChanged) {
+			selectedWO.updateBounds();
 		}
 		
 		if (dimChanged) {
@@ -4172,6 +4178,10 @@ public class WGUI implements ControlListener {
 		relPos = getAbsPosFrom(c, Alignment.TOP_RIGHT, distFieldToFieldX, 0);
 		b = getButton(WGUI_Buttons.ExportProgs).setPosition(relPos[0], relPos[1]);
 		
+		// Import programs button
+		relPos = getAbsPosFrom(c, Alignment.BOTTOM_LEFT, 0, distBtwFieldsY);
+		c = getButton(WGUI_Buttons.ImportProgs).setPosition(relPos[0], relPos[1]);
+		
 		relPos = getAbsPosFrom(c, Alignment.BOTTOM_LEFT, 0, distBtwFieldsY);
 		c = getRadioButton("DebugOptions").setPosition(relPos[0], relPos[1]);
 		
@@ -4397,7 +4407,6 @@ public class WGUI implements ControlListener {
 			// Validate the dimensions for a complex shape
 			Float[] complexDims = getModelDimensions();
 			String file = getShapeSourceFile();
-			Model model = Fields.getModel(file);
 			
 			if (complexDims[0] == null) {
 				return "A complex shape's scale must be a positive real number";
@@ -4406,6 +4415,7 @@ public class WGUI implements ControlListener {
 				return "A model file must be selected for a complex shape";
 				
 			} else {
+				Model model = ModelRegistry.getModel(file, fill);
 				return new ComplexShape(model, fill, complexDims[0]);
 			}
 		}
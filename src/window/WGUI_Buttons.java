@@ -47,6 +47,7 @@ public interface WGUI_Buttons {
 	public static final String Funct= "button_funct";
 	public static final String Fwd  = "button_fwd";
 	public static final String Hold = "button_hold";
+	public static final String ImportProgs = "button_importProgs";
 	public static final String IO   = "button_io";
 	public static final String Item = "button_item";
 	